@@ -0,0 +1,98 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata.client;
+
+/**
+ * A snapshot of the counters of a {@link SubscriberCache}.
+ *
+ * A request is a hit when it is answered from the cache, including cached
+ * absences, a miss when it evaluates the transaction itself, and coalesced when
+ * it waits for the result of another request's evaluation of the same key.
+ */
+public final class CacheStats {
+    private final long hitCount;
+    private final long negativeHitCount;
+    private final long missCount;
+    private final long coalescedCount;
+    private final long loadFailureCount;
+    private final long evictionCount;
+    private final long invalidationCount;
+
+    CacheStats(final long hitCount, final long negativeHitCount, final long missCount, final long coalescedCount,
+            final long loadFailureCount, final long evictionCount, final long invalidationCount) {
+        this.hitCount = hitCount;
+        this.negativeHitCount = negativeHitCount;
+        this.missCount = missCount;
+        this.coalescedCount = coalescedCount;
+        this.loadFailureCount = loadFailureCount;
+        this.evictionCount = evictionCount;
+        this.invalidationCount = invalidationCount;
+    }
+
+    /**
+     * Requests answered from the cache, including cached absences.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Requests answered from a cached absence.
+     */
+    public long getNegativeHitCount() {
+        return negativeHitCount;
+    }
+
+    /**
+     * Requests that evaluated the transaction on the gateway.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Requests that shared another request's evaluation instead of issuing their own.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * Entries dropped to stay within the maximum size.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Entries dropped because a chaincode event reported a change.
+     */
+    public long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    public long getRequestCount() {
+        return hitCount + missCount + coalescedCount;
+    }
+
+    /**
+     * Returns the share of requests answered from the cache, 1 when there were none.
+     */
+    public double hitRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hitCount + ", negativeHits=" + negativeHitCount + ", misses=" + missCount
+                + ", coalesced=" + coalescedCount + ", loadFailures=" + loadFailureCount
+                + ", evictions=" + evictionCount + ", invalidations=" + invalidationCount
+                + ", hitRate=" + String.format("%.4f", hitRate()) + "}";
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.Network;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Feeds the chaincode events of a network into a {@link SubscriberCache}.
+ *
+ * Events are read on a daemon thread. When the stream fails the cache is
+ * cleared, since changes may have been missed, and the stream is reopened from
+ * the last block seen after a short pause.
+ */
+public final class ChangeEventListener implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(ChangeEventListener.class.getName());
+    private static final long RETRY_MILLIS = 1000;
+
+    private final Network network;
+    private final String chaincodeName;
+    private final SubscriberCache cache;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile CloseableIterator<ChaincodeEvent> events;
+    private long nextBlock = -1;
+
+    private ChangeEventListener(final Network network, final String chaincodeName, final SubscriberCache cache) {
+        this.network = network;
+        this.chaincodeName = chaincodeName;
+        this.cache = cache;
+        this.thread = new Thread(this::run, "subscriber-cache-events-" + chaincodeName);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts listening for events of a chaincode, from the next block committed.
+     */
+    public static ChangeEventListener start(final Network network, final String chaincodeName,
+            final SubscriberCache cache) {
+        ChangeEventListener listener = new ChangeEventListener(network, chaincodeName, cache);
+        listener.thread.start();
+        return listener;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        CloseableIterator<ChaincodeEvent> current = events;
+        if (current != null) {
+            current.close();
+        }
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (!closed) {
+            try (CloseableIterator<ChaincodeEvent> iterator = open()) {
+                events = iterator;
+                while (!closed && iterator.hasNext()) {
+                    ChaincodeEvent event = iterator.next();
+                    nextBlock = event.getBlockNumber();
+                    cache.onChaincodeEvent(event.getEventName(), event.getPayload());
+                }
+            } catch (RuntimeException e) {
+                if (closed) {
+                    return;
+                }
+                LOG.log(Level.WARNING, "Chaincode event stream failed, clearing the subscriber cache", e);
+            }
+            cache.invalidateAll();
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // replays the last block seen, since its other events may not have been delivered
+    private CloseableIterator<ChaincodeEvent> open() {
+        if (nextBlock < 0) {
+            return network.getChaincodeEvents(chaincodeName);
+        }
+        return network.newChaincodeEventsRequest(chaincodeName)
+                .startBlock(nextBlock)
+                .build()
+                .getEvents();
+    }
+}
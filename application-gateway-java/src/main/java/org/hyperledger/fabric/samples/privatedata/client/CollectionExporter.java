@@ -0,0 +1,324 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Exports a whole collection to an NDJSON file through the paged export transactions.
+ *
+ * The key space is split into ranges by the leading IMSI digits, and the ranges
+ * are exported in parallel, each into its own part file next to the output.
+ * After every page the part file is flushed to disk and the page's bookmark is
+ * saved with the length of the part file, so an export that fails, or is
+ * killed, picks up where each range stopped when it is run again with the same
+ * output file: the part file is cut back to the saved length and the range
+ * continues from the saved bookmark. Once every range is complete the parts are
+ * joined, in key order, into the output file and removed.
+ */
+public final class CollectionExporter {
+    public static final String EXPORT_ASSETS = "ExportAssets";
+    public static final String EXPORT_PRIVATE_DETAILS = "ExportAssetPrivateDetails";
+
+    private static final String DONE = "done";
+
+    private final Evaluator evaluator;
+    private final String transaction;
+    private final int prefixDigits;
+    private final int threads;
+    private final int maxRecords;
+    private final int maxBytes;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+
+    private CollectionExporter(final Builder builder) {
+        this.evaluator = builder.evaluator;
+        this.transaction = builder.transaction;
+        this.prefixDigits = builder.prefixDigits;
+        this.threads = builder.threads;
+        this.maxRecords = builder.maxRecords;
+        this.maxBytes = builder.maxBytes;
+        this.maxAttempts = builder.maxAttempts;
+        this.retryDelayMillis = builder.retryDelay.toMillis();
+    }
+
+    /**
+     * @param evaluator evaluates the export transaction
+     * @param transaction {@link #EXPORT_ASSETS} or {@link #EXPORT_PRIVATE_DETAILS}
+     */
+    public static Builder builder(final Evaluator evaluator, final String transaction) {
+        return new Builder(evaluator, transaction);
+    }
+
+    /**
+     * Splits the key space by the first digits of the key: 10^digits ranges, the
+     * first one open at the start and the last one open at the end.
+     *
+     * @return the [start, end) pairs, empty meaning unbounded
+     */
+    static List<String[]> ranges(final int digits) {
+        int count = (int) Math.pow(10, digits);
+        List<String[]> ranges = new ArrayList<>(count);
+        String format = "%0" + digits + "d";
+        for (int i = 0; i < count; i++) {
+            String start = i == 0 ? "" : String.format(format, i);
+            String end = i == count - 1 ? "" : String.format(format, i + 1);
+            ranges.add(new String[] {start, end});
+        }
+        return ranges;
+    }
+
+    /**
+     * Exports the collection into a file, resuming the parts left by an earlier run.
+     *
+     * @return the number of records fetched by this run
+     */
+    public long export(final Path output) throws IOException, InterruptedException {
+        Path target = output.toAbsolutePath();
+        List<String[]> ranges = ranges(prefixDigits);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, ranges.size()));
+        try {
+            List<Future<Long>> parts = new ArrayList<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                Part part = new Part(target, i, ranges.get(i));
+                parts.add(executor.submit(() -> exportRange(part)));
+            }
+            long fetched = 0;
+            IOException failure = null;
+            for (Future<Long> part : parts) {
+                try {
+                    fetched += part.get();
+                } catch (ExecutionException e) {
+                    IOException cause = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause()
+                            : new IOException("Export of " + transaction + " failed", e.getCause());
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            join(target, ranges.size());
+            return fetched;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long exportRange(final Part part) throws IOException, InterruptedException {
+        Checkpoint checkpoint = Checkpoint.read(part.checkpoint);
+        if (checkpoint.done) {
+            return 0;
+        }
+        long fetched = 0;
+        try (FileChannel file = FileChannel.open(part.data, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            file.truncate(checkpoint.offset);
+            long offset = checkpoint.offset;
+            String bookmark = checkpoint.bookmark;
+            while (true) {
+                String page = fetch(part, bookmark);
+                int trailer = page.lastIndexOf('\n') + 1;
+                JSONObject summary = new JSONObject(page.substring(trailer));
+                ByteBuffer records = UTF_8.encode(page.substring(0, trailer));
+                file.position(offset);
+                while (records.hasRemaining()) {
+                    offset += file.write(records);
+                }
+                file.force(false);
+                fetched += summary.getInt("fetchedRecordsCount");
+                bookmark = summary.getString("bookmark");
+                new Checkpoint(offset, bookmark, bookmark.isEmpty()).write(part.checkpoint);
+                if (bookmark.isEmpty()) {
+                    return fetched;
+                }
+            }
+        }
+    }
+
+    private String fetch(final Part part, final String bookmark) throws IOException, InterruptedException {
+        for (int attempt = 1;; attempt++) {
+            try {
+                byte[] page = evaluator.evaluate(transaction, part.start, part.end, bookmark,
+                        Integer.toString(maxRecords), Integer.toString(maxBytes));
+                return new String(page, UTF_8);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    throw new IOException(String.format("Export of %s [%s, %s) failed at bookmark '%s'",
+                            transaction, part.start, part.end, bookmark), e);
+                }
+                Thread.sleep(retryDelayMillis << Math.min(attempt - 1, 6));
+            }
+        }
+    }
+
+    private static void join(final Path target, final int count) throws IOException {
+        Path joined = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(joined)) {
+            for (int i = 0; i < count; i++) {
+                Files.copy(Part.dataFile(target, i), out);
+            }
+        }
+        Files.move(joined, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (int i = 0; i < count; i++) {
+            Files.delete(Part.dataFile(target, i));
+            Files.delete(Part.checkpointFile(target, i));
+        }
+    }
+
+    /**
+     * Configures a {@link CollectionExporter}.
+     */
+    public static final class Builder {
+        private final Evaluator evaluator;
+        private final String transaction;
+        private int prefixDigits = 1;
+        private int threads = 4;
+        private int maxRecords;
+        private int maxBytes;
+        private int maxAttempts = 5;
+        private Duration retryDelay = Duration.ofMillis(500);
+
+        private Builder(final Evaluator evaluator, final String transaction) {
+            this.evaluator = Objects.requireNonNull(evaluator, "evaluator");
+            this.transaction = Objects.requireNonNull(transaction, "transaction");
+        }
+
+        /**
+         * Splits the export into 10^digits key ranges; 1 by default, for 10 ranges.
+         */
+        public Builder prefixDigits(final int digits) {
+            if (digits < 1 || digits > 4) {
+                throw new IllegalArgumentException("Invalid prefix digits: " + digits);
+            }
+            this.prefixDigits = digits;
+            return this;
+        }
+
+        /**
+         * The number of ranges exported at the same time; 4 by default.
+         */
+        public Builder threads(final int count) {
+            if (count < 1) {
+                throw new IllegalArgumentException("Invalid thread count: " + count);
+            }
+            this.threads = count;
+            return this;
+        }
+
+        /**
+         * Records per page; 0, the default, leaves it to the chaincode.
+         */
+        public Builder maxRecords(final int records) {
+            this.maxRecords = records;
+            return this;
+        }
+
+        /**
+         * Size of a page; 0, the default, leaves it to the chaincode.
+         */
+        public Builder maxBytes(final int bytes) {
+            this.maxBytes = bytes;
+            return this;
+        }
+
+        /**
+         * Evaluations of one page before the export gives up; 5 by default.
+         */
+        public Builder maxAttempts(final int attempts) {
+            if (attempts < 1) {
+                throw new IllegalArgumentException("Invalid attempts: " + attempts);
+            }
+            this.maxAttempts = attempts;
+            return this;
+        }
+
+        /**
+         * The pause after the first failed evaluation, doubled after each further one; 500 ms by default.
+         */
+        public Builder retryDelay(final Duration delay) {
+            this.retryDelay = Objects.requireNonNull(delay, "retryDelay");
+            return this;
+        }
+
+        public CollectionExporter build() {
+            return new CollectionExporter(this);
+        }
+    }
+
+    private static final class Part {
+        private final Path data;
+        private final Path checkpoint;
+        private final String start;
+        private final String end;
+
+        Part(final Path target, final int index, final String[] range) {
+            this.data = dataFile(target, index);
+            this.checkpoint = checkpointFile(target, index);
+            this.start = range[0];
+            this.end = range[1];
+        }
+
+        static Path dataFile(final Path target, final int index) {
+            return target.resolveSibling(String.format("%s.part-%04d", target.getFileName(), index));
+        }
+
+        static Path checkpointFile(final Path target, final int index) {
+            return target.resolveSibling(String.format("%s.part-%04d.bookmark", target.getFileName(), index));
+        }
+    }
+
+    /**
+     * The progress of a range: the length of its part file, the bookmark to continue from, and whether it is done.
+     */
+    private static final class Checkpoint {
+        private final long offset;
+        private final String bookmark;
+        private final boolean done;
+
+        Checkpoint(final long offset, final String bookmark, final boolean done) {
+            this.offset = offset;
+            this.bookmark = bookmark;
+            this.done = done;
+        }
+
+        static Checkpoint read(final Path path) throws IOException {
+            if (!Files.exists(path)) {
+                return new Checkpoint(0, "", false);
+            }
+            List<String> lines = Files.readAllLines(path, UTF_8);
+            return new Checkpoint(Long.parseLong(lines.get(0)), lines.get(1), DONE.equals(lines.get(2)));
+        }
+
+        void write(final Path path) throws IOException {
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(temp, (offset + "\n" + bookmark + "\n" + (done ? DONE : "more") + "\n").getBytes(UTF_8));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import org.hyperledger.fabric.client.Contract;
+
+/**
+ * Evaluates a read-only transaction and returns its result.
+ *
+ * The cache only needs this one call from the gateway, so tests can stand in
+ * for a peer with a lambda or a map.
+ */
+@FunctionalInterface
+public interface Evaluator {
+
+    byte[] evaluate(String name, String... args) throws Exception;
+
+    /**
+     * Evaluates transactions with a gateway contract.
+     */
+    static Evaluator of(final Contract contract) {
+        return contract::evaluateTransaction;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import java.nio.file.Paths;
+
+/**
+ * Command line tool that exports the public assets, or the private details of
+ * the caller's org, to an NDJSON file.
+ *
+ * Usage: ExportCollection assets|details OUTPUT [PREFIX_DIGITS [THREADS]]
+ *
+ * Run it again with the same OUTPUT to resume an export that failed. The
+ * connection is configured as described in {@link GatewayConnection}.
+ */
+public final class ExportCollection {
+
+    private ExportCollection() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 2 || !"assets".equals(args[0]) && !"details".equals(args[0])) {
+            System.err.println("Usage: ExportCollection assets|details OUTPUT [PREFIX_DIGITS [THREADS]]");
+            System.exit(2);
+        }
+        String transaction = "assets".equals(args[0])
+                ? CollectionExporter.EXPORT_ASSETS
+                : CollectionExporter.EXPORT_PRIVATE_DETAILS;
+        try (GatewayConnection connection = GatewayConnection.fromEnvironment()) {
+            CollectionExporter exporter = CollectionExporter.builder(Evaluator.of(connection.getContract()), transaction)
+                    .prefixDigits(args.length > 2 ? Integer.parseInt(args[2]) : 1)
+                    .threads(args.length > 3 ? Integer.parseInt(args[3]) : 4)
+                    .build();
+            long start = System.nanoTime();
+            long records = exporter.export(Paths.get(args[1]));
+            System.out.printf("Exported %d records to %s in %d ms%n", records, args[1],
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
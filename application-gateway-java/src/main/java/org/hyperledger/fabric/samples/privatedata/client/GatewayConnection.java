@@ -0,0 +1,111 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.client.identity.Identities;
+import org.hyperledger.fabric.client.identity.Signers;
+import org.hyperledger.fabric.client.identity.X509Identity;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A gateway connection for the command line tools, configured like the Fabric samples.
+ *
+ * Environment variables, with defaults for Org1 of the test network:
+ * MSP_ID, CRYPTO_PATH, CERT_PATH (a certificate file or a directory holding one),
+ * KEY_PATH (a key file or a directory holding one), TLS_CERT_PATH, PEER_ENDPOINT,
+ * PEER_HOST_ALIAS, CHANNEL_NAME and CHAINCODE_NAME.
+ */
+public final class GatewayConnection implements AutoCloseable {
+    private final ManagedChannel channel;
+    private final Gateway gateway;
+    private final Network network;
+    private final String chaincodeName;
+
+    private GatewayConnection(final ManagedChannel channel, final Gateway gateway, final String channelName,
+            final String chaincodeName) {
+        this.channel = channel;
+        this.gateway = gateway;
+        this.network = gateway.getNetwork(channelName);
+        this.chaincodeName = chaincodeName;
+    }
+
+    /**
+     * Connects with the settings of the environment.
+     */
+    public static GatewayConnection fromEnvironment() throws Exception {
+        String cryptoPath = env("CRYPTO_PATH",
+                "../../test-network/organizations/peerOrganizations/org1.example.com");
+        Path certPath = Paths.get(env("CERT_PATH", cryptoPath + "/users/User1@org1.example.com/msp/signcerts"));
+        Path keyPath = Paths.get(env("KEY_PATH", cryptoPath + "/users/User1@org1.example.com/msp/keystore"));
+        Path tlsCertPath = Paths.get(env("TLS_CERT_PATH", cryptoPath + "/peers/peer0.org1.example.com/tls/ca.crt"));
+
+        ManagedChannel channel = NettyChannelBuilder.forTarget(env("PEER_ENDPOINT", "localhost:7051"))
+                .sslContext(GrpcSslContexts.forClient().trustManager(tlsCertPath.toFile()).build())
+                .overrideAuthority(env("PEER_HOST_ALIAS", "peer0.org1.example.com"))
+                .build();
+        try (Reader certReader = Files.newBufferedReader(firstFile(certPath));
+                Reader keyReader = Files.newBufferedReader(firstFile(keyPath))) {
+            Gateway gateway = Gateway.newInstance()
+                    .identity(new X509Identity(env("MSP_ID", "Org1MSP"), Identities.readX509Certificate(certReader)))
+                    .signer(Signers.newPrivateKeySigner(Identities.readPrivateKey(keyReader)))
+                    .connection(channel)
+                    .evaluateOptions(options -> options.withDeadlineAfter(30, TimeUnit.SECONDS))
+                    .endorseOptions(options -> options.withDeadlineAfter(60, TimeUnit.SECONDS))
+                    .submitOptions(options -> options.withDeadlineAfter(10, TimeUnit.SECONDS))
+                    .commitStatusOptions(options -> options.withDeadlineAfter(2, TimeUnit.MINUTES))
+                    .connect();
+            return new GatewayConnection(channel, gateway, env("CHANNEL_NAME", "mychannel"),
+                    env("CHAINCODE_NAME", "private"));
+        } catch (Exception e) {
+            channel.shutdownNow();
+            throw e;
+        }
+    }
+
+    public Network getNetwork() {
+        return network;
+    }
+
+    public String getChaincodeName() {
+        return chaincodeName;
+    }
+
+    public Contract getContract() {
+        return network.getContract(chaincodeName);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        gateway.close();
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static String env(final String name, final String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    private static Path firstFile(final Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return path;
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(Files::isRegularFile).findFirst()
+                    .orElseThrow(() -> new IOException("No file in " + path));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import java.nio.file.Paths;
+
+/**
+ * Command line tool that moves the subscribers of an operator, home network or
+ * backup network to another one, for instance all IMSIs of one backup network.
+ *
+ * Usage: MigrateSubscribers operator|homeNetwork|backupNetwork FROM TO CHECKPOINT [START [END]]
+ *
+ * START and END limit the migration to the IMSIs in [START, END), such as the
+ * prefix of a PLMN and the next one, with the MNC as long as its MCC has them:
+ * 31001 to 31002 also covers MNCs 010 to 019 of MCC 310. Run it again with the same CHECKPOINT to
+ * resume a migration that failed. The connection is configured as described in
+ * {@link GatewayConnection}.
+ */
+public final class MigrateSubscribers {
+
+    private MigrateSubscribers() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 4 || !MigrationDriver.FIELDS.contains(args[0])) {
+            System.err.println("Usage: MigrateSubscribers operator|homeNetwork|backupNetwork FROM TO CHECKPOINT "
+                    + "[START [END]]");
+            System.exit(2);
+        }
+        try (GatewayConnection connection = GatewayConnection.fromEnvironment()) {
+            MigrationDriver driver = MigrationDriver
+                    .builder(Submitter.of(connection.getContract()), args[0], args[1], args[2])
+                    .checkpoint(Paths.get(args[3]))
+                    .range(args.length > 4 ? args[4] : "", args.length > 5 ? args[5] : "")
+                    .build();
+            long start = System.nanoTime();
+            MigrationDriver.Progress progress = driver.run();
+            System.out.printf("Migrated %d subscribers, skipped %d, in %d chunks and %d ms%n", progress.getMigrated(),
+                    progress.getSkipped(), progress.getChunks(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Moves every subscriber of an operator, home network or backup network to another one,
+ * by running the MigrateAssets transaction chunk after chunk.
+ *
+ * Each chunk is submitted and committed before the next one starts from the cursor
+ * it returned. The chunk size adapts to the network: it is halved when a chunk
+ * takes longer than the target latency or fails, for instance on an endorsement
+ * timeout, and doubled when a chunk takes less than a quarter of it, up to the
+ * chaincode's limit of 1000 records. A chunk that failed is submitted again from
+ * the same cursor, which is safe since moved subscribers no longer match. After
+ * every chunk the cursor and the totals are saved to the checkpoint file, so a
+ * migration that stops is resumed when it is run again with the same checkpoint.
+ */
+public final class MigrationDriver {
+    public static final String MIGRATE_ASSETS = "MigrateAssets";
+    public static final List<String> FIELDS = Collections.unmodifiableList(
+            Arrays.asList("operator", "homeNetwork", "backupNetwork"));
+    // the chaincode caps chunks at this size
+    static final int MAX_CHUNK_SIZE = 1000;
+
+    private static final String DONE = "done";
+
+    private final Submitter submitter;
+    private final String field;
+    private final String from;
+    private final String to;
+    private final String start;
+    private final String end;
+    private final Path checkpoint;
+    private final int initialChunkSize;
+    private final int minChunkSize;
+    private final long targetNanos;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+
+    private MigrationDriver(final Builder builder) {
+        this.submitter = builder.submitter;
+        this.field = builder.field;
+        this.from = builder.from;
+        this.to = builder.to;
+        this.start = builder.start;
+        this.end = builder.end;
+        this.checkpoint = builder.checkpoint;
+        this.initialChunkSize = builder.chunkSize;
+        this.minChunkSize = builder.minChunkSize;
+        this.targetNanos = builder.targetLatency.toNanos();
+        this.maxAttempts = builder.maxAttempts;
+        this.retryDelayMillis = builder.retryDelay.toMillis();
+    }
+
+    /**
+     * @param submitter submits the migration transaction
+     * @param field "operator", "homeNetwork" or "backupNetwork"
+     * @param from the current operator name or netID
+     * @param to the new operator name or netID, a network must be registered
+     */
+    public static Builder builder(final Submitter submitter, final String field, final String from, final String to) {
+        return new Builder(submitter, field, from, to);
+    }
+
+    /**
+     * Runs the remaining chunks of the migration.
+     *
+     * @return the totals of the whole migration, including chunks run before a resume
+     */
+    public Progress run() throws IOException, InterruptedException {
+        Progress progress = Progress.read(checkpoint, spec());
+        int chunkSize = initialChunkSize;
+        while (!progress.done) {
+            long begin = System.nanoTime();
+            JSONObject result = submit(progress.cursor, chunkSize);
+            long elapsed = System.nanoTime() - begin;
+
+            String cursor = result.getString("cursor");
+            progress = new Progress(spec(), cursor, progress.migrated + result.getLong("migrated"),
+                    progress.skipped + result.getLong("skipped"), progress.chunks + 1, cursor.isEmpty());
+            if (checkpoint != null) {
+                progress.write(checkpoint);
+            }
+            if (elapsed > targetNanos) {
+                chunkSize = Math.max(minChunkSize, chunkSize / 2);
+            } else if (elapsed < targetNanos / 4) {
+                chunkSize = Math.min(MAX_CHUNK_SIZE, chunkSize * 2);
+            }
+        }
+        return progress;
+    }
+
+    private JSONObject submit(final String cursor, final int chunkSize) throws IOException, InterruptedException {
+        int size = chunkSize;
+        for (int attempt = 1;; attempt++) {
+            JSONObject migration = new JSONObject()
+                    .put("field", field)
+                    .put("from", from)
+                    .put("to", to)
+                    .put("start", start)
+                    .put("end", end)
+                    .put("cursor", cursor)
+                    .put("maxRecords", size);
+            try {
+                byte[] result = submitter.submit(MIGRATE_ASSETS,
+                        Collections.singletonMap("asset_migration", migration.toString().getBytes(UTF_8)));
+                return new JSONObject(new String(result, UTF_8));
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    throw new IOException(String.format("Migration of %s from %s to %s failed at cursor '%s'",
+                            field, from, to, cursor), e);
+                }
+                size = Math.max(minChunkSize, size / 2);
+                Thread.sleep(retryDelayMillis << Math.min(attempt - 1, 6));
+            }
+        }
+    }
+
+    private String spec() {
+        return String.join(" ", field, from, to, start, end);
+    }
+
+    /**
+     * Configures a {@link MigrationDriver}.
+     */
+    public static final class Builder {
+        private final Submitter submitter;
+        private final String field;
+        private final String from;
+        private final String to;
+        private String start = "";
+        private String end = "";
+        private Path checkpoint;
+        private int chunkSize = 200;
+        private int minChunkSize = 10;
+        private Duration targetLatency = Duration.ofSeconds(10);
+        private int maxAttempts = 5;
+        private Duration retryDelay = Duration.ofMillis(500);
+
+        private Builder(final Submitter submitter, final String field, final String from, final String to) {
+            this.submitter = Objects.requireNonNull(submitter, "submitter");
+            if (!FIELDS.contains(field)) {
+                throw new IllegalArgumentException("Invalid field: " + field);
+            }
+            this.field = field;
+            this.from = Objects.requireNonNull(from, "from");
+            this.to = Objects.requireNonNull(to, "to");
+        }
+
+        /**
+         * Limits the migration to the IMSIs in [start, end); empty means unbounded, the default.
+         */
+        public Builder range(final String rangeStart, final String rangeEnd) {
+            this.start = Objects.requireNonNull(rangeStart, "start");
+            this.end = Objects.requireNonNull(rangeEnd, "end");
+            return this;
+        }
+
+        /**
+         * The file the progress is saved to and resumed from; none by default.
+         */
+        public Builder checkpoint(final Path path) {
+            this.checkpoint = path;
+            return this;
+        }
+
+        /**
+         * Records in the first chunk; 200 by default.
+         */
+        public Builder chunkSize(final int records) {
+            if (records < 1 || records > MAX_CHUNK_SIZE) {
+                throw new IllegalArgumentException("Invalid chunk size: " + records);
+            }
+            this.chunkSize = records;
+            return this;
+        }
+
+        /**
+         * The smallest chunk the size adapts down to; 10 by default.
+         */
+        public Builder minChunkSize(final int records) {
+            if (records < 1 || records > MAX_CHUNK_SIZE) {
+                throw new IllegalArgumentException("Invalid chunk size: " + records);
+            }
+            this.minChunkSize = records;
+            return this;
+        }
+
+        /**
+         * The time a chunk should take from submit to commit; 10 s by default, a
+         * third of the peer's default chaincode execute timeout.
+         */
+        public Builder targetLatency(final Duration latency) {
+            this.targetLatency = Objects.requireNonNull(latency, "targetLatency");
+            return this;
+        }
+
+        /**
+         * Submissions of one chunk before the migration gives up; 5 by default.
+         */
+        public Builder maxAttempts(final int attempts) {
+            if (attempts < 1) {
+                throw new IllegalArgumentException("Invalid attempts: " + attempts);
+            }
+            this.maxAttempts = attempts;
+            return this;
+        }
+
+        /**
+         * The pause after the first failed submission, doubled after each further one; 500 ms by default.
+         */
+        public Builder retryDelay(final Duration delay) {
+            this.retryDelay = Objects.requireNonNull(delay, "retryDelay");
+            return this;
+        }
+
+        public MigrationDriver build() {
+            return new MigrationDriver(this);
+        }
+    }
+
+    /**
+     * The progress of a migration: the cursor to continue from, the totals so far, and whether it is done.
+     */
+    public static final class Progress {
+        private final String spec;
+        private final String cursor;
+        private final long migrated;
+        private final long skipped;
+        private final long chunks;
+        private final boolean done;
+
+        Progress(final String spec, final String cursor, final long migrated, final long skipped, final long chunks,
+                final boolean done) {
+            this.spec = spec;
+            this.cursor = cursor;
+            this.migrated = migrated;
+            this.skipped = skipped;
+            this.chunks = chunks;
+            this.done = done;
+        }
+
+        public long getMigrated() {
+            return migrated;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getChunks() {
+            return chunks;
+        }
+
+        static Progress read(final Path path, final String spec) throws IOException {
+            if (path == null || !Files.exists(path)) {
+                return new Progress(spec, "", 0, 0, 0, false);
+            }
+            List<String> lines = Files.readAllLines(path, UTF_8);
+            if (!spec.equals(lines.get(0))) {
+                throw new IOException(String.format("Checkpoint %s belongs to the migration '%s'", path, lines.get(0)));
+            }
+            return new Progress(spec, lines.get(1), Long.parseLong(lines.get(2)), Long.parseLong(lines.get(3)),
+                    Long.parseLong(lines.get(4)), DONE.equals(lines.get(5)));
+        }
+
+        void write(final Path path) throws IOException {
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            String text = String.join("\n", spec, cursor, Long.toString(migrated), Long.toString(skipped),
+                    Long.toString(chunks), done ? DONE : "more") + "\n";
+            Files.write(temp, text.getBytes(UTF_8));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
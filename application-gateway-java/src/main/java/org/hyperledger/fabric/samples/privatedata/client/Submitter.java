@@ -0,0 +1,31 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import org.hyperledger.fabric.client.Contract;
+
+import java.util.Map;
+
+/**
+ * Submits a transaction with transient data, waits for it to commit, and returns its result.
+ *
+ * Like {@link Evaluator}, this is the one gateway call a tool needs, so tests
+ * can stand in for the network with a lambda.
+ */
+@FunctionalInterface
+public interface Submitter {
+
+    byte[] submit(String name, Map<String, byte[]> transientData) throws Exception;
+
+    /**
+     * Submits transactions with a gateway contract.
+     */
+    static Submitter of(final Contract contract) {
+        return (name, transientData) -> contract.newProposal(name)
+                .putAllTransient(transientData)
+                .build()
+                .endorse()
+                .submit();
+    }
+}
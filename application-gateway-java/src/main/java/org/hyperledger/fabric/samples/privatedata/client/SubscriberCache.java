@@ -0,0 +1,402 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A bounded read-through cache in front of ReadAsset and ReadAssetPrivateDetails.
+ *
+ * Entries are keyed by (collection, imsi), public assets under
+ * "assetCollection", and hold the raw transaction result. An empty result means
+ * the subscriber does not exist and is cached as an absence for a shorter time.
+ * The least recently used entry is dropped past the maximum size, and every
+ * entry expires after its time to live, which can be capped per collection at
+ * its blockToLive so that purged private details are not served for long.
+ *
+ * Concurrent misses on one key share a single evaluation. Writes are picked up
+ * through the "AssetChanged" chaincode events passed to
+ * {@link #onChaincodeEvent(String, byte[])}, usually by a
+ * {@link ChangeEventListener}; an evaluation that overlaps an invalidation of
+ * its key is returned to its callers but not cached. Events arrive after the
+ * block commits, so a read can be stale for the time it takes to deliver one.
+ */
+public final class SubscriberCache {
+    public static final String ASSET_COLLECTION = "assetCollection";
+    public static final String EVENT_NAME = "AssetChanged";
+    static final int EVENT_VERSION = 1;
+
+    private final Evaluator evaluator;
+    private final long ttl;
+    private final long negativeTtl;
+    private final Map<String, Long> maxAges;
+    private final LongSupplier clock;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<Key, Entry> entries;
+    private final ConcurrentHashMap<Key, CompletableFuture<byte[]>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private SubscriberCache(final Builder builder) {
+        this.evaluator = builder.evaluator;
+        this.ttl = builder.ttl;
+        this.negativeTtl = builder.negativeTtl;
+        this.maxAges = new HashMap<>(builder.maxAges);
+        this.clock = builder.clock;
+        final int maximumSize = builder.maximumSize;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+                if (size() > maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static Builder builder(final Evaluator evaluator) {
+        return new Builder(evaluator);
+    }
+
+    /**
+     * Returns the result of ReadAsset, or null if the subscriber does not exist.
+     */
+    public byte[] readAsset(final String imsi) {
+        return copy(get(new Key(ASSET_COLLECTION, imsi)));
+    }
+
+    /**
+     * Returns the result of ReadAssetPrivateDetails, or null if the subscriber has no details in the collection.
+     */
+    public byte[] readAssetPrivateDetails(final String collection, final String imsi) {
+        return copy(get(new Key(collection, imsi)));
+    }
+
+    /**
+     * Drops the cached asset and the cached details of a subscriber in every collection.
+     */
+    public void invalidate(final String imsi) {
+        synchronized (lock) {
+            entries.keySet().removeIf(key -> {
+                if (key.imsi.equals(imsi)) {
+                    invalidations.increment();
+                    return true;
+                }
+                return false;
+            });
+            loading.keySet().removeIf(key -> key.imsi.equals(imsi));
+        }
+    }
+
+    /**
+     * Drops one cached entry.
+     */
+    public void invalidate(final String collection, final String imsi) {
+        Key key = new Key(collection, imsi);
+        synchronized (lock) {
+            if (entries.remove(key) != null) {
+                invalidations.increment();
+            }
+            loading.remove(key);
+        }
+    }
+
+    private void invalidateCollection(final String collection) {
+        synchronized (lock) {
+            entries.keySet().removeIf(key -> {
+                if (key.collection.equals(collection)) {
+                    invalidations.increment();
+                    return true;
+                }
+                return false;
+            });
+            loading.keySet().removeIf(key -> key.collection.equals(collection));
+        }
+    }
+
+    /**
+     * Drops every cached entry, for instance after missing events.
+     */
+    public void invalidateAll() {
+        synchronized (lock) {
+            invalidations.add(entries.size());
+            entries.clear();
+            loading.clear();
+        }
+    }
+
+    /**
+     * Applies a chaincode event; events other than "AssetChanged" are ignored.
+     *
+     * A change drops the public asset when the transaction wrote it, and the
+     * details in the event's collection when it wrote them or, for AdvanceSqn,
+     * appended an sqn increment that ReadAssetPrivateDetails folds in. A change
+     * of a registered network drops every public asset, since ReadAsset returns
+     * assets with their networks. An event this cache cannot read drops everything.
+     */
+    public void onChaincodeEvent(final String eventName, final byte[] payload) {
+        if (!EVENT_NAME.equals(eventName)) {
+            return;
+        }
+        try {
+            JSONObject event = new JSONObject(new String(payload, UTF_8));
+            if (event.getInt("version") != EVENT_VERSION) {
+                invalidateAll();
+                return;
+            }
+            String collection = event.getString("collection");
+            JSONArray changes = event.getJSONArray("changes");
+            for (int i = 0; i < changes.length(); i++) {
+                JSONObject change = changes.getJSONObject(i);
+                String op = change.getString("op");
+                if (change.has("netID")) {
+                    invalidateCollection(ASSET_COLLECTION);
+                    continue;
+                }
+                String imsi = change.getString("imsi");
+                boolean deleted = "delete".equals(op);
+                if (deleted || change.has("asset")) {
+                    invalidate(ASSET_COLLECTION, imsi);
+                }
+                if (deleted || change.has("details") || "advanceSqn".equals(op)) {
+                    invalidate(collection, imsi);
+                }
+            }
+        } catch (JSONException e) {
+            invalidateAll();
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), negativeHits.sum(), misses.sum(), coalesced.sum(), loadFailures.sum(),
+                evictions.sum(), invalidations.sum());
+    }
+
+    private byte[] get(final Key key) {
+        long now = clock.getAsLong();
+        synchronized (lock) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - now > 0) {
+                    hits.increment();
+                    if (entry.value == null) {
+                        negativeHits.increment();
+                    }
+                    return entry.value;
+                }
+                entries.remove(key);
+            }
+        }
+
+        CompletableFuture<byte[]> load = new CompletableFuture<>();
+        CompletableFuture<byte[]> pending = loading.putIfAbsent(key, load);
+        if (pending != null) {
+            coalesced.increment();
+            return join(pending, key);
+        }
+
+        misses.increment();
+        byte[] value;
+        try {
+            byte[] result = ASSET_COLLECTION.equals(key.collection)
+                    ? evaluator.evaluate("ReadAsset", key.imsi)
+                    : evaluator.evaluate("ReadAssetPrivateDetails", key.collection, key.imsi);
+            value = result == null || result.length == 0 ? null : result;
+        } catch (Exception e) {
+            loadFailures.increment();
+            loading.remove(key, load);
+            SubscriberCacheException failure = new SubscriberCacheException("Failed to read " + key, e);
+            load.completeExceptionally(failure);
+            throw failure;
+        }
+
+        synchronized (lock) {
+            // not cached if an invalidation removed this load while it ran
+            if (loading.remove(key, load)) {
+                long maxAge = maxAges.getOrDefault(key.collection, Long.MAX_VALUE);
+                entries.put(key, new Entry(value, now + Math.min(value == null ? negativeTtl : ttl, maxAge)));
+            }
+        }
+        load.complete(value);
+        return value;
+    }
+
+    private static byte[] copy(final byte[] value) {
+        return value == null ? null : value.clone();
+    }
+
+    private static byte[] join(final CompletableFuture<byte[]> pending, final Key key) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SubscriberCacheException) {
+                throw (SubscriberCacheException) e.getCause();
+            }
+            throw new SubscriberCacheException("Failed to read " + key, e.getCause());
+        }
+    }
+
+    /**
+     * Configures a {@link SubscriberCache}.
+     */
+    public static final class Builder {
+        private final Evaluator evaluator;
+        private int maximumSize = 100_000;
+        private long ttl = Duration.ofSeconds(30).toNanos();
+        private long negativeTtl = Duration.ofSeconds(5).toNanos();
+        private long blockInterval = Duration.ofSeconds(2).toNanos();
+        private final Map<String, Long> maxAges = new HashMap<>();
+        private LongSupplier clock = System::nanoTime;
+
+        private Builder(final Evaluator evaluator) {
+            this.evaluator = Objects.requireNonNull(evaluator, "evaluator");
+        }
+
+        /**
+         * The number of entries kept before the least recently used ones are dropped; 100000 by default.
+         */
+        public Builder maximumSize(final int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("Invalid maximum size: " + size);
+            }
+            this.maximumSize = size;
+            return this;
+        }
+
+        /**
+         * How long an existing subscriber is cached; 30 seconds by default.
+         */
+        public Builder ttl(final Duration duration) {
+            this.ttl = positive(duration);
+            return this;
+        }
+
+        /**
+         * How long an absent subscriber is cached; 5 seconds by default.
+         */
+        public Builder negativeTtl(final Duration duration) {
+            this.negativeTtl = positive(duration);
+            return this;
+        }
+
+        /**
+         * The expected time between blocks, used to turn blockToLive into a
+         * time; 2 seconds by default, the orderer's default BatchTimeout.
+         * Applies to collections added after it.
+         */
+        public Builder blockInterval(final Duration duration) {
+            this.blockInterval = positive(duration);
+            return this;
+        }
+
+        /**
+         * Caps the time to live of a collection's entries at blockToLive blocks,
+         * as set in collections_config.json; 0 means the data is never purged.
+         */
+        public Builder blockToLive(final String collection, final long blocks) {
+            if (blocks < 0) {
+                throw new IllegalArgumentException("Invalid blockToLive: " + blocks);
+            }
+            if (blocks == 0) {
+                maxAges.remove(collection);
+            } else {
+                maxAges.put(collection, blocks > Long.MAX_VALUE / blockInterval ? Long.MAX_VALUE : blocks * blockInterval);
+            }
+            return this;
+        }
+
+        /**
+         * The time source in nanoseconds; System.nanoTime by default.
+         */
+        public Builder clock(final LongSupplier nanoTime) {
+            this.clock = Objects.requireNonNull(nanoTime, "clock");
+            return this;
+        }
+
+        public SubscriberCache build() {
+            return new SubscriberCache(this);
+        }
+
+        private static long positive(final Duration duration) {
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("Invalid duration: " + duration);
+            }
+            return duration.toNanos();
+        }
+    }
+
+    private static final class Key {
+        private final String collection;
+        private final String imsi;
+
+        Key(final String collection, final String imsi) {
+            this.collection = Objects.requireNonNull(collection, "collection");
+            this.imsi = Objects.requireNonNull(imsi, "imsi");
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return collection.equals(other.collection) && imsi.equals(other.imsi);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * collection.hashCode() + imsi.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return collection + "/" + imsi;
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] value;
+        private final long expiresAt;
+
+        Entry(final byte[] value, final long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
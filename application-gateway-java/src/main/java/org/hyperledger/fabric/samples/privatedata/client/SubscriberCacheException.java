@@ -0,0 +1,15 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata.client;
+
+/**
+ * Thrown when the gateway fails to evaluate a read behind the cache.
+ */
+public final class SubscriberCacheException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public SubscriberCacheException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
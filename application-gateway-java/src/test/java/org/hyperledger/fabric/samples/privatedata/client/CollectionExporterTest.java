@@ -0,0 +1,130 @@
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public final class CollectionExporterTest {
+    private final NavigableMap<String, String> ledger = new TreeMap<>();
+    private final AtomicInteger evaluations = new AtomicInteger();
+    private final AtomicInteger failAt = new AtomicInteger(-1);
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < 50; i++) {
+            String imsi = (i % 10) + "6011010001" + String.format("%04d", i);
+            ledger.put(imsi, "{\"imsi\":\"" + imsi + "\"}");
+        }
+    }
+
+    // pages like ExportAssets: records after the bookmark within [start, end), then the summary line
+    private byte[] evaluate(final String name, final String... args) throws Exception {
+        if (evaluations.incrementAndGet() == failAt.get()) {
+            throw new Exception("peer unavailable");
+        }
+        assertThat(name).isEqualTo(CollectionExporter.EXPORT_ASSETS);
+        String start = args[2].isEmpty() ? args[0] : args[2];
+        NavigableMap<String, String> range = args[1].isEmpty()
+                ? ledger.tailMap(start, true)
+                : ledger.subMap(start, true, args[1], false);
+        int maxRecords = Integer.parseInt(args[3]);
+        StringBuilder page = new StringBuilder();
+        int count = 0;
+        String last = "";
+        boolean more = false;
+        for (Map.Entry<String, String> entry : range.entrySet()) {
+            if (entry.getKey().equals(args[2])) {
+                continue;
+            }
+            if (count == maxRecords) {
+                more = true;
+                break;
+            }
+            page.append(entry.getValue()).append('\n');
+            last = entry.getKey();
+            count++;
+        }
+        page.append("{\"fetchedRecordsCount\":").append(count)
+                .append(",\"bookmark\":\"").append(more ? last : "").append("\"}");
+        return page.toString().getBytes(UTF_8);
+    }
+
+    private CollectionExporter.Builder exporter() {
+        return CollectionExporter.builder(this::evaluate, CollectionExporter.EXPORT_ASSETS)
+                .maxRecords(2)
+                .retryDelay(Duration.ZERO);
+    }
+
+    private List<String> expected() {
+        return new ArrayList<>(ledger.values());
+    }
+
+    @Test
+    public void splitsKeySpaceByLeadingDigits() {
+        List<String[]> ranges = CollectionExporter.ranges(1);
+
+        assertThat(ranges).hasSize(10);
+        assertThat(ranges.get(0)).containsExactly("", "1");
+        assertThat(ranges.get(5)).containsExactly("5", "6");
+        assertThat(ranges.get(9)).containsExactly("9", "");
+    }
+
+    @Test
+    public void exportsEveryRecordInKeyOrder(@TempDir final Path dir) throws Exception {
+        Path output = dir.resolve("assets.ndjson");
+
+        long records = exporter().threads(3).build().export(output);
+
+        assertThat(records).isEqualTo(50);
+        assertThat(Files.readAllLines(output, UTF_8)).isEqualTo(expected());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).containsExactly(output);
+        }
+    }
+
+    @Test
+    public void retriesFailedPage(@TempDir final Path dir) throws Exception {
+        Path output = dir.resolve("assets.ndjson");
+        failAt.set(4);
+
+        long records = exporter().threads(1).build().export(output);
+
+        assertThat(records).isEqualTo(50);
+        assertThat(Files.readAllLines(output, UTF_8)).isEqualTo(expected());
+    }
+
+    @Test
+    public void resumesFromLastBookmark(@TempDir final Path dir) throws Exception {
+        Path output = dir.resolve("assets.ndjson");
+        // range 0 takes three pages, the second page of range 1 fails
+        failAt.set(5);
+
+        Throwable thrown = catchThrowable(() -> exporter().threads(1).maxAttempts(1).build().export(output));
+
+        assertThat(thrown).hasMessageContaining("[1, 2) failed at bookmark '160110100010011'");
+        assertThat(output).doesNotExist();
+        int before = evaluations.get();
+
+        long records = exporter().threads(1).build().export(output);
+
+        // only the rest of range 1 is fetched again
+        assertThat(records).isEqualTo(3);
+        assertThat(evaluations.get() - before).isEqualTo(2);
+        assertThat(Files.readAllLines(output, UTF_8)).isEqualTo(expected());
+    }
+}
@@ -0,0 +1,82 @@
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Stands in for a gateway peer: answers ReadAsset and ReadAssetPrivateDetails
+ * from maps, counts evaluations and can hold them until released.
+ */
+final class LocalGateway implements Evaluator {
+    private final Map<String, byte[]> assets = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> details = new ConcurrentHashMap<>();
+    private final AtomicInteger evaluations = new AtomicInteger();
+    private volatile CountDownLatch gate;
+    private volatile CountDownLatch entered;
+    private volatile Exception failure;
+
+    void putAsset(final String imsi, final String json) {
+        assets.put(imsi, json.getBytes(UTF_8));
+    }
+
+    void putDetails(final String collection, final String imsi, final String json) {
+        details.put(collection + "/" + imsi, json.getBytes(UTF_8));
+    }
+
+    void remove(final String imsi) {
+        assets.remove(imsi);
+        details.keySet().removeIf(key -> key.endsWith("/" + imsi));
+    }
+
+    void failWith(final Exception e) {
+        this.failure = e;
+    }
+
+    /**
+     * Makes evaluations wait until {@link #release()}; the returned latch opens
+     * once the first one is waiting.
+     */
+    CountDownLatch hold() {
+        entered = new CountDownLatch(1);
+        gate = new CountDownLatch(1);
+        return entered;
+    }
+
+    void release() {
+        gate.countDown();
+    }
+
+    int evaluations() {
+        return evaluations.get();
+    }
+
+    @Override
+    public byte[] evaluate(final String name, final String... args) throws Exception {
+        evaluations.incrementAndGet();
+        CountDownLatch waiting = gate;
+        if (waiting != null) {
+            entered.countDown();
+            waiting.await();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        byte[] result;
+        switch (name) {
+            case "ReadAsset":
+                result = assets.get(args[0]);
+                break;
+            case "ReadAssetPrivateDetails":
+                result = details.get(args[0] + "/" + args[1]);
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected transaction " + name + Arrays.toString(args));
+        }
+        return result == null ? new byte[0] : result;
+    }
+}
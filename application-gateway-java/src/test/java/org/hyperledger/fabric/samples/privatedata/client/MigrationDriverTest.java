@@ -0,0 +1,135 @@
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public final class MigrationDriverTest {
+    // imsi to backup netID, every fifth subscriber held by another org
+    private final TreeMap<String, String> ledger = new TreeMap<>();
+    private final List<Integer> chunkSizes = new ArrayList<>();
+    private final AtomicInteger submissions = new AtomicInteger();
+    private final AtomicInteger failAt = new AtomicInteger(-1);
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < 100; i++) {
+            ledger.put(String.format("46011010001%04d", i), "46011010000");
+        }
+    }
+
+    // chunks like MigrateAssets: the entries on "from" after the cursor, up to maxRecords
+    private byte[] submit(final String name, final Map<String, byte[]> transientData) throws Exception {
+        if (submissions.incrementAndGet() == failAt.get()) {
+            throw new Exception("endorsement timeout");
+        }
+        assertThat(name).isEqualTo(MigrationDriver.MIGRATE_ASSETS);
+        JSONObject migration = new JSONObject(new String(transientData.get("asset_migration"), UTF_8));
+        String cursor = migration.getString("cursor");
+        int maxRecords = migration.getInt("maxRecords");
+        chunkSizes.add(maxRecords);
+
+        int migrated = 0;
+        int taken = 0;
+        boolean more = false;
+        String last = "";
+        for (Map.Entry<String, String> entry : ledger.tailMap(cursor, false).entrySet()) {
+            if (!entry.getValue().equals(migration.getString("from"))) {
+                continue;
+            }
+            if (taken == maxRecords) {
+                more = true;
+                break;
+            }
+            taken++;
+            last = entry.getKey();
+            if (Integer.parseInt(entry.getKey().substring(11)) % 5 != 0) {
+                entry.setValue(migration.getString("to"));
+                migrated++;
+            }
+        }
+        return new JSONObject().put("migrated", migrated).put("skipped", taken - migrated)
+                .put("cursor", more ? last : "").toString().getBytes(UTF_8);
+    }
+
+    private MigrationDriver.Builder driver() {
+        return MigrationDriver.builder(this::submit, "backupNetwork", "46011010000", "46011020000")
+                .chunkSize(8)
+                .minChunkSize(2)
+                .retryDelay(Duration.ZERO);
+    }
+
+    private long migrated() {
+        return ledger.values().stream().filter("46011020000"::equals).count();
+    }
+
+    @Test
+    public void runsChunksUntilCursorIsEmpty() throws Exception {
+        MigrationDriver.Progress progress = driver().targetLatency(Duration.ofHours(1)).build().run();
+
+        assertThat(progress.getMigrated()).isEqualTo(80);
+        assertThat(progress.getSkipped()).isEqualTo(20);
+        assertThat(migrated()).isEqualTo(80);
+        // fast chunks grow
+        assertThat(chunkSizes).startsWith(8, 16, 32, 64);
+    }
+
+    @Test
+    public void slowChunksShrink() throws Exception {
+        driver().targetLatency(Duration.ZERO).build().run();
+
+        assertThat(chunkSizes).startsWith(8, 4, 2, 2);
+        assertThat(migrated()).isEqualTo(80);
+    }
+
+    @Test
+    public void failedChunkIsRetriedSmaller() throws Exception {
+        failAt.set(2);
+
+        MigrationDriver.Progress progress = driver().targetLatency(Duration.ofHours(1)).build().run();
+
+        assertThat(chunkSizes).startsWith(8, 8);
+        assertThat(progress.getMigrated()).isEqualTo(80);
+    }
+
+    @Test
+    public void resumesFromCheckpoint(@TempDir final Path dir) throws Exception {
+        Path checkpoint = dir.resolve("migration.cursor");
+        failAt.set(3);
+
+        Throwable thrown = catchThrowable(() -> driver().checkpoint(checkpoint).maxAttempts(1).build().run());
+
+        assertThat(thrown).hasMessageContaining("failed at cursor '460110100010023'");
+        MigrationDriver.Progress progress = driver().checkpoint(checkpoint).build().run();
+        assertThat(progress.getMigrated()).isEqualTo(80);
+        assertThat(progress.getSkipped()).isEqualTo(20);
+        // a finished migration is not run again
+        int submitted = submissions.get();
+        driver().checkpoint(checkpoint).build().run();
+        assertThat(submissions.get()).isEqualTo(submitted);
+    }
+
+    @Test
+    public void checkpointOfAnotherMigrationIsRejected(@TempDir final Path dir) throws Exception {
+        Path checkpoint = dir.resolve("migration.cursor");
+        driver().checkpoint(checkpoint).build().run();
+
+        Throwable thrown = catchThrowable(() -> MigrationDriver
+                .builder(this::submit, "operator", "China Telecom", "China Unicom").checkpoint(checkpoint).build().run());
+
+        assertThat(thrown).hasMessageContaining("belongs to the migration");
+    }
+}
@@ -0,0 +1,296 @@
+package org.hyperledger.fabric.samples.privatedata.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public final class SubscriberCacheTest {
+    private static final String IMSI = "460110100010001";
+    private static final String ORG1 = "Org1MSPPrivateCollection";
+    private static final String ASSET = "{\"imsi\":\"" + IMSI + "\",\"operator\":\"China Telecom\"}";
+    private static final String DETAILS = "{\"imsi\":\"" + IMSI + "\",\"security\":{\"sqn\":\"0000000000a1\"}}";
+
+    private LocalGateway gateway;
+    private AtomicLong now;
+
+    @BeforeEach
+    public void setUp() {
+        gateway = new LocalGateway();
+        gateway.putAsset(IMSI, ASSET);
+        gateway.putDetails(ORG1, IMSI, DETAILS);
+        now = new AtomicLong();
+    }
+
+    private SubscriberCache.Builder builder() {
+        return SubscriberCache.builder(gateway).clock(now::get);
+    }
+
+    private void advance(final Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+
+    private static byte[] event(final String collection, final String... changes) {
+        return ("{\"version\":1,\"collection\":\"" + collection + "\",\"changes\":[" + String.join(",", changes) + "]}")
+                .getBytes(UTF_8);
+    }
+
+    @Nested
+    class ReadThrough {
+
+        @Test
+        public void servesRepeatedReadsFromCache() {
+            SubscriberCache cache = builder().build();
+
+            assertThat(cache.readAsset(IMSI)).isEqualTo(ASSET.getBytes(UTF_8));
+            assertThat(cache.readAsset(IMSI)).isEqualTo(ASSET.getBytes(UTF_8));
+            assertThat(cache.readAssetPrivateDetails(ORG1, IMSI)).isEqualTo(DETAILS.getBytes(UTF_8));
+            assertThat(cache.readAssetPrivateDetails(ORG1, IMSI)).isEqualTo(DETAILS.getBytes(UTF_8));
+
+            assertThat(gateway.evaluations()).isEqualTo(2);
+            CacheStats stats = cache.stats();
+            assertThat(stats.getHitCount()).isEqualTo(2);
+            assertThat(stats.getMissCount()).isEqualTo(2);
+            assertThat(stats.hitRate()).isEqualTo(0.5);
+        }
+
+        @Test
+        public void returnsCopies() {
+            SubscriberCache cache = builder().build();
+
+            cache.readAsset(IMSI)[0] = 0;
+
+            assertThat(cache.readAsset(IMSI)).isEqualTo(ASSET.getBytes(UTF_8));
+        }
+
+        @Test
+        public void cachesAbsenceForNegativeTtl() {
+            SubscriberCache cache = builder().negativeTtl(Duration.ofSeconds(5)).build();
+
+            assertThat(cache.readAsset("460110100010002")).isNull();
+            assertThat(cache.readAsset("460110100010002")).isNull();
+            assertThat(gateway.evaluations()).isEqualTo(1);
+            assertThat(cache.stats().getNegativeHitCount()).isEqualTo(1);
+
+            gateway.putAsset("460110100010002", ASSET);
+            advance(Duration.ofSeconds(5));
+
+            assertThat(cache.readAsset("460110100010002")).isEqualTo(ASSET.getBytes(UTF_8));
+            assertThat(gateway.evaluations()).isEqualTo(2);
+        }
+
+        @Test
+        public void doesNotCacheFailures() {
+            SubscriberCache cache = builder().build();
+            gateway.failWith(new Exception("peer unavailable"));
+
+            Throwable thrown = catchThrowable(() -> cache.readAsset(IMSI));
+
+            assertThat(thrown).isInstanceOf(SubscriberCacheException.class)
+                    .hasCauseInstanceOf(Exception.class);
+            assertThat(thrown.getCause()).hasMessage("peer unavailable");
+            gateway.failWith(null);
+            assertThat(cache.readAsset(IMSI)).isEqualTo(ASSET.getBytes(UTF_8));
+            assertThat(cache.stats().getLoadFailureCount()).isEqualTo(1);
+        }
+    }
+
+    @Nested
+    class Eviction {
+
+        @Test
+        public void expiresAfterTtl() {
+            SubscriberCache cache = builder().ttl(Duration.ofSeconds(30)).build();
+
+            cache.readAsset(IMSI);
+            advance(Duration.ofSeconds(29));
+            cache.readAsset(IMSI);
+            assertThat(gateway.evaluations()).isEqualTo(1);
+
+            advance(Duration.ofSeconds(1));
+            cache.readAsset(IMSI);
+            assertThat(gateway.evaluations()).isEqualTo(2);
+        }
+
+        @Test
+        public void capsTtlAtBlockToLive() {
+            SubscriberCache cache = builder()
+                    .ttl(Duration.ofSeconds(30))
+                    .blockInterval(Duration.ofSeconds(2))
+                    .blockToLive(ORG1, 3)
+                    .build();
+
+            cache.readAsset(IMSI);
+            cache.readAssetPrivateDetails(ORG1, IMSI);
+            advance(Duration.ofSeconds(6));
+            cache.readAsset(IMSI);
+            cache.readAssetPrivateDetails(ORG1, IMSI);
+
+            assertThat(gateway.evaluations()).isEqualTo(3);
+        }
+
+        @Test
+        public void dropsLeastRecentlyUsedPastMaximumSize() {
+            gateway.putAsset("460110100010002", ASSET);
+            gateway.putAsset("460110100010003", ASSET);
+            SubscriberCache cache = builder().maximumSize(2).build();
+
+            cache.readAsset(IMSI);
+            cache.readAsset("460110100010002");
+            cache.readAsset(IMSI);
+            cache.readAsset("460110100010003");
+
+            assertThat(cache.size()).isEqualTo(2);
+            assertThat(cache.stats().getEvictionCount()).isEqualTo(1);
+            cache.readAsset(IMSI);
+            assertThat(gateway.evaluations()).isEqualTo(3);
+            cache.readAsset("460110100010002");
+            assertThat(gateway.evaluations()).isEqualTo(4);
+        }
+    }
+
+    @Nested
+    class Coalescing {
+
+        @Test
+        public void sharesOneEvaluationBetweenConcurrentMisses() throws Exception {
+            SubscriberCache cache = builder().build();
+            CountDownLatch entered = gateway.hold();
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<byte[]>> reads = new ArrayList<>();
+                reads.add(executor.submit(() -> cache.readAsset(IMSI)));
+                assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+                for (int i = 1; i < 8; i++) {
+                    reads.add(executor.submit(() -> cache.readAsset(IMSI)));
+                }
+                while (cache.stats().getCoalescedCount() < 7) {
+                    Thread.sleep(1);
+                }
+                gateway.release();
+
+                for (Future<byte[]> read : reads) {
+                    assertThat(read.get(5, TimeUnit.SECONDS)).isEqualTo(ASSET.getBytes(UTF_8));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(gateway.evaluations()).isEqualTo(1);
+            assertThat(cache.stats().getMissCount()).isEqualTo(1);
+        }
+
+        @Test
+        public void doesNotCacheLoadOverlappingInvalidation() throws Exception {
+            SubscriberCache cache = builder().build();
+            CountDownLatch entered = gateway.hold();
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<byte[]> read = executor.submit(() -> cache.readAsset(IMSI));
+                assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+                cache.onChaincodeEvent(SubscriberCache.EVENT_NAME,
+                        event(ORG1, "{\"op\":\"delete\",\"imsi\":\"" + IMSI + "\"}"));
+                gateway.release();
+
+                assertThat(read.get(5, TimeUnit.SECONDS)).isEqualTo(ASSET.getBytes(UTF_8));
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(cache.size()).isZero();
+        }
+    }
+
+    @Nested
+    class EventInvalidation {
+
+        private SubscriberCache cache;
+
+        @BeforeEach
+        public void fill() {
+            cache = builder().build();
+            cache.readAsset(IMSI);
+            cache.readAssetPrivateDetails(ORG1, IMSI);
+        }
+
+        @Test
+        public void dropsWrittenValues() {
+            cache.onChaincodeEvent(SubscriberCache.EVENT_NAME,
+                    event(ORG1, "{\"op\":\"updateNetwork\",\"imsi\":\"" + IMSI + "\",\"asset\":\"00\"}"));
+
+            cache.readAsset(IMSI);
+            cache.readAssetPrivateDetails(ORG1, IMSI);
+            assertThat(gateway.evaluations()).isEqualTo(3);
+            assertThat(cache.stats().getInvalidationCount()).isEqualTo(1);
+        }
+
+        @Test
+        public void dropsDetailsOnSqnIncrement() {
+            cache.onChaincodeEvent(SubscriberCache.EVENT_NAME,
+                    event(ORG1, "{\"op\":\"advanceSqn\",\"imsi\":\"" + IMSI + "\"}"));
+
+            cache.readAsset(IMSI);
+            cache.readAssetPrivateDetails(ORG1, IMSI);
+            assertThat(gateway.evaluations()).isEqualTo(3);
+        }
+
+        @Test
+        public void dropsEverythingOnDelete() {
+            gateway.remove(IMSI);
+            cache.onChaincodeEvent(SubscriberCache.EVENT_NAME,
+                    event(ORG1, "{\"op\":\"delete\",\"imsi\":\"" + IMSI + "\"}"));
+
+            assertThat(cache.readAsset(IMSI)).isNull();
+            assertThat(cache.readAssetPrivateDetails(ORG1, IMSI)).isNull();
+        }
+
+        @Test
+        public void dropsAssetsOnNetworkChange() {
+            cache.onChaincodeEvent(SubscriberCache.EVENT_NAME, event(ORG1,
+                    "{\"op\":\"updateRegisteredNetwork\",\"netID\":\"46011010001\",\"network\":\"00\"}"));
+
+            cache.readAsset(IMSI);
+            cache.readAssetPrivateDetails(ORG1, IMSI);
+            assertThat(gateway.evaluations()).isEqualTo(3);
+        }
+
+        @Test
+        public void keepsValuesOfOtherCollections() {
+            cache.onChaincodeEvent(SubscriberCache.EVENT_NAME, event("Org2MSPPrivateCollection",
+                    "{\"op\":\"updateQos\",\"imsi\":\"" + IMSI + "\",\"details\":\"00\"}"));
+
+            cache.readAssetPrivateDetails(ORG1, IMSI);
+            assertThat(gateway.evaluations()).isEqualTo(2);
+        }
+
+        @Test
+        public void ignoresOtherEvents() {
+            cache.onChaincodeEvent("SomethingElse", new byte[0]);
+
+            assertThat(cache.size()).isEqualTo(2);
+        }
+
+        @Test
+        public void dropsEverythingOnUnreadableEvent() {
+            cache.onChaincodeEvent(SubscriberCache.EVENT_NAME, "{\"version\":2}".getBytes(UTF_8));
+            assertThat(cache.size()).isZero();
+
+            cache.readAsset(IMSI);
+            cache.onChaincodeEvent(SubscriberCache.EVENT_NAME, "not json".getBytes(UTF_8));
+            assertThat(cache.size()).isZero();
+        }
+    }
+}
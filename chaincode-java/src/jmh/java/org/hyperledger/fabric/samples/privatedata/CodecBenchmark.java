@@ -0,0 +1,158 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ledger value encoding and decoding of Asset and AssetPrivateDetails, in both
+ * storage formats, with and without compression by dictionary 1.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+    private Asset asset;
+    private AssetPrivateDetails details;
+    private byte[] assetJson;
+    private byte[] assetBinary;
+    private byte[] detailsJson;
+    private byte[] detailsBinary;
+    private byte[] assetJsonCompressed;
+    private byte[] assetBinaryCompressed;
+    private byte[] detailsJsonCompressed;
+    private byte[] detailsBinaryCompressed;
+
+    /**
+     * Builds the values the contract stores for a full asset_properties record.
+     */
+    @Setup
+    public void setUp() {
+        AssetRecord record = AssetRecord.parse(Payloads.assetProperties(Payloads.imsi(1)));
+        asset = Payloads.stored(record.getAsset());
+        details = Payloads.stored(record.getDetails());
+        assetJson = asset.serializeJson();
+        assetBinary = BinaryCodec.encode(asset);
+        detailsJson = details.serializeJson();
+        detailsBinary = BinaryCodec.encode(details);
+        assetJsonCompressed = ValueCompression.compress(assetJson, 1);
+        assetBinaryCompressed = ValueCompression.compress(assetBinary, 1);
+        detailsJsonCompressed = ValueCompression.compress(detailsJson, 1);
+        detailsBinaryCompressed = ValueCompression.compress(detailsBinary, 1);
+        System.out.printf("%nBytes stored: asset json %d/%d, binary %d/%d; details json %d/%d, binary %d/%d "
+                + "(uncompressed/compressed)%n", assetJson.length, assetJsonCompressed.length, assetBinary.length,
+                assetBinaryCompressed.length, detailsJson.length, detailsJsonCompressed.length, detailsBinary.length,
+                detailsBinaryCompressed.length);
+    }
+
+    /** Asset to JSON. */
+    @Benchmark
+    public byte[] serializeAssetJson() {
+        return asset.serializeJson();
+    }
+
+    /** Asset to binary. */
+    @Benchmark
+    public byte[] serializeAssetBinary() {
+        return BinaryCodec.encode(asset);
+    }
+
+    /** Asset from JSON. */
+    @Benchmark
+    public Asset deserializeAssetJson() {
+        return Asset.deserialize(assetJson);
+    }
+
+    /** Asset from binary. */
+    @Benchmark
+    public Asset deserializeAssetBinary() {
+        return Asset.deserialize(assetBinary);
+    }
+
+    /** AssetPrivateDetails to JSON. */
+    @Benchmark
+    public byte[] serializeDetailsJson() {
+        return details.serializeJson();
+    }
+
+    /** AssetPrivateDetails to binary. */
+    @Benchmark
+    public byte[] serializeDetailsBinary() {
+        return BinaryCodec.encode(details);
+    }
+
+    /** AssetPrivateDetails from JSON. */
+    @Benchmark
+    public AssetPrivateDetails deserializeDetailsJson() {
+        return AssetPrivateDetails.deserialize(detailsJson);
+    }
+
+    /** AssetPrivateDetails from binary. */
+    @Benchmark
+    public AssetPrivateDetails deserializeDetailsBinary() {
+        return AssetPrivateDetails.deserialize(detailsBinary);
+    }
+
+    /** Asset to JSON, compressed. */
+    @Benchmark
+    public byte[] serializeAssetJsonCompressed() {
+        return ValueCompression.compress(asset.serializeJson(), 1);
+    }
+
+    /** Asset to binary, compressed. */
+    @Benchmark
+    public byte[] serializeAssetBinaryCompressed() {
+        return ValueCompression.compress(BinaryCodec.encode(asset), 1);
+    }
+
+    /** Asset from compressed JSON. */
+    @Benchmark
+    public Asset deserializeAssetJsonCompressed() {
+        return Asset.deserialize(assetJsonCompressed);
+    }
+
+    /** Asset from compressed binary. */
+    @Benchmark
+    public Asset deserializeAssetBinaryCompressed() {
+        return Asset.deserialize(assetBinaryCompressed);
+    }
+
+    /** AssetPrivateDetails to JSON, compressed. */
+    @Benchmark
+    public byte[] serializeDetailsJsonCompressed() {
+        return ValueCompression.compress(details.serializeJson(), 1);
+    }
+
+    /** AssetPrivateDetails to binary, compressed. */
+    @Benchmark
+    public byte[] serializeDetailsBinaryCompressed() {
+        return ValueCompression.compress(BinaryCodec.encode(details), 1);
+    }
+
+    /** AssetPrivateDetails from compressed JSON. */
+    @Benchmark
+    public AssetPrivateDetails deserializeDetailsJsonCompressed() {
+        return AssetPrivateDetails.deserialize(detailsJsonCompressed);
+    }
+
+    /** AssetPrivateDetails from compressed binary. */
+    @Benchmark
+    public AssetPrivateDetails deserializeDetailsBinaryCompressed() {
+        return AssetPrivateDetails.deserialize(detailsBinaryCompressed);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.ContractRouter;
+import org.hyperledger.fabric.shim.Chaincode;
+import org.hyperledger.fabric.shim.ChaincodeServer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Measures the time to first transaction of a fresh JVM.
+ *
+ * The contract is started the way a chaincode service starts it: ContractRouter
+ * scans the classpath for contracts and data types and builds the metadata, then
+ * a server that never listens is "started". The first CreateAsset, ReadAsset and
+ * ReadAssetPrivateDetails are then routed through ContractRouter.invoke against an
+ * {@link InMemoryStub}, so they go through the shim's argument parsing and JSON
+ * serialization like real invocations. Prints one line, in milliseconds since the
+ * JVM started.
+ *
+ * It is also the training run of the class data sharing archive: the classes it
+ * loads are the ones a chaincode container loads up to its first transactions.
+ */
+public final class ColdStart {
+    private ColdStart() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        long mainStart = System.currentTimeMillis();
+
+        ContractRouter router = new ContractRouter(new String[] {"--id", "private:coldstart"});
+        router.startRouterWithChaincodeServer(new ChaincodeServer() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+            }
+        });
+        long routed = System.currentTimeMillis();
+
+        String imsi = Payloads.imsi(1);
+        InMemoryStub stub = new InMemoryStub(Payloads.MSP_ID);
+        stub.begin(Payloads.createTransient(imsi), "CreateAsset");
+        invoke(router, stub);
+        stub.begin(Collections.emptyMap(), "ReadAsset", imsi);
+        invoke(router, stub);
+        stub.begin(Collections.emptyMap(), "ReadAssetPrivateDetails", Payloads.ORG_COLLECTION, imsi);
+        invoke(router, stub);
+        long done = System.currentTimeMillis();
+
+        System.out.printf("jvm startup %d ms, contract routing %d ms, first transactions %d ms, total %d ms%n",
+                mainStart - jvmStart, routed - mainStart, done - routed, done - jvmStart);
+        System.exit(0);
+    }
+
+    private static void invoke(final ContractRouter router, final InMemoryStub stub) {
+        Chaincode.Response response = router.invoke(stub);
+        if (response.getStatus() != Chaincode.Response.Status.SUCCESS) {
+            throw new IllegalStateException(stub.getFunction() + " failed: " + response.getMessage()
+                    + " " + new String(response.getPayload() == null ? new byte[0] : response.getPayload(), UTF_8));
+        }
+    }
+}
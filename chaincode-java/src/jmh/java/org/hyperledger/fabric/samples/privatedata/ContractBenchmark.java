@@ -0,0 +1,116 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hyperledger.fabric.samples.privatedata.AssetTransfer.ASSET_COLLECTION_NAME;
+
+/**
+ * Whole transactions run against an {@link InMemoryStub}, including context creation.
+ *
+ * The ledger holds {@link #SUBSCRIBERS} assets. CreateAsset and DeleteAsset undo
+ * their effect with direct map writes after each call so the ledger size stays
+ * constant; that costs a small fraction of the transaction itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContractBenchmark {
+    static final int SUBSCRIBERS = 10_000;
+
+    private final AssetTransfer contract = new AssetTransfer();
+    private InMemoryStub stub;
+
+    private String[] imsis;
+    private byte[][] assetValues;
+    private byte[][] detailsValues;
+    private List<Map<String, byte[]>> createTransients;
+    private List<Map<String, byte[]>> deleteTransients;
+    private int next;
+
+    /**
+     * Loads the ledger through CreateAsset and prepares the transient maps.
+     */
+    @Setup
+    public void setUp() {
+        stub = new InMemoryStub(Payloads.MSP_ID);
+        imsis = new String[SUBSCRIBERS];
+        assetValues = new byte[SUBSCRIBERS][];
+        detailsValues = new byte[SUBSCRIBERS][];
+        createTransients = new ArrayList<>(SUBSCRIBERS);
+        deleteTransients = new ArrayList<>(SUBSCRIBERS);
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            String imsi = Payloads.imsi(i);
+            imsis[i] = imsi;
+            createTransients.add(Payloads.createTransient(imsi));
+            deleteTransients.add(Payloads.deleteTransient(imsi));
+
+            stub.begin(createTransients.get(i));
+            contract.CreateAsset(contract.createContext(stub));
+            assetValues[i] = stub.getPrivateData(ASSET_COLLECTION_NAME, imsi);
+            detailsValues[i] = stub.getPrivateData(Payloads.ORG_COLLECTION, imsi);
+        }
+    }
+
+    /** CreateAsset for a subscriber that is not on the ledger. */
+    @Benchmark
+    public Asset createAsset() {
+        int i = nextIndex();
+        stub.unload(ASSET_COLLECTION_NAME, imsis[i]);
+        stub.unload(Payloads.ORG_COLLECTION, imsis[i]);
+        stub.begin(createTransients.get(i));
+        return contract.CreateAsset(contract.createContext(stub));
+    }
+
+    /** ReadAsset of an existing subscriber. */
+    @Benchmark
+    public Asset readAsset() {
+        int i = nextIndex();
+        stub.begin(Collections.emptyMap());
+        return contract.ReadAsset(contract.createContext(stub), imsis[i]);
+    }
+
+    /** ReadAssetPrivateDetails of an existing subscriber. */
+    @Benchmark
+    public AssetPrivateDetails readAssetPrivateDetails() {
+        int i = nextIndex();
+        stub.begin(Collections.emptyMap());
+        return contract.ReadAssetPrivateDetails(contract.createContext(stub), Payloads.ORG_COLLECTION, imsis[i]);
+    }
+
+    /** DeleteAsset of an existing subscriber. */
+    @Benchmark
+    public void deleteAsset() {
+        int i = nextIndex();
+        stub.load(ASSET_COLLECTION_NAME, imsis[i], assetValues[i]);
+        stub.load(Payloads.ORG_COLLECTION, imsis[i], detailsValues[i]);
+        stub.begin(deleteTransients.get(i));
+        contract.DeleteAsset(contract.createContext(stub));
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == SUBSCRIBERS ? 0 : i + 1;
+        return i;
+    }
+}
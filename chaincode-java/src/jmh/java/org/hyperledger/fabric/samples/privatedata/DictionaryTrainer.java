@@ -0,0 +1,199 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Builds a {@link ValueCompression} dictionary from a sample of subscriber records.
+ *
+ * The sample holds the Asset and AssetPrivateDetails values the contract would
+ * store for each record, with network and profile references, in the chosen
+ * storage formats. Records come from NDJSON files written by the client's
+ * ExportCollection tool, or from a {@link SubscriberDataset} when none are given.
+ * Every 8 byte string of the sample is counted, then the 32 byte segments whose
+ * strings occur most often are picked one by one, each time discounting the
+ * strings already covered, until the dictionary is full. Deflate encodes near
+ * matches in fewer bits, so the best segments are written last. The same sample
+ * always gives the same dictionary. The tool then reports the bytes stored per
+ * value with and without the new dictionary.
+ *
+ * Options are given as --name=value:
+ * <pre>
+ *   --out        dictionary file (default: dictionary.bin)
+ *   --size       dictionary size in bytes (default: 1024)
+ *   --formats    comma separated storage formats to sample (default: json,binary)
+ *   --assets     NDJSON file of exported assets
+ *   --details    NDJSON file of exported private details
+ *   --samples    records to take from each file, or from the dataset (default: 5000)
+ *   --plmns      dataset PLMNs (default: 46000,46001,46011,310260,23415)
+ *   --seed       dataset seed (default: 1)
+ * </pre>
+ */
+public final class DictionaryTrainer {
+    private static final int GRAM = 8;
+    private static final int SEGMENT = 32;
+
+    private DictionaryTrainer() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        Map<String, String> options = LoadGenerator.parseOptions(args);
+        List<byte[]> samples = sample(options);
+        byte[] dictionary = train(samples, Integer.parseInt(options.getOrDefault("size", "1024")));
+        Path out = Paths.get(options.getOrDefault("out", "dictionary.bin"));
+        Files.write(out, dictionary);
+        System.out.printf("Wrote %d byte dictionary from %d values to %s%n", dictionary.length, samples.size(), out);
+        report(samples, dictionary);
+    }
+
+    static List<byte[]> sample(final Map<String, String> options) throws IOException {
+        int count = Integer.parseInt(options.getOrDefault("samples", "5000"));
+        List<Asset> assets = new ArrayList<>();
+        List<AssetPrivateDetails> details = new ArrayList<>();
+        if (options.containsKey("assets") || options.containsKey("details")) {
+            for (String line : lines(options.get("assets"), count)) {
+                assets.add(Asset.deserialize(line.getBytes(UTF_8)));
+            }
+            for (String line : lines(options.get("details"), count)) {
+                details.add(AssetPrivateDetails.deserialize(line.getBytes(UTF_8)));
+            }
+        } else {
+            String plmns = options.getOrDefault("plmns", String.join(",", SubscriberDataset.DEFAULT_PLMNS));
+            SubscriberDataset dataset = new SubscriberDataset(plmns.split(","),
+                    Long.parseLong(options.getOrDefault("seed", "1")));
+            for (long n = 0; n < count; n++) {
+                AssetRecord record = AssetRecord.parse(dataset.assetProperties(n));
+                assets.add(record.getAsset());
+                details.add(record.getDetails());
+            }
+        }
+
+        List<byte[]> samples = new ArrayList<>();
+        for (String format : options.getOrDefault("formats", "json,binary").split(",")) {
+            boolean binary = StorageFormat.valueOf(format.trim().toUpperCase()) == StorageFormat.BINARY;
+            for (Asset asset : assets) {
+                Asset stored = Payloads.stored(asset);
+                samples.add(binary ? BinaryCodec.encode(stored) : stored.serializeJson());
+            }
+            for (AssetPrivateDetails record : details) {
+                AssetPrivateDetails stored = Payloads.stored(record);
+                samples.add(binary ? BinaryCodec.encode(stored) : stored.serializeJson());
+            }
+        }
+        return samples;
+    }
+
+    private static List<String> lines(final String file, final int count) throws IOException {
+        if (file == null) {
+            return Collections.emptyList();
+        }
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(file), UTF_8)) {
+            if (!line.trim().isEmpty() && lines.size() < count) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Picks the segments of the samples that cover their most frequent strings, up to size bytes.
+     */
+    static byte[] train(final List<byte[]> samples, final int size) {
+        // every string gets an id, and each sample the ids of the strings starting at each position
+        Map<Long, Integer> ids = new HashMap<>();
+        int[][] grams = new int[samples.size()][];
+        for (int s = 0; s < samples.size(); s++) {
+            byte[] sample = samples.get(s);
+            grams[s] = new int[Math.max(0, sample.length - GRAM + 1)];
+            for (int i = 0; i < grams[s].length; i++) {
+                grams[s][i] = ids.computeIfAbsent(gram(sample, i), g -> ids.size());
+            }
+        }
+        int[] counts = new int[ids.size()];
+        for (int[] sample : grams) {
+            for (int id : sample) {
+                counts[id]++;
+            }
+        }
+        // strings seen once are the random parts of a record, keys, opc and the like
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] < 2) {
+                counts[id] = 0;
+            }
+        }
+
+        List<byte[]> segments = new ArrayList<>();
+        int total = 0;
+        int window = SEGMENT - GRAM + 1;
+        while (total < size) {
+            int bestSample = -1;
+            int bestAt = 0;
+            long bestScore = 0;
+            for (int s = 0; s < grams.length; s++) {
+                int[] sample = grams[s];
+                long score = 0;
+                for (int i = 0; i < sample.length; i++) {
+                    score += counts[sample[i]];
+                    if (i >= window) {
+                        score -= counts[sample[i - window]];
+                    }
+                    if (i >= window - 1 && score > bestScore) {
+                        bestScore = score;
+                        bestSample = s;
+                        bestAt = i - window + 1;
+                    }
+                }
+            }
+            if (bestSample < 0) {
+                break;
+            }
+            for (int i = bestAt; i < bestAt + window; i++) {
+                counts[grams[bestSample][i]] = 0;
+            }
+            segments.add(Arrays.copyOfRange(samples.get(bestSample), bestAt, bestAt + SEGMENT));
+            total += SEGMENT;
+        }
+
+        byte[] dictionary = new byte[Math.min(total, size)];
+        int at = dictionary.length;
+        for (byte[] segment : segments) {
+            int n = Math.min(segment.length, at);
+            System.arraycopy(segment, segment.length - n, dictionary, at - n, n);
+            at -= n;
+        }
+        return dictionary;
+    }
+
+    private static long gram(final byte[] value, final int from) {
+        long gram = 0;
+        for (int i = from; i < from + GRAM; i++) {
+            gram = gram << 8 | value[i] & 0xff;
+        }
+        return gram;
+    }
+
+    private static void report(final List<byte[]> samples, final byte[] dictionary) {
+        long raw = 0;
+        long compressed = 0;
+        for (byte[] sample : samples) {
+            raw += sample.length;
+            compressed += ValueCompression.compress(sample, 1, dictionary).length;
+        }
+        System.out.printf("Average value %.1f bytes, %.1f bytes compressed (%.0f%%)%n",
+                (double) raw / samples.size(), (double) compressed / samples.size(), 100.0 * compressed / raw);
+    }
+}
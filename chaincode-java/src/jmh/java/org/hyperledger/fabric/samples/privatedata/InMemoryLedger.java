@@ -0,0 +1,195 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Private data of all collections, shared by any number of {@link InMemoryStub}s.
+ *
+ * Each collection is a sorted concurrent map, so range and partial composite
+ * key queries return keys in the same order as the peer. Writes are visible
+ * immediately rather than at commit and there is no MVCC validation. Every
+ * call that would be a gRPC round trip to the peer can be delayed by a fixed
+ * latency.
+ */
+final class InMemoryLedger {
+    // the shim replaces an empty start key with this, which skips composite keys
+    private static final String UNSPECIFIED_START_KEY = "\u0001";
+    private static final String MAX_UNICODE_RUNE = "\udbff\udfff";
+
+    private final ConcurrentMap<String, ConcurrentNavigableMap<String, byte[]>> collections =
+            new ConcurrentHashMap<>();
+    private final long callLatencyNanos;
+    private final LongAdder calls = new LongAdder();
+
+    InMemoryLedger() {
+        this(0, TimeUnit.NANOSECONDS);
+    }
+
+    InMemoryLedger(final long callLatency, final TimeUnit unit) {
+        this.callLatencyNanos = unit.toNanos(callLatency);
+    }
+
+    /**
+     * Returns the value of a key, or an empty array if it does not exist, as the peer does.
+     */
+    byte[] get(final String collection, final String key) {
+        roundTrip();
+        byte[] value = collection(collection).get(key);
+        return value == null ? new byte[0] : value;
+    }
+
+    /**
+     * Returns the SHA-256 hash of a value, or an empty array if it does not exist.
+     */
+    byte[] getHash(final String collection, final String key) {
+        roundTrip();
+        byte[] value = collection(collection).get(key);
+        return value == null ? new byte[0] : sha256(value);
+    }
+
+    void put(final String collection, final String key, final byte[] value) {
+        roundTrip();
+        load(collection, key, value);
+    }
+
+    void delete(final String collection, final String key) {
+        roundTrip();
+        unload(collection, key);
+    }
+
+    /**
+     * Returns keys in [startKey, endKey). Empty bounds are open, but composite keys are never included.
+     */
+    QueryResultsIterator<KeyValue> range(final String collection, final String startKey, final String endKey) {
+        roundTrip();
+        String start = startKey == null || startKey.isEmpty() ? UNSPECIFIED_START_KEY : startKey;
+        NavigableMap<String, byte[]> map = collection(collection);
+        if (endKey == null || endKey.isEmpty()) {
+            return snapshot(map.tailMap(start, true));
+        }
+        return snapshot(map.subMap(start, true, endKey, false));
+    }
+
+    /**
+     * Returns the keys starting with a composite key prefix.
+     */
+    QueryResultsIterator<KeyValue> prefix(final String collection, final String prefix) {
+        roundTrip();
+        return snapshot(collection(collection).subMap(prefix, true, prefix + MAX_UNICODE_RUNE, false));
+    }
+
+    /**
+     * Writes a value without latency, for loading test data.
+     */
+    void load(final String collection, final String key, final byte[] value) {
+        collection(collection).put(key, value);
+    }
+
+    /**
+     * Removes a value without latency.
+     */
+    void unload(final String collection, final String key) {
+        collection(collection).remove(key);
+    }
+
+    int size(final String collection) {
+        return collection(collection).size();
+    }
+
+    /**
+     * Returns the number of simulated peer round trips so far.
+     */
+    long calls() {
+        return calls.sum();
+    }
+
+    private ConcurrentNavigableMap<String, byte[]> collection(final String collection) {
+        return collections.computeIfAbsent(collection, c -> new ConcurrentSkipListMap<>());
+    }
+
+    private void roundTrip() {
+        calls.increment();
+        if (callLatencyNanos > 0) {
+            LockSupport.parkNanos(callLatencyNanos);
+        }
+    }
+
+    private static QueryResultsIterator<KeyValue> snapshot(final Map<String, byte[]> entries) {
+        List<KeyValue> results = new ArrayList<>();
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            results.add(new Entry(entry.getKey(), entry.getValue()));
+        }
+        return new Results(results);
+    }
+
+    private static byte[] sha256(final byte[] value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry implements KeyValue {
+        private final String key;
+        private final byte[] value;
+
+        Entry(final String key, final byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return value;
+        }
+
+        @Override
+        public String getStringValue() {
+            return new String(value, UTF_8);
+        }
+    }
+
+    private static final class Results implements QueryResultsIterator<KeyValue> {
+        private final List<KeyValue> results;
+
+        Results(final List<KeyValue> results) {
+            this.results = results;
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return results.iterator();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
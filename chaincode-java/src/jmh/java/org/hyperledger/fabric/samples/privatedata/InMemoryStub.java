@@ -0,0 +1,355 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.protos.msp.SerializedIdentity;
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.SignedProposal;
+import org.hyperledger.fabric.shim.Chaincode;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * In-process ChaincodeStub for one client thread, backed by an {@link InMemoryLedger}.
+ *
+ * The stub carries the per-transaction state (creator, transient map, event)
+ * and forwards private data calls to the ledger, which may be shared between
+ * threads. The function and arguments are only set for transactions routed
+ * through ContractRouter. Calls the contract does not make throw
+ * UnsupportedOperationException.
+ */
+final class InMemoryStub implements ChaincodeStub {
+    private static final byte[] CLIENT_CERT = readResource("/client-cert.pem");
+    private static final AtomicLong STUBS = new AtomicLong();
+
+    private final InMemoryLedger ledger;
+    private final String mspId;
+    private final byte[] creator;
+    private final String txPrefix = Long.toHexString(STUBS.incrementAndGet()) + "-";
+    private Map<String, byte[]> transientMap = Collections.emptyMap();
+    private List<String> stringArgs = Collections.emptyList();
+    private long txCounter;
+    private ChaincodeEvent event;
+
+    InMemoryStub(final String mspId) {
+        this(new InMemoryLedger(), mspId);
+    }
+
+    InMemoryStub(final InMemoryLedger ledger, final String mspId) {
+        this.ledger = ledger;
+        this.mspId = mspId;
+        this.creator = SerializedIdentity.newBuilder()
+                .setMspid(mspId)
+                .setIdBytes(ByteString.copyFrom(CLIENT_CERT))
+                .build()
+                .toByteArray();
+    }
+
+    /**
+     * Starts a new transaction with the given transient data.
+     */
+    void begin(final Map<String, byte[]> transientData) {
+        this.transientMap = transientData;
+        this.stringArgs = Collections.emptyList();
+        this.event = null;
+        txCounter++;
+    }
+
+    /**
+     * Starts a new transaction invoking a function, for ContractRouter.invoke.
+     */
+    void begin(final Map<String, byte[]> transientData, final String function, final String... parameters) {
+        begin(transientData);
+        List<String> invocation = new ArrayList<>(parameters.length + 1);
+        invocation.add(function);
+        invocation.addAll(Arrays.asList(parameters));
+        this.stringArgs = invocation;
+    }
+
+    /**
+     * Writes a value directly, bypassing the contract.
+     */
+    void load(final String collection, final String key, final byte[] value) {
+        ledger.load(collection, key, value);
+    }
+
+    /**
+     * Removes a value directly, bypassing the contract.
+     */
+    void unload(final String collection, final String key) {
+        ledger.unload(collection, key);
+    }
+
+    InMemoryLedger getLedger() {
+        return ledger;
+    }
+
+    @Override
+    public byte[] getPrivateData(final String collection, final String key) {
+        return ledger.get(collection, key);
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(final String collection, final String key) {
+        return ledger.getHash(collection, key);
+    }
+
+    @Override
+    public void putPrivateData(final String collection, final String key, final byte[] value) {
+        ledger.put(collection, key, value);
+    }
+
+    @Override
+    public void delPrivateData(final String collection, final String key) {
+        ledger.delete(collection, key);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(final String collection, final String startKey,
+            final String endKey) {
+        return ledger.range(collection, startKey, endKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+            final String compositeKey) {
+        return ledger.prefix(collection, compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+            final CompositeKey compositeKey) {
+        return ledger.prefix(collection, compositeKey.toString());
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+            final String objectType, final String... attributes) {
+        return ledger.prefix(collection, new CompositeKey(objectType, attributes).toString());
+    }
+
+    @Override
+    public void setEvent(final String name, final byte[] payload) {
+        event = ChaincodeEvent.newBuilder()
+                .setEventName(name)
+                .setPayload(ByteString.copyFrom(payload))
+                .setTxId(getTxId())
+                .build();
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return transientMap;
+    }
+
+    @Override
+    public String getMspId() {
+        return mspId;
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return creator;
+    }
+
+    @Override
+    public String getTxId() {
+        return txPrefix + Long.toHexString(txCounter);
+    }
+
+    @Override
+    public String getChannelId() {
+        return "mychannel";
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return Instant.now();
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(final String objectType, final String... attributes) {
+        return new CompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(final String compositeKey) {
+        return CompositeKey.parseCompositeKey(compositeKey);
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        List<byte[]> bytes = new ArrayList<>(stringArgs.size());
+        for (String arg : stringArgs) {
+            bytes.add(arg.getBytes(UTF_8));
+        }
+        return bytes;
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        return stringArgs;
+    }
+
+    @Override
+    public String getFunction() {
+        return stringArgs.isEmpty() ? null : stringArgs.get(0);
+    }
+
+    @Override
+    public List<String> getParameters() {
+        return stringArgs.isEmpty() ? stringArgs : stringArgs.subList(1, stringArgs.size());
+    }
+
+    @Override
+    public Chaincode.Response invokeChaincode(final String chaincodeName, final List<byte[]> args, final String channel) {
+        throw unsupported();
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        throw unsupported();
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(final String key) {
+        throw unsupported();
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        throw unsupported();
+    }
+
+    @Override
+    public void setStateValidationParameter(final String key, final byte[] value) {
+        throw unsupported();
+    }
+
+    @Override
+    public void delState(final String key) {
+        throw unsupported();
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        throw unsupported();
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey,
+            final String endKey, final int pageSize, final String bookmark) {
+        throw unsupported();
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+        throw unsupported();
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType,
+            final String... attributes) {
+        throw unsupported();
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final CompositeKey compositeKey) {
+        throw unsupported();
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(
+            final CompositeKey compositeKey, final int pageSize, final String bookmark) {
+        throw unsupported();
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(final String query) {
+        throw unsupported();
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query,
+            final int pageSize, final String bookmark) {
+        throw unsupported();
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(final String key) {
+        throw unsupported();
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(final String collection, final String key) {
+        throw unsupported();
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(final String collection, final String key, final byte[] value) {
+        throw unsupported();
+    }
+
+    @Override
+    public void purgePrivateData(final String collection, final String key) {
+        throw unsupported();
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(final String collection, final String query) {
+        throw unsupported();
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        throw unsupported();
+    }
+
+    @Override
+    public byte[] getBinding() {
+        throw unsupported();
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Not supported by InMemoryStub");
+    }
+
+    private static byte[] readResource(final String name) {
+        try (InputStream in = InMemoryStub.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hyperledger.fabric.samples.privatedata.AssetTransfer.ASSET_COLLECTION_NAME;
+
+/**
+ * Drives AssetTransfer from many threads against a shared {@link InMemoryLedger}.
+ *
+ * Subscribers come from a {@link SubscriberDataset}. Each thread owns the
+ * subscribers n with n % threads equal to its number, so creates and deletes
+ * never race for the same IMSI. A share of the subscribers is loaded before the
+ * run. After the warmup, the generator records per transaction type latency
+ * and reports sustained TPS with p50/p99/p999.
+ *
+ * Options are given as --name=value:
+ * <pre>
+ *   --threads      worker threads (default: available processors)
+ *   --subscribers  dataset size (default: 1000000)
+ *   --preload      share of subscribers on the ledger at start, 0-1 (default: 0.5)
+ *   --plmns        comma separated MCC+MNC list (default: 46000,46001,46011,310260,23415)
+ *   --duration     measured seconds (default: 60)
+ *   --warmup       warmup seconds (default: 10)
+ *   --latency-us   simulated peer round trip per ledger call (default: 0)
+ *   --mix          transaction weights (default: read=60,readPrivate=20,create=10,delete=10),
+ *                  advanceSqn may be added to exercise the sqn delta keys
+ *   --seed         dataset seed (default: 1)
+ * </pre>
+ */
+public final class LoadGenerator {
+    enum Operation {
+        CREATE("create", "CreateAsset"),
+        READ("read", "ReadAsset"),
+        READ_PRIVATE("readPrivate", "ReadAssetPrivateDetails"),
+        ADVANCE_SQN("advanceSqn", "AdvanceSqn"),
+        DELETE("delete", "DeleteAsset");
+
+        private final String option;
+        private final String transaction;
+
+        Operation(final String option, final String transaction) {
+            this.option = option;
+            this.transaction = transaction;
+        }
+
+        static Operation fromOption(final String option) {
+            for (Operation operation : values()) {
+                if (operation.option.equalsIgnoreCase(option)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown transaction in --mix: " + option);
+        }
+    }
+
+    private final int threads;
+    private final int subscribers;
+    private final double preload;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final Map<Operation, Integer> mix;
+    private final SubscriberDataset dataset;
+    private final InMemoryLedger ledger;
+
+    LoadGenerator(final Map<String, String> options) {
+        this.threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        this.subscribers = Integer.parseInt(options.getOrDefault("subscribers", "1000000"));
+        this.preload = Double.parseDouble(options.getOrDefault("preload", "0.5"));
+        this.durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "60")));
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", "10")));
+        this.mix = parseMix(options.getOrDefault("mix", "read=60,readPrivate=20,create=10,delete=10"));
+        String plmns = options.getOrDefault("plmns", String.join(",", SubscriberDataset.DEFAULT_PLMNS));
+        this.dataset = new SubscriberDataset(plmns.split(","), Long.parseLong(options.getOrDefault("seed", "1")));
+        this.ledger = new InMemoryLedger(Long.parseLong(options.getOrDefault("latency-us", "0")),
+                TimeUnit.MICROSECONDS);
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        new LoadGenerator(parseOptions(args)).run();
+    }
+
+    void run() throws InterruptedException {
+        List<Worker> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Worker(t));
+        }
+
+        System.out.printf("Loading %d of %d subscribers with %d threads%n",
+                (long) (subscribers * preload), subscribers, threads);
+        long loadStart = System.nanoTime();
+        runAll(workers, Worker::preload);
+        System.out.printf("Loaded in %.1f s%n", (System.nanoTime() - loadStart) / 1e9);
+
+        System.out.printf("Running for %d s after %d s warmup, mix %s%n",
+                TimeUnit.NANOSECONDS.toSeconds(durationNanos), TimeUnit.NANOSECONDS.toSeconds(warmupNanos), mix);
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long until = measureFrom + durationNanos;
+        long callsBefore = ledger.calls();
+        runAll(workers, worker -> worker.drive(measureFrom, until));
+
+        report(workers, ledger.calls() - callsBefore);
+    }
+
+    private void report(final List<Worker> workers, final long ledgerCalls) {
+        double seconds = durationNanos / 1e9;
+        long total = 0;
+        long errors = 0;
+        System.out.printf("%n%-24s %10s %10s %10s %10s %10s %10s %8s%n",
+                "transaction", "count", "tps", "p50 us", "p99 us", "p999 us", "max us", "errors");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            long operationErrors = 0;
+            for (Worker worker : workers) {
+                histogram.merge(worker.latencies.get(operation));
+                operationErrors += worker.errors.get(operation)[0];
+            }
+            if (histogram.count() == 0) {
+                continue;
+            }
+            total += histogram.count();
+            errors += operationErrors;
+            System.out.printf("%-24s %10d %10.0f %10.1f %10.1f %10.1f %10.1f %8d%n",
+                    operation.transaction, histogram.count(), histogram.count() / seconds,
+                    histogram.percentile(50) / 1e3, histogram.percentile(99) / 1e3,
+                    histogram.percentile(99.9) / 1e3, histogram.max() / 1e3, operationErrors);
+        }
+        System.out.printf("%-24s %10d %10.0f%n", "total", total, total / seconds);
+        System.out.printf("errors %d, ledger calls per transaction %.2f, assets on ledger %d%n",
+                errors, total == 0 ? 0.0 : (double) ledgerCalls / total, ledger.size(ASSET_COLLECTION_NAME));
+    }
+
+    private interface Task {
+        void run(Worker worker);
+    }
+
+    private static void runAll(final List<Worker> workers, final Task task) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(workers.size());
+        for (Worker worker : workers) {
+            Thread thread = new Thread(() -> {
+                try {
+                    task.run(worker);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + worker.number);
+            thread.start();
+        }
+        done.await();
+    }
+
+    /**
+     * One client thread with its own stub and its own share of the subscribers.
+     */
+    private final class Worker {
+        private final int number;
+        private final AssetTransfer contract = new AssetTransfer();
+        private final InMemoryStub stub = new InMemoryStub(ledger, Payloads.MSP_ID);
+        private final SplittableRandom random;
+        private final IntRing present;
+        private final IntRing absent;
+        private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+        private final Map<Operation, long[]> errors = new EnumMap<>(Operation.class);
+        private final Operation[] schedule;
+
+        Worker(final int number) {
+            this.number = number;
+            this.random = new SplittableRandom(number);
+            int owned = (subscribers - number + threads - 1) / threads;
+            this.present = new IntRing(owned);
+            this.absent = new IntRing(owned);
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new LatencyHistogram());
+                errors.put(operation, new long[1]);
+            }
+            List<Operation> weighted = new ArrayList<>();
+            for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+                weighted.addAll(Collections.nCopies(entry.getValue(), entry.getKey()));
+            }
+            this.schedule = weighted.toArray(new Operation[0]);
+        }
+
+        void preload() {
+            int owned = present.capacity();
+            int loaded = (int) (owned * preload);
+            for (int k = 0; k < owned; k++) {
+                int n = number + k * threads;
+                if (k < loaded) {
+                    AssetRecord record = AssetRecord.parse(dataset.assetProperties(n));
+                    String imsi = record.getAsset().getImsi();
+                    ledger.load(ASSET_COLLECTION_NAME, imsi, record.getAsset().serialize());
+                    ledger.load(Payloads.ORG_COLLECTION, imsi, record.getDetails().serialize());
+                    present.add(n);
+                } else {
+                    absent.add(n);
+                }
+            }
+        }
+
+        void drive(final long measureFrom, final long until) {
+            long now = System.nanoTime();
+            while (now < until) {
+                Operation operation = schedule[random.nextInt(schedule.length)];
+                if (present.isEmpty() && absent.isEmpty()) {
+                    return;
+                }
+                // fall back when the subscribers this operation needs are used up
+                if (operation == Operation.CREATE ? absent.isEmpty() : present.isEmpty()) {
+                    operation = operation == Operation.CREATE ? Operation.READ : Operation.CREATE;
+                }
+                long started = System.nanoTime();
+                try {
+                    execute(operation);
+                } catch (ChaincodeException e) {
+                    if (started >= measureFrom) {
+                        errors.get(operation)[0]++;
+                    }
+                }
+                now = System.nanoTime();
+                if (started >= measureFrom) {
+                    latencies.get(operation).record(now - started);
+                }
+            }
+        }
+
+        private void execute(final Operation operation) {
+            int n;
+            switch (operation) {
+                case CREATE:
+                    n = absent.poll();
+                    stub.begin(dataset.createTransient(n));
+                    contract.CreateAsset(context());
+                    present.add(n);
+                    break;
+                case DELETE:
+                    n = present.poll();
+                    stub.begin(dataset.deleteTransient(n));
+                    contract.DeleteAsset(context());
+                    absent.add(n);
+                    break;
+                case READ:
+                    n = present.get(random.nextInt(present.size()));
+                    stub.begin(Collections.emptyMap());
+                    contract.ReadAsset(context(), dataset.imsi(n));
+                    break;
+                case ADVANCE_SQN:
+                    n = present.get(random.nextInt(present.size()));
+                    stub.begin(dataset.advanceSqnTransient(n));
+                    contract.AdvanceSqn(context());
+                    break;
+                case READ_PRIVATE:
+                    n = present.get(random.nextInt(present.size()));
+                    stub.begin(Collections.emptyMap());
+                    contract.ReadAssetPrivateDetails(context(), Payloads.ORG_COLLECTION, dataset.imsi(n));
+                    break;
+                default:
+                    throw new IllegalStateException(operation.name());
+            }
+        }
+
+        private Context context() {
+            return contract.createContext(stub);
+        }
+    }
+
+    /**
+     * Fixed capacity FIFO of subscriber numbers with random access.
+     */
+    private static final class IntRing {
+        private final int[] values;
+        private int head;
+        private int size;
+
+        IntRing(final int capacity) {
+            this.values = new int[Math.max(1, capacity)];
+        }
+
+        int capacity() {
+            return values.length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void add(final int value) {
+            values[(head + size) % values.length] = value;
+            size++;
+        }
+
+        int poll() {
+            int value = values[head];
+            head = (head + 1) % values.length;
+            size--;
+            return value;
+        }
+
+        int get(final int index) {
+            return values[(head + index) % values.length];
+        }
+    }
+
+    static Map<String, String> parseOptions(final String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    static Map<Operation, Integer> parseMix(final String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected name=weight in --mix but got " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.fromOption(pair[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("--mix has no transactions");
+        }
+        return weights;
+    }
+}
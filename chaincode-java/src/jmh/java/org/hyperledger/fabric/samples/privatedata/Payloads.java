@@ -0,0 +1,68 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Realistic subscriber payloads, shaped like the records used by the contract tests.
+ */
+final class Payloads {
+    static final String MSP_ID = "Org1MSP";
+    static final String ORG_COLLECTION = MSP_ID + "PrivateCollection";
+
+    private static final String ASSET_PROPERTIES =
+            "{\"backupNetwork\":{\"netID\":\"46011010000\","
+            + "\"ipEndPoint\":{\"port\":7786,\"ipv4Addr\":\"172.28.158.99\"},\"netType\":\"Center\"},"
+            + "\"imsi\":\"%s\",\"homeNetwork\":{\"ipEndPoint\":{\"port\":7786,\"ipv4Addr\":\"172.28.158.98\"},"
+            + "\"cert\":\"x.509\",\"netID\":\"46011010001\",\"netType\":\"Edge\"},\"operator\":\"China Telecom\","
+            + "\"ambr\":{\"uplink\":\"1073741824 bps\",\"downlink\":\"1073741824 bps\"},"
+            + "\"security\":{\"sqn\":\"0000000000a1\",\"opc\":\"e8ed289deba952e4283b54e88e6183ca\","
+            + "\"k\":\"465b5ce8b199b49faa5f0a2ee238a6bc\",\"amf\":\"8000\"},"
+            + "\"slice\":{\"sst\":1,\"session\":{\"ambr\":{\"uplink\":\"1073741824 bps\",\"downlink\":\"1073741824 bps\"},"
+            + "\"qos\":{\"index\":9,\"arp\":{\"priority_level\":8,\"pre_emption_capability\":1,"
+            + "\"pre_emption_vulnerability\":1}},\"pcc_rule\":\"\",\"name\":\"internet\",\"type\":3},"
+            + "\"default_indicator\":true}}";
+
+    private Payloads() {
+    }
+
+    /**
+     * Returns the n-th IMSI of PLMN 460-11.
+     */
+    static String imsi(final long n) {
+        return String.format("46011%010d", n);
+    }
+
+    static String assetProperties(final String imsi) {
+        return String.format(ASSET_PROPERTIES, imsi);
+    }
+
+    static Map<String, byte[]> createTransient(final String imsi) {
+        return Collections.singletonMap("asset_properties", assetProperties(imsi).getBytes(UTF_8));
+    }
+
+    /**
+     * Returns an asset as the contract stores it, with references to its networks.
+     */
+    static Asset stored(final Asset asset) {
+        return asset.withNetworks(
+                Network.reference(asset.getHomeNetwork().getNetID(), asset.getHomeNetwork().getNetType()),
+                Network.reference(asset.getBackupNetwork().getNetID(), asset.getBackupNetwork().getNetType()));
+    }
+
+    /**
+     * Returns details as the contract stores them, with a reference to their slice profile.
+     */
+    static AssetPrivateDetails stored(final AssetPrivateDetails details) {
+        return details.withProfile(ProfileStore.hash(details.getSlice()), details.getSlice());
+    }
+
+    static Map<String, byte[]> deleteTransient(final String imsi) {
+        return Collections.singletonMap("asset_delete", ("{\"imsi\":\"" + imsi + "\"}").getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Deterministic synthetic subscribers spread round-robin over a set of PLMNs.
+ *
+ * Subscriber n belongs to PLMN n % plmns and gets MSIN n / plmns, padded to a
+ * 15 digit IMSI. Its record is derived from n alone, so any subscriber can be
+ * regenerated on demand and datasets of millions need no memory.
+ */
+final class SubscriberDataset {
+    static final String[] DEFAULT_PLMNS = {"46000", "46001", "46011", "310260", "23415"};
+
+    private static final String[] SESSIONS = {"internet", "ims", "iot"};
+    private static final long[] BIT_RATES = {50_000_000L, 100_000_000L, 500_000_000L, 1_073_741_824L};
+
+    private final String[] plmns;
+    private final long seed;
+
+    SubscriberDataset(final String[] plmns, final long seed) {
+        this.plmns = plmns.clone();
+        this.seed = seed;
+    }
+
+    String imsi(final long n) {
+        String plmn = plmns[(int) (n % plmns.length)];
+        String msin = Long.toString(n / plmns.length);
+        StringBuilder imsi = new StringBuilder(15).append(plmn);
+        for (int i = plmn.length() + msin.length(); i < 15; i++) {
+            imsi.append('0');
+        }
+        return imsi.append(msin).toString();
+    }
+
+    /**
+     * Returns the asset_properties record of subscriber n.
+     */
+    String assetProperties(final long n) {
+        SplittableRandom random = new SplittableRandom(seed * 31 + n);
+        int plmnIndex = (int) (n % plmns.length);
+        String plmn = plmns[plmnIndex];
+        int edge = random.nextInt(16);
+        long bitRate = BIT_RATES[random.nextInt(BIT_RATES.length)];
+        String rate = bitRate + " bps";
+
+        JsonWriter out = new JsonWriter(1024);
+        out.beginObject();
+        out.name("imsi").value(imsi(n));
+        out.name("operator").value(operator(plmn));
+        out.name("homeNetwork").beginObject()
+                .name("netID").value(plmn + String.format("%06d", edge + 1))
+                .name("netType").value("Edge")
+                .name("cert").value("x.509")
+                .name("ipEndPoint").beginObject()
+                .name("ipv4Addr").value("10." + plmnIndex + "." + edge + ".1")
+                .name("port").value(7786)
+                .endObject()
+                .endObject();
+        out.name("backupNetwork").beginObject()
+                .name("netID").value(plmn + "000000")
+                .name("netType").value("Center")
+                .name("ipEndPoint").beginObject()
+                .name("ipv4Addr").value("10." + plmnIndex + ".255.1")
+                .name("port").value(7786)
+                .endObject()
+                .endObject();
+        out.name("ambr").beginObject().name("uplink").value(rate).name("downlink").value(rate).endObject();
+        out.name("slice").beginObject()
+                .name("sst").value(1 + random.nextInt(3))
+                .name("default_indicator").value(true)
+                .name("session").beginObject()
+                .name("name").value(SESSIONS[random.nextInt(SESSIONS.length)])
+                .name("type").value(3)
+                .name("pcc_rule").value("")
+                .name("ambr").beginObject().name("uplink").value(rate).name("downlink").value(rate).endObject()
+                .name("qos").beginObject()
+                .name("index").value(random.nextBoolean() ? 9 : 5)
+                .name("arp").beginObject()
+                .name("priority_level").value(1 + random.nextInt(15))
+                .name("pre_emption_capability").value(random.nextInt(2))
+                .name("pre_emption_vulnerability").value(random.nextInt(2))
+                .endObject()
+                .endObject()
+                .endObject()
+                .endObject();
+        out.name("security").beginObject()
+                .name("k").value(randomHex(random, 16))
+                .name("opc").value(randomHex(random, 16))
+                .name("amf").value("8000")
+                .name("sqn").value(SecurityContext.formatSqn(random.nextLong() & 0xffffffffL))
+                .endObject();
+        out.endObject();
+        return out.toString();
+    }
+
+    Map<String, byte[]> createTransient(final long n) {
+        return Collections.singletonMap("asset_properties", assetProperties(n).getBytes(UTF_8));
+    }
+
+    Map<String, byte[]> deleteTransient(final long n) {
+        return Collections.singletonMap("asset_delete", ("{\"imsi\":\"" + imsi(n) + "\"}").getBytes(UTF_8));
+    }
+
+    Map<String, byte[]> advanceSqnTransient(final long n) {
+        return Collections.singletonMap("asset_sqn_delta", ("{\"imsi\":\"" + imsi(n) + "\"}").getBytes(UTF_8));
+    }
+
+    private static String operator(final String plmn) {
+        switch (plmn) {
+            case "46000":
+                return "China Mobile";
+            case "46001":
+                return "China Unicom";
+            case "46011":
+                return "China Telecom";
+            case "310260":
+                return "T-Mobile US";
+            case "23415":
+                return "Vodafone UK";
+            default:
+                return "Operator " + plmn;
+        }
+    }
+
+    private static String randomHex(final SplittableRandom random, final int bytes) {
+        byte[] value = new byte[bytes];
+        for (int i = 0; i < bytes; i++) {
+            value[i] = (byte) random.nextInt(256);
+        }
+        return Hex.encode(value);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Parsing of the asset_properties transient entry, as done by CreateAsset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransientParseBenchmark {
+    private Map<String, byte[]> transientMap;
+
+    /**
+     * Builds the transient map for one subscriber.
+     */
+    @Setup
+    public void setUp() {
+        transientMap = Payloads.createTransient(Payloads.imsi(1));
+    }
+
+    /** Decode and parse asset_properties into an AssetRecord. */
+    @Benchmark
+    public AssetRecord parseAssetProperties() {
+        return AssetRecord.parse(new String(transientMap.get("asset_properties"), UTF_8));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.math.BigDecimal;
+
+/**
+ * Aggregate maximum bit rate, held in bits per second.
+ *
+ * On the ledger and towards clients the rates keep their "1073741824 bps"
+ * string form; values with a Kbps, Mbps, Gbps or Tbps unit are read and
+ * converted to bps.
+ */
+@DataType
+public final class Ambr {
+    private static final String[] UNITS = {"bps", "Kbps", "Mbps", "Gbps", "Tbps"};
+
+    @Property()
+    private final String uplink;
+
+    @Property()
+    private final String downlink;
+
+    private final long uplinkBps;
+
+    private final long downlinkBps;
+
+    public Ambr(final long uplink, final long downlink) {
+        this.uplinkBps = uplink;
+        this.downlinkBps = downlink;
+        this.uplink = formatBitRate(uplink);
+        this.downlink = formatBitRate(downlink);
+    }
+
+    public String getUplink() {
+        return uplink;
+    }
+
+    public String getDownlink() {
+        return downlink;
+    }
+
+    long uplinkBps() {
+        return uplinkBps;
+    }
+
+    long downlinkBps() {
+        return downlinkBps;
+    }
+
+    void write(final JsonWriter writer) {
+        writer.beginObject()
+                .name("downlink").value(downlink)
+                .name("uplink").value(uplink)
+                .endObject();
+    }
+
+    static Ambr read(final JsonReader reader) {
+        Long uplink = null;
+        Long downlink = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "uplink":
+                    uplink = parseBitRate(reader.nextString());
+                    break;
+                case "downlink":
+                    downlink = parseBitRate(reader.nextString());
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new Ambr(Asset.require(uplink, "uplink"), Asset.require(downlink, "downlink"));
+    }
+
+    static String formatBitRate(final long bps) {
+        return bps + " bps";
+    }
+
+    /**
+     * Parses a bit rate such as "1073741824 bps" or "1.5 Gbps" into bits per second.
+     */
+    static long parseBitRate(final String rate) {
+        int space = rate.indexOf(' ');
+        if (space > 0) {
+            String unit = rate.substring(space + 1);
+            for (int i = 0; i < UNITS.length; i++) {
+                if (UNITS[i].equals(unit)) {
+                    try {
+                        return new BigDecimal(rate.substring(0, space)).movePointRight(3 * i).longValueExact();
+                    } catch (ArithmeticException | NumberFormatException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        throw new IllegalArgumentException("Invalid bit rate: " + rate);
+    }
+
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        Ambr other = (Ambr) obj;
+        return uplinkBps == other.uplinkBps && downlinkBps == other.downlinkBps;
+    }
+
+    public int hashCode() {
+        return Long.hashCode(uplinkBps) * 31 + Long.hashCode(downlinkBps);
+    }
+
+    public String toString() {
+        return uplink + "/" + downlink;
+    }
+}
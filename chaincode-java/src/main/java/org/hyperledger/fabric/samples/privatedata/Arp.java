@@ -0,0 +1,90 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+/**
+ * Allocation and retention priority of a QoS flow.
+ */
+@DataType
+public final class Arp {
+    @Property()
+    private final int priority_level;
+
+    @Property()
+    private final int pre_emption_capability;
+
+    @Property()
+    private final int pre_emption_vulnerability;
+
+    public Arp(final int priority_level, final int pre_emption_capability, final int pre_emption_vulnerability) {
+        this.priority_level = priority_level;
+        this.pre_emption_capability = pre_emption_capability;
+        this.pre_emption_vulnerability = pre_emption_vulnerability;
+    }
+
+    public int getPriority_level() {
+        return priority_level;
+    }
+
+    public int getPre_emption_capability() {
+        return pre_emption_capability;
+    }
+
+    public int getPre_emption_vulnerability() {
+        return pre_emption_vulnerability;
+    }
+
+    void write(final JsonWriter writer) {
+        writer.beginObject()
+                .name("pre_emption_capability").value(pre_emption_capability)
+                .name("pre_emption_vulnerability").value(pre_emption_vulnerability)
+                .name("priority_level").value(priority_level)
+                .endObject();
+    }
+
+    static Arp read(final JsonReader reader) {
+        Integer priorityLevel = null;
+        Integer capability = null;
+        Integer vulnerability = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "priority_level":
+                    priorityLevel = reader.nextInt();
+                    break;
+                case "pre_emption_capability":
+                    capability = reader.nextInt();
+                    break;
+                case "pre_emption_vulnerability":
+                    vulnerability = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new Arp(Asset.require(priorityLevel, "priority_level"), Asset.require(capability, "pre_emption_capability"),
+                Asset.require(vulnerability, "pre_emption_vulnerability"));
+    }
+
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        Arp other = (Arp) obj;
+        return priority_level == other.priority_level && pre_emption_capability == other.pre_emption_capability
+                && pre_emption_vulnerability == other.pre_emption_vulnerability;
+    }
+
+    public int hashCode() {
+        return (priority_level * 31 + pre_emption_capability) * 31 + pre_emption_vulnerability;
+    }
+}
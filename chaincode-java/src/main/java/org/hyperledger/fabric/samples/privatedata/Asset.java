@@ -6,14 +6,9 @@ package org.hyperledger.fabric.samples.privatedata;
 import org.hyperledger.fabric.contract.annotation.DataType;
 import org.hyperledger.fabric.contract.annotation.Property;
 import org.hyperledger.fabric.shim.ChaincodeException;
-import org.json.JSONObject;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 @DataType
 public final class Asset {
 
@@ -24,13 +19,13 @@ public final class Asset {
     private final String operator;
 
     @Property()
-    private final Map<String, Object> homeNetwork;
+    private final Network homeNetwork;
 
     @Property()
-    private final Map<String, Object> backupNetwork;
+    private final Network backupNetwork;
 
 
-    public Asset(final String imsi, final String operator, final Map<String, Object> homeNetwork, final Map<String, Object> backupNetwork) {
+    public Asset(final String imsi, final String operator, final Network homeNetwork, final Network backupNetwork) {
         this.imsi = imsi;
         this.operator = operator;
         this.homeNetwork = homeNetwork;
@@ -45,55 +40,126 @@ public final class Asset {
         return operator;
     }
 
-    public Map<String, Object> getHomeNetwork() {
+    public Network getHomeNetwork() {
         return homeNetwork;
     }
 
-    public Map<String, Object> getBackupNetwork() {
+    public Network getBackupNetwork() {
         return backupNetwork;
     }
 
+    /**
+     * Returns a copy of this asset with different home and backup networks.
+     */
+    public Asset withNetworks(final Network newHomeNetwork, final Network newBackupNetwork) {
+        return new Asset(imsi, operator, newHomeNetwork, newBackupNetwork);
+    }
+
+    /**
+     * Returns true if a network of this asset is a reference to the {@link NetworkRegistry}.
+     */
+    boolean hasReferences() {
+        return homeNetwork.isReference() || backupNetwork.isReference();
+    }
+
     public byte[] serialize() {
-        String jsonStr = new JSONObject(this).toString();
-        return jsonStr.getBytes(UTF_8);
+        long start = ContractMetrics.startSerialization();
+        try {
+            byte[] value = StorageFormat.current() == StorageFormat.BINARY ? BinaryCodec.encode(this) : serializeJson();
+            return ValueCompression.compress(value);
+        } finally {
+            ContractMetrics.recordSerialization(start);
+        }
+    }
+
+    byte[] serializeJson() {
+        JsonWriter writer = new JsonWriter();
+        write(writer);
+        return writer.toBytes();
+    }
+
+    void write(final JsonWriter writer) {
+        writer.beginObject()
+                .name("imsi").value(imsi)
+                .name("operator").value(operator)
+                .name("homeNetwork");
+        homeNetwork.write(writer);
+        writer.name("backupNetwork");
+        backupNetwork.write(writer);
+        writer.endObject();
     }
 
     public static Asset deserialize(final byte[] assetJSON) {
-        return deserialize(new String(assetJSON, UTF_8));
+        long start = ContractMetrics.startSerialization();
+        try {
+            byte[] value = ValueCompression.decompress(assetJSON);
+            if (BinaryCodec.isBinary(value)) {
+                return BinaryCodec.decodeAsset(value);
+            }
+            return deserialize(new JsonReader(value));
+        } finally {
+            ContractMetrics.recordSerialization(start);
+        }
     }
 
     public static Asset deserialize(final String assetJSON) {
+        return deserialize(new JsonReader(assetJSON));
+    }
+
+    private static Asset deserialize(final JsonReader reader) {
         try {
-            JSONObject json = new JSONObject(assetJSON);
-
-            final String imsi = json.getString("imsi");
-            final String operator = json.getString("operator");
-
-            HashMap<String, Object> ipEndPoint = new HashMap<>();
-            ipEndPoint.put("ipv4Addr", json.getJSONObject("homeNetwork").getJSONObject("ipEndPoint").getString("ipv4Addr"));
-            ipEndPoint.put("port", json.getJSONObject("homeNetwork").getJSONObject("ipEndPoint").getInt("port"));
-            Map<String, Object> homeNetwork = new HashMap<>();
-            homeNetwork.put("ipEndPoint", ipEndPoint);
-            homeNetwork.put("netID", json.getJSONObject("homeNetwork").getString("netID"));
-            homeNetwork.put("netType", json.getJSONObject("homeNetwork").getString("netType"));
-            homeNetwork.put("cert", json.getJSONObject("homeNetwork").getString("cert"));
-
-            Map<String, Object> backupNetwork = new HashMap<>();
-            backupNetwork.put("netID", json.getJSONObject("backupNetwork").getString("netID"));
-            backupNetwork.put("netType", json.getJSONObject("backupNetwork").getString("netType"));
-            //different ipEndPoint
-            HashMap<String, Object> ipEndPoint2 = new HashMap<>();
-            ipEndPoint2.put("ipv4Addr", json.getJSONObject("backupNetwork").getJSONObject("ipEndPoint").getString("ipv4Addr"));
-            ipEndPoint2.put("port", json.getJSONObject("backupNetwork").getJSONObject("ipEndPoint").getInt("port"));
-            backupNetwork.put("ipEndPoint", ipEndPoint2);
-
-            return new Asset(imsi, operator, homeNetwork, backupNetwork);
+            String imsi = null;
+            String operator = null;
+            Network homeNetwork = null;
+            Network backupNetwork = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "imsi":
+                        imsi = reader.nextString();
+                        break;
+                    case "operator":
+                        operator = reader.nextString();
+                        break;
+                    case "homeNetwork":
+                        homeNetwork = Network.read(reader);
+                        break;
+                    case "backupNetwork":
+                        backupNetwork = Network.read(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            return create(imsi, operator, homeNetwork, backupNetwork);
 
         } catch (Exception e) {
             throw new ChaincodeException("Deserialize error: " + e.getMessage(), "DATA_ERROR");
         }
     }
 
+    /**
+     * Creates an asset from decoded fields, failing if a required one is missing.
+     */
+    static Asset create(final String imsi, final String operator, final Network homeNetwork, final Network backupNetwork) {
+        require(homeNetwork, "homeNetwork");
+        if (!homeNetwork.isReference()) {
+            require(homeNetwork.getCert(), "cert");
+        }
+        return new Asset(require(imsi, "imsi"), require(operator, "operator"), homeNetwork, require(backupNetwork, "backupNetwork"));
+    }
+
+    static <T> T require(final T value, final String key) {
+        if (value == null) {
+            throw new IllegalArgumentException("JSONObject[\"" + key + "\"] not found.");
+        }
+        return value;
+    }
+
     public boolean equals(final Object obj) {
         if (this == obj) {
             return true;
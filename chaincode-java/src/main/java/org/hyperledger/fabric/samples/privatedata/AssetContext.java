@@ -0,0 +1,41 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Transaction context created by {@link AssetTransfer#createContext(ChaincodeStub)}.
+ * It carries the {@link TransactionCache} for the transaction, and hands the
+ * contract a {@link MeteredStub} so that ledger calls are counted.
+ */
+public final class AssetContext extends Context {
+    private TransactionCache cache;
+
+    public AssetContext(final ChaincodeStub stub) {
+        super(new MeteredStub(stub, ContractMetrics.global()));
+    }
+
+    MeteredStub getMeteredStub() {
+        return (MeteredStub) getStub();
+    }
+
+    TransactionCache getCache() {
+        if (cache == null) {
+            cache = new TransactionCache(this);
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the cache of an AssetContext, or a new cache for any other context.
+     */
+    static TransactionCache cacheOf(final Context ctx) {
+        if (ctx instanceof AssetContext) {
+            return ((AssetContext) ctx).getCache();
+        }
+        return new TransactionCache(ctx);
+    }
+}
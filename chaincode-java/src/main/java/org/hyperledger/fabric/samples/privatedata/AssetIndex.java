@@ -0,0 +1,129 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static org.hyperledger.fabric.samples.privatedata.AssetTransfer.ASSET_COLLECTION_NAME;
+
+/**
+ * Secondary indexes over the public asset data, kept as composite keys in assetCollection.
+ *
+ * An index entry is a key such as operator~imsi with an empty marker value, so
+ * the subscribers of an operator or network are found with a key range scan
+ * that works the same on LevelDB and CouchDB. Composite keys are ignored by
+ * simple range queries, so the entries never show up as assets.
+ */
+final class AssetIndex {
+    static final String OPERATOR = "operator~imsi";
+    static final String NETWORK = "netID~imsi";
+
+    // a zero-length value would delete the key
+    private static final byte[] MARKER = {0};
+
+    private AssetIndex() {
+    }
+
+    static void add(final TransactionCache cache, final Asset asset) {
+        for (String key : keys(asset)) {
+            cache.putPrivateData(ASSET_COLLECTION_NAME, key, MARKER);
+        }
+    }
+
+    static void remove(final TransactionCache cache, final Asset asset) {
+        for (String key : keys(asset)) {
+            cache.delPrivateData(ASSET_COLLECTION_NAME, key);
+        }
+    }
+
+    /**
+     * Moves the entries of an asset whose indexed fields changed, leaving unchanged entries alone.
+     */
+    static void update(final TransactionCache cache, final Asset before, final Asset after) {
+        Set<String> removed = keys(before);
+        Set<String> added = keys(after);
+        removed.removeAll(keys(after));
+        added.removeAll(keys(before));
+        for (String key : removed) {
+            cache.delPrivateData(ASSET_COLLECTION_NAME, key);
+        }
+        for (String key : added) {
+            cache.putPrivateData(ASSET_COLLECTION_NAME, key, MARKER);
+        }
+    }
+
+    /**
+     * Reads one page of the assets indexed under a value and returns
+     * {"records":[...],"fetchedRecordsCount":n,"bookmark":"..."}, in IMSI order.
+     *
+     * The bookmark is the last IMSI of the page, and empty on the last page. A
+     * partial composite key query cannot start after a given key, so the entries
+     * up to the bookmark are skipped; they are keys with one-byte values, and
+     * only the assets of the page are read. The scan stops one entry past the
+     * page, which closes the query before the peer fetches more batches.
+     *
+     * @param pageSize records per page; 0 or less means the default, larger than the maximum is capped
+     * @param bookmark the bookmark returned with the previous page, or empty for the first page
+     */
+    static String list(final TransactionCache cache, final String index, final String value, final int pageSize,
+            final String bookmark, final BiConsumer<byte[], JsonWriter> record) {
+        String after = bookmark == null ? "" : bookmark;
+        int size = pageSize <= 0 ? PagedQuery.DEFAULT_PAGE_SIZE : Math.min(pageSize, PagedQuery.MAX_PAGE_SIZE);
+
+        List<String> imsis = new ArrayList<>();
+        boolean more = false;
+        try (QueryResultsIterator<KeyValue> results = cache.getStub()
+                .getPrivateDataByPartialCompositeKey(ASSET_COLLECTION_NAME, new CompositeKey(index, value))) {
+            for (KeyValue result : results) {
+                List<String> attributes = CompositeKey.parseCompositeKey(result.getKey()).getAttributes();
+                String imsi = attributes.get(attributes.size() - 1);
+                if (!after.isEmpty() && imsi.compareTo(after) <= 0) {
+                    continue;
+                }
+                if (imsis.size() == size) {
+                    more = true;
+                    break;
+                }
+                imsis.add(imsi);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to close index query " + index, e);
+        }
+
+        JsonWriter out = new JsonWriter(size * 512);
+        out.beginObject().name("records").beginArray();
+        int count = 0;
+        for (String imsi : imsis) {
+            byte[] assetValue = cache.getPrivateData(ASSET_COLLECTION_NAME, imsi);
+            if (assetValue != null) {
+                record.accept(assetValue, out);
+                count++;
+            }
+        }
+        out.endArray();
+        out.name("fetchedRecordsCount").value(count);
+        out.name("bookmark").value(more ? imsis.get(imsis.size() - 1) : "");
+        out.endObject();
+        return out.toString();
+    }
+
+    private static Set<String> keys(final Asset asset) {
+        String imsi = asset.getImsi();
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(new CompositeKey(OPERATOR, asset.getOperator(), imsi).toString());
+        keys.add(new CompositeKey(NETWORK, asset.getHomeNetwork().getNetID(), imsi).toString());
+        keys.add(new CompositeKey(NETWORK, asset.getBackupNetwork().getNetID(), imsi).toString());
+        return keys;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hyperledger.fabric.samples.privatedata.AssetTransfer.ASSET_COLLECTION_NAME;
+
+/**
+ * One chunk of a bulk move of subscribers from one operator, home network or backup network to another.
+ *
+ * The subscribers still on the old value are found through the operator~imsi or
+ * netID~imsi index, in IMSI order, optionally limited to an IMSI range such as a
+ * PLMN. A chunk takes at most maxRecords index entries after the cursor, the last
+ * IMSI taken by the previous chunk, and returns the cursor for the next one, empty
+ * once the scan is complete. Migrated subscribers leave the index of the old
+ * value when their chunk commits, so later chunks mostly pass over entries that
+ * were not migrated, such as those owned by another org. Running a chunk again is
+ * harmless: subscribers already moved no longer match.
+ */
+final class AssetMigration {
+    static final int DEFAULT_MAX_RECORDS = 200;
+    // each record is two reads and up to three writes; keeps a chunk well within
+    // the peer's execute timeout and the block size limit
+    static final int MAX_RECORDS = 1000;
+
+    enum Field {
+        OPERATOR("operator", AssetIndex.OPERATOR),
+        HOME_NETWORK("homeNetwork", AssetIndex.NETWORK),
+        BACKUP_NETWORK("backupNetwork", AssetIndex.NETWORK);
+
+        private final String label;
+        private final String index;
+
+        Field(final String label, final String index) {
+            this.label = label;
+            this.index = index;
+        }
+
+        String getLabel() {
+            return label;
+        }
+
+        static Field of(final String label) {
+            for (Field field : values()) {
+                if (field.label.equals(label)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Invalid field: " + label);
+        }
+    }
+
+    private final Field field;
+    private final String from;
+    private final String to;
+    private final String start;
+    private final String end;
+    private final String cursor;
+    private final int maxRecords;
+
+    AssetMigration(final Field field, final String from, final String to, final String start, final String end,
+            final String cursor, final int maxRecords) {
+        this.field = field;
+        this.from = from;
+        this.to = to;
+        this.start = start == null ? "" : start;
+        this.end = end == null ? "" : end;
+        this.cursor = cursor == null ? "" : cursor;
+        this.maxRecords = maxRecords <= 0 ? DEFAULT_MAX_RECORDS : Math.min(maxRecords, MAX_RECORDS);
+    }
+
+    Field getField() {
+        return field;
+    }
+
+    String getFrom() {
+        return from;
+    }
+
+    String getTo() {
+        return to;
+    }
+
+    String getCursor() {
+        return cursor;
+    }
+
+    int getMaxRecords() {
+        return maxRecords;
+    }
+
+    /**
+     * Parses {"field":"operator"|"homeNetwork"|"backupNetwork", "from":..., "to":..., "start":...,
+     * "end":..., "cursor":..., "maxRecords":n}; start, end, cursor and maxRecords are optional
+     * and unknown fields are ignored.
+     */
+    static AssetMigration parse(final String json) {
+        String field = null;
+        String from = null;
+        String to = null;
+        String start = "";
+        String end = "";
+        String cursor = "";
+        int maxRecords = 0;
+
+        JsonReader reader = new JsonReader(json);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "field":
+                    field = reader.nextString();
+                    break;
+                case "from":
+                    from = reader.nextString();
+                    break;
+                case "to":
+                    to = reader.nextString();
+                    break;
+                case "start":
+                    start = reader.nextString();
+                    break;
+                case "end":
+                    end = reader.nextString();
+                    break;
+                case "cursor":
+                    cursor = reader.nextString();
+                    break;
+                case "maxRecords":
+                    maxRecords = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        reader.endDocument();
+
+        Field parsed = Field.of(Asset.require(field, "field"));
+        if (Asset.require(from, "from").trim().isEmpty() || Asset.require(to, "to").trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty input: from or to");
+        }
+        if (from.equals(to)) {
+            throw new IllegalArgumentException("from and to are both " + from);
+        }
+        requireImsiPrefix("start", start);
+        requireImsiPrefix("end", end);
+        if (!end.isEmpty() && start.compareTo(end) >= 0) {
+            throw new IllegalArgumentException("start " + start + " must be before end " + end);
+        }
+        if (!cursor.isEmpty() && (cursor.compareTo(start) < 0 || !end.isEmpty() && cursor.compareTo(end) >= 0)) {
+            throw new IllegalArgumentException("Cursor " + cursor + " is outside of the range");
+        }
+        return new AssetMigration(parsed, from, to, start, end, cursor, maxRecords);
+    }
+
+    /**
+     * Returns the IMSIs of this chunk: the next maxRecords index entries of the old value after the cursor.
+     */
+    Chunk scan(final TransactionCache cache) {
+        List<String> imsis = new ArrayList<>();
+        boolean more = false;
+        try (QueryResultsIterator<KeyValue> results = cache.getStub()
+                .getPrivateDataByPartialCompositeKey(ASSET_COLLECTION_NAME, new CompositeKey(field.index, from))) {
+            for (KeyValue result : results) {
+                List<String> attributes = CompositeKey.parseCompositeKey(result.getKey()).getAttributes();
+                String imsi = attributes.get(attributes.size() - 1);
+                if (imsi.compareTo(start) < 0 || !cursor.isEmpty() && imsi.compareTo(cursor) <= 0) {
+                    continue;
+                }
+                if (!end.isEmpty() && imsi.compareTo(end) >= 0) {
+                    break;
+                }
+                if (imsis.size() == maxRecords) {
+                    more = true;
+                    break;
+                }
+                imsis.add(imsi);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to close index query " + field.index, e);
+        }
+        return new Chunk(imsis, more ? imsis.get(imsis.size() - 1) : "");
+    }
+
+    /**
+     * Returns the asset moved to the new value, or null if it no longer has the old one.
+     */
+    Asset apply(final Asset asset) {
+        switch (field) {
+            case OPERATOR:
+                return from.equals(asset.getOperator())
+                        ? new Asset(asset.getImsi(), to, asset.getHomeNetwork(), asset.getBackupNetwork()) : null;
+            case HOME_NETWORK:
+                return from.equals(asset.getHomeNetwork().getNetID())
+                        ? asset.withNetworks(Network.reference(to), asset.getBackupNetwork()) : null;
+            default:
+                return from.equals(asset.getBackupNetwork().getNetID())
+                        ? asset.withNetworks(asset.getHomeNetwork(), Network.reference(to)) : null;
+        }
+    }
+
+    private static void requireImsiPrefix(final String field, final String value) {
+        if (!value.isEmpty() && (value.length() > 15 || !BinaryCodec.isDigits(value, 0, value.length()))) {
+            throw new IllegalArgumentException(field + " must be at most 15 digits");
+        }
+    }
+
+    /**
+     * The IMSIs taken by a chunk and the cursor of the next one, empty if there is none.
+     */
+    static final class Chunk {
+        private final List<String> imsis;
+        private final String next;
+
+        Chunk(final List<String> imsis, final String next) {
+            this.imsis = imsis;
+            this.next = next;
+        }
+
+        List<String> getImsis() {
+            return imsis;
+        }
+
+        String getNext() {
+            return next;
+        }
+    }
+}
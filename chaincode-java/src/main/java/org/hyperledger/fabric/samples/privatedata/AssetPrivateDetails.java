@@ -3,29 +3,44 @@ package org.hyperledger.fabric.samples.privatedata;
 import org.hyperledger.fabric.contract.annotation.DataType;
 import org.hyperledger.fabric.contract.annotation.Property;
 import org.hyperledger.fabric.shim.ChaincodeException;
-import org.json.JSONObject;
-
-import java.util.HashMap;
-import java.util.Map;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+/**
+ * The private half of a subscriber record, held in the org collection.
+ *
+ * Details that reference a profile are stored without their slice: the stored
+ * value holds the IMSI, the profile hash, the security context and the
+ * subscriber AMBR when it differs from the profile's session AMBR. Read from
+ * the ledger, such details have no slice until {@link ProfileStore#resolve}
+ * fills it in. Details without a profile keep the whole slice, as records
+ * written before profiles did.
+ */
 @DataType
 public final class AssetPrivateDetails {
     @Property()
     private final String imsi;
 
     @Property()
-    private final Map<String, Object> slice;
+    private final String profile;
+
+    @Property()
+    private final Slice slice;
 
     @Property()
-    private final Map<String, Object> ambr;
+    private final Ambr ambr;
 
     @Property()
-    private final Map<String, Object> security;
+    private final SecurityContext security;
 
-    public AssetPrivateDetails(final String imsi, final Map<String, Object> slice, final Map<String, Object> ambr, final Map<String, Object> security) {
+    public AssetPrivateDetails(final String imsi, final Slice slice, final Ambr ambr, final SecurityContext security) {
+        this(imsi, null, slice, ambr, security);
+    }
+
+    AssetPrivateDetails(final String imsi, final String profile, final Slice slice, final Ambr ambr,
+            final SecurityContext security) {
         this.imsi = imsi;
+        this.profile = profile;
         this.slice = slice;
         this.ambr = ambr;
         this.security = security;
@@ -35,65 +50,227 @@ public final class AssetPrivateDetails {
         return imsi;
     }
 
-    public Map<String, Object> getSlice() {
+    /**
+     * Returns the hash of the slice profile these details reference, or null if the slice is embedded.
+     */
+    public String getProfile() {
+        return profile;
+    }
+
+    public Slice getSlice() {
         return slice;
     }
 
-    public Map<String, Object> getAmbr() {
+    public Ambr getAmbr() {
         return ambr;
     }
 
-    public Map<String, Object> getSecurity() {
+    public SecurityContext getSecurity() {
         return security;
     }
 
+    /**
+     * Returns a copy of these details with a different, embedded slice.
+     */
+    public AssetPrivateDetails withSlice(final Slice newSlice) {
+        return new AssetPrivateDetails(imsi, null, newSlice, ambr, security);
+    }
+
+    /**
+     * Returns a copy of these details referencing a profile, whose slice is newSlice.
+     */
+    AssetPrivateDetails withProfile(final String newProfile, final Slice newSlice) {
+        Ambr subscriberAmbr = ambr != null ? ambr : newSlice.getSession().getAmbr();
+        return new AssetPrivateDetails(imsi, newProfile, newSlice, subscriberAmbr, security);
+    }
+
+    /**
+     * Returns a copy of these details with a different security context.
+     */
+    public AssetPrivateDetails withSecurity(final SecurityContext newSecurity) {
+        return new AssetPrivateDetails(imsi, profile, slice, ambr, newSecurity);
+    }
+
+    /**
+     * Returns the AMBR to store, or null if it is the profile's session AMBR.
+     */
+    Ambr getStoredAmbr() {
+        if (profile != null && slice != null && slice.getSession().getAmbr().equals(ambr)) {
+            return null;
+        }
+        return ambr;
+    }
+
     //serialize
     public byte[] serialize() {
-        String jsonStr = new JSONObject(this).toString();
-        return jsonStr.getBytes(UTF_8);
+        long start = ContractMetrics.startSerialization();
+        try {
+            byte[] value = StorageFormat.current() == StorageFormat.BINARY ? BinaryCodec.encode(this) : serializeJson();
+            return ValueCompression.compress(value);
+        } finally {
+            ContractMetrics.recordSerialization(start);
+        }
+    }
+
+    byte[] serializeJson() {
+        JsonWriter writer = new JsonWriter(512);
+        write(writer, profile == null, getStoredAmbr());
+        return writer.toBytes();
+    }
+
+    /**
+     * Writes these details as returned to clients, with the slice when it is known.
+     */
+    void write(final JsonWriter writer) {
+        write(writer, true, ambr);
+    }
+
+    // the security object is always written last, see patchSqn
+    private void write(final JsonWriter writer, final boolean withSlice, final Ambr writtenAmbr) {
+        writer.beginObject().name("imsi").value(imsi);
+        if (profile != null) {
+            writer.name("profile").value(profile);
+        }
+        if (withSlice && slice != null) {
+            writer.name("slice");
+            slice.write(writer);
+        }
+        if (writtenAmbr != null) {
+            writer.name("ambr");
+            writtenAmbr.write(writer);
+        }
+        writer.name("security");
+        security.write(writer);
+        writer.endObject();
+    }
+
+    /**
+     * Replaces the sequence number in stored private details.
+     *
+     * Values written by {@link #serialize} in the current storage format end with
+     * the sqn, which has a fixed width in both formats, so it is overwritten in a
+     * copy of the stored bytes without decoding the rest of the record. A value
+     * compressed with the current dictionary is patched in between decompressing
+     * and compressing it again. Other values are decoded and written again,
+     * which also migrates them.
+     */
+    static byte[] patchSqn(final byte[] stored, final long sqn) {
+        if (ValueCompression.dictionaryOf(stored) == ValueCompression.current()) {
+            byte[] value = ValueCompression.decompress(stored);
+            byte[] patched = StorageFormat.current() == StorageFormat.BINARY
+                    ? BinaryCodec.patchSqn(value, sqn) : patchJsonSqn(value, sqn);
+            if (patched != null) {
+                return ValueCompression.compress(patched);
+            }
+        }
+        AssetPrivateDetails details = deserialize(stored);
+        return details.withSecurity(details.getSecurity().withSqn(sqn)).serialize();
+    }
+
+    // JSON values end with "sqn":"<12 hex digits>"}}, the security object and the record closing
+    private static byte[] patchJsonSqn(final byte[] stored, final long sqn) {
+        byte[] head = "\"sqn\":\"".getBytes(UTF_8);
+        byte[] tail = "\"}}".getBytes(UTF_8);
+        int at = stored.length - tail.length - SecurityContext.SQN_HEX_LENGTH;
+        if (at - head.length < 1 || stored[0] != '{' || stored[at - head.length - 1] != ',') {
+            return null;
+        }
+        for (int i = 0; i < head.length; i++) {
+            if (stored[at - head.length + i] != head[i]) {
+                return null;
+            }
+        }
+        for (int i = 0; i < tail.length; i++) {
+            if (stored[stored.length - tail.length + i] != tail[i]) {
+                return null;
+            }
+        }
+        for (int i = at; i < at + SecurityContext.SQN_HEX_LENGTH; i++) {
+            if (Character.digit(stored[i], 16) < 0) {
+                return null;
+            }
+        }
+        byte[] patched = stored.clone();
+        byte[] hex = SecurityContext.formatSqn(sqn).getBytes(UTF_8);
+        System.arraycopy(hex, 0, patched, at, hex.length);
+        return patched;
     }
 
     public static AssetPrivateDetails deserialize(final byte[] assetJSON) {
-        return deserialize(new String(assetJSON, UTF_8));
+        long start = ContractMetrics.startSerialization();
+        try {
+            byte[] value = ValueCompression.decompress(assetJSON);
+            if (BinaryCodec.isBinary(value)) {
+                return BinaryCodec.decodeDetails(value);
+            }
+            return deserialize(new JsonReader(value));
+        } finally {
+            ContractMetrics.recordSerialization(start);
+        }
     }
 
     public static AssetPrivateDetails deserialize(final String assetJSON) {
+        return deserialize(new JsonReader(assetJSON));
+    }
+
+    private static AssetPrivateDetails deserialize(final JsonReader reader) {
         try {
-            JSONObject json = new JSONObject(assetJSON);
-            final String imsi = json.getString("imsi");
-
-            Map<String, Integer> arp = new HashMap<>();
-            arp.put("priority_level", json.getJSONObject("slice").getJSONObject("session").getJSONObject("qos").getJSONObject("arp").getInt("priority_level"));
-            arp.put("pre_emption_capability", json.getJSONObject("slice").getJSONObject("session").getJSONObject("qos").getJSONObject("arp").getInt("pre_emption_capability"));
-            arp.put("pre_emption_vulnerability", json.getJSONObject("slice").getJSONObject("session").getJSONObject("qos").getJSONObject("arp").getInt("pre_emption_vulnerability"));
-            Qos qos = new Qos();
-            qos.setArp(arp);
-            qos.setIndex(json.getJSONObject("slice").getJSONObject("session").getJSONObject("qos").getInt("index"));
-            Map<String, Object> ambr = new HashMap<>();
-            ambr.put("uplink", json.getJSONObject("slice").getJSONObject("session").getJSONObject("ambr").getString("uplink"));
-            ambr.put("downlink", json.getJSONObject("slice").getJSONObject("session").getJSONObject("ambr").getString("downlink"));
-
-            Session session = new Session();
-            session.setAmbr(ambr);
-            session.setName(json.getJSONObject("slice").getJSONObject("session").getString("name"));
-            session.setType(json.getJSONObject("slice").getJSONObject("session").getInt("type"));
-            session.setPcc_rule(json.getJSONObject("slice").getJSONObject("session").getString("pcc_rule"));
-            session.setQos(qos);
-
-            Map<String, Object> slice = new HashMap<>();
-            slice.put("sst", json.getJSONObject("slice").getInt("sst"));
-            slice.put("default_indicator", json.getJSONObject("slice").getBoolean("default_indicator"));
-            slice.put("session", session);
-
-            Map<String, Object> security = new HashMap<>();
-            security.put("k", json.getJSONObject("security").getString("k"));
-            security.put("amf", json.getJSONObject("security").getString("amf"));
-            security.put("opc", json.getJSONObject("security").getString("opc"));
-            security.put("sqn", json.getJSONObject("security").getString("sqn"));
-
-            return new AssetPrivateDetails(imsi, slice, ambr, security);
+            String imsi = null;
+            String profile = null;
+            Slice slice = null;
+            Ambr ambr = null;
+            SecurityContext security = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "imsi":
+                        imsi = reader.nextString();
+                        break;
+                    case "profile":
+                        profile = reader.nextString();
+                        break;
+                    case "slice":
+                        slice = Slice.read(reader);
+                        break;
+                    case "ambr":
+                        ambr = Ambr.read(reader);
+                        break;
+                    case "security":
+                        security = SecurityContext.read(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            return create(imsi, profile, slice, ambr, security);
         } catch (Exception e) {
             throw new ChaincodeException("Deserialize error: " + e.getMessage(), "DATA_ERROR");
         }
     }
+
+    /**
+     * Creates private details from decoded fields, failing if a required one is missing.
+     */
+    static AssetPrivateDetails create(final String imsi, final Slice slice, final Ambr ambr, final SecurityContext security) {
+        return create(imsi, null, slice, ambr, security);
+    }
+
+    /**
+     * Creates private details from decoded fields; the slice may only be missing
+     * when a profile is referenced, and the AMBR is then left out until it is resolved.
+     */
+    static AssetPrivateDetails create(final String imsi, final String profile, final Slice slice, final Ambr ambr,
+            final SecurityContext security) {
+        if (profile == null) {
+            Asset.require(slice, "slice");
+        }
+        // older records, and profile records, are read with the session ambr as the top level ambr
+        Ambr topLevelAmbr = ambr != null || slice == null ? ambr : slice.getSession().getAmbr();
+        return new AssetPrivateDetails(Asset.require(imsi, "imsi"), profile, slice, topLevelAmbr,
+                Asset.require(security, "security"));
+    }
 }
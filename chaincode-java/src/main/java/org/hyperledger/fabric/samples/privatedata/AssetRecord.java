@@ -0,0 +1,88 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+/**
+ * The public and private halves of one asset_properties record.
+ */
+final class AssetRecord {
+    private final Asset asset;
+    private final AssetPrivateDetails details;
+
+    AssetRecord(final Asset asset, final AssetPrivateDetails details) {
+        this.asset = asset;
+        this.details = details;
+    }
+
+    Asset getAsset() {
+        return asset;
+    }
+
+    AssetPrivateDetails getDetails() {
+        return details;
+    }
+
+    static AssetRecord parse(final String json) {
+        long start = ContractMetrics.startSerialization();
+        try {
+            return read(json);
+        } finally {
+            ContractMetrics.recordSerialization(start);
+        }
+    }
+
+    private static AssetRecord read(final String json) {
+        String imsi = null;
+        String operator = null;
+        Network homeNetwork = null;
+        Network backupNetwork = null;
+        Slice slice = null;
+        Ambr ambr = null;
+        SecurityContext security = null;
+
+        JsonReader reader = new JsonReader(json);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "imsi":
+                    imsi = reader.nextString();
+                    break;
+                case "operator":
+                    operator = reader.nextString();
+                    break;
+                case "homeNetwork":
+                    homeNetwork = Network.read(reader);
+                    break;
+                case "backupNetwork":
+                    backupNetwork = Network.read(reader);
+                    break;
+                case "slice":
+                    slice = Slice.read(reader);
+                    break;
+                case "ambr":
+                    ambr = Ambr.read(reader);
+                    break;
+                case "security":
+                    security = SecurityContext.read(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        reader.endDocument();
+
+        Asset asset = Asset.create(imsi, operator, homeNetwork, backupNetwork);
+        AssetPrivateDetails details = AssetPrivateDetails.create(imsi, slice, Asset.require(ambr, "ambr"), security);
+        return new AssetRecord(asset, details);
+    }
+
+    /**
+     * Returns null if the record is valid, otherwise every violation in one message.
+     */
+    String validate() {
+        return AssetValidator.ASSET_PROPERTIES.validate(this);
+    }
+}
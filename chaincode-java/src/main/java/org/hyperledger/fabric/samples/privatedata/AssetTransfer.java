@@ -10,9 +10,15 @@ import org.hyperledger.fabric.contract.annotation.License;
 import org.hyperledger.fabric.contract.annotation.Default;
 import org.hyperledger.fabric.contract.annotation.Transaction;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -34,123 +40,206 @@ public final class AssetTransfer implements ContractInterface {
     static final String ASSET_COLLECTION_NAME = "assetCollection";
     static final String AGREEMENT_KEYPREFIX = "transferAgreement";
 
+    private static final ContractLogger LOG = ContractLogger.get(AssetTransfer.class);
+
     private enum AssetTransferErrors {
         INCOMPLETE_INPUT,
         INVALID_ACCESS,
         ASSET_NOT_FOUND,
-        ASSET_ALREADY_EXISTS
+        ASSET_ALREADY_EXISTS,
+        PROFILE_NOT_FOUND,
+        NETWORK_NOT_FOUND,
+        NETWORK_ALREADY_EXISTS,
+        NETWORK_CONFLICT
+    }
+
+    /**
+     * Creates an {@link AssetContext}, which caches identity lookups and ledger
+     * reads for the lifetime of a single transaction.
+     */
+    @Override
+    public Context createContext(final ChaincodeStub stub) {
+        return new AssetContext(stub);
+    }
+
+    /**
+     * Starts timing the transaction for {@link ContractMetrics}.
+     */
+    @Override
+    public void beforeTransaction(final Context ctx) {
+        if (ctx instanceof AssetContext) {
+            ((AssetContext) ctx).getMeteredStub().begin();
+        }
+    }
+
+    /**
+     * Records the transaction in {@link ContractMetrics}. Not called when the transaction
+     * throws; the next transaction on the thread then records it as failed.
+     */
+    @Override
+    public void afterTransaction(final Context ctx, final Object result) {
+        if (ctx instanceof AssetContext) {
+            ((AssetContext) ctx).getMeteredStub().finish();
+        }
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public Asset CreateAsset(final Context ctx) {
-        ChaincodeStub stub = ctx.getStub();
-        Map<String, byte[]> transientMap = ctx.getStub().getTransient();
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        Map<String, byte[]> transientMap = cache.getTransient();
         if (!transientMap.containsKey("asset_properties")) {
             String errorMessage = String.format("CreateAsset call must specify asset_properties in Transient map input");
-            System.err.println(errorMessage);
+            LOG.warn(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
         }
 
         byte[] transientAssetJSON = transientMap.get("asset_properties");
-        //Asset
-        final String imsi;
-        final String operator;
-        final Map<String, Object> homeNetwork;
-        final Map<String, Object> backupNetwork;
-        //AssetPrivate
-        final Map<String, Object> slice;
-        final Map<String, Object> ambr;
-        final Map<String, Object> security;
-
+        AssetRecord record;
         try {
-            JSONObject json = new JSONObject(new String(transientAssetJSON, UTF_8));
-            imsi = json.getString("imsi");
-            operator = json.getString("operator");
-            homeNetwork = json.getJSONObject("homeNetwork").toMap();
-            backupNetwork = json.getJSONObject("backupNetwork").toMap();
-            slice = json.getJSONObject("slice").toMap();
-            ambr = json.getJSONObject("ambr").toMap();
-            security = json.getJSONObject("security").toMap();
+            record = AssetRecord.parse(new String(transientAssetJSON, UTF_8));
         } catch (Exception err) {
             String errorMessage = String.format("TransientMap deserialized error: %s ", err);
-            System.err.println(errorMessage);
+            LOG.warn(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
         }
 
-        String errorMessage = null;
-        if (imsi.equals("")) {
-            errorMessage = String.format("Empty input in Transient map: imsi");
-        }
-
-        if (operator.equals("")) {
-            errorMessage = String.format("Empty input in Transient map: operator");
-        }
-
-        if (homeNetwork.isEmpty()) {
-            errorMessage = String.format("Empty input in Transient map: homeNetwork");
-        }
-
-        if (backupNetwork.isEmpty()) {
-            errorMessage = String.format("Empty input in Transient map: backupNetwork");
-        }
-
-        if (slice.isEmpty()) {
-            errorMessage = String.format("Empty input in Transient map: slice");
-        }
-
-        if (ambr.isEmpty()) {
-            errorMessage = String.format("Empty input in Transient map: ambr");
-        }
-
-        if (security.isEmpty()) {
-            errorMessage = String.format("Empty input in Transient map: security");
+        // Reject invalid and unauthorized requests before any ledger access
+        String errorMessage = record.validate();
+        if (errorMessage != null) {
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
         }
+        verifyClientOrgMatchesPeerOrg(cache);
 
-        Asset asset = new Asset(imsi, operator, homeNetwork, backupNetwork);
+        Asset asset = record.getAsset();
+        String imsi = asset.getImsi();
         /*
         * check if the asset already exit
         * the parameter can be cllection name and a key
         * */
-        byte[] assetJSON = ctx.getStub().getPrivateData(ASSET_COLLECTION_NAME, imsi);
-        if (assetJSON != null && assetJSON.length > 0) {
+        if (cache.exists(ASSET_COLLECTION_NAME, imsi)) {
             errorMessage = String.format("Asset %s already exists", imsi);
-            System.err.println(errorMessage);
+            LOG.warn(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
         }
 
+        // Get collection name for this organization.
+        String orgCollectionName = getCollectionName(cache);
 
-        /*
-        * String clientID = ctx.getClientIdentity().getId();
-        * clientID ?
-        * */
+        // Make submitting client the owner, its networks kept in the network registry
+        LOG.debug("CreateAsset Put: collection %s, ID %s", ASSET_COLLECTION_NAME, imsi);
+        Asset stored = storeNetworks(cache, asset);
+        byte[] assetValue = stored.serialize();
+        cache.putPrivateData(ASSET_COLLECTION_NAME, imsi, assetValue);
+        AssetIndex.add(cache, stored);
 
-        // Get collection name for this organization.
-        String orgCollectionName = getCollectionName(ctx);
+        // Save AssetPrivateDetails to org collection, its slice as a shared profile
+        LOG.debug("Put AssetPrivateDetails: collection %s, ID %s", orgCollectionName, imsi);
+        byte[] detailsValue = storeProfile(cache, orgCollectionName, record.getDetails()).serialize();
+        cache.putPrivateData(orgCollectionName, imsi, detailsValue);
 
-        verifyClientOrgMatchesPeerOrg(ctx);
+        new ChangeEvent(orgCollectionName).add(ChangeEvent.Operation.CREATE, imsi, assetValue, detailsValue).emit(cache);
+        return cache.getNetworks().expand(stored);
+    }
 
-        // Make submitting client the owner
-        System.out.printf("CreateAsset Put: collection %s, ID %s\n", ASSET_COLLECTION_NAME, imsi);
-        System.out.printf("Put: collection %s, ID %s\n", ASSET_COLLECTION_NAME, new String(asset.serialize()));
-        stub.putPrivateData(ASSET_COLLECTION_NAME, imsi, asset.serialize());
 
-        // Save AssetPrivateDetails to org collection
-        AssetPrivateDetails assetPriv = new AssetPrivateDetails(imsi, slice, ambr, security);
-        System.out.printf("Put AssetPrivateDetails: collection %s, ID %s\n", orgCollectionName, imsi);
-        stub.putPrivateData(orgCollectionName, imsi, assetPriv.serialize());
+    /**
+     * Creates a batch of assets in a single transaction.
+     *
+     * The transient map entry "assets_properties" holds either a JSON array of
+     * asset_properties records or NDJSON (one record per line). Every record is
+     * validated and checked for existence on its own, so a bad record is reported
+     * in the result instead of failing the whole batch.
+     *
+     * @param ctx the transaction context
+     * @return JSON summary with a per-record status
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String CreateAssets(final Context ctx) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        Map<String, byte[]> transientMap = cache.getTransient();
+        if (!transientMap.containsKey("assets_properties")) {
+            String errorMessage = String.format("CreateAssets call must specify assets_properties in Transient map input");
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
 
+        List<String> records;
+        try {
+            records = parseBatch(new String(transientMap.get("assets_properties"), UTF_8));
+        } catch (Exception err) {
+            String errorMessage = String.format("TransientMap deserialized error: %s ", err);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
 
-        return asset;
-    }
+        // Authorization applies to the whole batch, not to single records
+        verifyClientOrgMatchesPeerOrg(cache);
+        String orgCollectionName = getCollectionName(cache);
 
+        JSONArray results = new JSONArray();
+        // one event for the whole batch
+        ChangeEvent event = new ChangeEvent(orgCollectionName);
+        Set<String> seen = new HashSet<>();
+        int created = 0;
+        for (int i = 0; i < records.size(); i++) {
+            JSONObject result = new JSONObject();
+            result.put("index", i);
+            try {
+                AssetRecord record = AssetRecord.parse(records.get(i));
+                result.put("imsi", record.getAsset().getImsi());
+
+                String errorMessage = record.validate();
+                if (errorMessage != null) {
+                    throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+                }
+                String imsi = record.getAsset().getImsi();
+                if (!seen.add(imsi)) {
+                    throw new ChaincodeException(String.format("Asset %s is duplicated in batch", imsi),
+                            AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+                }
+                if (cache.exists(ASSET_COLLECTION_NAME, imsi)) {
+                    throw new ChaincodeException(String.format("Asset %s already exists", imsi),
+                            AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+                }
+
+                Asset stored = storeNetworks(cache, record.getAsset());
+                byte[] assetValue = stored.serialize();
+                byte[] detailsValue = storeProfile(cache, orgCollectionName, record.getDetails()).serialize();
+                cache.putPrivateData(ASSET_COLLECTION_NAME, imsi, assetValue);
+                AssetIndex.add(cache, stored);
+                cache.putPrivateData(orgCollectionName, imsi, detailsValue);
+                event.add(ChangeEvent.Operation.CREATE, imsi, assetValue, detailsValue);
+                result.put("status", "CREATED");
+                created++;
+            } catch (ChaincodeException err) {
+                result.put("status", "FAILED");
+                result.put("error", new String(err.getPayload(), UTF_8));
+                result.put("message", err.getMessage());
+            } catch (Exception err) {
+                result.put("status", "FAILED");
+                result.put("error", AssetTransferErrors.INCOMPLETE_INPUT.toString());
+                result.put("message", String.format("TransientMap deserialized error: %s ", err));
+            }
+            results.put(result);
+        }
+
+        LOG.info("CreateAssets: collection %s, created %d of %d", ASSET_COLLECTION_NAME, created, records.size());
+        event.emit(cache);
+        JSONObject summary = new JSONObject();
+        summary.put("created", created);
+        summary.put("failed", records.size() - created);
+        summary.put("results", results);
+        return summary.toString();
+    }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public void DeleteAsset(final Context ctx) {
-        ChaincodeStub stub = ctx.getStub();
-        Map<String, byte[]> transientMap = ctx.getStub().getTransient();
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        Map<String, byte[]> transientMap = cache.getTransient();
         if (!transientMap.containsKey("asset_delete")) {
             String errorMessage = String.format("DeleteAsset call must specify 'asset_delete' in Transient map input");
-            System.err.println(errorMessage);
+            LOG.warn(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
         }
 
@@ -163,84 +252,996 @@ public final class AssetTransfer implements ContractInterface {
 
         } catch (Exception err) {
             String errorMessage = String.format("TransientMap deserialized error: %s ", err);
-            System.err.println(errorMessage);
+            LOG.warn(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
         }
 
-        System.out.printf("DeleteAsset: verify asset %s exists\n", imsi);
-        byte[] assetJSON = stub.getPrivateData(ASSET_COLLECTION_NAME, imsi);
+        // Reject invalid and unauthorized requests before any ledger access
+        String invalid = AssetValidator.ASSET_DELETE.validate(imsi);
+        if (invalid != null) {
+            LOG.warn(invalid);
+            throw new ChaincodeException(invalid, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        verifyClientOrgMatchesPeerOrg(cache);
 
-        if (assetJSON == null || assetJSON.length == 0) {
+        LOG.debug("DeleteAsset: verify asset %s exists", imsi);
+        // the value is needed to find the index entries
+        byte[] assetJSON = cache.getPrivateData(ASSET_COLLECTION_NAME, imsi);
+        if (assetJSON == null) {
             String errorMessage = String.format("Asset %s does not exist", imsi);
-            System.err.println(errorMessage);
+            LOG.warn(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        String ownersCollectionName = getCollectionName(ctx);
-        byte[] apdJSON = stub.getPrivateData(ownersCollectionName, imsi);
-
-        if (apdJSON == null || apdJSON.length == 0) {
+        String ownersCollectionName = getCollectionName(cache);
+        if (!cache.exists(ownersCollectionName, imsi)) {
             String errorMessage = String.format("Failed to read asset from owner's Collection %s", ownersCollectionName);
-            System.err.println(errorMessage);
+            LOG.warn(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
-        verifyClientOrgMatchesPeerOrg(ctx);
 
         // delete the key from asset collection
-        System.out.printf("DeleteAsset: collection %s, ID %s\n", ASSET_COLLECTION_NAME, imsi);
-        stub.delPrivateData(ASSET_COLLECTION_NAME, imsi);
+        LOG.debug("DeleteAsset: collection %s, ID %s", ASSET_COLLECTION_NAME, imsi);
+        cache.delPrivateData(ASSET_COLLECTION_NAME, imsi);
+        AssetIndex.remove(cache, Asset.deserialize(assetJSON));
 
-        // Finally, delete private details of asset
-        stub.delPrivateData(ownersCollectionName, imsi);
+        // Finally, delete private details of asset and its pending sqn increments
+        cache.delPrivateData(ownersCollectionName, imsi);
+        SqnDeltas.find(cache, ownersCollectionName, imsi).clear(cache, ownersCollectionName);
 
+        new ChangeEvent(ownersCollectionName).add(ChangeEvent.Operation.DELETE, imsi, null, null).emit(cache);
     }
 
+    /**
+     * Sets the authentication sequence number of an asset.
+     *
+     * The transient map entry "asset_sqn" holds {"imsi":..., "sqn":"hex"}. Only
+     * the caller's private details are written, and the sqn is replaced in the
+     * stored value without rewriting the rest of the record. The new value
+     * replaces the pending {@link #AdvanceSqn} increments, which are deleted; an
+     * increment committed in the same block is kept and added to the new value.
+     *
+     * @param ctx the transaction context
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public void UpdateSqn(final Context ctx) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        AssetUpdate update = readUpdate(cache, "asset_sqn", "UpdateSqn");
+        if (update.getSqn() == null) {
+            String errorMessage = "UpdateSqn call must specify sqn in asset_sqn";
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        verifyClientOrgMatchesPeerOrg(cache);
+
+        String ownersCollectionName = getCollectionName(cache);
+        byte[] stored = readOwnedDetails(cache, ownersCollectionName, update.getImsi());
+        LOG.debug("UpdateSqn: collection %s, ID %s", ownersCollectionName, update.getImsi());
+        byte[] patched = AssetPrivateDetails.patchSqn(stored, update.getSqn());
+        cache.putPrivateData(ownersCollectionName, update.getImsi(), patched);
+        SqnDeltas.find(cache, ownersCollectionName, update.getImsi()).clear(cache, ownersCollectionName);
+
+        new ChangeEvent(ownersCollectionName).add(ChangeEvent.Operation.UPDATE_SQN, update.getImsi(), null, patched)
+                .emit(cache);
+    }
+
+    /**
+     * Increments the authentication sequence number of an asset without reading it.
+     *
+     * The transient map entry "asset_sqn_delta" holds {"imsi":..., "delta":n}, delta
+     * defaulting to 1. The increment is written under a key of its own, so
+     * concurrent calls for the same subscriber do not conflict. Reads add the
+     * pending increments to the stored sqn until {@link #CompactSqn} folds them in.
+     * The asset is not checked for existence; increments for an unknown IMSI are
+     * dropped by CompactSqn.
+     *
+     * @param ctx the transaction context
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public void AdvanceSqn(final Context ctx) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        AssetUpdate update = readUpdate(cache, "asset_sqn_delta", "AdvanceSqn");
+        verifyClientOrgMatchesPeerOrg(cache);
+
+        String ownersCollectionName = getCollectionName(cache);
+        long delta = update.getDelta() != null ? update.getDelta() : 1L;
+        LOG.debug("AdvanceSqn: collection %s, ID %s", ownersCollectionName, update.getImsi());
+        SqnDeltas.add(cache, ownersCollectionName, update.getImsi(), delta);
+
+        // the stored details are unchanged, so there is no hash to report
+        new ChangeEvent(ownersCollectionName).add(ChangeEvent.Operation.ADVANCE_SQN, update.getImsi(), null, null)
+                .emit(cache);
+    }
+
+    /**
+     * Folds the pending sqn increments of an asset into its private details.
+     *
+     * The transient map entry "asset_compact" holds {"imsi":...}. Meant to run
+     * periodically. Only the increments found by its range scan are folded in and
+     * deleted. Peers do not validate private data range reads at commit, so an
+     * AdvanceSqn for the same subscriber that commits in the same block does not
+     * conflict with it: its increment stays pending until the next compaction.
+     *
+     * @param ctx the transaction context
+     * @return the sqn after compaction as a hex string, or null if only orphaned increments were removed
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String CompactSqn(final Context ctx) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        AssetUpdate update = readUpdate(cache, "asset_compact", "CompactSqn");
+        verifyClientOrgMatchesPeerOrg(cache);
+
+        String ownersCollectionName = getCollectionName(cache);
+        String imsi = update.getImsi();
+        SqnDeltas deltas = SqnDeltas.find(cache, ownersCollectionName, imsi);
+        if (cache.getPrivateData(ownersCollectionName, imsi) == null && !deltas.isEmpty()) {
+            LOG.warn("CompactSqn: removing %s increments of unknown asset %s", deltas.size(), imsi);
+            deltas.clear(cache, ownersCollectionName);
+            return null;
+        }
+        byte[] stored = readOwnedDetails(cache, ownersCollectionName, imsi);
+
+        long sqn = deltas.applyTo(AssetPrivateDetails.deserialize(stored).getSecurity().sqnValue());
+        if (!deltas.isEmpty()) {
+            LOG.debug("CompactSqn: collection %s, ID %s", ownersCollectionName, imsi);
+            byte[] patched = AssetPrivateDetails.patchSqn(stored, sqn);
+            cache.putPrivateData(ownersCollectionName, imsi, patched);
+            deltas.clear(cache, ownersCollectionName);
+            new ChangeEvent(ownersCollectionName).add(ChangeEvent.Operation.COMPACT_SQN, imsi, null, patched).emit(cache);
+        }
+        return SecurityContext.formatSqn(sqn);
+    }
+
+    /**
+     * Replaces the home and/or backup network of an asset.
+     *
+     * The transient map entry "asset_network" holds {"imsi":..., "homeNetwork":{...},
+     * "backupNetwork":{...}}, with at least one of the networks. A network is either
+     * {"netID":...}, naming a registered network, or a full network, which is
+     * registered if its netID is new and must otherwise equal the registered one.
+     * Only the public asset and the netID~imsi index entries that changed are written.
+     *
+     * @param ctx the transaction context
+     * @return the updated asset, with its networks expanded
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Asset UpdateNetwork(final Context ctx) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        AssetUpdate update = readUpdate(cache, "asset_network", "UpdateNetwork");
+        if (update.getHomeNetwork() == null && update.getBackupNetwork() == null) {
+            String errorMessage = "UpdateNetwork call must specify homeNetwork or backupNetwork in asset_network";
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        String invalid = AssetValidator.ASSET_NETWORK.validate(update);
+        if (invalid != null) {
+            LOG.warn(invalid);
+            throw new ChaincodeException(invalid, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        verifyClientOrgMatchesPeerOrg(cache);
+
+        String imsi = update.getImsi();
+        byte[] assetJSON = cache.getPrivateData(ASSET_COLLECTION_NAME, imsi);
+        if (assetJSON == null) {
+            String errorMessage = String.format("Asset %s does not exist", imsi);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+        }
+        String ownersCollectionName = getCollectionName(cache);
+        if (!cache.exists(ownersCollectionName, imsi)) {
+            String errorMessage = String.format("Failed to read asset from owner's Collection %s", ownersCollectionName);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+        }
+
+        Asset before = Asset.deserialize(assetJSON);
+        if (update.getHomeNetwork() != null) {
+            checkNetwork(cache, update.getHomeNetwork());
+        }
+        if (update.getBackupNetwork() != null) {
+            checkNetwork(cache, update.getBackupNetwork());
+        }
+        // the networks of an asset written before the registry are registered when it is rewritten
+        NetworkRegistry networks = cache.getNetworks();
+        Asset after = before.withNetworks(
+                networks.reference(update.getHomeNetwork() != null ? update.getHomeNetwork() : before.getHomeNetwork()),
+                networks.reference(update.getBackupNetwork() != null
+                        ? update.getBackupNetwork() : before.getBackupNetwork()));
+        // Asset.equals only compares imsi and operator
+        if (after.getHomeNetwork().equals(before.getHomeNetwork())
+                && after.getBackupNetwork().equals(before.getBackupNetwork())) {
+            return networks.expand(before);
+        }
+        LOG.debug("UpdateNetwork: collection %s, ID %s", ASSET_COLLECTION_NAME, imsi);
+        byte[] assetValue = after.serialize();
+        cache.putPrivateData(ASSET_COLLECTION_NAME, imsi, assetValue);
+        AssetIndex.update(cache, before, after);
+
+        new ChangeEvent(ownersCollectionName).add(ChangeEvent.Operation.UPDATE_NETWORK, imsi, assetValue, null).emit(cache);
+        return networks.expand(after);
+    }
+
+    /**
+     * Moves one chunk of subscribers from an operator, home network or backup network to another.
+     *
+     * The transient map entry "asset_migration" holds {"field":"operator"|"homeNetwork"|"backupNetwork",
+     * "from":..., "to":..., "start":..., "end":..., "cursor":..., "maxRecords":n}. The subscribers
+     * still on "from" are found through the operator~imsi or netID~imsi index, limited to the IMSIs
+     * in [start, end) if given, and the next maxRecords of them after the cursor are rewritten in
+     * place, with their index entries. A new network must be registered. Only subscribers whose
+     * details are held in the caller's org collection are moved; the others are skipped. Call it
+     * again with the returned cursor until the cursor is empty; {@code MigrationDriver} in the
+     * client does that, fitting the chunk size to the transaction limits.
+     *
+     * @param ctx the transaction context
+     * @return {"migrated":n,"skipped":n,"cursor":"..."}, the cursor is empty after the last chunk
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String MigrateAssets(final Context ctx) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        byte[] payload = cache.getTransient().get("asset_migration");
+        if (payload == null) {
+            String errorMessage = "MigrateAssets call must specify asset_migration in Transient map input";
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        AssetMigration migration;
+        try {
+            migration = AssetMigration.parse(new String(payload, UTF_8));
+        } catch (Exception err) {
+            String errorMessage = String.format("TransientMap deserialized error: %s ", err);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        verifyClientOrgMatchesPeerOrg(cache);
+        if (migration.getField() != AssetMigration.Field.OPERATOR) {
+            checkNetwork(cache, Network.reference(migration.getTo()));
+        }
+
+        String ownersCollectionName = getCollectionName(cache);
+        AssetMigration.Chunk chunk = migration.scan(cache);
+        NetworkRegistry networks = cache.getNetworks();
+        ChangeEvent event = new ChangeEvent(ownersCollectionName);
+        int migrated = 0;
+        for (String imsi : chunk.getImsis()) {
+            byte[] assetJSON = cache.getPrivateData(ASSET_COLLECTION_NAME, imsi);
+            if (assetJSON == null || !cache.exists(ownersCollectionName, imsi)) {
+                continue;
+            }
+            Asset before = Asset.deserialize(assetJSON);
+            Asset after = migration.apply(before);
+            if (after == null) {
+                continue;
+            }
+            // the networks of an asset written before the registry are registered when it is rewritten
+            after = after.withNetworks(networks.reference(after.getHomeNetwork()),
+                    networks.reference(after.getBackupNetwork()));
+            byte[] assetValue = after.serialize();
+            cache.putPrivateData(ASSET_COLLECTION_NAME, imsi, assetValue);
+            AssetIndex.update(cache, before, after);
+            event.add(ChangeEvent.Operation.MIGRATE, imsi, assetValue, null);
+            migrated++;
+        }
+
+        int count = migrated;
+        LOG.info(() -> String.format("MigrateAssets: %s %s to %s, migrated %d of %d", migration.getField().getLabel(),
+                migration.getFrom(), migration.getTo(), count, chunk.getImsis().size()));
+        event.emit(cache);
+        return new JsonWriter(128).beginObject()
+                .name("migrated").value(migrated)
+                .name("skipped").value(chunk.getImsis().size() - migrated)
+                .name("cursor").value(chunk.getNext())
+                .endObject().toString();
+    }
+
+    /**
+     * Registers a home or backup network, for assets to reference by netID, owned by the org of the client.
+     *
+     * The transient map entry "network" holds {"netID":..., "netType":..., "cert":...,
+     * "ipEndPoint":{...}}, cert being optional.
+     *
+     * @param ctx the transaction context
+     * @return the registered network
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Network RegisterNetwork(final Context ctx) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        Network network = readNetwork(cache, "RegisterNetwork");
+        verifyClientOrgMatchesPeerOrg(cache);
+
+        String netID = network.getNetID();
+        if (cache.exists(ASSET_COLLECTION_NAME, NetworkRegistry.key(netID))) {
+            String errorMessage = String.format("Network %s is already registered", netID);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.NETWORK_ALREADY_EXISTS.toString());
+        }
+        LOG.debug("RegisterNetwork: collection %s, netID %s", ASSET_COLLECTION_NAME, netID);
+        cache.getNetworks().put(network);
+        return network;
+    }
+
+    /**
+     * Replaces a registered network, for instance with a new address or certificate.
+     *
+     * The transient map entry "network" holds the network, as for {@link #RegisterNetwork}.
+     * Only the org that registered the network may replace it, and its netType cannot
+     * change, since assets keep it in their references. This is a single write, however many assets reference the network, and the
+     * change is listed in the event so that caches of those assets are dropped.
+     *
+     * @param ctx the transaction context
+     * @return the registered network
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Network UpdateRegisteredNetwork(final Context ctx) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        Network network = readNetwork(cache, "UpdateRegisteredNetwork");
+        verifyClientOrgMatchesPeerOrg(cache);
+
+        String netID = network.getNetID();
+        NetworkRegistry networks = cache.getNetworks();
+        Network registered = networks.get(netID);
+        if (registered == null) {
+            String errorMessage = String.format("Network %s is not registered", netID);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.NETWORK_NOT_FOUND.toString());
+        }
+        String owner = networks.owner(netID);
+        if (owner != null && !owner.equals(cache.getClientMspId())) {
+            String errorMessage = String.format("Network %s is owned by org %s, not %s", netID, owner,
+                    cache.getClientMspId());
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
+        }
+        if (!registered.getNetType().equals(network.getNetType())) {
+            String errorMessage = String.format("Network %s has netType %s, which cannot change", netID,
+                    registered.getNetType());
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.NETWORK_CONFLICT.toString());
+        }
+        if (registered.equals(network)) {
+            return registered;
+        }
+        LOG.debug("UpdateRegisteredNetwork: collection %s, netID %s", ASSET_COLLECTION_NAME, netID);
+        byte[] networkValue = networks.put(network);
+
+        new ChangeEvent(getCollectionName(cache))
+                .addNetwork(ChangeEvent.Operation.UPDATE_REGISTERED_NETWORK, netID, networkValue).emit(cache);
+        return network;
+    }
+
+    /**
+     * Returns a registered network.
+     *
+     * @param ctx the transaction context
+     * @param netID the network ID
+     * @return the network, or null if it is not registered
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Network ReadNetwork(final Context ctx, final String netID) {
+        LOG.debug("ReadNetwork: collection %s, netID %s", ASSET_COLLECTION_NAME, netID);
+        return AssetContext.cacheOf(ctx).getNetworks().get(netID);
+    }
+
+    /**
+     * Replaces the QoS of an asset's default session.
+     *
+     * The transient map entry "asset_qos" holds {"imsi":..., "qos":{"index":...,"arp":{...}}}.
+     * Only the caller's private details are written, referencing the profile of
+     * the new slice, which is registered if no subscriber used it yet.
+     *
+     * @param ctx the transaction context
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public void UpdateQos(final Context ctx) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        AssetUpdate update = readUpdate(cache, "asset_qos", "UpdateQos");
+        if (update.getQos() == null) {
+            String errorMessage = "UpdateQos call must specify qos in asset_qos";
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        String invalid = AssetValidator.ASSET_QOS.validate(update);
+        if (invalid != null) {
+            LOG.warn(invalid);
+            throw new ChaincodeException(invalid, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        verifyClientOrgMatchesPeerOrg(cache);
+
+        String ownersCollectionName = getCollectionName(cache);
+        AssetPrivateDetails details = cache.getProfiles().resolve(ownersCollectionName,
+                AssetPrivateDetails.deserialize(readOwnedDetails(cache, ownersCollectionName, update.getImsi())));
+        Slice slice = details.getSlice();
+        AssetPrivateDetails updated = details.withSlice(slice.withSession(slice.getSession().withQos(update.getQos())));
+        LOG.debug("UpdateQos: collection %s, ID %s", ownersCollectionName, update.getImsi());
+        byte[] detailsValue = storeProfile(cache, ownersCollectionName, updated).serialize();
+        cache.putPrivateData(ownersCollectionName, update.getImsi(), detailsValue);
+
+        new ChangeEvent(ownersCollectionName).add(ChangeEvent.Operation.UPDATE_QOS, update.getImsi(), null, detailsValue)
+                .emit(cache);
+    }
+
+    /**
+     * Moves an asset to another registered slice profile.
+     *
+     * The transient map entry "asset_profile" holds {"imsi":..., "profile":"hash"}.
+     * The profile must exist in the caller's org collection. Only the caller's
+     * private details are written; the subscriber AMBR is kept if it differed
+     * from the old profile's session AMBR, and follows the new profile otherwise.
+     *
+     * @param ctx the transaction context
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public void UpdateProfile(final Context ctx) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        AssetUpdate update = readUpdate(cache, "asset_profile", "UpdateProfile");
+        if (update.getProfile() == null) {
+            String errorMessage = "UpdateProfile call must specify profile in asset_profile";
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        verifyClientOrgMatchesPeerOrg(cache);
+
+        String ownersCollectionName = getCollectionName(cache);
+        ProfileStore profiles = cache.getProfiles();
+        Slice slice = profiles.get(ownersCollectionName, update.getProfile());
+        if (slice == null) {
+            String errorMessage = String.format("Profile %s does not exist in collection %s", update.getProfile(),
+                    ownersCollectionName);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.PROFILE_NOT_FOUND.toString());
+        }
+        AssetPrivateDetails details = profiles.resolve(ownersCollectionName,
+                AssetPrivateDetails.deserialize(readOwnedDetails(cache, ownersCollectionName, update.getImsi())));
+        AssetPrivateDetails updated = new AssetPrivateDetails(details.getImsi(), details.getSlice(),
+                details.getStoredAmbr(), details.getSecurity()).withProfile(update.getProfile(), slice);
+        LOG.debug("UpdateProfile: collection %s, ID %s", ownersCollectionName, update.getImsi());
+        byte[] detailsValue = updated.serialize();
+        cache.putPrivateData(ownersCollectionName, update.getImsi(), detailsValue);
+
+        new ChangeEvent(ownersCollectionName).add(ChangeEvent.Operation.UPDATE_PROFILE, update.getImsi(), null,
+                detailsValue).emit(cache);
+    }
+
+    /**
+     * Registers a slice profile in the caller's org collection.
+     *
+     * The transient map entry "profile" holds a slice, {"sst":..., "default_indicator":...,
+     * "session":{...}}. Registering a profile that exists writes nothing.
+     *
+     * @param ctx the transaction context
+     * @return the profile hash, which subscribers reference
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String RegisterProfile(final Context ctx) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        byte[] payload = cache.getTransient().get("profile");
+        if (payload == null) {
+            String errorMessage = "RegisterProfile call must specify profile in Transient map input";
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        Slice slice;
+        try {
+            JsonReader reader = new JsonReader(payload);
+            slice = Slice.read(reader);
+            reader.endDocument();
+        } catch (Exception err) {
+            String errorMessage = String.format("TransientMap deserialized error: %s ", err);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        String errorMessage = AssetValidator.PROFILE.validate(slice);
+        if (errorMessage != null) {
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        verifyClientOrgMatchesPeerOrg(cache);
+
+        String collection = getCollectionName(cache);
+        String hash = cache.getProfiles().register(collection, slice);
+        LOG.debug("RegisterProfile: collection %s, profile %s", collection, hash);
+        return hash;
+    }
+
+    /**
+     * Lists the slice profiles of the caller's org collection.
+     *
+     * @param ctx the transaction context
+     * @return a JSON array of {"hash":..., "slice":{...}}, in hash order
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String ListProfiles(final Context ctx) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        verifyClientOrgMatchesPeerOrg(cache);
+        String collection = getCollectionName(cache);
+        LOG.debug("ListProfiles: collection %s", collection);
+        return cache.getProfiles().list(collection);
+    }
+
+    /**
+     * Returns an asset with its home and backup networks read from the network registry.
+     *
+     * @param ctx the transaction context
+     * @param imsi the IMSI of the asset
+     * @return the asset, or null if it does not exist
+     */
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public Asset ReadAsset(final Context ctx, final String imsi) {
-        ChaincodeStub stub = ctx.getStub();
-        System.out.printf("ReadAsset: collection %s, ID %s\n", ASSET_COLLECTION_NAME, imsi);
-        byte[] assetJSON = stub.getPrivateData(ASSET_COLLECTION_NAME, imsi);
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        LOG.debug("ReadAsset: collection %s, ID %s", ASSET_COLLECTION_NAME, imsi);
+        byte[] assetJSON = cache.getPrivateData(ASSET_COLLECTION_NAME, imsi);
 
-        if (assetJSON == null || assetJSON.length == 0) {
-            System.out.printf("Asset not found: ID %s\n", imsi);
+        if (assetJSON == null) {
+            LOG.debug("Asset not found: ID %s", imsi);
             return null;
         }
 
         Asset asset = Asset.deserialize(assetJSON);
-        return asset;
+        return cache.getNetworks().expand(asset);
+    }
+
+    /**
+     * Returns an asset as stored, its networks holding only their netID, without reading the network registry.
+     *
+     * @param ctx the transaction context
+     * @param imsi the IMSI of the asset
+     * @return the asset, or null if it does not exist
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Asset ReadAssetReference(final Context ctx, final String imsi) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        LOG.debug("ReadAssetReference: collection %s, ID %s", ASSET_COLLECTION_NAME, imsi);
+        byte[] assetJSON = cache.getPrivateData(ASSET_COLLECTION_NAME, imsi);
+        return assetJSON == null ? null : Asset.deserialize(assetJSON);
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public AssetPrivateDetails ReadAssetPrivateDetails(final Context ctx, final String collection, final String imsi) {
-        ChaincodeStub stub = ctx.getStub();
-        System.out.printf("ReadAssetPrivateDetails: collection %s, ID %s\n", collection, imsi);
-        byte[] assetPrvJSON = stub.getPrivateData(collection, imsi);
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        LOG.debug("ReadAssetPrivateDetails: collection %s, ID %s", collection, imsi);
+        byte[] assetPrvJSON = cache.getPrivateData(collection, imsi);
 
-        if (assetPrvJSON == null || assetPrvJSON.length == 0) {
-            String errorMessage = String.format("AssetPrivateDetails %s does not exist in collection %s", imsi, collection);
-            System.out.println(errorMessage);
+        if (assetPrvJSON == null) {
+            LOG.debug("AssetPrivateDetails %s does not exist in collection %s", imsi, collection);
             return null;
         }
 
-        AssetPrivateDetails assetpd = AssetPrivateDetails.deserialize(assetPrvJSON);
+        AssetPrivateDetails assetpd = cache.getProfiles().resolve(collection,
+                AssetPrivateDetails.deserialize(assetPrvJSON));
+        SqnDeltas deltas = SqnDeltas.find(cache, collection, imsi);
+        if (!deltas.isEmpty()) {
+            SecurityContext security = assetpd.getSecurity();
+            return assetpd.withSecurity(security.withSqn(deltas.applyTo(security.sqnValue())));
+        }
         return assetpd;
     }
 
-    private void verifyClientOrgMatchesPeerOrg(final Context ctx) {
-        String clientMSPID = ctx.getClientIdentity().getMSPID();
-        String peerMSPID = ctx.getStub().getMspId();
+    /**
+     * Lists the assets of an operator, one page at a time, found through the operator~imsi index.
+     *
+     * @param ctx the transaction context
+     * @param operator the operator name
+     * @param pageSize the number of records per page, 0 for the default
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @return {"records":[...],"fetchedRecordsCount":n,"bookmark":"..."}, in IMSI order, the bookmark is empty on the last page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String QueryAssetsByOperator(final Context ctx, final String operator, final int pageSize,
+            final String bookmark) {
+        LOG.debug("QueryAssetsByOperator: operator %s, after %s", operator, bookmark);
+        return listIndexed(AssetContext.cacheOf(ctx), AssetIndex.OPERATOR, operator, pageSize, bookmark);
+    }
+
+    /**
+     * Lists the assets whose home or backup network is netID, one page at a time, found through the netID~imsi index.
+     *
+     * @param ctx the transaction context
+     * @param netID the network ID
+     * @param pageSize the number of records per page, 0 for the default
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @return {"records":[...],"fetchedRecordsCount":n,"bookmark":"..."}, in IMSI order, the bookmark is empty on the last page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String QueryAssetsByNetwork(final Context ctx, final String netID, final int pageSize,
+            final String bookmark) {
+        LOG.debug("QueryAssetsByNetwork: netID %s, after %s", netID, bookmark);
+        return listIndexed(AssetContext.cacheOf(ctx), AssetIndex.NETWORK, netID, pageSize, bookmark);
+    }
+
+    /**
+     * Lists the assets of a PLMN, one page at a time, with a key range scan over the IMSIs.
+     *
+     * @param ctx the transaction context
+     * @param mcc the 3-digit mobile country code
+     * @param mnc the mobile network code with its leading zeros, 3 digits where the MCC uses 3-digit MNCs
+     * @param pageSize the number of records per page, 0 for the default
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @return {"records":[...],"fetchedRecordsCount":n,"bookmark":"..."}, the bookmark is empty on the last page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String ListAssetsByPlmn(final Context ctx, final String mcc, final String mnc, final int pageSize,
+            final String bookmark) {
+        return listAssets(AssetContext.cacheOf(ctx), () -> ImsiRange.ofPlmn(mcc, mnc), pageSize, bookmark);
+    }
+
+    /**
+     * Lists the assets whose IMSI is in [start, end), one page at a time, for example a block of MSINs.
+     *
+     * @param ctx the transaction context
+     * @param start the first IMSI, or IMSI prefix, of the range
+     * @param end the end of the range, exclusive, empty for no upper bound
+     * @param pageSize the number of records per page, 0 for the default
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @return {"records":[...],"fetchedRecordsCount":n,"bookmark":"..."}, the bookmark is empty on the last page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String ListAssetsByImsiRange(final Context ctx, final String start, final String end, final int pageSize,
+            final String bookmark) {
+        return listAssets(AssetContext.cacheOf(ctx), () -> ImsiRange.of(start, end), pageSize, bookmark);
+    }
+
+    /**
+     * Runs a CouchDB rich query over the public asset data, one page at a time.
+     *
+     * The selector is a Mango selector, for example {"operator":"China Telecom"}.
+     * Put equality fields in the order of one of the indexes under META-INF, since
+     * results are sorted by those fields and then by imsi. Assets stored in the
+     * binary format are not matched by queries. Stored networks only hold their
+     * netID and netType, so selectors on cert and ipEndPoint only match assets
+     * written before the network registry. Results are returned with their networks.
+     *
+     * @param ctx the transaction context
+     * @param selector the Mango selector
+     * @param pageSize the number of records per page, 0 for the default
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @return {"records":[...],"fetchedRecordsCount":n,"bookmark":"..."}, the bookmark is empty on the last page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String QueryAssets(final Context ctx, final String selector, final int pageSize, final String bookmark) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        PagedQuery query = pagedQuery(selector, pageSize, bookmark);
+        LOG.debug("QueryAssets: collection %s, query %s", ASSET_COLLECTION_NAME, query.getQuery());
+        NetworkRegistry networks = cache.getNetworks();
+        return query.execute(cache.getStub(), ASSET_COLLECTION_NAME,
+                (value, out) -> networks.expand(Asset.deserialize(value)).write(out));
+    }
+
+    /**
+     * Runs a CouchDB rich query over the private details held in the caller's org collection.
+     *
+     * Works like {@link #QueryAssets}; the query only runs on a peer of the caller's org.
+     * Selectors match the stored records, in which subscribers reference their
+     * slice by profile hash: to select by slice, find the hashes with
+     * {@link #ListProfiles} and query {"profile":{"$in":[...]}}. Records written
+     * before profiles still hold their slice. Results are returned with the slice.
+     *
+     * @param ctx the transaction context
+     * @param selector the Mango selector, for example {"profile":{"$in":["hash"]}}
+     * @param pageSize the number of records per page, 0 for the default
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @return {"records":[...],"fetchedRecordsCount":n,"bookmark":"..."}, the bookmark is empty on the last page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String QueryAssetPrivateDetails(final Context ctx, final String selector, final int pageSize,
+            final String bookmark) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        verifyClientOrgMatchesPeerOrg(cache);
+        String collection = getCollectionName(cache);
+        PagedQuery query = pagedQuery(selector, pageSize, bookmark);
+        LOG.debug("QueryAssetPrivateDetails: collection %s, query %s", collection, query.getQuery());
+        ProfileStore profiles = cache.getProfiles();
+        return query.execute(cache.getStub(), collection,
+                (value, out) -> profiles.resolve(collection, AssetPrivateDetails.deserialize(value)).write(out));
+    }
+
+    /**
+     * Exports the public asset data of a key range, one page at a time.
+     *
+     * Pages are NDJSON, one asset per line in IMSI order, followed by a line
+     * {"fetchedRecordsCount":n,"bookmark":"..."}. A page ends after maxRecords
+     * records or before it would grow past maxBytes, whichever comes first.
+     *
+     * @param ctx the transaction context
+     * @param startKey the first IMSI of the range, inclusive, empty for the start of the collection
+     * @param endKey the end of the range, exclusive, empty for the end of the collection
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @param maxRecords the maximum number of records per page, 0 for the default
+     * @param maxBytes the maximum size of a page, 0 for the default
+     * @return the page, the bookmark is empty on the last page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String ExportAssets(final Context ctx, final String startKey, final String endKey, final String bookmark,
+            final int maxRecords, final int maxBytes) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        ExportPage page = exportPage(startKey, endKey, bookmark, maxRecords, maxBytes);
+        LOG.debug("ExportAssets: collection %s, from %s", ASSET_COLLECTION_NAME, page.getScanStart());
+        NetworkRegistry networks = cache.getNetworks();
+        return page.execute(cache.getStub(), ASSET_COLLECTION_NAME,
+                (result, out) -> networks.expand(Asset.deserialize(result.getValue())).write(out));
+    }
+
+    /**
+     * Exports the private details held in the caller's org collection for a key range, one page at a time.
+     *
+     * Works like {@link #ExportAssets}; pending sqn increments are applied, as
+     * in ReadAssetPrivateDetails. The export only runs on a peer of the caller's org.
+     *
+     * @param ctx the transaction context
+     * @param startKey the first IMSI of the range, inclusive, empty for the start of the collection
+     * @param endKey the end of the range, exclusive, empty for the end of the collection
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @param maxRecords the maximum number of records per page, 0 for the default
+     * @param maxBytes the maximum size of a page, 0 for the default
+     * @return the page, the bookmark is empty on the last page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String ExportAssetPrivateDetails(final Context ctx, final String startKey, final String endKey,
+            final String bookmark, final int maxRecords, final int maxBytes) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        verifyClientOrgMatchesPeerOrg(cache);
+        String collection = getCollectionName(cache);
+        ExportPage page = exportPage(startKey, endKey, bookmark, maxRecords, maxBytes);
+        LOG.debug("ExportAssetPrivateDetails: collection %s, from %s", collection, page.getScanStart());
+        ProfileStore profiles = cache.getProfiles();
+        try (SqnDeltas.Cursor deltas = SqnDeltas.cursor(cache.getStub(), collection)) {
+            return page.execute(cache.getStub(), collection, (result, out) -> {
+                AssetPrivateDetails details = profiles.resolve(collection,
+                        AssetPrivateDetails.deserialize(result.getValue()));
+                SecurityContext security = details.getSecurity();
+                long sqn = deltas.applyTo(result.getKey(), security.sqnValue());
+                if (sqn != security.sqnValue()) {
+                    details = details.withSecurity(security.withSqn(sqn));
+                }
+                details.write(out);
+            });
+        }
+    }
+
+    /**
+     * Returns the private details of an asset exactly as stored in the caller's org collection, in hex.
+     *
+     * The stored value depends on the storage format, the compression dictionary
+     * and the slice profile the details reference, so it cannot be rebuilt from
+     * what {@link #ReadAssetPrivateDetails} returns. The owner hands these bytes to
+     * another org, which checks them with {@link #VerifyAssetPrivateDetails}.
+     * Increments from {@link #AdvanceSqn} that are not compacted yet are kept
+     * apart and are not part of the value.
+     *
+     * @param ctx the transaction context
+     * @param imsi the asset IMSI
+     * @return the stored value in lowercase hex, or null if the details do not exist
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String ReadStoredAssetPrivateDetails(final Context ctx, final String imsi) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        verifyClientOrgMatchesPeerOrg(cache);
+
+        String ownersCollectionName = getCollectionName(cache);
+        LOG.debug("ReadStoredAssetPrivateDetails: collection %s, ID %s", ownersCollectionName, imsi);
+        byte[] stored = cache.getPrivateData(ownersCollectionName, imsi);
+        return stored == null ? null : Hex.encode(stored);
+    }
+
+    /**
+     * Checks a copy of an asset's private details against the hash kept on chain.
+     *
+     * The transient map entry "asset_private_details" must hold the exact bytes of
+     * the stored value, as returned in hex by {@link #ReadStoredAssetPrivateDetails}
+     * to the owning org. Only hashes are compared, so any org can verify the details
+     * held in another org's collection, from a peer that is not a member of it.
+     *
+     * @param ctx the transaction context
+     * @param collection the private collection holding the details
+     * @param imsi the asset IMSI
+     * @return true if the SHA-256 of the payload matches the on-chain hash
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public boolean VerifyAssetPrivateDetails(final Context ctx, final String collection, final String imsi) {
+        TransactionCache cache = AssetContext.cacheOf(ctx);
+        byte[] payload = cache.getTransient().get("asset_private_details");
+        if (payload == null) {
+            String errorMessage = "VerifyAssetPrivateDetails call must specify asset_private_details in Transient map input";
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+
+        LOG.debug("VerifyAssetPrivateDetails: collection %s, ID %s", collection, imsi);
+        byte[] hash = cache.getPrivateDataHash(collection, imsi);
+        if (hash == null) {
+            String errorMessage = String.format("AssetPrivateDetails %s does not exist in collection %s", imsi, collection);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+        }
+        return Sha256.matches(payload, hash);
+    }
+
+    /**
+     * Returns the metrics this peer's chaincode process collected since it started:
+     * latency percentiles, ledger and serialization time and bytes read and written
+     * per transaction type, and call counts, bytes and mean time per ledger operation
+     * and collection. Times are in microseconds. Only names and counts are reported,
+     * no private data.
+     *
+     * @param ctx the transaction context
+     * @return the metrics as JSON
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetContractMetrics(final Context ctx) {
+        return ContractMetrics.global().toJson();
+    }
+
+    private static String listIndexed(final TransactionCache cache, final String index, final String value,
+            final int pageSize, final String bookmark) {
+        NetworkRegistry networks = cache.getNetworks();
+        return AssetIndex.list(cache, index, value, pageSize, bookmark,
+                (assetValue, out) -> networks.expand(Asset.deserialize(assetValue)).write(out));
+    }
+
+    private static AssetUpdate readUpdate(final TransactionCache cache, final String key, final String transaction) {
+        byte[] payload = cache.getTransient().get(key);
+        if (payload == null) {
+            String errorMessage = String.format("%s call must specify %s in Transient map input", transaction, key);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        try {
+            return AssetUpdate.parse(new String(payload, UTF_8));
+        } catch (Exception err) {
+            String errorMessage = String.format("TransientMap deserialized error: %s ", err);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+    }
+
+    private static byte[] readOwnedDetails(final TransactionCache cache, final String collection, final String imsi) {
+        byte[] stored = cache.getPrivateData(collection, imsi);
+        if (stored == null) {
+            String errorMessage = String.format("AssetPrivateDetails %s does not exist in collection %s", imsi, collection);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+        }
+        return stored;
+    }
+
+    private static Network readNetwork(final TransactionCache cache, final String transaction) {
+        byte[] payload = cache.getTransient().get("network");
+        if (payload == null) {
+            String errorMessage = String.format("%s call must specify network in Transient map input", transaction);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        Network network;
+        try {
+            JsonReader reader = new JsonReader(payload);
+            network = Network.read(reader);
+            reader.endDocument();
+        } catch (Exception err) {
+            String errorMessage = String.format("TransientMap deserialized error: %s ", err);
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        String errorMessage = AssetValidator.NETWORK.validate(network);
+        if (errorMessage != null) {
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        return network;
+    }
+
+    /**
+     * Fails if a network names an unregistered network, or is given in full and differs from the registered one.
+     */
+    private static void checkNetwork(final TransactionCache cache, final Network network) {
+        Network registered = cache.getNetworks().get(network.getNetID());
+        if (registered == null && network.isReference()) {
+            String errorMessage = String.format("Network %s is not registered", network.getNetID());
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.NETWORK_NOT_FOUND.toString());
+        }
+        if (registered != null && !network.isReference() && !registered.equals(network)) {
+            String errorMessage = String.format("Network %s differs from the registered network, "
+                    + "change it with UpdateRegisteredNetwork", network.getNetID());
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.NETWORK_CONFLICT.toString());
+        }
+    }
+
+    /**
+     * Registers the new networks of an asset and returns the asset referencing them.
+     */
+    private static Asset storeNetworks(final TransactionCache cache, final Asset asset) {
+        checkNetwork(cache, asset.getHomeNetwork());
+        checkNetwork(cache, asset.getBackupNetwork());
+        NetworkRegistry networks = cache.getNetworks();
+        return asset.withNetworks(networks.reference(asset.getHomeNetwork()),
+                networks.reference(asset.getBackupNetwork()));
+    }
+
+    /**
+     * Registers the slice of new details as a profile and returns the details referencing it.
+     */
+    private static AssetPrivateDetails storeProfile(final TransactionCache cache, final String collection,
+            final AssetPrivateDetails details) {
+        String hash = cache.getProfiles().register(collection, details.getSlice());
+        return details.withProfile(hash, details.getSlice());
+    }
+
+    private static PagedQuery pagedQuery(final String selector, final int pageSize, final String bookmark) {
+        try {
+            return new PagedQuery(selector, pageSize, bookmark);
+        } catch (IllegalArgumentException e) {
+            String errorMessage = "Invalid query selector: " + e.getMessage();
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+    }
+
+    private static String listAssets(final TransactionCache cache, final Supplier<ImsiRange> rangeOf,
+            final int pageSize, final String bookmark) {
+        try {
+            ImsiRange range = rangeOf.get();
+            LOG.debug("ListAssets: collection %s, from %s", ASSET_COLLECTION_NAME, range.getStart());
+            NetworkRegistry networks = cache.getNetworks();
+            return range.list(cache.getStub(), ASSET_COLLECTION_NAME, pageSize, bookmark,
+                    (value, out) -> networks.expand(Asset.deserialize(value)).write(out));
+        } catch (IllegalArgumentException e) {
+            String errorMessage = "Invalid IMSI range: " + e.getMessage();
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+    }
+
+    private static ExportPage exportPage(final String startKey, final String endKey, final String bookmark,
+            final int maxRecords, final int maxBytes) {
+        try {
+            return new ExportPage(startKey, endKey, bookmark, maxRecords, maxBytes);
+        } catch (IllegalArgumentException e) {
+            String errorMessage = "Invalid export range: " + e.getMessage();
+            LOG.warn(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+    }
+
+    /**
+     * Splits a batch payload into records: a JSON array, or NDJSON with one object per line.
+     * Records are returned as raw JSON so that each one is parsed, and fails, on its own.
+     */
+    private static List<String> parseBatch(final String payload) {
+        String trimmed = payload.trim();
+        List<String> records = new ArrayList<>();
+        if (trimmed.startsWith("[")) {
+            JsonReader reader = new JsonReader(trimmed);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                records.add(reader.nextRaw());
+            }
+            reader.endArray();
+            reader.endDocument();
+            return records;
+        }
+        for (String line : trimmed.split("\\r?\\n")) {
+            if (!line.trim().isEmpty()) {
+                records.add(line);
+            }
+        }
+        return records;
+    }
+
+    private void verifyClientOrgMatchesPeerOrg(final TransactionCache cache) {
+        String clientMSPID = cache.getClientMspId();
+        String peerMSPID = cache.getPeerMspId();
 
         if (!peerMSPID.equals(clientMSPID)) {
             String errorMessage = String.format("Client from org %s is not authorized to read or write private data from an org %s peer", clientMSPID, peerMSPID);
-            System.err.println(errorMessage);
+            LOG.warn(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
         }
     }
 
-    private String getCollectionName(final Context ctx) {
+    private String getCollectionName(final TransactionCache cache) {
 
         // Get the MSP ID of submitting client identity
-        String clientMSPID = ctx.getClientIdentity().getMSPID();
+        String clientMSPID = cache.getClientMspId();
         // Create the collection name
         return clientMSPID + "PrivateCollection";
     }
@@ -0,0 +1,117 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+/**
+ * Fields of a partial update: the IMSI and whichever fields the caller wants to change.
+ * Fields that are absent are null.
+ */
+final class AssetUpdate {
+    private final String imsi;
+    private final Long sqn;
+    private final Long delta;
+    private final Network homeNetwork;
+    private final Network backupNetwork;
+    private final Qos qos;
+    private final String profile;
+
+    AssetUpdate(final String imsi, final Long sqn, final Long delta, final Network homeNetwork,
+            final Network backupNetwork, final Qos qos, final String profile) {
+        this.imsi = imsi;
+        this.sqn = sqn;
+        this.delta = delta;
+        this.homeNetwork = homeNetwork;
+        this.backupNetwork = backupNetwork;
+        this.qos = qos;
+        this.profile = profile;
+    }
+
+    String getImsi() {
+        return imsi;
+    }
+
+    Long getSqn() {
+        return sqn;
+    }
+
+    Long getDelta() {
+        return delta;
+    }
+
+    Network getHomeNetwork() {
+        return homeNetwork;
+    }
+
+    Network getBackupNetwork() {
+        return backupNetwork;
+    }
+
+    Qos getQos() {
+        return qos;
+    }
+
+    String getProfile() {
+        return profile;
+    }
+
+    /**
+     * Parses {"imsi":..., "sqn":"hex"}, {"imsi":..., "delta":n}, {"imsi":..., "homeNetwork":{...},
+     * "backupNetwork":{...}}, {"imsi":..., "qos":{...}} or {"imsi":..., "profile":"hash"};
+     * unknown fields are ignored.
+     */
+    static AssetUpdate parse(final String json) {
+        String imsi = null;
+        Long sqn = null;
+        Long delta = null;
+        Network homeNetwork = null;
+        Network backupNetwork = null;
+        Qos qos = null;
+        String profile = null;
+
+        JsonReader reader = new JsonReader(json);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "imsi":
+                    imsi = reader.nextString();
+                    break;
+                case "sqn":
+                    sqn = SecurityContext.parseSqn(reader.nextString());
+                    break;
+                case "delta":
+                    delta = reader.nextLong();
+                    break;
+                case "homeNetwork":
+                    homeNetwork = Network.read(reader);
+                    break;
+                case "backupNetwork":
+                    backupNetwork = Network.read(reader);
+                    break;
+                case "qos":
+                    qos = Qos.read(reader);
+                    break;
+                case "profile":
+                    profile = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        reader.endDocument();
+
+        if (Asset.require(imsi, "imsi").isEmpty()) {
+            throw new IllegalArgumentException("Empty input: imsi");
+        }
+        if (delta != null && (delta <= 0 || delta >= SqnDeltas.SQN_MODULUS)) {
+            throw new IllegalArgumentException("Invalid delta: " + delta);
+        }
+        if (profile != null && (profile.length() != 64 || !Hex.isHex(profile))) {
+            throw new IllegalArgumentException("Invalid profile: " + profile);
+        }
+        return new AssetUpdate(imsi, sqn, delta, homeNetwork, backupNetwork, qos,
+                profile == null ? null : profile.toLowerCase());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Declarative field checks for transient payloads.
+ *
+ * A validator is a list of rules, each naming a field, how to read it from the
+ * parsed payload and the condition it must meet. Every rule is evaluated, so a
+ * payload with several problems is rejected with all of them in one message.
+ * Validation only looks at the payload, and contracts run it before their first
+ * ledger call.
+ *
+ * @param <T> the parsed payload
+ */
+final class AssetValidator<T> {
+    static final AssetValidator<AssetRecord> ASSET_PROPERTIES = new AssetValidator<AssetRecord>("asset_properties")
+            .digits("imsi", r -> r.getAsset().getImsi(), 6, 15)
+            .notEmpty("operator", r -> r.getAsset().getOperator())
+            .network("homeNetwork", r -> r.getAsset().getHomeNetwork())
+            .network("backupNetwork", r -> r.getAsset().getBackupNetwork())
+            .slice("slice", r -> r.getDetails().getSlice())
+            .ambr("ambr", r -> r.getDetails().getAmbr())
+            .bytes("security.k", r -> r.getDetails().getSecurity().kBytes(), 16)
+            .bytes("security.opc", r -> r.getDetails().getSecurity().opcBytes(), 16)
+            .hex("security.amf", r -> r.getDetails().getSecurity().getAmf(), 4)
+            .range("security.sqn", r -> r.getDetails().getSecurity().sqnValue(), 0, SqnDeltas.SQN_MODULUS - 1)
+            .check("imsi", r -> r.getDetails().getImsi().equals(r.getAsset().getImsi()), "must be the same in both halves");
+
+    static final AssetValidator<Slice> PROFILE = new AssetValidator<Slice>("profile")
+            .slice("slice", Function.identity());
+
+    static final AssetValidator<Network> NETWORK = new AssetValidator<Network>("network")
+            .network("network", Function.identity())
+            .check("network", n -> !n.isReference(), "must have netType and ipEndPoint");
+
+    // either network may be absent, and a reference was checked when its network was registered
+    static final AssetValidator<AssetUpdate> ASSET_NETWORK = new AssetValidator<AssetUpdate>("asset_network")
+            .unless(u -> u.getHomeNetwork() == null, rules -> rules.network("homeNetwork", AssetUpdate::getHomeNetwork))
+            .unless(u -> u.getBackupNetwork() == null,
+                    rules -> rules.network("backupNetwork", AssetUpdate::getBackupNetwork));
+
+    static final AssetValidator<AssetUpdate> ASSET_QOS = new AssetValidator<AssetUpdate>("asset_qos")
+            .qos("qos", AssetUpdate::getQos);
+
+    static final AssetValidator<String> ASSET_DELETE = new AssetValidator<String>("asset_delete")
+            .digits("imsi", Function.identity(), 6, 15);
+
+    private final String payload;
+    private final List<Rule<T>> checks = new ArrayList<>();
+
+    private AssetValidator(final String payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * Returns null if the value passes every rule, otherwise one message listing every violation.
+     */
+    String validate(final T value) {
+        List<String> violations = new ArrayList<>();
+        for (Rule<T> rule : checks) {
+            if (!rule.test(value)) {
+                violations.add(rule.field + " " + rule.requirement);
+            }
+        }
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return "Invalid " + payload + ": " + String.join("; ", violations);
+    }
+
+    private AssetValidator<T> check(final String field, final Predicate<T> condition, final String requirement) {
+        checks.add(new Rule<>(field, condition, requirement));
+        return this;
+    }
+
+    private AssetValidator<T> notEmpty(final String field, final Function<T, String> getter) {
+        return check(field, v -> {
+            String s = getter.apply(v);
+            return s != null && !s.trim().isEmpty();
+        }, "must not be empty");
+    }
+
+    private AssetValidator<T> digits(final String field, final Function<T, String> getter, final int min,
+            final int max) {
+        return check(field, v -> {
+            String s = getter.apply(v);
+            return s != null && s.length() >= min && s.length() <= max && BinaryCodec.isDigits(s, 0, s.length());
+        }, "must be " + min + " to " + max + " digits");
+    }
+
+    private AssetValidator<T> range(final String field, final Function<T, ? extends Number> getter, final long min,
+            final long max) {
+        return check(field, v -> {
+            long n = getter.apply(v).longValue();
+            return n >= min && n <= max;
+        }, "must be between " + min + " and " + max);
+    }
+
+    private AssetValidator<T> bytes(final String field, final Function<T, byte[]> getter, final int length) {
+        return check(field, v -> getter.apply(v).length == length, "must be " + length * 2 + " hex digits");
+    }
+
+    private AssetValidator<T> hex(final String field, final Function<T, String> getter, final int length) {
+        return check(field, v -> {
+            String s = getter.apply(v);
+            return s != null && s.length() == length && Hex.isHex(s);
+        }, "must be " + length + " hex digits");
+    }
+
+    // a reference only holds the netID of a registered network, which was checked when it was registered
+    private AssetValidator<T> network(final String field, final Function<T, Network> getter) {
+        return notEmpty(field + ".netID", getter.andThen(Network::getNetID))
+                .unless(v -> getter.apply(v).isReference(), rules -> rules
+                        .notEmpty(field + ".netType", getter.andThen(Network::getNetType))
+                        .check(field + ".ipEndPoint.ipv4Addr",
+                                v -> isUnicast(getter.apply(v).getIpEndPoint().ipv4()), "must be a unicast address")
+                        .range(field + ".ipEndPoint.port", getter.andThen(n -> n.getIpEndPoint().getPort()), 1, 65535));
+    }
+
+    /**
+     * Adds rules that are skipped for values matching skip.
+     */
+    private AssetValidator<T> unless(final Predicate<T> skip, final UnaryOperator<AssetValidator<T>> rules) {
+        for (Rule<T> rule : rules.apply(new AssetValidator<>(payload)).checks) {
+            check(rule.field, v -> skip.test(v) || rule.test(v), rule.requirement);
+        }
+        return this;
+    }
+
+    private AssetValidator<T> slice(final String field, final Function<T, Slice> getter) {
+        return range(field + ".sst", getter.andThen(Slice::getSst), 0, 255)
+                .notEmpty(field + ".session.name", getter.andThen(s -> s.getSession().getName()))
+                .range(field + ".session.type", getter.andThen(s -> s.getSession().getType()), 1, 5)
+                .ambr(field + ".session.ambr", getter.andThen(Slice::getSession).andThen(Session::getAmbr))
+                .qos(field + ".session.qos", getter.andThen(Slice::getSession).andThen(Session::getQos));
+    }
+
+    private AssetValidator<T> ambr(final String field, final Function<T, Ambr> getter) {
+        return range(field + ".uplink", getter.andThen(Ambr::uplinkBps), 1, Long.MAX_VALUE)
+                .range(field + ".downlink", getter.andThen(Ambr::downlinkBps), 1, Long.MAX_VALUE);
+    }
+
+    private AssetValidator<T> qos(final String field, final Function<T, Qos> getter) {
+        return range(field + ".index", getter.andThen(Qos::getIndex), 1, 255)
+                .range(field + ".arp.priority_level", getter.andThen(q -> q.getArp().getPriority_level()), 1, 15)
+                .range(field + ".arp.pre_emption_capability",
+                        getter.andThen(q -> q.getArp().getPre_emption_capability()), 0, 1)
+                .range(field + ".arp.pre_emption_vulnerability",
+                        getter.andThen(q -> q.getArp().getPre_emption_vulnerability()), 0, 1);
+    }
+
+    // class A to C, excluding 0.0.0.0/8, multicast and the reserved range
+    private static boolean isUnicast(final int ipv4) {
+        int first = ipv4 >>> 24;
+        return first >= 1 && first <= 223;
+    }
+
+    private static final class Rule<T> {
+        private final String field;
+        private final Predicate<T> condition;
+        private final String requirement;
+
+        Rule(final String field, final Predicate<T> condition, final String requirement) {
+            this.field = field;
+            this.condition = condition;
+            this.requirement = requirement;
+        }
+
+        boolean test(final T value) {
+            return condition.test(value);
+        }
+    }
+}
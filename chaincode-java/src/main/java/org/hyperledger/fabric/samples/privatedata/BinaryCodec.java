@@ -0,0 +1,619 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compact binary encoding of Asset and AssetPrivateDetails values.
+ *
+ * A value starts with a four byte header: two magic bytes, the format version
+ * and the record type. JSON values start with '{', so readers can tell the two
+ * formats apart from the first byte. The header is followed by the record
+ * fields in a fixed order, each written as a one byte tag and a payload. Field
+ * names are never stored; digit strings such as the IMSI are packed as BCD,
+ * IPv4 addresses as four bytes, hex strings as raw bytes and "N bps" rates as
+ * a varint. Every encoding is lossless, so a value decodes to exactly the
+ * strings that were written. Private details that reference a slice profile
+ * have a record type of their own, holding the profile hash instead of the slice.
+ * A network that references the network registry is written with its netID only.
+ */
+final class BinaryCodec {
+    static final byte MAGIC_0 = (byte) 0xA5;
+    static final byte MAGIC_1 = (byte) 0x5A;
+    static final byte VERSION = 1;
+
+    static final byte TYPE_ASSET = 1;
+    static final byte TYPE_PRIVATE_DETAILS = 2;
+    static final byte TYPE_PROFILED_DETAILS = 3;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_FALSE = 1;
+    private static final int TAG_TRUE = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_TEXT = 4;
+    private static final int TAG_DIGITS = 5;
+    private static final int TAG_HEX = 6;
+    private static final int TAG_BPS = 7;
+    private static final int TAG_IPV4 = 8;
+
+    private static final String BPS_SUFFIX = " bps";
+
+    private BinaryCodec() {
+    }
+
+    static boolean isBinary(final byte[] value) {
+        return value != null && value.length >= 4 && value[0] == MAGIC_0 && value[1] == MAGIC_1;
+    }
+
+    static byte[] encode(final Asset asset) {
+        Writer w = new Writer(TYPE_ASSET, 64);
+        w.value(asset.getImsi());
+        w.value(asset.getOperator());
+        writeNetwork(w, asset.getHomeNetwork());
+        writeNetwork(w, asset.getBackupNetwork());
+        return w.toBytes();
+    }
+
+    static Asset decodeAsset(final byte[] value) {
+        try {
+            Reader r = new Reader(value, TYPE_ASSET);
+            String imsi = r.string();
+            String operator = r.string();
+            Network homeNetwork = readNetwork(r);
+            Network backupNetwork = readNetwork(r);
+            return Asset.create(imsi, operator, homeNetwork, backupNetwork);
+        } catch (Exception e) {
+            throw new ChaincodeException("Deserialize error: " + e.getMessage(), "DATA_ERROR");
+        }
+    }
+
+    static byte[] encode(final AssetPrivateDetails details) {
+        if (details.getProfile() != null) {
+            return encodeProfiled(details);
+        }
+        Writer w = new Writer(TYPE_PRIVATE_DETAILS, 96);
+        w.value(details.getImsi());
+
+        Slice slice = details.getSlice();
+        w.value(slice != null);
+        if (slice != null) {
+            w.value(slice.getSst());
+            w.value(slice.isDefault_indicator());
+            Session session = slice.getSession();
+            w.value(session != null);
+            if (session != null) {
+                w.value(session.getName());
+                w.value(session.getType());
+                w.value(session.getPcc_rule());
+                writeAmbr(w, session.getAmbr());
+                Qos qos = session.getQos();
+                w.value(qos != null);
+                if (qos != null) {
+                    w.value(qos.getIndex());
+                    Arp arp = qos.getArp();
+                    w.value(arp != null);
+                    if (arp != null) {
+                        w.value(arp.getPriority_level());
+                        w.value(arp.getPre_emption_capability());
+                        w.value(arp.getPre_emption_vulnerability());
+                    }
+                }
+            }
+        }
+        writeAmbr(w, details.getAmbr());
+        writeSecurity(w, details.getSecurity());
+        return w.toBytes();
+    }
+
+    // details referencing a profile: the imsi, the profile hash as raw bytes, the ambr if stored and the security
+    private static byte[] encodeProfiled(final AssetPrivateDetails details) {
+        Writer w = new Writer(TYPE_PROFILED_DETAILS, 80);
+        w.value(details.getImsi());
+        w.hex(Hex.decode(details.getProfile()));
+        writeAmbr(w, details.getStoredAmbr());
+        writeSecurity(w, details.getSecurity());
+        return w.toBytes();
+    }
+
+    private static void writeSecurity(final Writer w, final SecurityContext security) {
+        w.value(security != null);
+        if (security != null) {
+            w.hex(security.kBytes());
+            w.value(security.getAmf());
+            w.hex(security.opcBytes());
+            w.sqn(security.sqnValue());
+        }
+    }
+
+    /**
+     * Returns a copy of encoded private details with the sequence number replaced,
+     * or null if the value does not end with a six byte sqn as written by {@link #encode}.
+     * The security context is always present and written last, so the sqn is the
+     * last eight bytes: the hex tag, its length and the counter.
+     */
+    static byte[] patchSqn(final byte[] value, final long sqn) {
+        int length = SecurityContext.SQN_HEX_LENGTH / 2;
+        int at = value.length - length;
+        if (!isBinary(value) || value[2] != VERSION
+                || (value[3] != TYPE_PRIVATE_DETAILS && value[3] != TYPE_PROFILED_DETAILS) || at < 6
+                || value[at - 2] != TAG_HEX || value[at - 1] != length) {
+            return null;
+        }
+        byte[] patched = value.clone();
+        for (int i = patched.length - 1, shift = 0; i >= at; i--, shift += 8) {
+            patched[i] = (byte) (sqn >>> shift);
+        }
+        return patched;
+    }
+
+    static AssetPrivateDetails decodeDetails(final byte[] value) {
+        try {
+            if (value.length >= 4 && value[3] == TYPE_PROFILED_DETAILS) {
+                Reader r = new Reader(value, TYPE_PROFILED_DETAILS);
+                String imsi = r.string();
+                String profile = Hex.encode(Asset.require(r.hex(), "profile"));
+                Ambr ambr = readAmbr(r);
+                return AssetPrivateDetails.create(imsi, profile, null, ambr, readSecurity(r));
+            }
+            Reader r = new Reader(value, TYPE_PRIVATE_DETAILS);
+            String imsi = r.string();
+
+            Slice slice = null;
+            if (r.bool()) {
+                int sst = Asset.require(r.intValue(), "sst");
+                boolean defaultIndicator = r.bool();
+                Session session = null;
+                if (r.bool()) {
+                    String name = r.string();
+                    Integer type = r.intValue();
+                    String pccRule = r.string();
+                    Ambr ambr = readAmbr(r);
+                    Qos qos = null;
+                    if (r.bool()) {
+                        int index = Asset.require(r.intValue(), "index");
+                        Arp arp = null;
+                        if (r.bool()) {
+                            arp = new Arp(Asset.require(r.intValue(), "priority_level"),
+                                    Asset.require(r.intValue(), "pre_emption_capability"),
+                                    Asset.require(r.intValue(), "pre_emption_vulnerability"));
+                        }
+                        qos = new Qos(index, Asset.require(arp, "arp"));
+                    }
+                    session = new Session(Asset.require(name, "name"), Asset.require(type, "type"),
+                            Asset.require(pccRule, "pcc_rule"), Asset.require(ambr, "ambr"), Asset.require(qos, "qos"));
+                }
+                slice = new Slice(sst, defaultIndicator, Asset.require(session, "session"));
+            }
+            Ambr ambr = readAmbr(r);
+            return AssetPrivateDetails.create(imsi, slice, ambr, readSecurity(r));
+        } catch (Exception e) {
+            throw new ChaincodeException("Deserialize error: " + e.getMessage(), "DATA_ERROR");
+        }
+    }
+
+    private static SecurityContext readSecurity(final Reader r) {
+        if (!r.bool()) {
+            return null;
+        }
+        byte[] k = Asset.require(r.hex(), "k");
+        String amf = Asset.require(r.string(), "amf");
+        byte[] opc = Asset.require(r.hex(), "opc");
+        return new SecurityContext(k, amf, opc, r.sqn());
+    }
+
+    private static void writeNetwork(final Writer w, final Network network) {
+        w.value(network != null);
+        if (network == null) {
+            return;
+        }
+        w.value(network.getNetID());
+        w.value(network.getNetType());
+        w.value(network.getCert());
+        IpEndPoint ipEndPoint = network.getIpEndPoint();
+        w.value(ipEndPoint != null);
+        if (ipEndPoint != null) {
+            w.ipv4(ipEndPoint.ipv4());
+            w.value(ipEndPoint.getPort());
+        }
+    }
+
+    private static Network readNetwork(final Reader r) {
+        if (!r.bool()) {
+            return null;
+        }
+        String netID = Asset.require(r.string(), "netID");
+        String netType = r.string();
+        String cert = r.string();
+        IpEndPoint ipEndPoint = null;
+        if (r.bool()) {
+            int ipv4Addr = r.ipv4();
+            ipEndPoint = new IpEndPoint(ipv4Addr, Asset.require(r.intValue(), "ipEndPoint.port"));
+        }
+        if (cert == null && ipEndPoint == null) {
+            return Network.reference(netID, netType);
+        }
+        return new Network(netID, Asset.require(netType, "netType"), cert, Asset.require(ipEndPoint, "ipEndPoint"));
+    }
+
+    private static void writeAmbr(final Writer w, final Ambr ambr) {
+        w.value(ambr != null);
+        if (ambr != null) {
+            w.bps(ambr.uplinkBps());
+            w.bps(ambr.downlinkBps());
+        }
+    }
+
+    private static Ambr readAmbr(final Reader r) {
+        if (!r.bool()) {
+            return null;
+        }
+        long uplink = r.bps();
+        return new Ambr(uplink, r.bps());
+    }
+
+    static boolean isDigits(final String s, final int from, final int to) {
+        if (from >= to) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // returns the rate of a canonical "N bps" string, or -1
+    static long parseBps(final String s) {
+        int end = s.length() - BPS_SUFFIX.length();
+        if (!s.endsWith(BPS_SUFFIX) || !isDigits(s, 0, end) || end > 18 || (end > 1 && s.charAt(0) == '0')) {
+            return -1;
+        }
+        return Long.parseLong(s.substring(0, end));
+    }
+
+    // returns the packed address of a canonical dotted quad, or -1
+    static long parseIpv4(final String s) {
+        String[] parts = s.split("\\.", -1);
+        if (parts.length != 4) {
+            return -1;
+        }
+        long packed = 0;
+        for (String part : parts) {
+            if (!isDigits(part, 0, part.length()) || part.length() > 3 || (part.length() > 1 && part.charAt(0) == '0')) {
+                return -1;
+            }
+            int octet = Integer.parseInt(part);
+            if (octet > 255) {
+                return -1;
+            }
+            packed = (packed << 8) | octet;
+        }
+        return packed;
+    }
+
+    private static boolean isLowerHex(final String s) {
+        if (s.isEmpty() || s.length() % 2 != 0) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends tagged field values to a growable buffer.
+     */
+    static final class Writer {
+        private byte[] buf;
+        private int len;
+
+        Writer(final byte type, final int capacity) {
+            buf = new byte[capacity];
+            buf[len++] = MAGIC_0;
+            buf[len++] = MAGIC_1;
+            buf[len++] = VERSION;
+            buf[len++] = type;
+        }
+
+        void value(final boolean value) {
+            put(value ? TAG_TRUE : TAG_FALSE);
+        }
+
+        void value(final long value) {
+            put(TAG_INT);
+            varint((value << 1) ^ (value >> 63));
+        }
+
+        void value(final Object value) {
+            if (value == null) {
+                put(TAG_NULL);
+            } else if (value instanceof Boolean) {
+                value(((Boolean) value).booleanValue());
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+                value(((Number) value).longValue());
+            } else if (value instanceof String) {
+                text((String) value);
+            } else {
+                throw new IllegalArgumentException("Unsupported field type " + value.getClass().getName());
+            }
+        }
+
+        void bps(final long value) {
+            put(TAG_BPS);
+            varint(value);
+        }
+
+        void ipv4(final int packed) {
+            put(TAG_IPV4);
+            put(packed >>> 24);
+            put(packed >>> 16);
+            put(packed >>> 8);
+            put(packed);
+        }
+
+        void hex(final byte[] bytes) {
+            put(TAG_HEX);
+            varint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, len, bytes.length);
+            len += bytes.length;
+        }
+
+        // sqn is a 48-bit counter, stored as its six byte big-endian form
+        void sqn(final long sqn) {
+            byte[] bytes = new byte[SecurityContext.SQN_HEX_LENGTH / 2];
+            for (int i = bytes.length - 1, shift = 0; i >= 0; i--, shift += 8) {
+                bytes[i] = (byte) (sqn >>> shift);
+            }
+            hex(bytes);
+        }
+
+        private void text(final String s) {
+            if (isDigits(s, 0, s.length())) {
+                put(TAG_DIGITS);
+                varint(s.length());
+                for (int i = 0; i < s.length(); i += 2) {
+                    int hi = s.charAt(i) - '0';
+                    int lo = i + 1 < s.length() ? s.charAt(i + 1) - '0' : 0x0F;
+                    put((hi << 4) | lo);
+                }
+                return;
+            }
+            long bps = parseBps(s);
+            if (bps >= 0) {
+                put(TAG_BPS);
+                varint(bps);
+                return;
+            }
+            long ipv4 = parseIpv4(s);
+            if (ipv4 >= 0) {
+                put(TAG_IPV4);
+                put((int) (ipv4 >>> 24));
+                put((int) (ipv4 >>> 16));
+                put((int) (ipv4 >>> 8));
+                put((int) ipv4);
+                return;
+            }
+            if (isLowerHex(s)) {
+                put(TAG_HEX);
+                varint(s.length() / 2);
+                for (int i = 0; i < s.length(); i += 2) {
+                    put(Character.digit(s.charAt(i), 16) << 4 | Character.digit(s.charAt(i + 1), 16));
+                }
+                return;
+            }
+            byte[] utf8 = s.getBytes(UTF_8);
+            put(TAG_TEXT);
+            varint(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, buf, len, utf8.length);
+            len += utf8.length;
+        }
+
+        private void varint(final long value) {
+            long v = value;
+            while ((v & ~0x7FL) != 0) {
+                put((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            put((int) v);
+        }
+
+        private void put(final int b) {
+            ensure(1);
+            buf[len++] = (byte) b;
+        }
+
+        private void ensure(final int extra) {
+            if (len + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+            }
+        }
+
+        byte[] toBytes() {
+            return Arrays.copyOf(buf, len);
+        }
+    }
+
+    /**
+     * Reads tagged field values written by {@link Writer}.
+     */
+    static final class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(final byte[] value, final byte type) {
+            if (!isBinary(value)) {
+                throw new IllegalArgumentException("Missing binary header");
+            }
+            if (value[2] != VERSION) {
+                throw new IllegalArgumentException("Unsupported binary format version " + value[2]);
+            }
+            if (value[3] != type) {
+                throw new IllegalArgumentException("Unexpected record type " + value[3]);
+            }
+            this.buf = value;
+            this.pos = 4;
+        }
+
+        boolean bool() {
+            Object value = value();
+            if (!(value instanceof Boolean)) {
+                throw new IllegalArgumentException("Expected a boolean at byte " + pos);
+            }
+            return (Boolean) value;
+        }
+
+        String string() {
+            Object value = value();
+            if (value != null && !(value instanceof String)) {
+                throw new IllegalArgumentException("Expected a string at byte " + pos);
+            }
+            return (String) value;
+        }
+
+        long bps() {
+            if (peek() == TAG_BPS) {
+                pos++;
+                return varint();
+            }
+            return Ambr.parseBitRate(Asset.require(string(), "ambr"));
+        }
+
+        int ipv4() {
+            if (peek() == TAG_IPV4) {
+                pos++;
+                return get() << 24 | get() << 16 | get() << 8 | get();
+            }
+            return IpEndPoint.parseIpv4(Asset.require(string(), "ipEndPoint.ipv4Addr"));
+        }
+
+        byte[] hex() {
+            if (peek() == TAG_HEX) {
+                pos++;
+                int length = (int) varint();
+                if (length < 0 || pos + length > buf.length) {
+                    throw new IllegalArgumentException("Truncated value");
+                }
+                byte[] bytes = Arrays.copyOfRange(buf, pos, pos + length);
+                pos += length;
+                return bytes;
+            }
+            String text = string();
+            return text == null ? null : Hex.decode(text);
+        }
+
+        long sqn() {
+            if (peek() == TAG_HEX) {
+                byte[] bytes = hex();
+                if (bytes.length > SecurityContext.SQN_HEX_LENGTH / 2) {
+                    throw new IllegalArgumentException("Invalid sqn length " + bytes.length);
+                }
+                long sqn = 0;
+                for (byte b : bytes) {
+                    sqn = (sqn << 8) | (b & 0xFF);
+                }
+                return sqn;
+            }
+            return SecurityContext.parseSqn(Asset.require(string(), "sqn"));
+        }
+
+        Integer intValue() {
+            Object value = value();
+            if (value == null) {
+                return null;
+            }
+            if (!(value instanceof Long)) {
+                throw new IllegalArgumentException("Expected an integer at byte " + pos);
+            }
+            return Math.toIntExact((Long) value);
+        }
+
+        Object value() {
+            int tag = get();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_INT:
+                    long zigzag = varint();
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                case TAG_DIGITS:
+                    int digits = (int) varint();
+                    char[] chars = new char[digits];
+                    for (int i = 0; i < digits; i += 2) {
+                        int b = get();
+                        chars[i] = (char) ('0' + (b >>> 4));
+                        if (i + 1 < digits) {
+                            chars[i + 1] = (char) ('0' + (b & 0x0F));
+                        }
+                    }
+                    return new String(chars);
+                case TAG_BPS:
+                    return varint() + BPS_SUFFIX;
+                case TAG_IPV4:
+                    return get() + "." + get() + "." + get() + "." + get();
+                case TAG_HEX:
+                    int bytes = (int) varint();
+                    char[] hex = new char[bytes * 2];
+                    for (int i = 0; i < bytes; i++) {
+                        int b = get();
+                        hex[2 * i] = Character.forDigit(b >>> 4, 16);
+                        hex[2 * i + 1] = Character.forDigit(b & 0x0F, 16);
+                    }
+                    return new String(hex);
+                case TAG_TEXT:
+                    int length = (int) varint();
+                    if (length < 0 || pos + length > buf.length) {
+                        throw new IllegalArgumentException("Truncated value");
+                    }
+                    String text = new String(buf, pos, length, UTF_8);
+                    pos += length;
+                    return text;
+                default:
+                    throw new IllegalArgumentException("Unknown field tag " + tag + " at byte " + (pos - 1));
+            }
+        }
+
+        private int peek() {
+            if (pos >= buf.length) {
+                throw new IllegalArgumentException("Truncated value");
+            }
+            return buf[pos] & 0xFF;
+        }
+
+        private long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        private int get() {
+            if (pos >= buf.length) {
+                throw new IllegalArgumentException("Truncated value");
+            }
+            return buf[pos++] & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.ContractRouter;
+import org.hyperledger.fabric.shim.ChaincodeServerProperties;
+import org.hyperledger.fabric.shim.NettyChaincodeServer;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Starts the contract, either as a chaincode service listening for the peer
+ * (chaincode-as-a-service) or, when no listen address is set, launched by the
+ * peer and connecting to it like ContractRouter does.
+ *
+ * Environment variables, on top of the shim's own (CORE_CHAINCODE_ID_NAME and,
+ * when launched by the peer, CORE_PEER_ADDRESS and CORE_PEER_TLS_*):
+ * <ul>
+ * <li>CHAINCODE_SERVER_ADDRESS: host:port to listen on; unset for the peer-launched mode.</li>
+ * <li>CHAINCODE_TLS_KEY_FILE, CHAINCODE_TLS_CERT_FILE: the server key and certificate
+ * chain in PEM; TLS is on when both are set. CHAINCODE_TLS_KEY_PASSWORD for an
+ * encrypted key, CHAINCODE_TLS_CLIENT_CA_FILE to require client certificates
+ * signed by those CAs.</li>
+ * <li>CHAINCODE_MAX_INBOUND_MESSAGE_SIZE, CHAINCODE_MAX_INBOUND_METADATA_SIZE (bytes),
+ * CHAINCODE_MAX_CONNECTION_AGE_SECONDS, CHAINCODE_KEEPALIVE_TIME_MINUTES,
+ * CHAINCODE_KEEPALIVE_TIMEOUT_SECONDS, CHAINCODE_PERMIT_KEEPALIVE_TIME_MINUTES and
+ * CHAINCODE_PERMIT_KEEPALIVE_WITHOUT_CALLS: gRPC server settings, the shim's
+ * defaults when unset.</li>
+ * <li>CHAINCODE_EXECUTOR_THREADS, CHAINCODE_EXECUTOR_QUEUE_SIZE and
+ * CHAINCODE_EXECUTOR_KEEPALIVE_MS: the pool running the transactions, 5 threads
+ * and 5000 queued invocations by default. Beyond that, invocations are rejected.</li>
+ * </ul>
+ *
+ * A transaction holds its pool thread while it waits for the peer's answers to
+ * its ledger calls, so the thread count, not the CPU count, bounds how many
+ * transactions run at once. Raise it for evaluate-heavy loads; a blocked
+ * platform thread costs little more than its stack. The executor settings go
+ * into the shim's chaincode configuration, which only the service mode can set;
+ * the peer-launched mode reads them from a config.props resource instead.
+ */
+public final class ChaincodeLauncher {
+    static final String SERVER_ADDRESS = "CHAINCODE_SERVER_ADDRESS";
+
+    private static final ContractLogger LOG = ContractLogger.get(ChaincodeLauncher.class);
+
+    private ChaincodeLauncher() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Map<String, String> env = System.getenv();
+        if (isBlank(env.get(SERVER_ADDRESS))) {
+            ContractRouter.main(args);
+            return;
+        }
+
+        ChaincodeServerProperties server = serverProperties(env);
+        ContractRouter router = new ContractRouter(args);
+        applyExecutor(env, router.getChaincodeConfig());
+        LOG.info("Listening on %s, tls %s", server.getServerAddress(), server.isTlsEnabled());
+        router.startRouterWithChaincodeServer(new NettyChaincodeServer(router, server));
+    }
+
+    /**
+     * Builds the gRPC server settings from the environment.
+     */
+    static ChaincodeServerProperties serverProperties(final Map<String, String> env) {
+        ChaincodeServerProperties server = new ChaincodeServerProperties();
+        server.setServerAddress(parseAddress(env.get(SERVER_ADDRESS)));
+
+        String keyFile = env.get("CHAINCODE_TLS_KEY_FILE");
+        String certFile = env.get("CHAINCODE_TLS_CERT_FILE");
+        if (isBlank(keyFile) != isBlank(certFile)) {
+            throw new IllegalArgumentException("CHAINCODE_TLS_KEY_FILE and CHAINCODE_TLS_CERT_FILE must be set together");
+        }
+        if (!isBlank(keyFile)) {
+            server.setTlsEnabled(true);
+            server.setKeyFile(keyFile);
+            server.setKeyCertChainFile(certFile);
+            server.setKeyPassword(env.get("CHAINCODE_TLS_KEY_PASSWORD"));
+            server.setTrustCertCollectionFile(env.get("CHAINCODE_TLS_CLIENT_CA_FILE"));
+        }
+
+        server.setMaxInboundMessageSize(intValue(env, "CHAINCODE_MAX_INBOUND_MESSAGE_SIZE",
+                server.getMaxInboundMessageSize(), 1));
+        server.setMaxInboundMetadataSize(intValue(env, "CHAINCODE_MAX_INBOUND_METADATA_SIZE",
+                server.getMaxInboundMetadataSize(), 1));
+        server.setMaxConnectionAgeSeconds(intValue(env, "CHAINCODE_MAX_CONNECTION_AGE_SECONDS",
+                server.getMaxConnectionAgeSeconds(), 1));
+        server.setKeepAliveTimeMinutes(intValue(env, "CHAINCODE_KEEPALIVE_TIME_MINUTES",
+                server.getKeepAliveTimeMinutes(), 1));
+        server.setKeepAliveTimeoutSeconds(intValue(env, "CHAINCODE_KEEPALIVE_TIMEOUT_SECONDS",
+                server.getKeepAliveTimeoutSeconds(), 1));
+        server.setPermitKeepAliveTimeMinutes(intValue(env, "CHAINCODE_PERMIT_KEEPALIVE_TIME_MINUTES",
+                server.getPermitKeepAliveTimeMinutes(), 0));
+        String withoutCalls = env.get("CHAINCODE_PERMIT_KEEPALIVE_WITHOUT_CALLS");
+        if (!isBlank(withoutCalls)) {
+            server.setPermitKeepAliveWithoutCalls(Boolean.parseBoolean(withoutCalls.trim()));
+        }
+        server.validate();
+        return server;
+    }
+
+    /**
+     * Copies the executor settings into the shim's chaincode configuration, where
+     * the shim looks for TP_CORE_POOL_SIZE, TP_MAX_POOL_SIZE, TP_QUEUE_SIZE and
+     * TP_KEEP_ALIVE_MS when it creates the transaction pool. The pool only grows
+     * past its core size once the queue is full, so both sizes get the thread count.
+     */
+    static void applyExecutor(final Map<String, String> env, final Properties config) {
+        int threads = intValue(env, "CHAINCODE_EXECUTOR_THREADS",
+                Integer.parseInt(config.getProperty("TP_MAX_POOL_SIZE", "5")), 1);
+        config.setProperty("TP_CORE_POOL_SIZE", Integer.toString(threads));
+        config.setProperty("TP_MAX_POOL_SIZE", Integer.toString(threads));
+        config.setProperty("TP_QUEUE_SIZE", Integer.toString(intValue(env, "CHAINCODE_EXECUTOR_QUEUE_SIZE",
+                Integer.parseInt(config.getProperty("TP_QUEUE_SIZE", "5000")), 1)));
+        config.setProperty("TP_KEEP_ALIVE_MS", Integer.toString(intValue(env, "CHAINCODE_EXECUTOR_KEEPALIVE_MS",
+                Integer.parseInt(config.getProperty("TP_KEEP_ALIVE_MS", "5000")), 0)));
+        LOG.info("Transaction pool: %s threads, %s queued", config.getProperty("TP_MAX_POOL_SIZE"),
+                config.getProperty("TP_QUEUE_SIZE"));
+    }
+
+    static InetSocketAddress parseAddress(final String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0 || colon == address.length() - 1) {
+            throw new IllegalArgumentException(SERVER_ADDRESS + " must be host:port, not " + address);
+        }
+        int port;
+        try {
+            port = Integer.parseInt(address.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(SERVER_ADDRESS + " must be host:port, not " + address, e);
+        }
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException(SERVER_ADDRESS + " port out of range: " + port);
+        }
+        return new InetSocketAddress(address.substring(0, colon), port);
+    }
+
+    private static int intValue(final Map<String, String> env, final String name, final int defaultValue,
+            final int min) {
+        String value = env.get(name);
+        if (isBlank(value)) {
+            return defaultValue;
+        }
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number, not " + value, e);
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException(name + " must be at least " + min + ", not " + value);
+        }
+        return parsed;
+    }
+
+    private static boolean isBlank(final String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The chaincode event of a transaction, listing the subscribers it changed.
+ *
+ * Fabric keeps only the last event set by a transaction, so every transaction
+ * collects its changes here and emits them once, as a single "AssetChanged"
+ * event:
+ * <pre>
+ * {"version":1,"collection":"Org1MSPPrivateCollection","changes":[
+ *   {"op":"create","imsi":"...","asset":"&lt;sha256&gt;","details":"&lt;sha256&gt;"}, ...]}
+ * </pre>
+ * "asset" and "details" are the hex SHA-256 of the values written to
+ * assetCollection and to the org collection, the same hashes the peer keeps on
+ * chain, and are left out when the transaction did not write that value. A
+ * change of a registered network, which every asset referencing it reads, is
+ * listed as {"op":"updateRegisteredNetwork","netID":"...","network":"&lt;sha256&gt;"}.
+ * Events are readable by every channel member, so they never carry private values.
+ */
+final class ChangeEvent {
+    static final String NAME = "AssetChanged";
+    static final int VERSION = 1;
+
+    enum Operation {
+        CREATE("create"),
+        DELETE("delete"),
+        UPDATE_SQN("updateSqn"),
+        ADVANCE_SQN("advanceSqn"),
+        COMPACT_SQN("compactSqn"),
+        UPDATE_NETWORK("updateNetwork"),
+        UPDATE_QOS("updateQos"),
+        UPDATE_PROFILE("updateProfile"),
+        UPDATE_REGISTERED_NETWORK("updateRegisteredNetwork"),
+        MIGRATE("migrate");
+
+        private final String label;
+
+        Operation(final String label) {
+            this.label = label;
+        }
+
+        String getLabel() {
+            return label;
+        }
+    }
+
+    private final String collection;
+    private final List<Change> changes = new ArrayList<>();
+
+    /**
+     * @param collection the org collection written by the transaction
+     */
+    ChangeEvent(final String collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * Adds a change; asset and details are the values written, or null if not written.
+     */
+    ChangeEvent add(final Operation operation, final String imsi, final byte[] asset, final byte[] details) {
+        changes.add(new Change(operation, imsi, null, hash(asset), hash(details)));
+        return this;
+    }
+
+    /**
+     * Adds a change of a registered network; network is the value written.
+     */
+    ChangeEvent addNetwork(final Operation operation, final String netID, final byte[] network) {
+        changes.add(new Change(operation, null, netID, hash(network), null));
+        return this;
+    }
+
+    boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    byte[] toBytes() {
+        JsonWriter out = new JsonWriter(64 + changes.size() * 192);
+        out.beginObject()
+                .name("version").value(VERSION)
+                .name("collection").value(collection)
+                .name("changes").beginArray();
+        for (Change change : changes) {
+            out.beginObject()
+                    .name("op").value(change.operation.getLabel());
+            if (change.netID != null) {
+                out.name("netID").value(change.netID)
+                        .name("network").value(change.asset)
+                        .endObject();
+                continue;
+            }
+            out.name("imsi").value(change.imsi);
+            if (change.asset != null) {
+                out.name("asset").value(change.asset);
+            }
+            if (change.details != null) {
+                out.name("details").value(change.details);
+            }
+            out.endObject();
+        }
+        out.endArray().endObject();
+        return out.toBytes();
+    }
+
+    /**
+     * Sets the event on the transaction, unless nothing changed.
+     */
+    void emit(final TransactionCache cache) {
+        if (!isEmpty()) {
+            cache.getStub().setEvent(NAME, toBytes());
+        }
+    }
+
+    private static String hash(final byte[] value) {
+        return value == null ? null : Hex.encode(Sha256.digest(value));
+    }
+
+    private static final class Change {
+        private final Operation operation;
+        private final String imsi;
+        private final String netID;
+        // the network hash for network changes
+        private final String asset;
+        private final String details;
+
+        Change(final Operation operation, final String imsi, final String netID, final String asset,
+                final String details) {
+            this.operation = operation;
+            this.imsi = imsi;
+            this.netID = netID;
+            this.asset = asset;
+            this.details = details;
+        }
+    }
+}
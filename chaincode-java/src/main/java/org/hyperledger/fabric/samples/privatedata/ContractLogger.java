@@ -0,0 +1,234 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Leveled logger for the contract.
+ *
+ * The level comes from the ASSET_LOG_LEVEL environment variable (DEBUG, INFO,
+ * WARN, ERROR or OFF, default INFO). A disabled call returns after a single
+ * comparison. An enabled call only queues the format string and its arguments;
+ * formatting and writing to stdout happen on a background thread, so
+ * transaction threads never contend on the stdout lock. When the queue is full
+ * entries are dropped and counted rather than blocking the caller.
+ *
+ * Only keys, collection names and counts should be logged. As a safeguard,
+ * byte[] arguments are never printed, only their length.
+ */
+final class ContractLogger {
+    enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR,
+        OFF
+    }
+
+    static final String ENV_VARIABLE = "ASSET_LOG_LEVEL";
+
+    private static final Level LEVEL = parse(System.getenv(ENV_VARIABLE));
+
+    private final String name;
+    private final Level level;
+
+    ContractLogger(final String name, final Level level) {
+        this.name = name;
+        this.level = level;
+    }
+
+    static ContractLogger get(final Class<?> type) {
+        return new ContractLogger(type.getSimpleName(), LEVEL);
+    }
+
+    boolean isEnabled(final Level target) {
+        return target.compareTo(level) >= 0 && target != Level.OFF;
+    }
+
+    boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    void debug(final String format, final Object arg) {
+        if (isEnabled(Level.DEBUG)) {
+            Appender.offer(new Entry(Level.DEBUG, name, format, new Object[] {arg}));
+        }
+    }
+
+    void debug(final String format, final Object arg1, final Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            Appender.offer(new Entry(Level.DEBUG, name, format, new Object[] {arg1, arg2}));
+        }
+    }
+
+    void debug(final Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            Appender.offer(new Entry(Level.DEBUG, name, message.get(), null));
+        }
+    }
+
+    void info(final String format, final Object arg1, final Object arg2) {
+        if (isEnabled(Level.INFO)) {
+            Appender.offer(new Entry(Level.INFO, name, format, new Object[] {arg1, arg2}));
+        }
+    }
+
+    void info(final String format, final Object arg1, final Object arg2, final Object arg3) {
+        if (isEnabled(Level.INFO)) {
+            Appender.offer(new Entry(Level.INFO, name, format, new Object[] {arg1, arg2, arg3}));
+        }
+    }
+
+    void info(final Supplier<String> message) {
+        if (isEnabled(Level.INFO)) {
+            Appender.offer(new Entry(Level.INFO, name, message.get(), null));
+        }
+    }
+
+    void warn(final String message) {
+        if (isEnabled(Level.WARN)) {
+            Appender.offer(new Entry(Level.WARN, name, message, null));
+        }
+    }
+
+    void warn(final String format, final Object arg1, final Object arg2) {
+        if (isEnabled(Level.WARN)) {
+            Appender.offer(new Entry(Level.WARN, name, format, new Object[] {arg1, arg2}));
+        }
+    }
+
+    void error(final String message) {
+        if (isEnabled(Level.ERROR)) {
+            Appender.offer(new Entry(Level.ERROR, name, message, null));
+        }
+    }
+
+    static Level parse(final String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Level.INFO;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+
+    /**
+     * Formats a message with printf-style placeholders, replacing byte[] arguments by their length.
+     */
+    static String render(final String format, final Object[] args) {
+        if (args == null) {
+            return format;
+        }
+        Object[] safe = args.clone();
+        for (int i = 0; i < safe.length; i++) {
+            if (safe[i] instanceof byte[]) {
+                safe[i] = "<" + ((byte[]) safe[i]).length + " bytes>";
+            }
+        }
+        try {
+            return String.format(format, safe);
+        } catch (RuntimeException e) {
+            return format;
+        }
+    }
+
+    private static final class Entry {
+        private final long time;
+        private final Level level;
+        private final String logger;
+        private final String format;
+        private final Object[] args;
+
+        Entry(final Level level, final String logger, final String format, final Object[] args) {
+            this.time = System.currentTimeMillis();
+            this.level = level;
+            this.logger = logger;
+            this.format = format;
+            this.args = args;
+        }
+
+        void writeTo(final PrintStream out) {
+            out.print(Instant.ofEpochMilli(time));
+            out.print(' ');
+            out.print(level);
+            out.print(' ');
+            out.print(logger);
+            out.print(" - ");
+            out.println(render(format, args));
+        }
+    }
+
+    /**
+     * Background writer, started on first use.
+     */
+    private static final class Appender {
+        private static final int CAPACITY = 8192;
+        private static final BlockingQueue<Entry> QUEUE = new ArrayBlockingQueue<>(CAPACITY);
+        private static final AtomicLong DROPPED = new AtomicLong();
+        private static final PrintStream OUT = System.out;
+
+        static {
+            Thread writer = new Thread(Appender::run, "contract-logger");
+            writer.setDaemon(true);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(Appender::drain, "contract-logger-flush"));
+        }
+
+        private Appender() {
+        }
+
+        static void offer(final Entry entry) {
+            if (!QUEUE.offer(entry)) {
+                DROPPED.incrementAndGet();
+            }
+        }
+
+        private static void run() {
+            List<Entry> batch = new ArrayList<>();
+            while (true) {
+                try {
+                    Entry first = QUEUE.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    QUEUE.drainTo(batch);
+                    write(batch);
+                    batch.clear();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private static void drain() {
+            List<Entry> batch = new ArrayList<>();
+            QUEUE.drainTo(batch);
+            write(batch);
+        }
+
+        private static synchronized void write(final List<Entry> batch) {
+            for (Entry entry : batch) {
+                entry.writeTo(OUT);
+            }
+            long dropped = DROPPED.getAndSet(0);
+            if (dropped > 0) {
+                OUT.println(Instant.now() + " WARN ContractLogger - dropped " + dropped + " log entries");
+            }
+            OUT.flush();
+        }
+    }
+}
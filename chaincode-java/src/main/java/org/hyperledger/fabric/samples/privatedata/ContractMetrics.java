@@ -0,0 +1,324 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide metrics of the contract: per transaction type latency, time in
+ * ledger calls and in serialization, and per ledger operation and collection
+ * call counts, bytes and time.
+ *
+ * Ledger calls are counted by {@link MeteredStub}. A transaction is timed from
+ * beforeTransaction to afterTransaction. The shim has no hook for a transaction
+ * that throws, so it stays open in a thread local until the next transaction
+ * begins on the same thread, which counts it as failed along with its ledger
+ * calls and bytes; its latency is unknown and is left out. Serialization time
+ * is collected through the same thread local, since the codecs have no
+ * context; transactions run on one thread each.
+ *
+ * Recording only touches striped counters and atomic histogram buckets, with
+ * no locks and no allocation once a transaction type and collection have been
+ * seen. A summary is logged at most every ASSET_METRICS_LOG_INTERVAL seconds
+ * (default 60, 0 disables it), by the first transaction finishing after the
+ * interval elapsed. The numbers belong to this chaincode process, that is to
+ * one peer.
+ */
+final class ContractMetrics {
+    static final String ENV_VARIABLE = "ASSET_METRICS_LOG_INTERVAL";
+
+    private static final ContractLogger LOG = ContractLogger.get(ContractMetrics.class);
+    private static final ContractMetrics GLOBAL = new ContractMetrics(parseInterval(System.getenv(ENV_VARIABLE)));
+    private static final ThreadLocal<Transaction> CURRENT = new ThreadLocal<>();
+
+    enum LedgerOperation {
+        GET_PRIVATE_DATA("getPrivateData"),
+        GET_PRIVATE_DATA_HASH("getPrivateDataHash"),
+        PUT_PRIVATE_DATA("putPrivateData"),
+        DEL_PRIVATE_DATA("delPrivateData"),
+        PURGE_PRIVATE_DATA("purgePrivateData"),
+        GET_PRIVATE_DATA_BY_RANGE("getPrivateDataByRange"),
+        GET_PRIVATE_DATA_BY_PARTIAL_COMPOSITE_KEY("getPrivateDataByPartialCompositeKey"),
+        GET_PRIVATE_DATA_QUERY_RESULT("getPrivateDataQueryResult"),
+        SET_EVENT("setEvent");
+
+        private final String label;
+
+        LedgerOperation(final String label) {
+            this.label = label;
+        }
+
+        String getLabel() {
+            return label;
+        }
+    }
+
+    private final long startedAt = System.nanoTime();
+    private final long logInterval;
+    private final AtomicLong nextLog;
+    private final ConcurrentHashMap<String, TransactionStats> transactions = new ConcurrentHashMap<>();
+    // filled once in the constructor and only read afterwards
+    private final Map<LedgerOperation, ConcurrentHashMap<String, CallStats>> ledger = new EnumMap<>(LedgerOperation.class);
+
+    ContractMetrics(final long logIntervalSeconds) {
+        this.logInterval = TimeUnit.SECONDS.toNanos(logIntervalSeconds);
+        this.nextLog = new AtomicLong(startedAt + logInterval);
+        for (LedgerOperation operation : LedgerOperation.values()) {
+            ledger.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    static ContractMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Starts timing a transaction on the current thread, first recording as
+     * failed a transaction this thread began and never finished.
+     */
+    Transaction begin(final String function) {
+        Transaction unfinished = CURRENT.get();
+        if (unfinished != null) {
+            unfinished.fail();
+        }
+        Transaction transaction = new Transaction(this, function, System.nanoTime());
+        CURRENT.set(transaction);
+        return transaction;
+    }
+
+    /**
+     * Returns System.nanoTime(), to pass to {@link #recordSerialization} once the codec is done.
+     */
+    static long startSerialization() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds the time since start to the serialization time of the transaction running on this thread, if any.
+     */
+    static void recordSerialization(final long start) {
+        Transaction transaction = CURRENT.get();
+        if (transaction != null) {
+            transaction.serializationNanos += System.nanoTime() - start;
+        }
+    }
+
+    void recordCall(final LedgerOperation operation, final String collection, final long bytes, final long nanos) {
+        ConcurrentHashMap<String, CallStats> byCollection = ledger.get(operation);
+        String key = collection == null ? "" : collection;
+        CallStats stats = byCollection.get(key);
+        if (stats == null) {
+            stats = byCollection.computeIfAbsent(key, c -> new CallStats());
+        }
+        stats.calls.increment();
+        stats.bytes.add(bytes);
+        stats.nanos.add(nanos);
+    }
+
+    private TransactionStats stats(final String function) {
+        TransactionStats stats = transactions.get(function);
+        if (stats == null) {
+            stats = transactions.computeIfAbsent(function, f -> new TransactionStats());
+        }
+        return stats;
+    }
+
+    private void finish(final Transaction transaction, final long end) {
+        TransactionStats stats = stats(transaction.function);
+        stats.latency.record(end - transaction.start);
+        stats.ledgerCalls.add(transaction.ledgerCalls);
+        stats.ledgerNanos.add(transaction.ledgerNanos);
+        stats.serializationNanos.add(transaction.serializationNanos);
+        stats.bytesRead.add(transaction.bytesRead);
+        stats.bytesWritten.add(transaction.bytesWritten);
+
+        long due = nextLog.get();
+        if (logInterval > 0 && end - due >= 0 && nextLog.compareAndSet(due, end + logInterval)) {
+            LOG.info(this::summary);
+        }
+    }
+
+    private void fail(final Transaction transaction) {
+        TransactionStats stats = stats(transaction.function);
+        stats.failed.increment();
+        stats.ledgerCalls.add(transaction.ledgerCalls);
+        stats.bytesRead.add(transaction.bytesRead);
+        stats.bytesWritten.add(transaction.bytesWritten);
+    }
+
+    /**
+     * Returns the metrics as JSON, times in microseconds:
+     * <pre>
+     * {"uptimeSeconds":n,
+     *  "transactions":{"CreateAsset":{"count":n,"failed":n,"latency":{"mean":..,"p50":..,"p90":..,"p99":..,"max":..},
+     *    "ledgerMean":..,"serializationMean":..,"ledgerCalls":n,"bytesRead":n,"bytesWritten":n},...},
+     *  "ledger":{"getPrivateData":{"assetCollection":{"calls":n,"bytes":n,"mean":..},...},...}}
+     * </pre>
+     * count, the latency and the means cover the transactions that completed;
+     * ledgerCalls and the bytes also include the failed ones.
+     */
+    String toJson() {
+        JsonWriter out = new JsonWriter(2048);
+        out.beginObject()
+                .name("uptimeSeconds").value(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt))
+                .name("transactions").beginObject();
+        for (Map.Entry<String, TransactionStats> entry : new TreeMap<>(transactions).entrySet()) {
+            TransactionStats stats = entry.getValue();
+            LatencyHistogram latency = stats.latency;
+            long count = latency.count();
+            out.name(entry.getKey()).beginObject()
+                    .name("count").value(count)
+                    .name("failed").value(stats.failed.sum())
+                    .name("latency").beginObject()
+                    .name("mean").value(micros(latency.mean()))
+                    .name("p50").value(micros(latency.percentile(50)))
+                    .name("p90").value(micros(latency.percentile(90)))
+                    .name("p99").value(micros(latency.percentile(99)))
+                    .name("max").value(micros(latency.max()))
+                    .endObject()
+                    .name("ledgerMean").value(micros(mean(stats.ledgerNanos.sum(), count)))
+                    .name("serializationMean").value(micros(mean(stats.serializationNanos.sum(), count)))
+                    .name("ledgerCalls").value(stats.ledgerCalls.sum())
+                    .name("bytesRead").value(stats.bytesRead.sum())
+                    .name("bytesWritten").value(stats.bytesWritten.sum())
+                    .endObject();
+        }
+        out.endObject().name("ledger").beginObject();
+        for (Map.Entry<LedgerOperation, ConcurrentHashMap<String, CallStats>> operation : ledger.entrySet()) {
+            if (operation.getValue().isEmpty()) {
+                continue;
+            }
+            out.name(operation.getKey().getLabel()).beginObject();
+            for (Map.Entry<String, CallStats> entry : new TreeMap<>(operation.getValue()).entrySet()) {
+                CallStats stats = entry.getValue();
+                long calls = stats.calls.sum();
+                out.name(entry.getKey()).beginObject()
+                        .name("calls").value(calls)
+                        .name("bytes").value(stats.bytes.sum())
+                        .name("mean").value(micros(mean(stats.nanos.sum(), calls)))
+                        .endObject();
+            }
+            out.endObject();
+        }
+        out.endObject().endObject();
+        return out.toString();
+    }
+
+    /**
+     * Returns one line with the count, failures, p50, p99 and ledger and serialization means of each transaction type.
+     */
+    String summary() {
+        StringBuilder line = new StringBuilder("metrics");
+        for (Map.Entry<String, TransactionStats> entry : new TreeMap<>(transactions).entrySet()) {
+            TransactionStats stats = entry.getValue();
+            long count = stats.latency.count();
+            line.append(' ').append(entry.getKey())
+                    .append("{n=").append(count)
+                    .append(" failed=").append(stats.failed.sum())
+                    .append(" p50=").append(micros(stats.latency.percentile(50)))
+                    .append("us p99=").append(micros(stats.latency.percentile(99)))
+                    .append("us ledger=").append(micros(mean(stats.ledgerNanos.sum(), count)))
+                    .append("us ser=").append(micros(mean(stats.serializationNanos.sum(), count)))
+                    .append("us}");
+        }
+        return line.toString();
+    }
+
+    static long parseInterval(final String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return 60;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            LOG.warn("Unknown %s value %s, using 60", ENV_VARIABLE, value);
+            return 60;
+        }
+    }
+
+    private static double mean(final long total, final long count) {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    private static long micros(final double nanos) {
+        return Math.round(nanos / 1000);
+    }
+
+    /**
+     * The running totals of one transaction; used by a single thread.
+     */
+    static final class Transaction {
+        private final ContractMetrics metrics;
+        private final String function;
+        private final long start;
+        private long ledgerCalls;
+        private long ledgerNanos;
+        private long serializationNanos;
+        private long bytesRead;
+        private long bytesWritten;
+        private boolean closed;
+
+        private Transaction(final ContractMetrics metrics, final String function, final long start) {
+            this.metrics = metrics;
+            this.function = function;
+            this.start = start;
+        }
+
+        void addCall(final long nanos, final long read, final long written) {
+            ledgerCalls++;
+            ledgerNanos += nanos;
+            bytesRead += read;
+            bytesWritten += written;
+        }
+
+        /**
+         * Records the transaction under its function name, unless it was already recorded as failed.
+         */
+        void finish() {
+            long end = System.nanoTime();
+            if (close()) {
+                metrics.finish(this, end);
+            }
+        }
+
+        private void fail() {
+            if (close()) {
+                metrics.fail(this);
+            }
+        }
+
+        private boolean close() {
+            if (CURRENT.get() == this) {
+                CURRENT.remove();
+            }
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            return true;
+        }
+    }
+
+    private static final class TransactionStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder ledgerCalls = new LongAdder();
+        private final LongAdder ledgerNanos = new LongAdder();
+        private final LongAdder serializationNanos = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+    }
+
+    private static final class CallStats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.util.function.BiConsumer;
+
+/**
+ * One page of a key range export of a collection, as NDJSON.
+ *
+ * Private data range queries have no pagination, so pages are cut here: the
+ * range is scanned in key order from the bookmark, the last key returned by the
+ * previous page, and iteration stops once the page holds maxRecords records or
+ * the next record would take it past maxBytes. Each record is one line of
+ * compact JSON; the last line is {"fetchedRecordsCount":n,"bookmark":"..."}, the
+ * bookmark being empty once the range is exhausted. Only simple keys are
+ * scanned, so index and sqn delta entries are left out.
+ */
+final class ExportPage {
+    static final int DEFAULT_MAX_RECORDS = 500;
+    static final int MAX_RECORDS = 5000;
+    static final int DEFAULT_MAX_BYTES = 1 << 20;
+    // below the 4 MiB gRPC message limit of the peer and the gateway client
+    static final int MAX_BYTES = 3 << 20;
+
+    private final String startKey;
+    private final String endKey;
+    private final String bookmark;
+    private final int maxRecords;
+    private final int maxBytes;
+
+    /**
+     * @param startKey the first key of the range, inclusive, or empty for the start of the collection
+     * @param endKey the end of the range, exclusive, or empty for the end of the collection
+     * @param bookmark the bookmark returned with the previous page, or empty for the first page
+     * @param maxRecords records per page; 0 or less means the default, larger than the maximum is capped
+     * @param maxBytes characters per page; 0 or less means the default, larger than the maximum is capped
+     */
+    ExportPage(final String startKey, final String endKey, final String bookmark, final int maxRecords,
+            final int maxBytes) {
+        this.startKey = startKey == null ? "" : startKey;
+        this.endKey = endKey == null ? "" : endKey;
+        this.bookmark = bookmark == null ? "" : bookmark;
+        if (!this.bookmark.isEmpty() && (this.bookmark.compareTo(this.startKey) < 0
+                || !this.endKey.isEmpty() && this.bookmark.compareTo(this.endKey) >= 0)) {
+            throw new IllegalArgumentException("Bookmark " + this.bookmark + " is outside of the range");
+        }
+        this.maxRecords = maxRecords <= 0 ? DEFAULT_MAX_RECORDS : Math.min(maxRecords, MAX_RECORDS);
+        this.maxBytes = maxBytes <= 0 ? DEFAULT_MAX_BYTES : Math.min(maxBytes, MAX_BYTES);
+    }
+
+    /**
+     * Returns the key the scan starts at: the bookmark, which is skipped, or the start of the range.
+     */
+    String getScanStart() {
+        return bookmark.isEmpty() ? startKey : bookmark;
+    }
+
+    int getMaxRecords() {
+        return maxRecords;
+    }
+
+    int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Scans the range and returns the page, writing each record with the given writer.
+     */
+    String execute(final ChaincodeStub stub, final String collection, final BiConsumer<KeyValue, JsonWriter> record) {
+        StringBuilder page = new StringBuilder(Math.min(maxBytes, maxRecords * 512) + 64);
+        int count = 0;
+        String last = "";
+        boolean more = false;
+        try (QueryResultsIterator<KeyValue> results = stub.getPrivateDataByRange(collection, getScanStart(), endKey)) {
+            for (KeyValue result : results) {
+                if (!bookmark.isEmpty() && result.getKey().equals(bookmark)) {
+                    continue;
+                }
+                if (count == maxRecords) {
+                    more = true;
+                    break;
+                }
+                JsonWriter line = new JsonWriter(512);
+                record.accept(result, line);
+                String json = line.toString();
+                if (count > 0 && page.length() + json.length() + 1 > maxBytes) {
+                    more = true;
+                    break;
+                }
+                page.append(json).append('\n');
+                last = result.getKey();
+                count++;
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to close range query on " + collection, e);
+        }
+        page.append(new JsonWriter(64).beginObject()
+                .name("fetchedRecordsCount").value(count)
+                .name("bookmark").value(more ? last : "")
+                .endObject());
+        return page.toString();
+    }
+}
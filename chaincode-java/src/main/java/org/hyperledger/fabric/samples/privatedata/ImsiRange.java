@@ -0,0 +1,142 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A range of IMSI keys, listed one page at a time with a key range scan.
+ *
+ * Collections are keyed by the IMSI, whose leading digits are the MCC and the
+ * MNC, so the subscribers of a PLMN, or of a block of MSINs, are one contiguous
+ * key range. An IMSI does not carry the length of its MNC, which is set per MCC:
+ * in an MCC with 3-digit MNCs the IMSIs starting with 31001 belong to MNCs 010
+ * to 019, not to a network 01. A PLMN is therefore only accepted with the MNC
+ * length its MCC uses, and not at all in the MCCs that use both lengths, whose
+ * subscribers can still be listed as an explicit range. The bookmark is the last
+ * IMSI returned; the next page scans from it and skips it. Values are decoded
+ * one at a time as the scan proceeds.
+ */
+final class ImsiRange {
+    // E.212 MCCs whose MNCs have 3 digits: North America, the Caribbean and parts of Latin America
+    private static final Set<String> THREE_DIGIT_MNC = new HashSet<>(Arrays.asList(
+            "302", "310", "311", "312", "313", "314", "315", "316", "330", "334", "338", "342", "344", "346", "348",
+            "352", "354", "356", "358", "360", "365", "376", "722", "732"));
+    // MCCs where networks with 2 and 3-digit MNCs share the IMSI prefixes
+    private static final Set<String> MIXED_MNC = new HashSet<>(Arrays.asList("405", "502"));
+
+    private final String start;
+    private final String end;
+
+    private ImsiRange(final String start, final String end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * The IMSIs of a PLMN: a 3-digit MCC followed by an MNC of the length that MCC uses.
+     */
+    static ImsiRange ofPlmn(final String mcc, final String mnc) {
+        requireDigits("mcc", mcc, 3, 3);
+        requireDigits("mnc", mnc, 2, 3);
+        if (MIXED_MNC.contains(mcc)) {
+            throw new IllegalArgumentException("MCC " + mcc + " has 2 and 3-digit MNCs, list its IMSIs as a range");
+        }
+        int length = THREE_DIGIT_MNC.contains(mcc) ? 3 : 2;
+        if (mnc.length() != length) {
+            throw new IllegalArgumentException("MCC " + mcc + " has " + length + "-digit MNCs, not " + mnc);
+        }
+        String prefix = mcc + mnc;
+        return new ImsiRange(prefix, successor(prefix));
+    }
+
+    /**
+     * The IMSIs from start, inclusive, to end, exclusive; an empty end means no upper bound.
+     */
+    static ImsiRange of(final String start, final String end) {
+        requireDigits("start", start, 1, 15);
+        if (end != null && !end.isEmpty()) {
+            requireDigits("end", end, 1, 15);
+            if (start.compareTo(end) >= 0) {
+                throw new IllegalArgumentException("start " + start + " must be before end " + end);
+            }
+        }
+        return new ImsiRange(start, end == null ? "" : end);
+    }
+
+    String getStart() {
+        return start;
+    }
+
+    String getEnd() {
+        return end;
+    }
+
+    /**
+     * Scans one page and returns {"records":[...],"fetchedRecordsCount":n,"bookmark":"..."}.
+     * The bookmark is empty on the last page.
+     *
+     * @param pageSize records per page; 0 or less means the default, larger than the maximum is capped
+     * @param bookmark the bookmark returned with the previous page, or empty for the first page
+     */
+    String list(final ChaincodeStub stub, final String collection, final int pageSize, final String bookmark,
+            final BiConsumer<byte[], JsonWriter> record) {
+        String after = bookmark == null ? "" : bookmark;
+        if (!after.isEmpty() && (after.compareTo(start) < 0 || !end.isEmpty() && after.compareTo(end) >= 0)) {
+            throw new IllegalArgumentException("Bookmark " + after + " is outside of the range");
+        }
+        int size = pageSize <= 0 ? PagedQuery.DEFAULT_PAGE_SIZE : Math.min(pageSize, PagedQuery.MAX_PAGE_SIZE);
+
+        JsonWriter out = new JsonWriter(size * 512);
+        out.beginObject().name("records").beginArray();
+        int count = 0;
+        String last = "";
+        boolean more = false;
+        try (QueryResultsIterator<KeyValue> results = stub.getPrivateDataByRange(collection,
+                after.isEmpty() ? start : after, end)) {
+            for (KeyValue result : results) {
+                if (result.getKey().equals(after)) {
+                    continue;
+                }
+                if (count == size) {
+                    more = true;
+                    break;
+                }
+                record.accept(result.getValue(), out);
+                last = result.getKey();
+                count++;
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to close range query on " + collection, e);
+        }
+        out.endArray();
+        out.name("fetchedRecordsCount").value(count);
+        out.name("bookmark").value(more ? last : "");
+        out.endObject();
+        return out.toString();
+    }
+
+    // the first key after every key starting with the prefix; ':' follows '9'
+    private static String successor(final String prefix) {
+        int last = prefix.length() - 1;
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+    }
+
+    private static void requireDigits(final String field, final String value, final int min, final int max) {
+        if (value == null || value.length() < min || value.length() > max
+                || !BinaryCodec.isDigits(value, 0, value.length())) {
+            String length = min == max ? Integer.toString(min) : min + " to " + max;
+            throw new IllegalArgumentException(field + " must be " + length + " digits");
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+/**
+ * IPv4 address and port of a network function, with the address packed into an int.
+ *
+ * Clients see the address in dotted quad notation, as it is kept on the ledger.
+ */
+@DataType
+public final class IpEndPoint {
+    @Property()
+    private final String ipv4Addr;
+
+    @Property()
+    private final int port;
+
+    private final int address;
+
+    public IpEndPoint(final int ipv4Addr, final int port) {
+        this.address = ipv4Addr;
+        this.ipv4Addr = formatIpv4(ipv4Addr);
+        this.port = port;
+    }
+
+    public IpEndPoint(final String ipv4Addr, final int port) {
+        this.address = parseIpv4(ipv4Addr);
+        this.ipv4Addr = ipv4Addr;
+        this.port = port;
+    }
+
+    /**
+     * Returns the address in dotted quad notation.
+     */
+    public String getIpv4Addr() {
+        return ipv4Addr;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    int ipv4() {
+        return address;
+    }
+
+    void write(final JsonWriter writer) {
+        writer.beginObject()
+                .name("ipv4Addr").value(ipv4Addr)
+                .name("port").value(port)
+                .endObject();
+    }
+
+    static IpEndPoint read(final JsonReader reader) {
+        String ipv4Addr = null;
+        Integer port = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "ipv4Addr":
+                    ipv4Addr = reader.nextString();
+                    break;
+                case "port":
+                    port = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new IpEndPoint(Asset.require(ipv4Addr, "ipEndPoint.ipv4Addr"), Asset.require(port, "ipEndPoint.port"));
+    }
+
+    /**
+     * Packs a canonical dotted quad into an int.
+     *
+     * @throws IllegalArgumentException if the address is not a canonical dotted quad
+     */
+    static int parseIpv4(final String address) {
+        long packed = BinaryCodec.parseIpv4(address);
+        if (packed < 0) {
+            throw new IllegalArgumentException("Invalid IPv4 address: " + address);
+        }
+        return (int) packed;
+    }
+
+    static String formatIpv4(final int packed) {
+        return (packed >>> 24) + "." + ((packed >>> 16) & 0xFF) + "." + ((packed >>> 8) & 0xFF) + "." + (packed & 0xFF);
+    }
+
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        IpEndPoint other = (IpEndPoint) obj;
+        return address == other.address && port == other.port;
+    }
+
+    public int hashCode() {
+        return 31 * address + port;
+    }
+
+    public String toString() {
+        return ipv4Addr + ":" + port;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Minimal pull parser used by the ledger codecs.
+ *
+ * Each document is walked exactly once: callers ask for the next name or value
+ * and decide what to do with it, so no intermediate tree is built. Unknown
+ * fields can be skipped with {@link #skipValue()}.
+ */
+final class JsonReader {
+    private final String in;
+    private int pos;
+
+    // needComma[depth] is set once the current container holds an element
+    private boolean[] needComma = new boolean[8];
+    private int depth;
+
+    JsonReader(final byte[] json) {
+        this(new String(json, UTF_8));
+    }
+
+    JsonReader(final String json) {
+        this.in = json;
+    }
+
+    void beginObject() {
+        open('{');
+    }
+
+    void endObject() {
+        close('}');
+    }
+
+    void beginArray() {
+        open('[');
+    }
+
+    void endArray() {
+        close(']');
+    }
+
+    /**
+     * Returns true while the current object or array has more elements.
+     */
+    boolean hasNext() {
+        skipWhitespace();
+        char c = peekChar();
+        if (c == '}' || c == ']') {
+            return false;
+        }
+        if (needComma[depth]) {
+            expect(',');
+            needComma[depth] = false;
+            skipWhitespace();
+        }
+        return true;
+    }
+
+    String nextName() {
+        skipWhitespace();
+        String name = readString();
+        skipWhitespace();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * Returns true and consumes the value if the next value is a JSON null.
+     */
+    boolean nextNull() {
+        skipWhitespace();
+        if (in.startsWith("null", pos)) {
+            pos += 4;
+            valueDone();
+            return true;
+        }
+        return false;
+    }
+
+    String nextString() {
+        skipWhitespace();
+        String value = readString();
+        valueDone();
+        return value;
+    }
+
+    int nextInt() {
+        long value = nextLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw syntaxError("Integer out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    long nextLong() {
+        skipWhitespace();
+        String token = peekChar() == '"' ? readString().trim() : readNumber();
+        valueDone();
+        try {
+            return Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            double d = Double.parseDouble(token);
+            if (d != Math.rint(d)) {
+                throw syntaxError("Not an integer: " + token);
+            }
+            return (long) d;
+        }
+    }
+
+    boolean nextBoolean() {
+        skipWhitespace();
+        boolean value;
+        if (in.startsWith("true", pos)) {
+            pos += 4;
+            value = true;
+        } else if (in.startsWith("false", pos)) {
+            pos += 5;
+            value = false;
+        } else if (peekChar() == '"') {
+            String token = readString();
+            if (!token.equalsIgnoreCase("true") && !token.equalsIgnoreCase("false")) {
+                throw syntaxError("Not a boolean: " + token);
+            }
+            value = Boolean.parseBoolean(token);
+        } else {
+            throw syntaxError("Expected a boolean");
+        }
+        valueDone();
+        return value;
+    }
+
+    /**
+     * Reads any value into plain Java objects: Map (in document order), List, String, Number, Boolean or null.
+     */
+    Object nextValue() {
+        skipWhitespace();
+        char c = peekChar();
+        switch (c) {
+            case '{':
+                Map<String, Object> map = new LinkedHashMap<>();
+                beginObject();
+                while (hasNext()) {
+                    String name = nextName();
+                    map.put(name, nextValue());
+                }
+                endObject();
+                return map;
+            case '[':
+                List<Object> list = new ArrayList<>();
+                beginArray();
+                while (hasNext()) {
+                    list.add(nextValue());
+                }
+                endArray();
+                return list;
+            case '"':
+                return nextString();
+            case 't':
+            case 'f':
+                return nextBoolean();
+            case 'n':
+                if (!nextNull()) {
+                    throw syntaxError("Unexpected character");
+                }
+                return null;
+            default:
+                String token = readNumber();
+                valueDone();
+                return toNumber(token);
+        }
+    }
+
+    void skipValue() {
+        skipWhitespace();
+        char c = peekChar();
+        if (c == '{') {
+            beginObject();
+            while (hasNext()) {
+                nextName();
+                skipValue();
+            }
+            endObject();
+        } else if (c == '[') {
+            beginArray();
+            while (hasNext()) {
+                skipValue();
+            }
+            endArray();
+        } else {
+            nextValue();
+        }
+    }
+
+    /**
+     * Returns the unparsed JSON text of the next value.
+     */
+    String nextRaw() {
+        skipWhitespace();
+        int start = pos;
+        skipValue();
+        return in.substring(start, pos);
+    }
+
+    /**
+     * Fails if anything other than whitespace follows the document.
+     */
+    void endDocument() {
+        skipWhitespace();
+        if (pos != in.length()) {
+            throw syntaxError("Trailing characters");
+        }
+    }
+
+    private void open(final char c) {
+        skipWhitespace();
+        expect(c);
+        depth++;
+        if (depth == needComma.length) {
+            needComma = Arrays.copyOf(needComma, depth * 2);
+        }
+        needComma[depth] = false;
+    }
+
+    private void close(final char c) {
+        skipWhitespace();
+        expect(c);
+        depth--;
+        valueDone();
+    }
+
+    private void valueDone() {
+        needComma[depth] = true;
+    }
+
+    private String readString() {
+        expect('"');
+        int start = pos;
+        // fast path: no escapes
+        while (pos < in.length()) {
+            char c = in.charAt(pos);
+            if (c == '"') {
+                return in.substring(start, pos++);
+            }
+            if (c == '\\') {
+                break;
+            }
+            pos++;
+        }
+        StringBuilder sb = new StringBuilder(in.length() - start);
+        sb.append(in, start, pos);
+        while (pos < in.length()) {
+            char c = in.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= in.length()) {
+                break;
+            }
+            char esc = in.charAt(pos++);
+            switch (esc) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > in.length()) {
+                        throw syntaxError("Bad unicode escape");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(in.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw syntaxError("Bad unicode escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    sb.append(esc);
+                    break;
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private String readNumber() {
+        int start = pos;
+        while (pos < in.length()) {
+            char c = in.charAt(pos);
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (start == pos) {
+            throw syntaxError("Unexpected character");
+        }
+        return in.substring(start, pos);
+    }
+
+    private static Number toNumber(final String token) {
+        if (token.indexOf('.') < 0 && token.indexOf('e') < 0 && token.indexOf('E') < 0) {
+            long value = Long.parseLong(token);
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+            return value;
+        }
+        return Double.parseDouble(token);
+    }
+
+    private void skipWhitespace() {
+        while (pos < in.length()) {
+            char c = in.charAt(pos);
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private char peekChar() {
+        if (pos >= in.length()) {
+            throw syntaxError("Unexpected end of input");
+        }
+        return in.charAt(pos);
+    }
+
+    private void expect(final char c) {
+        if (peekChar() != c) {
+            throw syntaxError("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private IllegalArgumentException syntaxError(final String message) {
+        return new IllegalArgumentException(message + " at character " + pos);
+    }
+}
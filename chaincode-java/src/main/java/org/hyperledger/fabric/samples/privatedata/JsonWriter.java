@@ -0,0 +1,194 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Minimal streaming writer used by the ledger codecs.
+ *
+ * Output is compact and canonical: fields appear in the order they are written
+ * and free-form maps are written with sorted keys, so the same value always
+ * produces the same bytes on every endorsing peer.
+ */
+final class JsonWriter {
+    private final StringBuilder out;
+
+    // needComma[depth] is set once the current container holds an element
+    private boolean[] needComma = new boolean[8];
+    private int depth;
+    private boolean afterName;
+
+    JsonWriter() {
+        this(256);
+    }
+
+    JsonWriter(final int capacity) {
+        this.out = new StringBuilder(capacity);
+    }
+
+    JsonWriter beginObject() {
+        return open('{');
+    }
+
+    JsonWriter endObject() {
+        return close('}');
+    }
+
+    JsonWriter beginArray() {
+        return open('[');
+    }
+
+    JsonWriter endArray() {
+        return close(']');
+    }
+
+    JsonWriter name(final String name) {
+        beforeValue();
+        writeString(name);
+        out.append(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(final String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    JsonWriter value(final long value) {
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    JsonWriter value(final boolean value) {
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    JsonWriter nullValue() {
+        beforeValue();
+        out.append("null");
+        return this;
+    }
+
+    /**
+     * Writes a plain Java value: Map (sorted keys), Iterable, String, Number, Boolean or null.
+     */
+    JsonWriter value(final Object value) {
+        if (value == null) {
+            return nullValue();
+        }
+        if (value instanceof String) {
+            return value((String) value);
+        }
+        if (value instanceof Boolean) {
+            return value(((Boolean) value).booleanValue());
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return value(((Number) value).longValue());
+        }
+        if (value instanceof Number) {
+            beforeValue();
+            out.append(value.toString());
+            return this;
+        }
+        if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : new TreeMap<>((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(entry.getKey()));
+                value(entry.getValue());
+            }
+            return endObject();
+        }
+        if (value instanceof Iterable) {
+            beginArray();
+            for (Object element : (Iterable<?>) value) {
+                value(element);
+            }
+            return endArray();
+        }
+        throw new IllegalArgumentException("Unsupported JSON value type " + value.getClass().getName());
+    }
+
+    byte[] toBytes() {
+        return out.toString().getBytes(UTF_8);
+    }
+
+    public String toString() {
+        return out.toString();
+    }
+
+    private JsonWriter open(final char c) {
+        beforeValue();
+        out.append(c);
+        depth++;
+        if (depth == needComma.length) {
+            needComma = Arrays.copyOf(needComma, depth * 2);
+        }
+        needComma[depth] = false;
+        return this;
+    }
+
+    private JsonWriter close(final char c) {
+        out.append(c);
+        depth--;
+        return this;
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (needComma[depth]) {
+            out.append(',');
+        }
+        needComma[depth] = true;
+    }
+
+    private void writeString(final String value) {
+        out.append('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escape;
+            switch (c) {
+                case '"':
+                    escape = "\\\"";
+                    break;
+                case '\\':
+                    escape = "\\\\";
+                    break;
+                case '\n':
+                    escape = "\\n";
+                    break;
+                case '\r':
+                    escape = "\\r";
+                    break;
+                case '\t':
+                    escape = "\\t";
+                    break;
+                default:
+                    escape = c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+                    break;
+            }
+            if (escape != null) {
+                out.append(value, start, i).append(escape);
+                start = i + 1;
+            }
+        }
+        out.append(value, start, value.length()).append('"');
+    }
+}
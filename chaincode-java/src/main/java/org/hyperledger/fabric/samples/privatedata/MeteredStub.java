@@ -0,0 +1,403 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.SignedProposal;
+import org.hyperledger.fabric.samples.privatedata.ContractMetrics.LedgerOperation;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A stub that counts and times the private data calls of a transaction and
+ * passes every call on to the peer's stub.
+ *
+ * Each call is recorded in {@link ContractMetrics} by operation and collection,
+ * and added to the running transaction, if one was started. A query is
+ * recorded once, when it is closed, with the time spent opening and iterating
+ * it and the bytes of the values read.
+ */
+final class MeteredStub implements ChaincodeStub {
+    private final ChaincodeStub stub;
+    private final ContractMetrics metrics;
+    private ContractMetrics.Transaction transaction;
+
+    MeteredStub(final ChaincodeStub stub, final ContractMetrics metrics) {
+        this.stub = stub;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts timing the transaction that uses this stub, under its function name.
+     */
+    void begin() {
+        String function = stub.getFunction();
+        transaction = metrics.begin(function == null ? "unknown" : function.substring(function.lastIndexOf(':') + 1));
+    }
+
+    /**
+     * Records the transaction started by {@link #begin()} as completed.
+     */
+    void finish() {
+        if (transaction == null) {
+            return;
+        }
+        transaction.finish();
+        transaction = null;
+    }
+
+    private void record(final LedgerOperation operation, final String collection, final long nanos,
+            final long read, final long written) {
+        metrics.recordCall(operation, collection, read + written, nanos);
+        if (transaction != null) {
+            transaction.addCall(nanos, read, written);
+        }
+    }
+
+    private static int length(final byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    @Override
+    public byte[] getPrivateData(final String collection, final String key) {
+        long start = System.nanoTime();
+        byte[] value = stub.getPrivateData(collection, key);
+        record(LedgerOperation.GET_PRIVATE_DATA, collection, System.nanoTime() - start, length(value), 0);
+        return value;
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(final String collection, final String key) {
+        long start = System.nanoTime();
+        byte[] hash = stub.getPrivateDataHash(collection, key);
+        record(LedgerOperation.GET_PRIVATE_DATA_HASH, collection, System.nanoTime() - start, length(hash), 0);
+        return hash;
+    }
+
+    @Override
+    public void putPrivateData(final String collection, final String key, final byte[] value) {
+        long start = System.nanoTime();
+        stub.putPrivateData(collection, key, value);
+        record(LedgerOperation.PUT_PRIVATE_DATA, collection, System.nanoTime() - start, 0, length(value));
+    }
+
+    @Override
+    public void delPrivateData(final String collection, final String key) {
+        long start = System.nanoTime();
+        stub.delPrivateData(collection, key);
+        record(LedgerOperation.DEL_PRIVATE_DATA, collection, System.nanoTime() - start, 0, 0);
+    }
+
+    @Override
+    public void purgePrivateData(final String collection, final String key) {
+        long start = System.nanoTime();
+        stub.purgePrivateData(collection, key);
+        record(LedgerOperation.PURGE_PRIVATE_DATA, collection, System.nanoTime() - start, 0, 0);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(final String collection, final String startKey,
+            final String endKey) {
+        long start = System.nanoTime();
+        return new MeteredResults(stub.getPrivateDataByRange(collection, startKey, endKey),
+                LedgerOperation.GET_PRIVATE_DATA_BY_RANGE, collection, start);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+            final String compositeKey) {
+        long start = System.nanoTime();
+        return new MeteredResults(stub.getPrivateDataByPartialCompositeKey(collection, compositeKey),
+                LedgerOperation.GET_PRIVATE_DATA_BY_PARTIAL_COMPOSITE_KEY, collection, start);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+            final CompositeKey compositeKey) {
+        long start = System.nanoTime();
+        return new MeteredResults(stub.getPrivateDataByPartialCompositeKey(collection, compositeKey),
+                LedgerOperation.GET_PRIVATE_DATA_BY_PARTIAL_COMPOSITE_KEY, collection, start);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+            final String objectType, final String... attributes) {
+        long start = System.nanoTime();
+        return new MeteredResults(stub.getPrivateDataByPartialCompositeKey(collection, objectType, attributes),
+                LedgerOperation.GET_PRIVATE_DATA_BY_PARTIAL_COMPOSITE_KEY, collection, start);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(final String collection, final String query) {
+        long start = System.nanoTime();
+        return new MeteredResults(stub.getPrivateDataQueryResult(collection, query),
+                LedgerOperation.GET_PRIVATE_DATA_QUERY_RESULT, collection, start);
+    }
+
+    @Override
+    public void setEvent(final String name, final byte[] payload) {
+        long start = System.nanoTime();
+        stub.setEvent(name, payload);
+        record(LedgerOperation.SET_EVENT, name, System.nanoTime() - start, 0, length(payload));
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        return stub.getArgs();
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        return stub.getStringArgs();
+    }
+
+    @Override
+    public String getFunction() {
+        return stub.getFunction();
+    }
+
+    @Override
+    public List<String> getParameters() {
+        return stub.getParameters();
+    }
+
+    @Override
+    public String getTxId() {
+        return stub.getTxId();
+    }
+
+    @Override
+    public String getChannelId() {
+        return stub.getChannelId();
+    }
+
+    @Override
+    public Response invokeChaincode(final String chaincodeName, final List<byte[]> args, final String channel) {
+        return stub.invokeChaincode(chaincodeName, args, channel);
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        return stub.getState(key);
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(final String key) {
+        return stub.getStateValidationParameter(key);
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        stub.putState(key, value);
+    }
+
+    @Override
+    public void setStateValidationParameter(final String key, final byte[] value) {
+        stub.setStateValidationParameter(key, value);
+    }
+
+    @Override
+    public void delState(final String key) {
+        stub.delState(key);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        return stub.getStateByRange(startKey, endKey);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey,
+            final String endKey, final int pageSize, final String bookmark) {
+        return stub.getStateByRangeWithPagination(startKey, endKey, pageSize, bookmark);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+        return stub.getStateByPartialCompositeKey(compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType,
+            final String... attributes) {
+        return stub.getStateByPartialCompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final CompositeKey compositeKey) {
+        return stub.getStateByPartialCompositeKey(compositeKey);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(
+            final CompositeKey compositeKey, final int pageSize, final String bookmark) {
+        return stub.getStateByPartialCompositeKeyWithPagination(compositeKey, pageSize, bookmark);
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(final String objectType, final String... attributes) {
+        return stub.createCompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(final String compositeKey) {
+        return stub.splitCompositeKey(compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(final String query) {
+        return stub.getQueryResult(query);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query,
+            final int pageSize, final String bookmark) {
+        return stub.getQueryResultWithPagination(query, pageSize, bookmark);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(final String key) {
+        return stub.getHistoryForKey(key);
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(final String collection, final String key) {
+        return stub.getPrivateDataValidationParameter(collection, key);
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(final String collection, final String key, final byte[] value) {
+        stub.setPrivateDataValidationParameter(collection, key, value);
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        return stub.getEvent();
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        return stub.getSignedProposal();
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return stub.getTxTimestamp();
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return stub.getCreator();
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return stub.getTransient();
+    }
+
+    @Override
+    public byte[] getBinding() {
+        return stub.getBinding();
+    }
+
+    @Override
+    public String getMspId() {
+        return stub.getMspId();
+    }
+
+    /**
+     * Counts the values read from a query. The shim copies a value on every
+     * getValue(), so each one is copied once here and handed out as is.
+     */
+    private final class MeteredResults implements QueryResultsIterator<KeyValue> {
+        private final QueryResultsIterator<KeyValue> results;
+        private final LedgerOperation operation;
+        private final String collection;
+        private long nanos;
+        private long bytes;
+        private boolean closed;
+
+        MeteredResults(final QueryResultsIterator<KeyValue> results, final LedgerOperation operation,
+                final String collection, final long start) {
+            this.results = results;
+            this.operation = operation;
+            this.collection = collection;
+            this.nanos = System.nanoTime() - start;
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            Iterator<KeyValue> iterator = results.iterator();
+            return new Iterator<KeyValue>() {
+                @Override
+                public boolean hasNext() {
+                    long start = System.nanoTime();
+                    boolean next = iterator.hasNext();
+                    nanos += System.nanoTime() - start;
+                    return next;
+                }
+
+                @Override
+                public KeyValue next() {
+                    long start = System.nanoTime();
+                    KeyValue result = iterator.next();
+                    MeteredValue value = new MeteredValue(result.getKey(), result.getValue());
+                    nanos += System.nanoTime() - start;
+                    bytes += length(value.value);
+                    return value;
+                }
+            };
+        }
+
+        @Override
+        public void close() throws Exception {
+            long start = System.nanoTime();
+            try {
+                results.close();
+            } finally {
+                if (!closed) {
+                    closed = true;
+                    record(operation, collection, nanos + System.nanoTime() - start, bytes, 0);
+                }
+            }
+        }
+    }
+
+    private static final class MeteredValue implements KeyValue {
+        private final String key;
+        private final byte[] value;
+
+        MeteredValue(final String key, final byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return value;
+        }
+
+        @Override
+        public String getStringValue() {
+            return new String(value, UTF_8);
+        }
+    }
+}
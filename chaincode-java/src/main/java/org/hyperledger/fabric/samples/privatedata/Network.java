@@ -0,0 +1,164 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Objects;
+
+/**
+ * A home or backup network of a subscriber.
+ *
+ * Assets store their networks as references, which only hold the netID and the
+ * netType; the network itself is kept once in the {@link NetworkRegistry}. The
+ * netType is kept in the reference so that rich queries and the
+ * operator/netType index still match on it.
+ */
+@DataType
+public final class Network {
+    @Property()
+    private final String netID;
+
+    @Property()
+    private final String netType;
+
+    @Property()
+    private final String cert;
+
+    @Property()
+    private final IpEndPoint ipEndPoint;
+
+    public Network(final String netID, final String netType, final String cert, final IpEndPoint ipEndPoint) {
+        this.netID = netID;
+        this.netType = netType;
+        this.cert = cert;
+        this.ipEndPoint = ipEndPoint;
+    }
+
+    public String getNetID() {
+        return netID;
+    }
+
+    public String getNetType() {
+        return netType;
+    }
+
+    public String getCert() {
+        return cert;
+    }
+
+    public IpEndPoint getIpEndPoint() {
+        return ipEndPoint;
+    }
+
+    /**
+     * Returns the reference to a registered network, with its netType unknown.
+     */
+    static Network reference(final String netID) {
+        return reference(netID, null);
+    }
+
+    /**
+     * Returns the reference to a registered network.
+     */
+    static Network reference(final String netID, final String netType) {
+        return new Network(netID, netType, null, null);
+    }
+
+    /**
+     * Returns true if this network only holds its netID and netType.
+     */
+    boolean isReference() {
+        return cert == null && ipEndPoint == null;
+    }
+
+    void write(final JsonWriter writer) {
+        write(writer, null);
+    }
+
+    /**
+     * Writes this network, with the MSP ID of the org owning it when it goes to the {@link NetworkRegistry}.
+     * Keys are written in sorted order.
+     */
+    void write(final JsonWriter writer, final String owner) {
+        if (isReference()) {
+            writer.beginObject().name("netID").value(netID);
+            if (netType != null) {
+                writer.name("netType").value(netType);
+            }
+            writer.endObject();
+            return;
+        }
+        writer.beginObject();
+        if (cert != null) {
+            writer.name("cert").value(cert);
+        }
+        writer.name("ipEndPoint");
+        if (ipEndPoint == null) {
+            writer.nullValue();
+        } else {
+            ipEndPoint.write(writer);
+        }
+        writer.name("netID").value(netID)
+                .name("netType").value(netType);
+        if (owner != null) {
+            writer.name("owner").value(owner);
+        }
+        writer.endObject();
+    }
+
+    static Network read(final JsonReader reader) {
+        String netID = null;
+        String netType = null;
+        String cert = null;
+        IpEndPoint ipEndPoint = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "netID":
+                    netID = reader.nextString();
+                    break;
+                case "netType":
+                    netType = reader.nextString();
+                    break;
+                case "cert":
+                    cert = reader.nextString();
+                    break;
+                case "ipEndPoint":
+                    ipEndPoint = IpEndPoint.read(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (cert == null && ipEndPoint == null) {
+            return reference(Asset.require(netID, "netID"), netType);
+        }
+        return new Network(Asset.require(netID, "netID"), Asset.require(netType, "netType"), cert,
+                Asset.require(ipEndPoint, "ipEndPoint"));
+    }
+
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        Network other = (Network) obj;
+        return Objects.equals(netID, other.netID) && Objects.equals(netType, other.netType)
+                && Objects.equals(cert, other.cert) && Objects.equals(ipEndPoint, other.ipEndPoint);
+    }
+
+    public int hashCode() {
+        return Objects.hash(netID, netType, cert, ipEndPoint);
+    }
+
+    public String toString() {
+        return netID + "/" + netType + "@" + ipEndPoint;
+    }
+}
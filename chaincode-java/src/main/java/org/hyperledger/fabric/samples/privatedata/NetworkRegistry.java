@@ -0,0 +1,139 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hyperledger.fabric.samples.privatedata.AssetTransfer.ASSET_COLLECTION_NAME;
+
+/**
+ * Home and backup networks, kept once in assetCollection and referenced by assets.
+ *
+ * A network is stored as JSON under the key network~netID, and assets only
+ * store the netIDs and netTypes of their networks, so a new address or
+ * certificate of a network is a single write however many subscribers it
+ * serves. The netType of a registered network therefore never changes. The keys are
+ * composite keys, which simple range queries ignore, so networks never show up
+ * as assets.
+ *
+ * Networks are written once and read by every asset referencing them, so
+ * assetCollection must never purge them: its blockToLive has to be 0, as in
+ * collections_config.json. A purged network leaves the assets referencing it
+ * unreadable. Rewriting the network whenever an asset references it would keep
+ * it alive, but concurrent writes of assets on the same network would then
+ * conflict.
+ *
+ * A network record also holds the MSP ID of the org that registered it, and
+ * only that org may replace it. Networks registered before owners were recorded
+ * have none, and the first org replacing them becomes their owner.
+ *
+ * One registry serves one transaction: networks are read through its
+ * {@link TransactionCache} and parsed once, however many assets reference them.
+ */
+final class NetworkRegistry {
+    static final String PREFIX = "network~netID";
+
+    private final TransactionCache cache;
+    private final Map<String, Network> networks = new HashMap<>();
+
+    NetworkRegistry(final TransactionCache cache) {
+        this.cache = cache;
+    }
+
+    static String key(final String netID) {
+        return new CompositeKey(PREFIX, netID).toString();
+    }
+
+    /**
+     * Returns a registered network, or null if it is not registered.
+     */
+    Network get(final String netID) {
+        Network network = networks.get(netID);
+        if (network == null) {
+            byte[] value = cache.getPrivateData(ASSET_COLLECTION_NAME, key(netID));
+            if (value == null) {
+                return null;
+            }
+            network = Network.read(new JsonReader(value));
+            networks.put(netID, network);
+        }
+        return network;
+    }
+
+    /**
+     * Returns the MSP ID of the org owning a registered network, or null if the network has no recorded owner.
+     */
+    String owner(final String netID) {
+        byte[] value = cache.getPrivateData(ASSET_COLLECTION_NAME, key(netID));
+        if (value == null) {
+            return null;
+        }
+        String owner = null;
+        JsonReader reader = new JsonReader(value);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("owner".equals(reader.nextName())) {
+                owner = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return owner;
+    }
+
+    /**
+     * Registers a network, or replaces the registered network with the same netID, and returns the written value.
+     *
+     * The org of the submitting client is recorded as the owner of the network.
+     */
+    byte[] put(final Network network) {
+        JsonWriter writer = new JsonWriter(256);
+        network.write(writer, cache.getClientMspId());
+        byte[] value = writer.toBytes();
+        cache.putPrivateData(ASSET_COLLECTION_NAME, key(network.getNetID()), value);
+        networks.put(network.getNetID(), network);
+        return value;
+    }
+
+    /**
+     * Returns the reference to a network, registering it first if it is a full network that is not registered.
+     *
+     * The reference takes the netType of the registered network.
+     */
+    Network reference(final Network network) {
+        Network registered = get(network.getNetID());
+        if (registered == null && !network.isReference()) {
+            put(network);
+            registered = network;
+        }
+        return Network.reference(network.getNetID(), registered != null ? registered.getNetType() : network.getNetType());
+    }
+
+    /**
+     * Returns an asset with its network references replaced by the registered networks.
+     */
+    Asset expand(final Asset asset) {
+        if (!asset.hasReferences()) {
+            return asset;
+        }
+        return asset.withNetworks(expand(asset, asset.getHomeNetwork()), expand(asset, asset.getBackupNetwork()));
+    }
+
+    private Network expand(final Asset asset, final Network network) {
+        if (!network.isReference()) {
+            return network;
+        }
+        Network registered = get(network.getNetID());
+        if (registered == null) {
+            throw new ChaincodeException(String.format("Network %s of %s is not registered", network.getNetID(),
+                    asset.getImsi()), "DATA_ERROR");
+        }
+        return registered;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * One page of a CouchDB rich query over private data.
+ *
+ * The peer offers no pagination for private data queries, so pages are built
+ * here: results are sorted by imsi, the bookmark is the last imsi returned, and
+ * the next page adds imsi &gt; bookmark to the selector. Iteration stops after
+ * one record past the page, which closes the query before the peer fetches
+ * more batches from CouchDB.
+ *
+ * To sort, CouchDB needs an index on the sort fields. The sort starts with the
+ * top-level equality fields of the selector, in the order given, followed by
+ * imsi, so a selector such as {"operator":"X","homeNetwork.netType":"Edge"} is
+ * served by the index [operator, homeNetwork.netType, imsi] shipped in
+ * META-INF. Values stored in the binary format are not visible to queries.
+ */
+final class PagedQuery {
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 500;
+
+    private static final String SORT_FIELD = "imsi";
+
+    private final String query;
+    private final int pageSize;
+
+    /**
+     * @param selector a Mango selector, or a query object with a "selector" field
+     * @param pageSize records per page; 0 or less means the default, larger than the maximum is capped
+     * @param bookmark the bookmark returned with the previous page, or empty for the first page
+     */
+    PagedQuery(final String selector, final int pageSize, final String bookmark) {
+        this.query = buildQuery(parseSelector(selector), bookmark == null ? "" : bookmark);
+        this.pageSize = pageSize <= 0 ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+    }
+
+    String getQuery() {
+        return query;
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Runs the query and returns {"records":[...],"fetchedRecordsCount":n,"bookmark":"..."}.
+     * The bookmark is empty on the last page.
+     */
+    String execute(final ChaincodeStub stub, final String collection, final BiConsumer<byte[], JsonWriter> record) {
+        JsonWriter out = new JsonWriter(pageSize * 512);
+        out.beginObject().name("records").beginArray();
+        int count = 0;
+        String last = "";
+        boolean more = false;
+        try (QueryResultsIterator<KeyValue> results = stub.getPrivateDataQueryResult(collection, query)) {
+            for (KeyValue result : results) {
+                if (count == pageSize) {
+                    more = true;
+                    break;
+                }
+                record.accept(result.getValue(), out);
+                last = result.getKey();
+                count++;
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to close query on " + collection, e);
+        }
+        out.endArray();
+        out.name("fetchedRecordsCount").value(count);
+        out.name("bookmark").value(more ? last : "");
+        out.endObject();
+        return out.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parseSelector(final String selector) {
+        JsonReader reader = new JsonReader(selector);
+        Object value = reader.nextValue();
+        reader.endDocument();
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Selector must be a JSON object");
+        }
+        Map<String, Object> map = (Map<String, Object>) value;
+        Object nested = map.get("selector");
+        if (nested instanceof Map) {
+            return (Map<String, Object>) nested;
+        }
+        return map;
+    }
+
+    private static String buildQuery(final Map<String, Object> selector, final String bookmark) {
+        List<Object> sort = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : selector.entrySet()) {
+            Object value = entry.getValue();
+            boolean scalar = value instanceof String || value instanceof Number || value instanceof Boolean;
+            if (scalar && !entry.getKey().startsWith("$") && !entry.getKey().equals(SORT_FIELD)) {
+                sort.add(Collections.singletonMap(entry.getKey(), "asc"));
+            }
+        }
+        sort.add(Collections.singletonMap(SORT_FIELD, "asc"));
+
+        Map<String, Object> after = Collections.singletonMap(SORT_FIELD,
+                Collections.singletonMap("$gt", bookmark));
+        List<Object> conditions = new ArrayList<>();
+        conditions.add(selector);
+        conditions.add(after);
+
+        Map<String, Object> query = new LinkedHashMap<>();
+        query.put("selector", Collections.singletonMap("$and", conditions));
+        query.put("sort", sort);
+        return new JsonWriter().value(query).toString();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Slice profiles, kept once per org collection and referenced by subscribers.
+ *
+ * A profile is a slice (sst, default indicator, session with its AMBR, QoS and
+ * ARP) stored under the key profile~hash, where hash is the hex SHA-256 of the
+ * profile's JSON with sorted keys. That is also the hash the peer keeps on
+ * chain for the value. Equal slices therefore share one record, a profile is
+ * never changed in place, and registering a slice that exists writes nothing.
+ * Subscribers that move to another profile only rewrite their own record.
+ *
+ * A profile is written once and read by every subscriber referencing it, so the
+ * org collections must never purge it: their blockToLive has to be 0, as in
+ * collections_config.json. A purged profile leaves the subscribers referencing
+ * it unreadable. Rewriting the profile with each subscriber would keep it
+ * alive, but UpdateSqn and CompactSqn only hold its hash and would have to read
+ * it first, so concurrent writes of subscribers on one profile would conflict.
+ *
+ * One store serves one transaction: profiles are read through its
+ * {@link TransactionCache} and parsed once, however many subscribers use them.
+ */
+final class ProfileStore {
+    static final String PREFIX = "profile~hash";
+
+    private final TransactionCache cache;
+    private final Map<String, Map<String, Slice>> profiles = new HashMap<>();
+
+    ProfileStore(final TransactionCache cache) {
+        this.cache = cache;
+    }
+
+    static String key(final String hash) {
+        return new CompositeKey(PREFIX, hash).toString();
+    }
+
+    static byte[] serialize(final Slice slice) {
+        JsonWriter writer = new JsonWriter(256);
+        slice.write(writer);
+        return writer.toBytes();
+    }
+
+    static String hash(final Slice slice) {
+        return Hex.encode(Sha256.digest(serialize(slice)));
+    }
+
+    /**
+     * Stores a profile unless it already exists, and returns its hash.
+     */
+    String register(final String collection, final Slice slice) {
+        byte[] value = serialize(slice);
+        String hash = Hex.encode(Sha256.digest(value));
+        String key = key(hash);
+        if (!cache.exists(collection, key)) {
+            cache.putPrivateData(collection, key, value);
+        }
+        known(collection).put(hash, slice);
+        return hash;
+    }
+
+    /**
+     * Returns the slice of a profile, or null if it does not exist.
+     */
+    Slice get(final String collection, final String hash) {
+        Map<String, Slice> known = known(collection);
+        Slice slice = known.get(hash);
+        if (slice == null) {
+            byte[] value = cache.getPrivateData(collection, key(hash));
+            if (value == null) {
+                return null;
+            }
+            slice = Slice.read(new JsonReader(value));
+            known.put(hash, slice);
+        }
+        return slice;
+    }
+
+    /**
+     * Returns true if the profile exists, without reading it.
+     */
+    boolean exists(final String collection, final String hash) {
+        return known(collection).containsKey(hash) || cache.exists(collection, key(hash));
+    }
+
+    /**
+     * Fills in the slice of details read from a collection, if they reference a profile.
+     */
+    AssetPrivateDetails resolve(final String collection, final AssetPrivateDetails details) {
+        if (details.getProfile() == null || details.getSlice() != null) {
+            return details;
+        }
+        Slice slice = get(collection, details.getProfile());
+        if (slice == null) {
+            throw new ChaincodeException(String.format("Profile %s of %s does not exist in collection %s",
+                    details.getProfile(), details.getImsi(), collection), "DATA_ERROR");
+        }
+        return details.withProfile(details.getProfile(), slice);
+    }
+
+    /**
+     * Writes every profile of a collection as a JSON array of {"hash":..., "slice":{...}}, in hash order.
+     */
+    String list(final String collection) {
+        JsonWriter writer = new JsonWriter(1024);
+        writer.beginArray();
+        try (QueryResultsIterator<KeyValue> results = cache.getStub()
+                .getPrivateDataByPartialCompositeKey(collection, new CompositeKey(PREFIX))) {
+            for (KeyValue result : results) {
+                String hash = CompositeKey.parseCompositeKey(result.getKey()).getAttributes().get(0);
+                Slice slice = Slice.read(new JsonReader(result.getValue()));
+                known(collection).put(hash, slice);
+                writer.beginObject().name("hash").value(hash).name("slice");
+                slice.write(writer);
+                writer.endObject();
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to close profile query on " + collection, e);
+        }
+        writer.endArray();
+        return writer.toString();
+    }
+
+    private Map<String, Slice> known(final String collection) {
+        return profiles.computeIfAbsent(collection, c -> new HashMap<>());
+    }
+}
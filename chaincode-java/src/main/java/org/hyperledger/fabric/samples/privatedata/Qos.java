@@ -1,33 +1,71 @@
 package org.hyperledger.fabric.samples.privatedata;
 
-import java.util.HashMap;
-import java.util.Map;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
 
+import java.util.Objects;
+
+@DataType
 public final class Qos {
-    private int index;
-    private Map<String, Integer> arp = new HashMap<>();
+    @Property()
+    private final int index;
 
-    public Qos() {
-    }
+    @Property()
+    private final Arp arp;
 
-    //to avoid hiding field
-    public Qos(final int inde) {
-        this.index = inde;
+    public Qos(final int index, final Arp arp) {
+        this.index = index;
+        this.arp = arp;
     }
 
     public int getIndex() {
         return index;
     }
 
-    public void setIndex(final int inde) {
-        this.index = inde;
+    public Arp getArp() {
+        return arp;
     }
 
-    public Map<String, Integer> getArp() {
-        return arp;
+    void write(final JsonWriter writer) {
+        writer.beginObject().name("arp");
+        arp.write(writer);
+        writer.name("index").value(index)
+                .endObject();
+    }
+
+    static Qos read(final JsonReader reader) {
+        Integer index = null;
+        Arp arp = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "index":
+                    index = reader.nextInt();
+                    break;
+                case "arp":
+                    arp = Arp.read(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new Qos(Asset.require(index, "index"), Asset.require(arp, "arp"));
+    }
+
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        Qos other = (Qos) obj;
+        return index == other.index && Objects.equals(arp, other.arp);
     }
 
-    public void setArp(final Map<String, Integer> ar) {
-        this.arp = ar;
+    public int hashCode() {
+        return Objects.hash(index, arp);
     }
 }
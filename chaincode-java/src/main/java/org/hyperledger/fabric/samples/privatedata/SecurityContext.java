@@ -0,0 +1,161 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 5G AKA authentication material of a subscriber.
+ *
+ * k and opc are held as raw bytes and sqn as a 48-bit counter; on the ledger
+ * and towards clients they keep their lowercase hex string form.
+ */
+@DataType
+public final class SecurityContext {
+    static final int SQN_HEX_LENGTH = 12;
+
+    @Property()
+    private final String k;
+
+    @Property()
+    private final String amf;
+
+    @Property()
+    private final String opc;
+
+    @Property()
+    private final String sqn;
+
+    private final byte[] kBytes;
+
+    private final byte[] opcBytes;
+
+    private final long sqnValue;
+
+    public SecurityContext(final byte[] k, final String amf, final byte[] opc, final long sqn) {
+        this(k.clone(), Hex.encode(k), amf, opc.clone(), Hex.encode(opc), sqn);
+    }
+
+    private SecurityContext(final byte[] kBytes, final String k, final String amf, final byte[] opcBytes,
+            final String opc, final long sqn) {
+        this.kBytes = kBytes;
+        this.k = k;
+        this.amf = amf;
+        this.opcBytes = opcBytes;
+        this.opc = opc;
+        this.sqnValue = sqn;
+        this.sqn = formatSqn(sqn);
+    }
+
+    public String getK() {
+        return k;
+    }
+
+    public String getAmf() {
+        return amf;
+    }
+
+    public String getOpc() {
+        return opc;
+    }
+
+    public String getSqn() {
+        return sqn;
+    }
+
+    byte[] kBytes() {
+        return kBytes.clone();
+    }
+
+    byte[] opcBytes() {
+        return opcBytes.clone();
+    }
+
+    long sqnValue() {
+        return sqnValue;
+    }
+
+    /**
+     * Returns a copy of this context with a different sequence number.
+     */
+    public SecurityContext withSqn(final long newSqn) {
+        return new SecurityContext(kBytes, k, amf, opcBytes, opc, newSqn);
+    }
+
+    // keys are written in sorted order
+    void write(final JsonWriter writer) {
+        writer.beginObject()
+                .name("amf").value(amf)
+                .name("k").value(k)
+                .name("opc").value(opc)
+                .name("sqn").value(sqn)
+                .endObject();
+    }
+
+    static SecurityContext read(final JsonReader reader) {
+        byte[] k = null;
+        String amf = null;
+        byte[] opc = null;
+        Long sqn = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "k":
+                    k = Hex.decode(reader.nextString());
+                    break;
+                case "amf":
+                    amf = reader.nextString();
+                    break;
+                case "opc":
+                    opc = Hex.decode(reader.nextString());
+                    break;
+                case "sqn":
+                    sqn = parseSqn(reader.nextString());
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new SecurityContext(Asset.require(k, "k"), Asset.require(amf, "amf"), Asset.require(opc, "opc"),
+                Asset.require(sqn, "sqn"));
+    }
+
+    static long parseSqn(final String hex) {
+        if (hex.isEmpty() || hex.length() > SQN_HEX_LENGTH || !Hex.isHex(hex.length() % 2 == 0 ? hex : "0" + hex)) {
+            throw new IllegalArgumentException("Invalid sqn: " + hex);
+        }
+        return Long.parseLong(hex, 16);
+    }
+
+    static String formatSqn(final long sqn) {
+        String hex = Long.toHexString(sqn);
+        StringBuilder sb = new StringBuilder(SQN_HEX_LENGTH);
+        for (int i = hex.length(); i < SQN_HEX_LENGTH; i++) {
+            sb.append('0');
+        }
+        return sb.append(hex).toString();
+    }
+
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        SecurityContext other = (SecurityContext) obj;
+        return sqnValue == other.sqnValue && Arrays.equals(kBytes, other.kBytes) && Objects.equals(amf, other.amf)
+                && Arrays.equals(opcBytes, other.opcBytes);
+    }
+
+    public int hashCode() {
+        return Objects.hash(Arrays.hashCode(kBytes), amf, Arrays.hashCode(opcBytes), sqnValue);
+    }
+}
@@ -1,31 +1,36 @@
 package org.hyperledger.fabric.samples.privatedata;
 
-import java.util.HashMap;
-import java.util.Map;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
 
+import java.util.Objects;
+
+@DataType
 public final class Session {
-    private String name;
-    private int type;
-    private String pcc_rule;
-    private Map<String, Object> ambr = new HashMap<>();
-    private Qos qos;
+    @Property()
+    private final String name;
 
-    public Session() {
+    @Property()
+    private final int type;
 
-    }
+    @Property()
+    private final String pcc_rule;
+
+    @Property()
+    private final Ambr ambr;
 
-    public Session(final String name, final int type, final String pcc_rule, final Qos qos) {
+    @Property()
+    private final Qos qos;
+
+    public Session(final String name, final int type, final String pcc_rule, final Ambr ambr, final Qos qos) {
         this.name = name;
         this.type = type;
         this.pcc_rule = pcc_rule;
+        this.ambr = ambr;
         this.qos = qos;
     }
 
-    public void setAmbr(final Map<String, Object> amb) {
-        this.ambr = amb;
-    }
-
-    public Map<String, Object> getAmbr() {
+    public Ambr getAmbr() {
         return ambr;
     }
 
@@ -33,32 +38,84 @@ public final class Session {
         return name;
     }
 
-    public void setName(final String nam) {
-        this.name = nam;
-    }
-
     public int getType() {
         return type;
     }
 
-    public void setType(final int typ) {
-        this.type = typ;
-    }
-
     public String getPcc_rule() {
         return pcc_rule;
     }
 
-    public void setPcc_rule(final String pcc_rul) {
-        this.pcc_rule = pcc_rul;
-    }
-
     public Qos getQos() {
         return qos;
     }
 
-    public void setQos(final Qos qo) {
-        this.qos = qo;
+    /**
+     * Returns a copy of this session with a different QoS.
+     */
+    public Session withQos(final Qos newQos) {
+        return new Session(name, type, pcc_rule, ambr, newQos);
     }
 
+    // keys are written in sorted order
+    void write(final JsonWriter writer) {
+        writer.beginObject().name("ambr");
+        ambr.write(writer);
+        writer.name("name").value(name)
+                .name("pcc_rule").value(pcc_rule)
+                .name("qos");
+        qos.write(writer);
+        writer.name("type").value(type)
+                .endObject();
+    }
+
+    static Session read(final JsonReader reader) {
+        String name = null;
+        Integer type = null;
+        String pccRule = null;
+        Ambr ambr = null;
+        Qos qos = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "type":
+                    type = reader.nextInt();
+                    break;
+                case "pcc_rule":
+                    pccRule = reader.nextString();
+                    break;
+                case "ambr":
+                    ambr = Ambr.read(reader);
+                    break;
+                case "qos":
+                    qos = Qos.read(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new Session(Asset.require(name, "name"), Asset.require(type, "type"), Asset.require(pccRule, "pcc_rule"),
+                Asset.require(ambr, "ambr"), Asset.require(qos, "qos"));
+    }
+
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        Session other = (Session) obj;
+        return type == other.type && Objects.equals(name, other.name) && Objects.equals(pcc_rule, other.pcc_rule)
+                && Objects.equals(ambr, other.ambr) && Objects.equals(qos, other.qos);
+    }
+
+    public int hashCode() {
+        return Objects.hash(name, type, pcc_rule, ambr, qos);
+    }
 }
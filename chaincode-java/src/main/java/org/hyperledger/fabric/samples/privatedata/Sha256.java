@@ -0,0 +1,31 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256, the hash the peer keeps for every private data value.
+ */
+final class Sha256 {
+
+    private Sha256() {
+    }
+
+    static byte[] digest(final byte[] value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Compares the hash of a value with an expected hash in constant time.
+     */
+    static boolean matches(final byte[] value, final byte[] hash) {
+        return MessageDigest.isEqual(digest(value), hash);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Objects;
+
+/**
+ * Network slice subscription: slice/service type and its default PDU session.
+ */
+@DataType
+public final class Slice {
+    @Property()
+    private final int sst;
+
+    @Property()
+    private final boolean default_indicator;
+
+    @Property()
+    private final Session session;
+
+    public Slice(final int sst, final boolean default_indicator, final Session session) {
+        this.sst = sst;
+        this.default_indicator = default_indicator;
+        this.session = session;
+    }
+
+    public int getSst() {
+        return sst;
+    }
+
+    public boolean isDefault_indicator() {
+        return default_indicator;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Returns a copy of this slice with a different default session.
+     */
+    public Slice withSession(final Session newSession) {
+        return new Slice(sst, default_indicator, newSession);
+    }
+
+    // keys are written in sorted order
+    void write(final JsonWriter writer) {
+        writer.beginObject()
+                .name("default_indicator").value(default_indicator)
+                .name("session");
+        session.write(writer);
+        writer.name("sst").value(sst)
+                .endObject();
+    }
+
+    static Slice read(final JsonReader reader) {
+        Integer sst = null;
+        Boolean defaultIndicator = null;
+        Session session = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "sst":
+                    sst = reader.nextInt();
+                    break;
+                case "default_indicator":
+                    defaultIndicator = reader.nextBoolean();
+                    break;
+                case "session":
+                    session = Session.read(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new Slice(Asset.require(sst, "sst"), Asset.require(defaultIndicator, "default_indicator"),
+                Asset.require(session, "session"));
+    }
+
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        Slice other = (Slice) obj;
+        return sst == other.sst && default_indicator == other.default_indicator && Objects.equals(session, other.session);
+    }
+
+    public int hashCode() {
+        return Objects.hash(sst, default_indicator, session);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Pending sequence number increments, kept as composite keys next to the private details.
+ *
+ * Every increment is written under its own key sqn~imsi~txid, without reading
+ * anything, so concurrent authentications of one subscriber never touch the
+ * same key and commit without MVCC conflicts. The current sqn is the stored
+ * base value plus the sum of the pending deltas, modulo 2^48. CompactSqn folds
+ * the deltas into the base record and deletes them.
+ */
+final class SqnDeltas {
+    static final String PREFIX = "sqn~imsi~txid";
+    static final long SQN_MODULUS = 1L << 48;
+
+    private final List<String> keys;
+    private final long total;
+
+    private SqnDeltas(final List<String> keys, final long total) {
+        this.keys = keys;
+        this.total = total;
+    }
+
+    /**
+     * Records an increment for the current transaction.
+     */
+    static void add(final TransactionCache cache, final String collection, final String imsi, final long delta) {
+        String key = new CompositeKey(PREFIX, imsi, cache.getStub().getTxId()).toString();
+        cache.putPrivateData(collection, key, Long.toString(delta).getBytes(UTF_8));
+    }
+
+    /**
+     * Reads the pending increments of a subscriber with a key range scan.
+     */
+    static SqnDeltas find(final TransactionCache cache, final String collection, final String imsi) {
+        List<String> keys = new ArrayList<>();
+        long total = 0;
+        try (QueryResultsIterator<KeyValue> results = cache.getStub()
+                .getPrivateDataByPartialCompositeKey(collection, new CompositeKey(PREFIX, imsi))) {
+            for (KeyValue result : results) {
+                keys.add(result.getKey());
+                total = (total + Long.parseLong(new String(result.getValue(), UTF_8))) % SQN_MODULUS;
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to close sqn delta query " + imsi, e);
+        }
+        return new SqnDeltas(keys, total);
+    }
+
+    boolean isEmpty() {
+        return keys.isEmpty();
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    /**
+     * Returns the sqn after applying the pending increments to a base value.
+     */
+    long applyTo(final long sqn) {
+        return (sqn + total) % SQN_MODULUS;
+    }
+
+    /**
+     * Deletes the pending increments, after they were folded into the base record.
+     */
+    void clear(final TransactionCache cache, final String collection) {
+        for (String key : keys) {
+            cache.delPrivateData(collection, key);
+        }
+    }
+
+    /**
+     * Opens a cursor over the pending increments of every subscriber in a collection.
+     */
+    static Cursor cursor(final ChaincodeStub stub, final String collection) {
+        return new Cursor(stub, collection);
+    }
+
+    /**
+     * Walks the increments of a whole collection in IMSI order, for scans that
+     * visit subscribers in key order. A single query serves the whole scan; the
+     * increments of IMSIs before the first one asked for are read and skipped,
+     * which stays cheap as long as CompactSqn keeps the backlog short.
+     */
+    static final class Cursor implements AutoCloseable {
+        private final ChaincodeStub stub;
+        private final String collection;
+        private QueryResultsIterator<KeyValue> results;
+        private Iterator<KeyValue> iterator;
+        private String nextImsi;
+        private long nextDelta;
+
+        private Cursor(final ChaincodeStub stub, final String collection) {
+            this.stub = stub;
+            this.collection = collection;
+        }
+
+        /**
+         * Returns the sqn of a subscriber after its pending increments; IMSIs must be asked for in key order.
+         */
+        long applyTo(final String imsi, final long sqn) {
+            if (iterator == null) {
+                results = stub.getPrivateDataByPartialCompositeKey(collection, new CompositeKey(PREFIX));
+                iterator = results.iterator();
+                advance();
+            }
+            long total = 0;
+            while (nextImsi != null && nextImsi.compareTo(imsi) <= 0) {
+                if (nextImsi.equals(imsi)) {
+                    total = (total + nextDelta) % SQN_MODULUS;
+                }
+                advance();
+            }
+            return (sqn + total) % SQN_MODULUS;
+        }
+
+        private void advance() {
+            if (!iterator.hasNext()) {
+                nextImsi = null;
+                return;
+            }
+            KeyValue result = iterator.next();
+            nextImsi = stub.splitCompositeKey(result.getKey()).getAttributes().get(0);
+            nextDelta = Long.parseLong(new String(result.getValue(), UTF_8));
+        }
+
+        @Override
+        public void close() {
+            if (results == null) {
+                return;
+            }
+            try {
+                results.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to close sqn delta query on " + collection, e);
+            }
+        }
+    }
+}
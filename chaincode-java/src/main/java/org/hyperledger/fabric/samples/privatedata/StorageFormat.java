@@ -0,0 +1,38 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+/**
+ * Encoding used when writing Asset and AssetPrivateDetails values.
+ *
+ * Reads always detect the encoding from the value header, so records written in
+ * either format stay readable and are migrated on their next write. The format
+ * is chosen with the ASSET_STORAGE_FORMAT environment variable and must be the
+ * same on every endorsing peer, otherwise their write sets will not match.
+ * CouchDB rich queries and indexes only see JSON values.
+ */
+public enum StorageFormat {
+    JSON,
+    BINARY;
+
+    static final String ENV_VARIABLE = "ASSET_STORAGE_FORMAT";
+
+    private static final StorageFormat CURRENT = parse(System.getenv(ENV_VARIABLE));
+
+    public static StorageFormat current() {
+        return CURRENT;
+    }
+
+    static StorageFormat parse(final String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return JSON;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            ContractLogger.get(StorageFormat.class).warn("Unknown %s value %s, using JSON", ENV_VARIABLE, value);
+            return JSON;
+        }
+    }
+}
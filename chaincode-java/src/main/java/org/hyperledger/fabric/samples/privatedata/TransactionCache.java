@@ -0,0 +1,140 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-transaction view of the ledger and the caller.
+ *
+ * Client and peer MSP IDs and the transient map are fetched once. Private data
+ * reads are cached per collection and key, including misses, and writes and
+ * deletes made through this cache are served back to later reads in the same
+ * transaction. Every key is therefore fetched from the peer at most once.
+ *
+ * Existence checks use the value hash, which is smaller than the value and is
+ * also available on peers that are not members of the collection. Slice
+ * profiles and networks are read through the cache by its {@link ProfileStore}
+ * and {@link NetworkRegistry}.
+ */
+final class TransactionCache {
+    // marks a key known to be absent
+    private static final byte[] ABSENT = new byte[0];
+
+    private final Context ctx;
+    private final ChaincodeStub stub;
+    private final Map<String, Map<String, byte[]>> privateData = new HashMap<>();
+    private final Map<String, Map<String, byte[]>> hashes = new HashMap<>();
+
+    private String clientMspId;
+    private String peerMspId;
+    private Map<String, byte[]> transientMap;
+    private ProfileStore profiles;
+    private NetworkRegistry networks;
+
+    TransactionCache(final Context ctx) {
+        this.ctx = ctx;
+        this.stub = ctx.getStub();
+    }
+
+    ChaincodeStub getStub() {
+        return stub;
+    }
+
+    String getClientMspId() {
+        if (clientMspId == null) {
+            clientMspId = ctx.getClientIdentity().getMSPID();
+        }
+        return clientMspId;
+    }
+
+    String getPeerMspId() {
+        if (peerMspId == null) {
+            peerMspId = stub.getMspId();
+        }
+        return peerMspId;
+    }
+
+    Map<String, byte[]> getTransient() {
+        if (transientMap == null) {
+            transientMap = stub.getTransient();
+        }
+        return transientMap;
+    }
+
+    ProfileStore getProfiles() {
+        if (profiles == null) {
+            profiles = new ProfileStore(this);
+        }
+        return profiles;
+    }
+
+    NetworkRegistry getNetworks() {
+        if (networks == null) {
+            networks = new NetworkRegistry(this);
+        }
+        return networks;
+    }
+
+    /**
+     * Returns the value of a key, or null if it does not exist.
+     */
+    byte[] getPrivateData(final String collection, final String key) {
+        Map<String, byte[]> values = collection(collection);
+        byte[] value = values.get(key);
+        if (value == null) {
+            value = stub.getPrivateData(collection, key);
+            if (value == null || value.length == 0) {
+                value = ABSENT;
+            }
+            values.put(key, value);
+        }
+        return value == ABSENT ? null : value;
+    }
+
+    /**
+     * Returns the SHA-256 hash of a value, or null if it does not exist.
+     */
+    byte[] getPrivateDataHash(final String collection, final String key) {
+        byte[] value = collection(collection).get(key);
+        if (value != null) {
+            return value == ABSENT ? null : Sha256.digest(value);
+        }
+        Map<String, byte[]> known = hashes.computeIfAbsent(collection, c -> new HashMap<>());
+        byte[] hash = known.get(key);
+        if (hash == null) {
+            hash = stub.getPrivateDataHash(collection, key);
+            if (hash == null || hash.length == 0) {
+                hash = ABSENT;
+            }
+            known.put(key, hash);
+        }
+        return hash == ABSENT ? null : hash;
+    }
+
+    /**
+     * Returns true if the key exists, without reading its value unless it is already cached.
+     */
+    boolean exists(final String collection, final String key) {
+        return getPrivateDataHash(collection, key) != null;
+    }
+
+    void putPrivateData(final String collection, final String key, final byte[] value) {
+        stub.putPrivateData(collection, key, value);
+        collection(collection).put(key, value.length == 0 ? ABSENT : value);
+    }
+
+    void delPrivateData(final String collection, final String key) {
+        stub.delPrivateData(collection, key);
+        collection(collection).put(key, ABSENT);
+    }
+
+    private Map<String, byte[]> collection(final String collection) {
+        return privateData.computeIfAbsent(collection, c -> new HashMap<>());
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional compression of Asset and AssetPrivateDetails values with a shared dictionary.
+ *
+ * Subscriber records are small and alike, so on their own they barely
+ * compress; deflate with a preset dictionary, trained on a sample of records,
+ * finds their common strings in the dictionary instead. A compressed value
+ * starts with the magic bytes A5 C5, the id of its dictionary and the length of
+ * the value it holds as a varint, followed by the raw deflate stream. JSON
+ * values start with '{' and binary ones with A5 5A, so reads detect compressed
+ * values and decompress them, and values written without compression keep
+ * working.
+ *
+ * Dictionaries are resources of the chaincode, dictionary-ID.bin next to this
+ * class, and are never changed once released: a new sample gives a new id.
+ * Writes use the dictionary named by the ASSET_COMPRESSION_DICTIONARY
+ * environment variable, and are not compressed when it is unset or 0. Like the
+ * storage format, it must be the same on every endorsing peer, and a new id
+ * should only be used once every peer runs a chaincode that has it. Values
+ * that would not get smaller are written uncompressed. CouchDB rich queries
+ * and indexes do not see compressed values.
+ */
+final class ValueCompression {
+    static final byte MAGIC_0 = (byte) 0xA5;
+    static final byte MAGIC_1 = (byte) 0xC5;
+    static final String ENV_VARIABLE = "ASSET_COMPRESSION_DICTIONARY";
+
+    // ids are one byte in the header
+    private static final int MAX_ID = 255;
+    // the largest expansion of a deflate stream
+    private static final long MAX_RATIO = 1032;
+    private static final AtomicReferenceArray<byte[]> DICTIONARIES = new AtomicReferenceArray<>(MAX_ID + 1);
+    private static final int CURRENT = parse(System.getenv(ENV_VARIABLE));
+
+    private static final ThreadLocal<Deflater> DEFLATER =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private ValueCompression() {
+    }
+
+    /**
+     * Returns the id of the dictionary used for writes, 0 if values are not compressed.
+     */
+    static int current() {
+        return CURRENT;
+    }
+
+    static int parse(final String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+        try {
+            int id = Integer.parseInt(value.trim());
+            if (id == 0 || dictionary(id) != null) {
+                return id;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        ContractLogger.get(ValueCompression.class).warn("Unknown %s value %s, not compressing", ENV_VARIABLE, value);
+        return 0;
+    }
+
+    static boolean isCompressed(final byte[] value) {
+        return value != null && value.length >= 4 && value[0] == MAGIC_0 && value[1] == MAGIC_1;
+    }
+
+    /**
+     * Returns the id of the dictionary a value is compressed with, 0 if it is not compressed.
+     */
+    static int dictionaryOf(final byte[] value) {
+        return isCompressed(value) ? value[2] & 0xff : 0;
+    }
+
+    /**
+     * Compresses a value with the current dictionary, if compression is enabled.
+     */
+    static byte[] compress(final byte[] value) {
+        return CURRENT == 0 ? value : compress(value, CURRENT);
+    }
+
+    /**
+     * Compresses a value with a dictionary, or returns it unchanged if that would not make it smaller.
+     */
+    static byte[] compress(final byte[] value, final int id) {
+        byte[] dictionary = dictionary(id);
+        if (dictionary == null) {
+            throw new IllegalArgumentException("Unknown compression dictionary " + id);
+        }
+        return compress(value, id, dictionary);
+    }
+
+    /**
+     * Compresses a value with the given dictionary bytes, used for dictionaries that are not released yet.
+     */
+    static byte[] compress(final byte[] value, final int id, final byte[] dictionary) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setDictionary(dictionary);
+        deflater.setInput(value);
+        deflater.finish();
+
+        byte[] out = new byte[value.length + 8];
+        out[0] = MAGIC_0;
+        out[1] = MAGIC_1;
+        out[2] = (byte) id;
+        int len = 3;
+        int n = value.length;
+        while (n >= 0x80) {
+            out[len++] = (byte) (n & 0x7f | 0x80);
+            n >>>= 7;
+        }
+        out[len++] = (byte) n;
+        while (!deflater.finished()) {
+            if (len == out.length) {
+                return value;
+            }
+            len += deflater.deflate(out, len, out.length - len);
+        }
+        return len < value.length ? Arrays.copyOf(out, len) : value;
+    }
+
+    /**
+     * Returns the value held by a compressed value, or the value itself if it is not compressed.
+     */
+    static byte[] decompress(final byte[] value) {
+        if (!isCompressed(value)) {
+            return value;
+        }
+        try {
+            int id = value[2] & 0xff;
+            byte[] dictionary = dictionary(id);
+            if (dictionary == null) {
+                throw new IllegalArgumentException("Unknown compression dictionary " + id);
+            }
+            int at = 3;
+            long length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = value[at++];
+                length |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0 && shift < 35);
+            if (b < 0 || length > (value.length - at) * MAX_RATIO) {
+                throw new IllegalArgumentException("Invalid compressed value length " + length);
+            }
+            Inflater inflater = INFLATER.get();
+            inflater.reset();
+            inflater.setDictionary(dictionary);
+            inflater.setInput(value, at, value.length - at);
+            byte[] out = new byte[(int) length];
+            int len = 0;
+            while (len < out.length) {
+                int n = inflater.inflate(out, len, out.length - len);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                len += n;
+            }
+            if (len != out.length) {
+                throw new IllegalArgumentException("Compressed value is truncated");
+            }
+            return out;
+        } catch (DataFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new ChaincodeException("Deserialize error: Corrupt compressed value: " + e.getMessage(), "DATA_ERROR");
+        } catch (IllegalArgumentException e) {
+            throw new ChaincodeException("Deserialize error: " + e.getMessage(), "DATA_ERROR");
+        }
+    }
+
+    /**
+     * Returns a dictionary shipped with the chaincode, or null if there is none with that id.
+     */
+    static byte[] dictionary(final int id) {
+        if (id < 1 || id > MAX_ID) {
+            return null;
+        }
+        byte[] dictionary = DICTIONARIES.get(id);
+        if (dictionary == null) {
+            DICTIONARIES.compareAndSet(id, null, load("dictionary-" + id + ".bin"));
+            dictionary = DICTIONARIES.get(id);
+        }
+        return dictionary.length == 0 ? null : dictionary;
+    }
+
+    // an empty array marks a missing dictionary
+    private static byte[] load(final String name) {
+        try (InputStream in = ValueCompression.class.getResourceAsStream(name)) {
+            if (in == null) {
+                return new byte[0];
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
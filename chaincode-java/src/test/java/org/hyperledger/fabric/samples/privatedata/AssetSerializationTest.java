@@ -0,0 +1,309 @@
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public final class AssetSerializationTest {
+
+    // values as written by the previous reflection based serializer
+    private static String legacyAssetString =
+            "{\"backupNetwork\":{\"netID\":\"46011010000\",\"ipEndPoint\":{\"port\":7786,\"ipv4Addr\":\"172.28.158.99\"},"
+            +
+            "\"netType\":\"Center\"},\"imsi\":\"460110100010001\",\"homeNetwork\":{\"ipEndPoint\":{\"port\":7786,"
+            +
+            "\"ipv4Addr\":\"172.28.158.98\"},\"cert\":\"x.509\",\"netID\":\"46011010001\",\"netType\":\"Edge\"},"
+            +
+            "\"operator\":\"China Telecom\"}";
+
+    private static String legacyDetailsString =
+            "{\"security\":{\"sqn\":\"0000000000a1\",\"opc\":\"e8ed289deba952e4283b54e88e6183ca\","
+            +
+            "\"k\":\"465b5ce8b199b49faa5f0a2ee238a6bc\",\"amf\":\"8000\"},\"imsi\":\"460110100010001\","
+            +
+            "\"slice\":{\"sst\":1,\"session\":{\"ambr\":{\"uplink\":\"1073741824 bps\",\"downlink\":\"1073741824 bps\"},"
+            +
+            "\"qos\":{\"index\":9,\"arp\":{\"priority_level\":8,\"pre_emption_capability\":1,\"pre_emption_vulnerability\":1}},"
+            +
+            "\"pcc_rule\":\"\",\"name\":\"internet\",\"type\":3},\"default_indicator\":true},"
+            +
+            "\"ambr\":{\"uplink\":\"1073741824 bps\",\"downlink\":\"1073741824 bps\"}}";
+
+    @Test
+    public void readsLegacyAsset() {
+        Asset asset = Asset.deserialize(legacyAssetString.getBytes(UTF_8));
+
+        assertThat(asset.getImsi()).isEqualTo("460110100010001");
+        assertThat(asset.getOperator()).isEqualTo("China Telecom");
+        assertThat(asset.getHomeNetwork())
+                .isEqualTo(new Network("46011010001", "Edge", "x.509", new IpEndPoint("172.28.158.98", 7786)));
+        assertThat(asset.getBackupNetwork())
+                .isEqualTo(new Network("46011010000", "Center", null, new IpEndPoint("172.28.158.99", 7786)));
+    }
+
+    @Test
+    public void readsTypedPrivateDetails() {
+        AssetPrivateDetails details = AssetPrivateDetails.deserialize(legacyDetailsString.getBytes(UTF_8));
+
+        assertThat(details.getAmbr()).isEqualTo(new Ambr(1073741824L, 1073741824L));
+        assertThat(details.getSlice().getSst()).isEqualTo(1);
+        assertThat(details.getSlice().isDefault_indicator()).isTrue();
+        assertThat(details.getSlice().getSession())
+                .isEqualTo(new Session("internet", 3, "", new Ambr(1073741824L, 1073741824L), new Qos(9, new Arp(8, 1, 1))));
+        assertThat(details.getSecurity().kBytes()).isEqualTo(Hex.decode("465b5ce8b199b49faa5f0a2ee238a6bc"));
+        assertThat(details.getSecurity().sqnValue()).isEqualTo(0xa1L);
+    }
+
+    @Test
+    public void parsesBitRateUnits() {
+        assertThat(Ambr.parseBitRate("1073741824 bps")).isEqualTo(1073741824L);
+        assertThat(Ambr.parseBitRate("1.5 Gbps")).isEqualTo(1500000000L);
+        assertThat(Ambr.parseBitRate("2 Kbps")).isEqualTo(2000L);
+        assertThat(catchThrowable(() -> Ambr.parseBitRate("fast"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void writesFixedKeyOrder() {
+        Asset asset = Asset.deserialize(legacyAssetString);
+
+        assertThat(new String(asset.serialize(), UTF_8)).isEqualTo(
+                "{\"imsi\":\"460110100010001\",\"operator\":\"China Telecom\","
+                + "\"homeNetwork\":{\"cert\":\"x.509\",\"ipEndPoint\":{\"ipv4Addr\":\"172.28.158.98\",\"port\":7786},"
+                + "\"netID\":\"46011010001\",\"netType\":\"Edge\"},"
+                + "\"backupNetwork\":{\"ipEndPoint\":{\"ipv4Addr\":\"172.28.158.99\",\"port\":7786},"
+                + "\"netID\":\"46011010000\",\"netType\":\"Center\"}}");
+    }
+
+    @Test
+    public void privateDetailsOutputIsByteStable() {
+        AssetPrivateDetails fromLedger = AssetPrivateDetails.deserialize(legacyDetailsString);
+        byte[] first = fromLedger.serialize();
+        byte[] second = AssetPrivateDetails.deserialize(first).serialize();
+
+        assertThat(second).isEqualTo(first);
+        assertThat(new JSONObject(new String(first, UTF_8)).similar(new JSONObject(legacyDetailsString))).isTrue();
+    }
+
+    @Test
+    public void escapesStrings() {
+        Asset asset = Asset.deserialize(legacyAssetString.replace("China Telecom", "China \\\"Tele\\\\com\\u00e9\\n"));
+        assertThat(asset.getOperator()).isEqualTo("China \"Tele\\com\u00e9\n");
+
+        Asset roundTrip = Asset.deserialize(asset.serialize());
+        assertThat(roundTrip.getOperator()).isEqualTo(asset.getOperator());
+    }
+
+    @Test
+    public void missingFieldIsDataError() {
+        Throwable thrown = catchThrowable(() -> {
+            AssetPrivateDetails.deserialize(legacyDetailsString.replace("\"sqn\"", "\"sqx\""));
+        });
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                .hasMessage("Deserialize error: JSONObject[\"sqn\"] not found.");
+        assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("DATA_ERROR".getBytes());
+    }
+
+    @Test
+    public void malformedJsonIsDataError() {
+        Throwable thrown = catchThrowable(() -> {
+            Asset.deserialize(legacyAssetString.substring(0, 40));
+        });
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class);
+        assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("DATA_ERROR".getBytes());
+    }
+
+    @Test
+    public void binaryRoundTripMatchesJson() {
+        Asset asset = Asset.deserialize(legacyAssetString);
+        AssetPrivateDetails details = AssetPrivateDetails.deserialize(legacyDetailsString);
+
+        byte[] assetBinary = BinaryCodec.encode(asset);
+        byte[] detailsBinary = BinaryCodec.encode(details);
+
+        assertThat(BinaryCodec.isBinary(assetBinary)).isTrue();
+        assertThat(BinaryCodec.isBinary(asset.serializeJson())).isFalse();
+        assertThat(assetBinary.length).isLessThan(asset.serializeJson().length / 2);
+        assertThat(detailsBinary.length).isLessThan(details.serializeJson().length / 2);
+        assertThat(Asset.deserialize(assetBinary).serializeJson()).isEqualTo(asset.serializeJson());
+        assertThat(AssetPrivateDetails.deserialize(detailsBinary).serializeJson()).isEqualTo(details.serializeJson());
+    }
+
+    @Test
+    public void binaryTextEncodingIsLossless() {
+        String[] values = {"007", "0", "", "ABCD", "0a0B", "abc", "10.0.0.01", "255.255.255.255", "0 bps", "01 bps",
+            "1073741824 bps", "Edge \u00e9", "256.1.1.1"};
+        for (String value : values) {
+            Network network = new Network(value, value, value, new IpEndPoint("10.0.0.1", 7786));
+            Asset asset = new Asset(value, value, network, network);
+
+            Asset decoded = BinaryCodec.decodeAsset(BinaryCodec.encode(asset));
+
+            assertThat(decoded.getImsi()).isEqualTo(value);
+            assertThat(decoded.getHomeNetwork()).isEqualTo(network);
+            assertThat(decoded.getOperator()).isEqualTo(value);
+        }
+    }
+
+    @Test
+    public void patchesSqnInPlace() {
+        AssetPrivateDetails details = AssetPrivateDetails.deserialize(legacyDetailsString);
+        AssetPrivateDetails updated = details.withSecurity(details.getSecurity().withSqn(0xfffffffffffeL));
+
+        assertThat(AssetPrivateDetails.patchSqn(details.serializeJson(), 0xfffffffffffeL))
+                .isEqualTo(updated.serializeJson());
+        assertThat(BinaryCodec.patchSqn(BinaryCodec.encode(details), 0xfffffffffffeL))
+                .isEqualTo(BinaryCodec.encode(updated));
+        assertThat(BinaryCodec.patchSqn(details.serializeJson(), 1)).isNull();
+        // legacy key order is rewritten in full
+        assertThat(AssetPrivateDetails.patchSqn(legacyDetailsString.getBytes(UTF_8), 0xfffffffffffeL))
+                .isEqualTo(updated.serializeJson());
+    }
+
+    @Test
+    public void profileReferenceOmitsSliceAndDefaultAmbr() {
+        AssetPrivateDetails details = AssetPrivateDetails.deserialize(legacyDetailsString);
+        Slice slice = details.getSlice();
+        String hash = ProfileStore.hash(slice);
+        AssetPrivateDetails referenced = details.withProfile(hash, slice);
+
+        JSONObject stored = new JSONObject(new String(referenced.serializeJson(), UTF_8));
+        assertThat(stored.keySet()).containsExactlyInAnyOrder("imsi", "profile", "security");
+        assertThat(referenced.serializeJson().length).isLessThan(details.serializeJson().length / 2);
+        assertThat(BinaryCodec.encode(referenced).length).isLessThan(BinaryCodec.encode(details).length);
+
+        for (byte[] value : new byte[][] {referenced.serializeJson(), BinaryCodec.encode(referenced)}) {
+            AssetPrivateDetails read = AssetPrivateDetails.deserialize(value);
+            assertThat(read.getProfile()).isEqualTo(hash);
+            assertThat(read.getSlice()).isNull();
+            assertThat(read.getAmbr()).isNull();
+            assertThat(read.withProfile(hash, slice).getAmbr()).isEqualTo(details.getAmbr());
+            assertThat(read.withProfile(hash, slice).serializeJson()).isEqualTo(referenced.serializeJson());
+        }
+        // the API form is the full record
+        JsonWriter writer = new JsonWriter(512);
+        referenced.write(writer);
+        assertThat(new JSONObject(writer.toString()).getJSONObject("slice").getInt("sst")).isEqualTo(1);
+    }
+
+    @Test
+    public void profileReferenceKeepsDifferentAmbr() {
+        AssetPrivateDetails details = AssetPrivateDetails.deserialize(legacyDetailsString);
+        Slice slice = details.getSlice();
+        AssetPrivateDetails referenced = new AssetPrivateDetails(details.getImsi(), slice, new Ambr(1000L, 2000L),
+                details.getSecurity()).withProfile(ProfileStore.hash(slice), slice);
+
+        for (byte[] value : new byte[][] {referenced.serializeJson(), BinaryCodec.encode(referenced)}) {
+            assertThat(AssetPrivateDetails.deserialize(value).getAmbr()).isEqualTo(new Ambr(1000L, 2000L));
+        }
+        assertThat(BinaryCodec.patchSqn(BinaryCodec.encode(referenced), 7L))
+                .isEqualTo(BinaryCodec.encode(referenced.withSecurity(referenced.getSecurity().withSqn(7L))));
+    }
+
+    @Test
+    public void networkReferenceHoldsOnlyNetID() {
+        Asset asset = Asset.deserialize(legacyAssetString);
+        Asset stored = asset.withNetworks(Network.reference("46011010001"), Network.reference("46011010000"));
+
+        assertThat(new String(stored.serializeJson(), UTF_8)).isEqualTo(
+                "{\"imsi\":\"460110100010001\",\"operator\":\"China Telecom\","
+                + "\"homeNetwork\":{\"netID\":\"46011010001\"},\"backupNetwork\":{\"netID\":\"46011010000\"}}");
+        assertThat(stored.serializeJson().length).isLessThan(asset.serializeJson().length / 2);
+        assertThat(BinaryCodec.encode(stored).length).isLessThan(BinaryCodec.encode(asset).length);
+        for (byte[] value : new byte[][] {stored.serializeJson(), BinaryCodec.encode(stored)}) {
+            Asset read = Asset.deserialize(value);
+            assertThat(read.hasReferences()).isTrue();
+            assertThat(read.getHomeNetwork()).isEqualTo(Network.reference("46011010001"));
+            assertThat(read.getBackupNetwork().isReference()).isTrue();
+        }
+    }
+
+    @Test
+    public void compressedValuesRoundTrip() {
+        Asset asset = Asset.deserialize(legacyAssetString)
+                .withNetworks(Network.reference("46011010001"), Network.reference("46011010000"));
+        AssetPrivateDetails details = AssetPrivateDetails.deserialize(legacyDetailsString);
+        details = details.withProfile(ProfileStore.hash(details.getSlice()), details.getSlice());
+
+        for (byte[] value : new byte[][] {asset.serializeJson(), BinaryCodec.encode(asset)}) {
+            byte[] compressed = ValueCompression.compress(value, 1);
+            assertThat(ValueCompression.dictionaryOf(compressed)).isEqualTo(1);
+            assertThat(compressed.length).isLessThan(value.length);
+            assertThat(ValueCompression.decompress(compressed)).isEqualTo(value);
+            assertThat(Asset.deserialize(compressed).getHomeNetwork()).isEqualTo(asset.getHomeNetwork());
+        }
+        assertThat(ValueCompression.compress(details.serializeJson(), 1).length)
+                .isLessThan(details.serializeJson().length);
+        for (byte[] value : new byte[][] {details.serializeJson(), BinaryCodec.encode(details)}) {
+            // binary details are mostly key material and the profile hash, and may not get smaller
+            byte[] compressed = ValueCompression.compress(value, 1);
+            assertThat(compressed.length).isLessThanOrEqualTo(value.length);
+            assertThat(AssetPrivateDetails.deserialize(compressed).getProfile()).isEqualTo(details.getProfile());
+        }
+        // values written without compression are read as they are
+        assertThat(ValueCompression.decompress(asset.serializeJson())).isEqualTo(asset.serializeJson());
+        assertThat(ValueCompression.dictionaryOf(BinaryCodec.encode(asset))).isZero();
+    }
+
+    @Test
+    public void incompressibleValuesAreNotCompressed() {
+        byte[] value = Hex.decode("465b5ce8b199b49faa5f0a2ee238a6bc");
+
+        assertThat(ValueCompression.compress(value, 1)).isSameAs(value);
+    }
+
+    @Test
+    public void patchesSqnOfCompressedValues() {
+        AssetPrivateDetails details = AssetPrivateDetails.deserialize(legacyDetailsString);
+        AssetPrivateDetails updated = details.withSecurity(details.getSecurity().withSqn(42L));
+
+        // writes are not compressed here, so the value is migrated to the current form
+        assertThat(AssetPrivateDetails.patchSqn(ValueCompression.compress(details.serializeJson(), 1), 42L))
+                .isEqualTo(updated.serialize());
+    }
+
+    @Test
+    public void unknownDictionaryIsRejected() {
+        byte[] value = ValueCompression.compress(Asset.deserialize(legacyAssetString).serializeJson(), 1);
+        value[2] = 9;
+
+        Throwable thrown = catchThrowable(() -> {
+            Asset.deserialize(value);
+        });
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                .hasMessage("Deserialize error: Unknown compression dictionary 9");
+        assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("DATA_ERROR".getBytes(UTF_8));
+    }
+
+    @Test
+    public void corruptCompressedValueIsRejected() {
+        byte[] value = ValueCompression.compress(Asset.deserialize(legacyAssetString).serializeJson(), 1);
+
+        Throwable thrown = catchThrowable(() -> {
+            Asset.deserialize(Arrays.copyOf(value, value.length - 4));
+        });
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class).hasMessageStartingWith("Deserialize error: ");
+    }
+
+    @Test
+    public void binaryVersionIsChecked() {
+        byte[] value = BinaryCodec.encode(Asset.deserialize(legacyAssetString));
+        value[2] = 9;
+
+        Throwable thrown = catchThrowable(() -> {
+            Asset.deserialize(value);
+        });
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                .hasMessage("Deserialize error: Unsupported binary format version 9");
+    }
+}
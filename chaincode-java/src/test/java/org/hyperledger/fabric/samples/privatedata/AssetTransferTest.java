@@ -2,20 +2,39 @@ package org.hyperledger.fabric.samples.privatedata;
 
 import org.hyperledger.fabric.contract.ClientIdentity;
 import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.contract.execution.JSONTransactionSerializer;
+import org.hyperledger.fabric.contract.metadata.TypeSchema;
+import org.hyperledger.fabric.contract.routing.TypeRegistry;
 import org.hyperledger.fabric.shim.ChaincodeException;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.assertj.core.api.ThrowableAssert.catchThrowable;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.hyperledger.fabric.samples.privatedata.AssetTransfer.ASSET_COLLECTION_NAME;
 import static org.mockito.Mockito.when;
 
@@ -31,25 +50,18 @@ public final class AssetTransferTest {
         String imsi = "460110100010001";
         String operator = "China Telecom";
 
-        Map<String, Object> homeNetwork = new HashMap<>();
-        homeNetwork.put("netID", "46011010001");
-        homeNetwork.put("netType", "Edge");
-        Map<String, Object> ipEndPoint = new HashMap<>();
-        ipEndPoint.put("ipv4Addr", "172.28.158.98");
-        ipEndPoint.put("port", 7786);
-        homeNetwork.put("ipEndPoint", ipEndPoint);
-        homeNetwork.put("cert", "x.509");
-
-        Map<String, Object> backupNetwork = new HashMap<>();
-        backupNetwork.put("netID", "46011010000");
-        backupNetwork.put("netType", "Center");
-        Map<String, Object> ipEndPoint2 = new HashMap<>();
-        ipEndPoint2.put("ipv4Addr", "172.28.158.99");
-        ipEndPoint2.put("port", 7786);
-        backupNetwork.put("ipEndPoint", ipEndPoint2);
+        Network homeNetwork = new Network("46011010001", "Edge", "x.509", new IpEndPoint("172.28.158.98", 7786));
+        Network backupNetwork = new Network("46011010000", "Center", null, new IpEndPoint("172.28.158.99", 7786));
 
         return new Asset(imsi, operator, homeNetwork, backupNetwork);
     }
+
+    // an asset as stored, referencing its networks
+    private static Asset stored(final Asset asset) {
+        return asset.withNetworks(
+                Network.reference(asset.getHomeNetwork().getNetID(), asset.getHomeNetwork().getNetType()),
+                Network.reference(asset.getBackupNetwork().getNetID(), asset.getBackupNetwork().getNetType()));
+    }
     private static String dataAsset1String =
     "{\"backupNetwork\":{\"netID\":\"46011010000\","
             +
@@ -70,6 +82,32 @@ public final class AssetTransferTest {
             "\"default_indicator\":true}}";
     private static byte[] dataAsset1Bytes = dataAsset1String.getBytes();
 
+    // blockToLive of a collection in the shipped collections_config.json
+    private static long blockToLive(final String name) throws IOException {
+        JSONArray collections = new JSONArray(new String(Files.readAllBytes(Paths.get("collections_config.json")), UTF_8));
+        for (int i = 0; i < collections.length(); i++) {
+            JSONObject collection = collections.getJSONObject(i);
+            if (collection.getString("name").equals(name)) {
+                return collection.getLong("blockToLive");
+            }
+        }
+        throw new AssertionError(name + " is not configured");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static QueryResultsIterator<KeyValue> queryResults(final String... keysAndValues) {
+        List<KeyValue> entries = new ArrayList<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            KeyValue kv = mock(KeyValue.class);
+            when(kv.getKey()).thenReturn(keysAndValues[i]);
+            when(kv.getValue()).thenReturn(keysAndValues[i + 1].getBytes());
+            entries.add(kv);
+        }
+        QueryResultsIterator<KeyValue> results = mock(QueryResultsIterator.class);
+        when(results.iterator()).thenReturn(entries.iterator());
+        return results;
+    }
+
     @Nested
     class InvokeWriteTransaction {
 
@@ -80,11 +118,15 @@ public final class AssetTransferTest {
             ChaincodeStub stub = mock(ChaincodeStub.class);
             //Calls the mock object, setting the value that should be returned when the corresponding method is called
             when(ctx.getStub()).thenReturn(stub);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ctx.getClientIdentity()).thenReturn(ci);
             Map<String, byte[]> m = new HashMap<String, byte[]>();
             m.put("asset_properties", dataAsset1Bytes);
             when(ctx.getStub().getTransient()).thenReturn(m);
-            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI))
-                    .thenReturn(dataAsset1Bytes);
+            when(stub.getPrivateDataHash(ASSET_COLLECTION_NAME, testAsset1IMSI))
+                    .thenReturn(Sha256.digest(dataAsset1Bytes));
 
             Throwable thrown = catchThrowable(() -> {
                 contract.CreateAsset(ctx);
@@ -94,6 +136,57 @@ public final class AssetTransferTest {
                     .hasMessage("Asset %s already exists", testAsset1IMSI);
 
             assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("ASSET_ALREADY_EXISTS".getBytes());
+            verify(stub, never()).getPrivateData(any(), any());
+        }
+
+        @Test
+        public void createAssetReportsAllViolationsBeforeLedgerAccess() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            String invalid = dataAsset1String.replace(testAsset1IMSI, "46011A")
+                    .replace("\"port\":7786", "\"port\":70000")
+                    .replace("\"priority_level\":8", "\"priority_level\":16")
+                    .replace("\"opc\":\"e8ed289deba952e4283b54e88e6183ca\"", "\"opc\":\"e8ed\"");
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put("asset_properties", invalid.getBytes());
+            when(stub.getTransient()).thenReturn(m);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.CreateAsset(ctx);
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasMessage("Invalid asset_properties: "
+                    + "imsi must be 6 to 15 digits; homeNetwork.ipEndPoint.port must be between 1 and 65535; "
+                    + "backupNetwork.ipEndPoint.port must be between 1 and 65535; "
+                    + "slice.session.qos.arp.priority_level must be between 1 and 15; "
+                    + "security.opc must be 32 hex digits");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INCOMPLETE_INPUT".getBytes());
+            verify(stub, never()).getPrivateDataHash(any(), any());
+            verify(ctx, never()).getClientIdentity();
+        }
+
+        @Test
+        public void deleteAssetChecksAccessBeforeLedgerAccess() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getMspId()).thenReturn("TestOrg2");
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put("asset_delete", ("{\"imsi\":\"" + testAsset1IMSI + "\"}").getBytes());
+            when(stub.getTransient()).thenReturn(m);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.DeleteAsset(ctx);
+            });
+
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_ACCESS".getBytes());
+            verify(stub, never()).getPrivateData(any(), any());
         }
 
         @Test
@@ -112,45 +205,1384 @@ public final class AssetTransferTest {
             m.put("asset_properties", dataAsset1Bytes);
             when(ctx.getStub().getTransient()).thenReturn(m);
 
-            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI))
+            when(stub.getPrivateDataHash(ASSET_COLLECTION_NAME, testAsset1IMSI))
                     .thenReturn(new byte[0]);
 
             Asset created = contract.CreateAsset(ctx);
             assertThat(created).isEqualTo(testAsset1);
+            assertThat(created.getHomeNetwork()).isEqualTo(testAsset1.getHomeNetwork());
 
-            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI, created.serialize());
+            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI, stored(created).serialize());
+            verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME), eq(NetworkRegistry.key("46011010001")),
+                    any(byte[].class));
+            verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME), eq(NetworkRegistry.key("46011010000")),
+                    any(byte[].class));
+            verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME),
+                    eq(new CompositeKey("operator~imsi", "China Telecom", testAsset1IMSI).toString()), any(byte[].class));
+            verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME),
+                    eq(new CompositeKey("netID~imsi", "46011010001", testAsset1IMSI).toString()), any(byte[].class));
+            verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME),
+                    eq(new CompositeKey("netID~imsi", "46011010000", testAsset1IMSI).toString()), any(byte[].class));
         }
 
+        @Test
+        public void deleteAssetRemovesIndexEntries() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put("asset_delete", ("{\"imsi\":\"" + testAsset1IMSI + "\"}").getBytes());
+            when(stub.getTransient()).thenReturn(m);
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI)).thenReturn(testAsset1.serialize());
+            when(stub.getPrivateDataHash(testOrgOneMSP + "PrivateCollection", testAsset1IMSI)).thenReturn(new byte[32]);
+            String delta = new CompositeKey("sqn~imsi~txid", testAsset1IMSI, "tx1").toString();
+            QueryResultsIterator<KeyValue> deltas = queryResults(delta, "1");
+            when(stub.getPrivateDataByPartialCompositeKey(eq(testOrgOneMSP + "PrivateCollection"), any(CompositeKey.class)))
+                    .thenReturn(deltas);
 
-    }
+            contract.DeleteAsset(ctx);
 
-    @Nested
-    class QueryReadAssetTransaction {
+            verify(stub).delPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI);
+            verify(stub).delPrivateData(testOrgOneMSP + "PrivateCollection", testAsset1IMSI);
+            verify(stub).delPrivateData(testOrgOneMSP + "PrivateCollection", delta);
+            verify(stub).delPrivateData(ASSET_COLLECTION_NAME,
+                    new CompositeKey("operator~imsi", "China Telecom", testAsset1IMSI).toString());
+            verify(stub).delPrivateData(ASSET_COLLECTION_NAME,
+                    new CompositeKey("netID~imsi", "46011010001", testAsset1IMSI).toString());
+            verify(stub).delPrivateData(ASSET_COLLECTION_NAME,
+                    new CompositeKey("netID~imsi", "46011010000", testAsset1IMSI).toString());
+        }
 
         @Test
-        public void whenAssetExists() {
+        public void createAssetsReportsPerRecordStatus() {
             AssetTransfer contract = new AssetTransfer();
             Context ctx = mock(Context.class);
             ChaincodeStub stub = mock(ChaincodeStub.class);
             when(ctx.getStub()).thenReturn(stub);
-            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI))
-                    .thenReturn(dataAsset1Bytes);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ctx.getClientIdentity()).thenReturn(ci);
 
-            Asset asset = contract.ReadAsset(ctx, testAsset1IMSI);
+            String newAsset = dataAsset1String.replace(testAsset1IMSI, "460110100010002");
+            String badAsset = dataAsset1String.replace(testAsset1IMSI, "460110100010003").replace("China Telecom", "");
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put("assets_properties", ("[" + newAsset + "," + dataAsset1String + "," + badAsset + "," + newAsset + "]").getBytes());
+            when(stub.getTransient()).thenReturn(m);
+            when(stub.getPrivateDataHash(ASSET_COLLECTION_NAME, testAsset1IMSI)).thenReturn(Sha256.digest(dataAsset1Bytes));
 
-            assertThat(asset).isEqualTo(testAsset1);
+            JSONObject summary = new JSONObject(contract.CreateAssets(ctx));
+
+            assertThat(summary.getInt("created")).isEqualTo(1);
+            assertThat(summary.getInt("failed")).isEqualTo(3);
+            JSONArray results = summary.getJSONArray("results");
+            assertThat(results.getJSONObject(0).getString("status")).isEqualTo("CREATED");
+            assertThat(results.getJSONObject(1).getString("error")).isEqualTo("ASSET_ALREADY_EXISTS");
+            assertThat(results.getJSONObject(2).getString("error")).isEqualTo("INCOMPLETE_INPUT");
+            assertThat(results.getJSONObject(3).getString("error")).isEqualTo("ASSET_ALREADY_EXISTS");
+            verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME), eq("460110100010002"), any(byte[].class));
+            verify(stub).putPrivateData(eq(testOrgOneMSP + "PrivateCollection"), eq("460110100010002"), any(byte[].class));
         }
 
         @Test
-        public void whenAssetDoesNotExist() {
+        public void createAssetsAcceptsNdjson() {
             AssetTransfer contract = new AssetTransfer();
             Context ctx = mock(Context.class);
             ChaincodeStub stub = mock(ChaincodeStub.class);
             when(ctx.getStub()).thenReturn(stub);
-            when(stub.getStringState(testAsset1IMSI)).thenReturn(null);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ctx.getClientIdentity()).thenReturn(ci);
 
-            Asset asset = contract.ReadAsset(ctx, testAsset1IMSI);
-            assertThat(asset).isNull();
+            String secondAsset = dataAsset1String.replace(testAsset1IMSI, "460110100010002");
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put("assets_properties", (dataAsset1String + "\n" + secondAsset + "\n").getBytes());
+            when(stub.getTransient()).thenReturn(m);
+
+            JSONObject summary = new JSONObject(contract.CreateAssets(ctx));
+
+            assertThat(summary.getInt("created")).isEqualTo(2);
+            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI, stored(testAsset1).serialize());
+            // registered by the first record, found in the registry by the second
+            verify(stub, times(1)).putPrivateData(eq(ASSET_COLLECTION_NAME), eq(NetworkRegistry.key("46011010001")),
+                    any(byte[].class));
+        }
+
+
+    }
+
+    @Nested
+    class PartialUpdateTransaction {
+        private final String orgCollection = testOrgOneMSP + "PrivateCollection";
+
+        private ChaincodeStub stubWithTransient(final Context ctx, final String key, final String value) {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put(key, value.getBytes());
+            when(stub.getTransient()).thenReturn(m);
+            return stub;
+        }
+
+        @Test
+        public void updateSqnRewritesOnlyPrivateDetails() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stubWithTransient(ctx, "asset_sqn",
+                    "{\"imsi\":\"" + testAsset1IMSI + "\",\"sqn\":\"0000000001f4\"}");
+            AssetPrivateDetails details = AssetPrivateDetails.deserialize(dataAsset1String);
+            when(stub.getPrivateData(orgCollection, testAsset1IMSI)).thenReturn(details.serialize());
+            QueryResultsIterator<KeyValue> deltas = queryResults();
+            when(stub.getPrivateDataByPartialCompositeKey(eq(orgCollection), any(CompositeKey.class)))
+                    .thenReturn(deltas);
+
+            new AssetTransfer().UpdateSqn(ctx);
+
+            byte[] expected = details.withSecurity(details.getSecurity().withSqn(0x1f4L)).serialize();
+            verify(stub).putPrivateData(orgCollection, testAsset1IMSI, expected);
+            verify(stub, never()).putPrivateData(eq(ASSET_COLLECTION_NAME), any(), any(byte[].class));
+        }
+
+        @Test
+        public void updateSqnWhenDetailsDoNotExist() {
+            Context ctx = mock(Context.class);
+            stubWithTransient(ctx, "asset_sqn", "{\"imsi\":\"" + testAsset1IMSI + "\",\"sqn\":\"01\"}");
+
+            Throwable thrown = catchThrowable(() -> {
+                new AssetTransfer().UpdateSqn(ctx);
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("ASSET_NOT_FOUND".getBytes());
+        }
+
+        @Test
+        public void updateNetworkMovesChangedIndexEntries() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stubWithTransient(ctx, "asset_network", "{\"imsi\":\"" + testAsset1IMSI + "\","
+                    + "\"backupNetwork\":{\"netID\":\"46011010002\",\"netType\":\"Center\","
+                    + "\"ipEndPoint\":{\"ipv4Addr\":\"172.28.158.100\",\"port\":7786}}}");
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI)).thenReturn(testAsset1.serialize());
+            when(stub.getPrivateDataHash(orgCollection, testAsset1IMSI)).thenReturn(new byte[32]);
+
+            Asset updated = new AssetTransfer().UpdateNetwork(ctx);
+
+            assertThat(updated.getHomeNetwork()).isEqualTo(testAsset1.getHomeNetwork());
+            assertThat(updated.getBackupNetwork().getNetID()).isEqualTo("46011010002");
+            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI, stored(updated).serialize());
+            verify(stub).delPrivateData(ASSET_COLLECTION_NAME,
+                    new CompositeKey("netID~imsi", "46011010000", testAsset1IMSI).toString());
+            verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME),
+                    eq(new CompositeKey("netID~imsi", "46011010002", testAsset1IMSI).toString()), any(byte[].class));
+            verify(stub, never()).putPrivateData(eq(ASSET_COLLECTION_NAME),
+                    eq(new CompositeKey("operator~imsi", "China Telecom", testAsset1IMSI).toString()), any(byte[].class));
+            verify(stub, never()).putPrivateData(eq(orgCollection), any(), any(byte[].class));
+        }
+
+        @Test
+        public void updateNetworkRejectsInvalidNetworkBeforeLedgerAccess() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stubWithTransient(ctx, "asset_network", "{\"imsi\":\"" + testAsset1IMSI + "\","
+                    + "\"homeNetwork\":{\"netID\":\"46011010000\"},"
+                    + "\"backupNetwork\":{\"netID\":\"46011010002\",\"netType\":\"Center\","
+                    + "\"ipEndPoint\":{\"ipv4Addr\":\"224.0.0.1\",\"port\":0}}}");
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().UpdateNetwork(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasMessage("Invalid asset_network: "
+                    + "backupNetwork.ipEndPoint.ipv4Addr must be a unicast address; "
+                    + "backupNetwork.ipEndPoint.port must be between 1 and 65535");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INCOMPLETE_INPUT".getBytes());
+            verify(stub, never()).getPrivateData(any(), any());
+            verify(stub, never()).putPrivateData(any(), any(), any(byte[].class));
+        }
+
+        @Test
+        public void updateQosKeepsOtherFields() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stubWithTransient(ctx, "asset_qos", "{\"imsi\":\"" + testAsset1IMSI + "\","
+                    + "\"qos\":{\"index\":5,\"arp\":{\"priority_level\":1,\"pre_emption_capability\":1,"
+                    + "\"pre_emption_vulnerability\":1}}}");
+            AssetPrivateDetails details = AssetPrivateDetails.deserialize(dataAsset1String);
+            when(stub.getPrivateData(orgCollection, testAsset1IMSI)).thenReturn(details.serialize());
+
+            new AssetTransfer().UpdateQos(ctx);
+
+            Slice slice = details.getSlice();
+            Slice updated = slice.withSession(slice.getSession().withQos(new Qos(5, new Arp(1, 1, 1))));
+            String hash = ProfileStore.hash(updated);
+            verify(stub).putPrivateData(orgCollection, ProfileStore.key(hash), ProfileStore.serialize(updated));
+            verify(stub).putPrivateData(orgCollection, testAsset1IMSI,
+                    details.withProfile(hash, updated).serialize());
+            verify(stub, never()).putPrivateData(eq(ASSET_COLLECTION_NAME), any(), any(byte[].class));
+        }
+
+        @Test
+        public void updateQosRejectsInvalidQosBeforeLedgerAccess() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stubWithTransient(ctx, "asset_qos", "{\"imsi\":\"" + testAsset1IMSI + "\","
+                    + "\"qos\":{\"index\":256,\"arp\":{\"priority_level\":16,\"pre_emption_capability\":1,"
+                    + "\"pre_emption_vulnerability\":1}}}");
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().UpdateQos(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasMessage("Invalid asset_qos: "
+                    + "qos.index must be between 1 and 255; qos.arp.priority_level must be between 1 and 15");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INCOMPLETE_INPUT".getBytes());
+            verify(stub, never()).getPrivateData(any(), any());
+            verify(stub, never()).putPrivateData(any(), any(), any(byte[].class));
+        }
+    }
+
+    @Nested
+    class NetworkRegistryTransaction {
+        private final Network edge = testAsset1.getHomeNetwork();
+        private final Network center = testAsset1.getBackupNetwork();
+
+        private ChaincodeStub stub(final Context ctx, final String key, final String value) {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            if (key != null) {
+                m.put(key, value.getBytes());
+            }
+            when(stub.getTransient()).thenReturn(m);
+            return stub;
+        }
+
+        private byte[] value(final Network network) {
+            JsonWriter writer = new JsonWriter();
+            network.write(writer);
+            return writer.toBytes();
+        }
+
+        private byte[] record(final Network network, final String owner) {
+            JsonWriter writer = new JsonWriter();
+            network.write(writer, owner);
+            return writer.toBytes();
+        }
+
+        private void register(final ChaincodeStub stub, final Network network) {
+            register(stub, network, null);
+        }
+
+        private void register(final ChaincodeStub stub, final Network network, final String owner) {
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, NetworkRegistry.key(network.getNetID())))
+                    .thenReturn(record(network, owner));
+            when(stub.getPrivateDataHash(ASSET_COLLECTION_NAME, NetworkRegistry.key(network.getNetID())))
+                    .thenReturn(new byte[32]);
+        }
+
+        @Test
+        public void registerNetwork() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, "network", new String(value(edge), UTF_8));
+
+            Network registered = new AssetTransfer().RegisterNetwork(ctx);
+
+            assertThat(registered).isEqualTo(edge);
+            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, NetworkRegistry.key("46011010001"),
+                    record(edge, testOrgOneMSP));
+        }
+
+        @Test
+        public void assetCollectionKeepsNetworks() throws IOException {
+            assertThat(blockToLive(ASSET_COLLECTION_NAME)).isZero();
+        }
+
+        @Test
+        public void registerNetworkWhenRegistered() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, "network", new String(value(edge), UTF_8));
+            register(stub, edge);
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().RegisterNetwork(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("NETWORK_ALREADY_EXISTS".getBytes());
+        }
+
+        @Test
+        public void registerNetworkRejectsReference() {
+            Context ctx = mock(Context.class);
+            stub(ctx, "network", "{\"netID\":\"46011010001\"}");
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().RegisterNetwork(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Invalid network: network must have netType and ipEndPoint");
+        }
+
+        @Test
+        public void updateRegisteredNetworkIsOneWrite() {
+            Context ctx = mock(Context.class);
+            Network moved = new Network("46011010001", "Edge", "x.509", new IpEndPoint("172.28.158.200", 7786));
+            ChaincodeStub stub = stub(ctx, "network", new String(value(moved), UTF_8));
+            register(stub, edge, testOrgOneMSP);
+
+            new AssetTransfer().UpdateRegisteredNetwork(ctx);
+
+            byte[] written = record(moved, testOrgOneMSP);
+            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, NetworkRegistry.key("46011010001"), written);
+            verify(stub, times(1)).putPrivateData(any(), any(), any(byte[].class));
+            String expected = "{\"version\":1,\"collection\":\"" + testOrgOneMSP + "PrivateCollection\",\"changes\":["
+                    + "{\"op\":\"updateRegisteredNetwork\",\"netID\":\"46011010001\","
+                    + "\"network\":\"" + Hex.encode(Sha256.digest(written)) + "\"}]}";
+            verify(stub).setEvent("AssetChanged", expected.getBytes());
+        }
+
+        @Test
+        public void updateRegisteredNetworkOfOtherOrg() {
+            Context ctx = mock(Context.class);
+            Network moved = new Network("46011010001", "Edge", "x.509", new IpEndPoint("172.28.158.200", 7786));
+            ChaincodeStub stub = stub(ctx, "network", new String(value(moved), UTF_8));
+            register(stub, edge, "TestOrg2");
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().UpdateRegisteredNetwork(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Network 46011010001 is owned by org TestOrg2, not " + testOrgOneMSP);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_ACCESS".getBytes());
+            verify(stub, never()).putPrivateData(any(), any(), any(byte[].class));
+            verify(stub, never()).setEvent(any(), any());
+        }
+
+        @Test
+        public void updateRegisteredNetworkKeepsNetType() {
+            Context ctx = mock(Context.class);
+            Network retyped = new Network("46011010001", "Center", "x.509", new IpEndPoint("172.28.158.98", 7786));
+            ChaincodeStub stub = stub(ctx, "network", new String(value(retyped), UTF_8));
+            register(stub, edge, testOrgOneMSP);
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().UpdateRegisteredNetwork(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Network 46011010001 has netType Edge, which cannot change");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("NETWORK_CONFLICT".getBytes());
+            verify(stub, never()).putPrivateData(any(), any(), any(byte[].class));
+        }
+
+        @Test
+        public void updateRegisteredNetworkWithoutOwner() {
+            Context ctx = mock(Context.class);
+            Network moved = new Network("46011010001", "Edge", "x.509", new IpEndPoint("172.28.158.200", 7786));
+            ChaincodeStub stub = stub(ctx, "network", new String(value(moved), UTF_8));
+            register(stub, edge);
+
+            new AssetTransfer().UpdateRegisteredNetwork(ctx);
+
+            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, NetworkRegistry.key("46011010001"),
+                    record(moved, testOrgOneMSP));
+        }
+
+        @Test
+        public void updateRegisteredNetworkWhenNotRegistered() {
+            Context ctx = mock(Context.class);
+            stub(ctx, "network", new String(value(edge), UTF_8));
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().UpdateRegisteredNetwork(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("NETWORK_NOT_FOUND".getBytes());
+        }
+
+        @Test
+        public void readAssetExpandsNetworks() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, null, null);
+            register(stub, edge);
+            register(stub, center);
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI)).thenReturn(stored(testAsset1).serialize());
+
+            Asset read = new AssetTransfer().ReadAsset(ctx, testAsset1IMSI);
+            Asset reference = new AssetTransfer().ReadAssetReference(ctx, testAsset1IMSI);
+
+            assertThat(read.getHomeNetwork()).isEqualTo(edge);
+            assertThat(read.getBackupNetwork()).isEqualTo(center);
+            assertThat(reference.getHomeNetwork()).isEqualTo(Network.reference("46011010001", "Edge"));
+        }
+
+        @Test
+        public void createAssetWithReferences() {
+            Context ctx = mock(Context.class);
+            String properties = dataAsset1String
+                    .replaceFirst("\"homeNetwork\":\\{.*?\"netType\":\"Edge\"\\}", "\"homeNetwork\":{\"netID\":\"46011010001\"}");
+            ChaincodeStub stub = stub(ctx, "asset_properties", properties);
+            register(stub, edge);
+            register(stub, center);
+
+            Asset created = new AssetTransfer().CreateAsset(ctx);
+
+            assertThat(created.getHomeNetwork()).isEqualTo(edge);
+            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI, stored(testAsset1).serialize());
+            verify(stub, never()).putPrivateData(eq(ASSET_COLLECTION_NAME), eq(NetworkRegistry.key("46011010001")),
+                    any(byte[].class));
+        }
+
+        @Test
+        public void createAssetWithUnregisteredReference() {
+            Context ctx = mock(Context.class);
+            String properties = dataAsset1String
+                    .replaceFirst("\"homeNetwork\":\\{.*?\"netType\":\"Edge\"\\}", "\"homeNetwork\":{\"netID\":\"46011010001\"}");
+            stub(ctx, "asset_properties", properties);
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().CreateAsset(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("NETWORK_NOT_FOUND".getBytes());
+        }
+
+        @Test
+        public void createAssetWithConflictingNetwork() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, "asset_properties", dataAsset1String);
+            register(stub, new Network("46011010001", "Edge", "x.509", new IpEndPoint("172.28.158.200", 7786)));
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().CreateAsset(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("NETWORK_CONFLICT".getBytes());
+            verify(stub, never()).putPrivateData(any(), any(), any(byte[].class));
+        }
+    }
+
+    @Nested
+    class MigrationTransaction {
+        private final String orgCollection = testOrgOneMSP + "PrivateCollection";
+        private final String imsi2 = "460110100010002";
+        private final Network newCenter = new Network("46011020000", "Center", null, new IpEndPoint("172.28.159.99", 7786));
+
+        private ChaincodeStub stub(final Context ctx, final String migration) {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put("asset_migration", migration.getBytes());
+            when(stub.getTransient()).thenReturn(m);
+
+            JsonWriter network = new JsonWriter();
+            newCenter.write(network);
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, NetworkRegistry.key("46011020000")))
+                    .thenReturn(network.toBytes());
+            when(stub.getPrivateDataHash(ASSET_COLLECTION_NAME, NetworkRegistry.key("46011020000")))
+                    .thenReturn(new byte[32]);
+            return stub;
+        }
+
+        // two subscribers on backup network 46011010000, the first held by the caller's org
+        private Asset[] subscribers(final ChaincodeStub stub) {
+            Asset first = stored(testAsset1);
+            Asset second = new Asset(imsi2, "China Telecom", first.getHomeNetwork(), first.getBackupNetwork());
+            for (Asset asset : new Asset[] {first, second}) {
+                when(stub.getPrivateData(ASSET_COLLECTION_NAME, asset.getImsi())).thenReturn(asset.serialize());
+            }
+            when(stub.getPrivateDataHash(orgCollection, testAsset1IMSI)).thenReturn(new byte[32]);
+            QueryResultsIterator<KeyValue> index = queryResults(
+                    new CompositeKey(AssetIndex.NETWORK, "46011010000", testAsset1IMSI).toString(), "\u0000",
+                    new CompositeKey(AssetIndex.NETWORK, "46011010000", imsi2).toString(), "\u0000");
+            when(stub.getPrivateDataByPartialCompositeKey(eq(ASSET_COLLECTION_NAME),
+                    argThat((CompositeKey key) -> key.toString().equals(new CompositeKey(AssetIndex.NETWORK, "46011010000").toString()))))
+                    .thenReturn(index);
+            return new Asset[] {first, second};
+        }
+
+        private String migration(final String extra) {
+            return "{\"field\":\"backupNetwork\",\"from\":\"46011010000\",\"to\":\"46011020000\"" + extra + "}";
+        }
+
+        @Test
+        public void migratesChunkAndReturnsCursor() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, migration(",\"maxRecords\":1"));
+            Asset first = subscribers(stub)[0];
+
+            String result = new AssetTransfer().MigrateAssets(ctx);
+
+            assertThat(new JSONObject(result).toMap())
+                    .containsEntry("migrated", 1).containsEntry("skipped", 0).containsEntry("cursor", testAsset1IMSI);
+            Asset moved = first.withNetworks(first.getHomeNetwork(), Network.reference("46011020000", "Center"));
+            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI, moved.serialize());
+            verify(stub).delPrivateData(ASSET_COLLECTION_NAME,
+                    new CompositeKey(AssetIndex.NETWORK, "46011010000", testAsset1IMSI).toString());
+            verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME),
+                    eq(new CompositeKey(AssetIndex.NETWORK, "46011020000", testAsset1IMSI).toString()), any(byte[].class));
+            verify(stub, never()).getPrivateData(ASSET_COLLECTION_NAME, imsi2);
+            String expected = "{\"version\":1,\"collection\":\"" + orgCollection + "\",\"changes\":["
+                    + "{\"op\":\"migrate\",\"imsi\":\"" + testAsset1IMSI + "\","
+                    + "\"asset\":\"" + Hex.encode(Sha256.digest(moved.serialize())) + "\"}]}";
+            verify(stub).setEvent("AssetChanged", expected.getBytes());
+        }
+
+        @Test
+        public void skipsSubscribersOfOtherOrgs() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, migration(",\"cursor\":\"" + testAsset1IMSI + "\""));
+            subscribers(stub);
+
+            String result = new AssetTransfer().MigrateAssets(ctx);
+
+            assertThat(new JSONObject(result).toMap())
+                    .containsEntry("migrated", 0).containsEntry("skipped", 1).containsEntry("cursor", "");
+            verify(stub, never()).putPrivateData(any(), any(), any(byte[].class));
+            verify(stub, never()).setEvent(any(), any());
+        }
+
+        @Test
+        public void migratesOperatorWithinRange() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, "{\"field\":\"operator\",\"from\":\"China Telecom\","
+                    + "\"to\":\"China Unicom\",\"start\":\"46011\",\"end\":\"" + imsi2 + "\"}");
+            Asset first = subscribers(stub)[0];
+            QueryResultsIterator<KeyValue> index = queryResults(
+                    new CompositeKey(AssetIndex.OPERATOR, "China Telecom", testAsset1IMSI).toString(), "\u0000",
+                    new CompositeKey(AssetIndex.OPERATOR, "China Telecom", imsi2).toString(), "\u0000");
+            when(stub.getPrivateDataByPartialCompositeKey(eq(ASSET_COLLECTION_NAME),
+                    argThat((CompositeKey key) -> key.toString().equals(new CompositeKey(AssetIndex.OPERATOR, "China Telecom").toString()))))
+                    .thenReturn(index);
+
+            String result = new AssetTransfer().MigrateAssets(ctx);
+
+            assertThat(new JSONObject(result).toMap()).containsEntry("migrated", 1).containsEntry("cursor", "");
+            Asset moved = new Asset(testAsset1IMSI, "China Unicom", first.getHomeNetwork(), first.getBackupNetwork());
+            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI, moved.serialize());
+            verify(stub).delPrivateData(ASSET_COLLECTION_NAME,
+                    new CompositeKey(AssetIndex.OPERATOR, "China Telecom", testAsset1IMSI).toString());
+            verify(stub, never()).getPrivateData(ASSET_COLLECTION_NAME, imsi2);
+        }
+
+        @Test
+        public void migrationToUnregisteredNetwork() {
+            Context ctx = mock(Context.class);
+            stub(ctx, migration("").replace("46011020000", "46011030000"));
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().MigrateAssets(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("NETWORK_NOT_FOUND".getBytes());
+        }
+
+        @Test
+        public void migrationToSameValue() {
+            Context ctx = mock(Context.class);
+            stub(ctx, migration("").replace("46011020000", "46011010000"));
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().MigrateAssets(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INCOMPLETE_INPUT".getBytes());
+        }
+    }
+
+    @Nested
+    class ProfileTransaction {
+        private final String orgCollection = testOrgOneMSP + "PrivateCollection";
+        private final AssetPrivateDetails details = AssetPrivateDetails.deserialize(dataAsset1String);
+        private final Slice slice = details.getSlice();
+        private final String hash = ProfileStore.hash(slice);
+
+        private ChaincodeStub stub(final Context ctx, final String key, final String value) {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            if (key != null) {
+                m.put(key, value.getBytes());
+            }
+            when(stub.getTransient()).thenReturn(m);
+            return stub;
+        }
+
+        @Test
+        public void orgCollectionsKeepProfiles() throws IOException {
+            assertThat(blockToLive("Org1MSPPrivateCollection")).isZero();
+            assertThat(blockToLive("Org2MSPPrivateCollection")).isZero();
+        }
+
+        @Test
+        public void createAssetStoresSliceAsProfile() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, "asset_properties", dataAsset1String);
+
+            new AssetTransfer().CreateAsset(ctx);
+
+            verify(stub).putPrivateData(orgCollection, ProfileStore.key(hash), ProfileStore.serialize(slice));
+            ArgumentCaptor<byte[]> value = ArgumentCaptor.forClass(byte[].class);
+            verify(stub).putPrivateData(eq(orgCollection), eq(testAsset1IMSI), value.capture());
+            JSONObject stored = new JSONObject(new String(value.getValue(), UTF_8));
+            assertThat(stored.getString("profile")).isEqualTo(hash);
+            assertThat(stored.has("slice")).isFalse();
+            assertThat(stored.has("ambr")).isFalse();
+        }
+
+        @Test
+        public void registerExistingProfileWritesNothing() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, "profile", new String(ProfileStore.serialize(slice), UTF_8));
+            when(stub.getPrivateDataHash(orgCollection, ProfileStore.key(hash))).thenReturn(new byte[32]);
+
+            String registered = new AssetTransfer().RegisterProfile(ctx);
+
+            assertThat(registered).isEqualTo(hash);
+            verify(stub, never()).putPrivateData(any(), any(), any(byte[].class));
+        }
+
+        @Test
+        public void registerProfileValidatesSlice() {
+            Context ctx = mock(Context.class);
+            stub(ctx, "profile", "{\"sst\":1,\"default_indicator\":true}");
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().RegisterProfile(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INCOMPLETE_INPUT".getBytes());
+        }
+
+        @Test
+        public void listProfilesReturnsHashAndSlice() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, null, null);
+            QueryResultsIterator<KeyValue> results = queryResults(ProfileStore.key(hash),
+                    new String(ProfileStore.serialize(slice), UTF_8));
+            when(stub.getPrivateDataByPartialCompositeKey(eq(orgCollection), any(CompositeKey.class)))
+                    .thenReturn(results);
+
+            JSONArray profiles = new JSONArray(new AssetTransfer().ListProfiles(ctx));
+
+            assertThat(profiles.length()).isEqualTo(1);
+            assertThat(profiles.getJSONObject(0).getString("hash")).isEqualTo(hash);
+            assertThat(profiles.getJSONObject(0).getJSONObject("slice").getInt("sst")).isEqualTo(1);
+        }
+
+        @Test
+        public void updateProfileRewritesOnlyReference() {
+            Context ctx = mock(Context.class);
+            Slice other = slice.withSession(slice.getSession().withQos(new Qos(5, new Arp(1, 1, 1))));
+            String otherHash = ProfileStore.hash(other);
+            ChaincodeStub stub = stub(ctx, "asset_profile",
+                    "{\"imsi\":\"" + testAsset1IMSI + "\",\"profile\":\"" + otherHash + "\"}");
+            when(stub.getPrivateData(orgCollection, ProfileStore.key(otherHash))).thenReturn(ProfileStore.serialize(other));
+            when(stub.getPrivateData(orgCollection, ProfileStore.key(hash))).thenReturn(ProfileStore.serialize(slice));
+            when(stub.getPrivateData(orgCollection, testAsset1IMSI))
+                    .thenReturn(details.withProfile(hash, slice).serialize());
+
+            new AssetTransfer().UpdateProfile(ctx);
+
+            verify(stub).putPrivateData(orgCollection, testAsset1IMSI, details.withProfile(otherHash, other).serialize());
+            verify(stub, never()).putPrivateData(eq(orgCollection), eq(ProfileStore.key(otherHash)), any(byte[].class));
+            verify(stub, never()).putPrivateData(eq(ASSET_COLLECTION_NAME), any(), any(byte[].class));
+        }
+
+        @Test
+        public void updateProfileWhenProfileDoesNotExist() {
+            Context ctx = mock(Context.class);
+            stub(ctx, "asset_profile", "{\"imsi\":\"" + testAsset1IMSI + "\",\"profile\":\"" + hash + "\"}");
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().UpdateProfile(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("PROFILE_NOT_FOUND".getBytes());
+        }
+
+        @Test
+        public void readResolvesProfile() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, null, null);
+            when(stub.getPrivateData(orgCollection, ProfileStore.key(hash))).thenReturn(ProfileStore.serialize(slice));
+            when(stub.getPrivateData(orgCollection, testAsset1IMSI))
+                    .thenReturn(details.withProfile(hash, slice).serialize());
+            QueryResultsIterator<KeyValue> deltas = queryResults();
+            when(stub.getPrivateDataByPartialCompositeKey(eq(orgCollection), any(CompositeKey.class)))
+                    .thenReturn(deltas);
+
+            AssetPrivateDetails read = new AssetTransfer().ReadAssetPrivateDetails(ctx, orgCollection, testAsset1IMSI);
+
+            assertThat(read.getSlice()).isEqualTo(slice);
+            assertThat(read.getAmbr()).isEqualTo(details.getAmbr());
+            assertThat(read.getProfile()).isEqualTo(hash);
+        }
+    }
+
+    @Nested
+    class SqnDeltaTransaction {
+        private final String orgCollection = testOrgOneMSP + "PrivateCollection";
+        private final AssetPrivateDetails details = AssetPrivateDetails.deserialize(dataAsset1String);
+        private final String delta1 = new CompositeKey("sqn~imsi~txid", testAsset1IMSI, "tx1").toString();
+        private final String delta2 = new CompositeKey("sqn~imsi~txid", testAsset1IMSI, "tx2").toString();
+
+        private ChaincodeStub stub(final Context ctx, final String key, final String value) {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            when(stub.getTxId()).thenReturn("tx3");
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put(key, value.getBytes());
+            when(stub.getTransient()).thenReturn(m);
+            return stub;
+        }
+
+        @Test
+        public void advanceSqnWritesDeltaWithoutReads() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, "asset_sqn_delta", "{\"imsi\":\"" + testAsset1IMSI + "\",\"delta\":2}");
+
+            new AssetTransfer().AdvanceSqn(ctx);
+
+            verify(stub).putPrivateData(orgCollection,
+                    new CompositeKey("sqn~imsi~txid", testAsset1IMSI, "tx3").toString(), "2".getBytes());
+            verify(stub, never()).getPrivateData(any(), any());
+            verify(stub, never()).getPrivateDataHash(any(), any());
+        }
+
+        @Test
+        public void readAddsPendingDeltas() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getPrivateData(orgCollection, testAsset1IMSI)).thenReturn(details.serialize());
+            QueryResultsIterator<KeyValue> deltas = queryResults(delta1, "1", delta2, "3");
+            when(stub.getPrivateDataByPartialCompositeKey(eq(orgCollection), any(CompositeKey.class)))
+                    .thenReturn(deltas);
+
+            AssetPrivateDetails read = new AssetTransfer().ReadAssetPrivateDetails(ctx, orgCollection, testAsset1IMSI);
+
+            assertThat(read.getSecurity().sqnValue()).isEqualTo(0xa1L + 4);
+            String prefix = new CompositeKey("sqn~imsi~txid", testAsset1IMSI).toString();
+            verify(stub).getPrivateDataByPartialCompositeKey(eq(orgCollection),
+                    argThat((CompositeKey key) -> key.toString().equals(prefix)));
+        }
+
+        @Test
+        public void compactSqnFoldsDeltas() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, "asset_compact", "{\"imsi\":\"" + testAsset1IMSI + "\"}");
+            when(stub.getPrivateData(orgCollection, testAsset1IMSI)).thenReturn(details.serialize());
+            QueryResultsIterator<KeyValue> deltas = queryResults(delta1, "1", delta2, "3");
+            when(stub.getPrivateDataByPartialCompositeKey(eq(orgCollection), any(CompositeKey.class)))
+                    .thenReturn(deltas);
+
+            String sqn = new AssetTransfer().CompactSqn(ctx);
+
+            assertThat(sqn).isEqualTo("0000000000a5");
+            verify(stub).putPrivateData(orgCollection, testAsset1IMSI,
+                    details.withSecurity(details.getSecurity().withSqn(0xa5L)).serialize());
+            verify(stub).delPrivateData(orgCollection, delta1);
+            verify(stub).delPrivateData(orgCollection, delta2);
+        }
+
+        @Test
+        public void compactSqnDropsDeltasOfUnknownAsset() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx, "asset_compact", "{\"imsi\":\"" + testAsset1IMSI + "\"}");
+            QueryResultsIterator<KeyValue> deltas = queryResults(delta1, "1");
+            when(stub.getPrivateDataByPartialCompositeKey(eq(orgCollection), any(CompositeKey.class)))
+                    .thenReturn(deltas);
+
+            assertThat(new AssetTransfer().CompactSqn(ctx)).isNull();
+            verify(stub).delPrivateData(orgCollection, delta1);
+            verify(stub, never()).putPrivateData(eq(orgCollection), any(), any(byte[].class));
+        }
+    }
+
+    @Nested
+    class ChangeEvents {
+
+        private ChaincodeStub stubWithTransient(final Context ctx, final String key, final String value) {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put(key, value.getBytes());
+            when(stub.getTransient()).thenReturn(m);
+            return stub;
+        }
+
+        @Test
+        public void createAssetEmitsHashesOnly() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stubWithTransient(ctx, "asset_properties", dataAsset1String);
+
+            new AssetTransfer().CreateAsset(ctx);
+
+            AssetPrivateDetails details = AssetPrivateDetails.deserialize(dataAsset1String);
+            String expected = "{\"version\":1,\"collection\":\"" + testOrgOneMSP + "PrivateCollection\",\"changes\":["
+                    + "{\"op\":\"create\",\"imsi\":\"" + testAsset1IMSI + "\","
+                    + "\"asset\":\"" + Hex.encode(Sha256.digest(stored(testAsset1).serialize())) + "\","
+                    + "\"details\":\"" + Hex.encode(Sha256.digest(details.withProfile(
+                            ProfileStore.hash(details.getSlice()), details.getSlice()).serialize())) + "\"}]}";
+            verify(stub).setEvent("AssetChanged", expected.getBytes());
+        }
+
+        @Test
+        public void createAssetsEmitsOneEvent() {
+            Context ctx = mock(Context.class);
+            String secondAsset = dataAsset1String.replace(testAsset1IMSI, "460110100010002");
+            ChaincodeStub stub = stubWithTransient(ctx, "assets_properties", "[" + dataAsset1String + "," + secondAsset + "]");
+
+            new AssetTransfer().CreateAssets(ctx);
+
+            ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+            verify(stub, times(1)).setEvent(eq("AssetChanged"), payload.capture());
+            JSONObject event = new JSONObject(new String(payload.getValue()));
+            assertThat(event.getJSONArray("changes").length()).isEqualTo(2);
+            assertThat(event.getJSONArray("changes").getJSONObject(1).getString("imsi")).isEqualTo("460110100010002");
+            assertThat(new String(payload.getValue())).doesNotContain("465b5ce8b199b49faa5f0a2ee238a6bc");
+        }
+
+        @Test
+        public void failedTransactionEmitsNothing() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stubWithTransient(ctx, "asset_properties", dataAsset1String);
+            when(stub.getPrivateDataHash(ASSET_COLLECTION_NAME, testAsset1IMSI)).thenReturn(new byte[32]);
+
+            catchThrowable(() -> new AssetTransfer().CreateAsset(ctx));
+
+            verify(stub, never()).setEvent(any(), any());
+        }
+    }
+
+    @Nested
+    class QueryReadAssetTransaction {
+
+        @Test
+        public void whenAssetExists() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI))
+                    .thenReturn(dataAsset1Bytes);
+
+            Asset asset = contract.ReadAsset(ctx, testAsset1IMSI);
+
+            assertThat(asset).isEqualTo(testAsset1);
+        }
+
+        @Test
+        public void whenAssetDoesNotExist() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getStringState(testAsset1IMSI)).thenReturn(null);
+
+            Asset asset = contract.ReadAsset(ctx, testAsset1IMSI);
+            assertThat(asset).isNull();
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        public void returnsBaselineWireFormat() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            String collection = testOrgOneMSP + "PrivateCollection";
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI)).thenReturn(dataAsset1Bytes);
+            when(stub.getPrivateData(collection, testAsset1IMSI)).thenReturn(dataAsset1Bytes);
+            QueryResultsIterator<KeyValue> deltas = queryResults();
+            when(stub.getPrivateDataByPartialCompositeKey(eq(collection), any(CompositeKey.class))).thenReturn(deltas);
+            JSONObject baseline = new JSONObject(dataAsset1String);
+
+            JSONObject asset = toWire(contract.ReadAsset(ctx, testAsset1IMSI), Asset.class);
+            JSONObject details = toWire(contract.ReadAssetPrivateDetails(ctx, collection, testAsset1IMSI),
+                    AssetPrivateDetails.class);
+
+            assertThat(asset.similar(new JSONObject(baseline, "imsi", "operator", "homeNetwork", "backupNetwork")))
+                    .as(asset.toString()).isTrue();
+            assertThat(details.similar(new JSONObject(baseline, "imsi", "slice", "ambr", "security")))
+                    .as(details.toString()).isTrue();
+        }
+
+        // what the contract runtime sends back to the client
+        private JSONObject toWire(final Object value, final Class<?> type) {
+            TypeRegistry.getRegistry().addDataType(type);
+            byte[] buffer = new JSONTransactionSerializer().toBuffer(value, TypeSchema.typeConvert(type));
+            return new JSONObject(new String(buffer, UTF_8));
+        }
+    }
+
+    @Nested
+    class QueryByIndexTransaction {
+        private final String imsi2 = "460110100010002";
+        private final String imsi3 = "460110100010003";
+
+        @SuppressWarnings("unchecked")
+        private QueryResultsIterator<KeyValue> index(final ChaincodeStub stub, final String index, final String value,
+                final String... imsis) {
+            List<KeyValue> entries = new ArrayList<>();
+            for (String imsi : imsis) {
+                KeyValue kv = mock(KeyValue.class);
+                when(kv.getKey()).thenReturn(new CompositeKey(index, value, imsi).toString());
+                entries.add(kv);
+            }
+            QueryResultsIterator<KeyValue> results = mock(QueryResultsIterator.class);
+            when(results.iterator()).thenReturn(entries.iterator());
+            when(stub.getPrivateDataByPartialCompositeKey(eq(ASSET_COLLECTION_NAME),
+                    argThat((CompositeKey key) -> key.toString().equals(new CompositeKey(index, value).toString()))))
+                    .thenReturn(results);
+            return results;
+        }
+
+        private void store(final ChaincodeStub stub, final String imsi) {
+            Asset asset = new Asset(imsi, "China Telecom", testAsset1.getHomeNetwork(), testAsset1.getBackupNetwork());
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, imsi)).thenReturn(asset.serialize());
+        }
+
+        private List<String> imsis(final JSONObject page) {
+            List<String> imsis = new ArrayList<>();
+            JSONArray records = page.getJSONArray("records");
+            for (int i = 0; i < records.length(); i++) {
+                imsis.add(records.getJSONObject(i).getString("imsi"));
+            }
+            return imsis;
+        }
+
+        @Test
+        public void queryAssetsByNetwork() throws Exception {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            QueryResultsIterator<KeyValue> results = index(stub, AssetIndex.NETWORK, "46011010001",
+                    testAsset1IMSI, imsi2, "460110100019999");
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1IMSI)).thenReturn(dataAsset1Bytes);
+            store(stub, imsi2);
+
+            JSONObject page = new JSONObject(new AssetTransfer().QueryAssetsByNetwork(ctx, "46011010001", 0, ""));
+
+            assertThat(imsis(page)).containsExactly(testAsset1IMSI, imsi2);
+            assertThat(page.getJSONArray("records").getJSONObject(0).getJSONObject("homeNetwork").getString("netType"))
+                    .isEqualTo("Edge");
+            assertThat(page.getInt("fetchedRecordsCount")).isEqualTo(2);
+            assertThat(page.getString("bookmark")).isEmpty();
+            verify(results).close();
+        }
+
+        @Test
+        public void queryAssetsByOperatorPages() throws Exception {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            QueryResultsIterator<KeyValue> first = index(stub, AssetIndex.OPERATOR, "China Telecom",
+                    testAsset1IMSI, imsi2, imsi3);
+            for (String imsi : new String[] {testAsset1IMSI, imsi2, imsi3}) {
+                store(stub, imsi);
+            }
+
+            JSONObject page = new JSONObject(new AssetTransfer().QueryAssetsByOperator(ctx, "China Telecom", 2, ""));
+
+            assertThat(imsis(page)).containsExactly(testAsset1IMSI, imsi2);
+            assertThat(page.getString("bookmark")).isEqualTo(imsi2);
+            verify(stub, never()).getPrivateData(ASSET_COLLECTION_NAME, imsi3);
+            verify(first).close();
+
+            index(stub, AssetIndex.OPERATOR, "China Telecom", testAsset1IMSI, imsi2, imsi3);
+            page = new JSONObject(new AssetTransfer().QueryAssetsByOperator(ctx, "China Telecom", 2, imsi2));
+
+            assertThat(imsis(page)).containsExactly(imsi3);
+            assertThat(page.getString("bookmark")).isEmpty();
+        }
+
+        @Test
+        public void queryAssetsByOperatorCapsPageSize() throws Exception {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            String[] imsis = new String[PagedQuery.MAX_PAGE_SIZE + 1];
+            for (int i = 0; i < imsis.length; i++) {
+                imsis[i] = String.format("46011010%07d", i);
+                store(stub, imsis[i]);
+            }
+            index(stub, AssetIndex.OPERATOR, "China Telecom", imsis);
+
+            JSONObject page = new JSONObject(new AssetTransfer().QueryAssetsByOperator(ctx, "China Telecom",
+                    Integer.MAX_VALUE, ""));
+
+            assertThat(page.getInt("fetchedRecordsCount")).isEqualTo(PagedQuery.MAX_PAGE_SIZE);
+            assertThat(page.getString("bookmark")).isEqualTo(imsis[PagedQuery.MAX_PAGE_SIZE - 1]);
+        }
+    }
+
+    @Nested
+    class RichQueryTransaction {
+
+        @Test
+        @SuppressWarnings("unchecked")
+        public void queryAssetsReturnsPageAndBookmark() throws Exception {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            List<KeyValue> entries = new ArrayList<>();
+            for (String imsi : new String[] {testAsset1IMSI, "460110100010002", "460110100010003"}) {
+                Asset asset = new Asset(imsi, "China Telecom", testAsset1.getHomeNetwork(), testAsset1.getBackupNetwork());
+                KeyValue kv = mock(KeyValue.class);
+                when(kv.getKey()).thenReturn(imsi);
+                when(kv.getValue()).thenReturn(asset.serialize());
+                entries.add(kv);
+            }
+            QueryResultsIterator<KeyValue> results = mock(QueryResultsIterator.class);
+            when(results.iterator()).thenReturn(entries.iterator());
+            when(stub.getPrivateDataQueryResult(eq(ASSET_COLLECTION_NAME), any(String.class))).thenReturn(results);
+
+            String page = contract.QueryAssets(ctx, "{\"operator\":\"China Telecom\"}", 2, "");
+
+            JSONObject json = new JSONObject(page);
+            assertThat(json.getInt("fetchedRecordsCount")).isEqualTo(2);
+            assertThat(json.getString("bookmark")).isEqualTo("460110100010002");
+            assertThat(json.getJSONArray("records").getJSONObject(0).getString("imsi")).isEqualTo(testAsset1IMSI);
+            verify(stub).getPrivateDataQueryResult(ASSET_COLLECTION_NAME,
+                    "{\"selector\":{\"$and\":[{\"operator\":\"China Telecom\"},{\"imsi\":{\"$gt\":\"\"}}]},"
+                    + "\"sort\":[{\"operator\":\"asc\"},{\"imsi\":\"asc\"}]}");
+            verify(results).close();
+        }
+
+        @Test
+        public void buildsQueryAfterBookmark() {
+            PagedQuery query = new PagedQuery("{\"selector\":{\"slice.sst\":1}}", 0, "460110100010002");
+
+            assertThat(query.getPageSize()).isEqualTo(PagedQuery.DEFAULT_PAGE_SIZE);
+            assertThat(query.getQuery()).contains("{\"imsi\":{\"$gt\":\"460110100010002\"}}")
+                    .contains("\"sort\":[{\"slice.sst\":\"asc\"},{\"imsi\":\"asc\"}]");
+        }
+
+        @Test
+        public void whenSelectorIsInvalid() {
+            Context ctx = mock(Context.class);
+            when(ctx.getStub()).thenReturn(mock(ChaincodeStub.class));
+
+            Throwable thrown = catchThrowable(() -> {
+                new AssetTransfer().QueryAssets(ctx, "[1]", 10, "");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INCOMPLETE_INPUT".getBytes());
+        }
+    }
+
+    @Nested
+    class RangeListingTransaction {
+
+        private String assetJson(final String imsi) {
+            return new String(new Asset(imsi, "China Telecom", testAsset1.getHomeNetwork(), testAsset1.getBackupNetwork())
+                    .serializeJson(), UTF_8);
+        }
+
+        @Test
+        public void listsPlmnWithTwoDigitMnc() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            QueryResultsIterator<KeyValue> results = queryResults(testAsset1IMSI, assetJson(testAsset1IMSI),
+                    "460110100010002", assetJson("460110100010002"));
+            when(stub.getPrivateDataByRange(ASSET_COLLECTION_NAME, "46011", "46012")).thenReturn(results);
+
+            JSONObject page = new JSONObject(new AssetTransfer().ListAssetsByPlmn(ctx, "460", "11", 0, ""));
+
+            assertThat(page.getInt("fetchedRecordsCount")).isEqualTo(2);
+            assertThat(page.getString("bookmark")).isEmpty();
+            assertThat(page.getJSONArray("records").getJSONObject(1).getString("imsi")).isEqualTo("460110100010002");
+        }
+
+        @Test
+        public void keepsLeadingZerosOfThreeDigitMnc() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            QueryResultsIterator<KeyValue> results = queryResults();
+            when(stub.getPrivateDataByRange(ASSET_COLLECTION_NAME, "310009", "31000:")).thenReturn(results);
+
+            JSONObject page = new JSONObject(new AssetTransfer().ListAssetsByPlmn(ctx, "310", "009", 0, ""));
+
+            assertThat(page.getInt("fetchedRecordsCount")).isZero();
+            verify(stub).getPrivateDataByRange(ASSET_COLLECTION_NAME, "310009", "31000:");
+        }
+
+        @Test
+        public void pagesImsiRangeFromBookmark() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            QueryResultsIterator<KeyValue> results = queryResults("460110100010002", assetJson("460110100010002"),
+                    "460110100010003", assetJson("460110100010003"), "460110100010004", assetJson("460110100010004"));
+            when(stub.getPrivateDataByRange(ASSET_COLLECTION_NAME, "460110100010002", "460110100020000"))
+                    .thenReturn(results);
+
+            JSONObject page = new JSONObject(new AssetTransfer().ListAssetsByImsiRange(ctx,
+                    "460110100010000", "460110100020000", 1, "460110100010002"));
+
+            assertThat(page.getInt("fetchedRecordsCount")).isEqualTo(1);
+            assertThat(page.getJSONArray("records").getJSONObject(0).getString("imsi")).isEqualTo("460110100010003");
+            assertThat(page.getString("bookmark")).isEqualTo("460110100010003");
+        }
+
+        @Test
+        public void whenMncIsNotTwoOrThreeDigits() {
+            Context ctx = mock(Context.class);
+            when(ctx.getStub()).thenReturn(mock(ChaincodeStub.class));
+
+            Throwable thrown = catchThrowable(() -> {
+                new AssetTransfer().ListAssetsByPlmn(ctx, "460", "1", 0, "");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasMessage("Invalid IMSI range: mnc must be 2 to 3 digits");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INCOMPLETE_INPUT".getBytes());
+        }
+
+        @Test
+        public void whenTwoDigitMncWouldCoverThreeDigitMncs() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+
+            // 31001 is the prefix of MNCs 010 to 019 of MCC 310
+            Throwable thrown = catchThrowable(() -> {
+                new AssetTransfer().ListAssetsByPlmn(ctx, "310", "01", 0, "");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Invalid IMSI range: MCC 310 has 3-digit MNCs, not 01");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INCOMPLETE_INPUT".getBytes());
+            verify(stub, never()).getPrivateDataByRange(any(), any(), any());
+        }
+
+        @Test
+        public void whenMccHasTwoAndThreeDigitMncs() {
+            Context ctx = mock(Context.class);
+            when(ctx.getStub()).thenReturn(mock(ChaincodeStub.class));
+
+            Throwable thrown = catchThrowable(() -> {
+                new AssetTransfer().ListAssetsByPlmn(ctx, "405", "025", 0, "");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Invalid IMSI range: MCC 405 has 2 and 3-digit MNCs, list its IMSIs as a range");
+        }
+
+        @Test
+        public void whenRangeIsEmpty() {
+            Context ctx = mock(Context.class);
+            when(ctx.getStub()).thenReturn(mock(ChaincodeStub.class));
+
+            Throwable thrown = catchThrowable(() -> {
+                new AssetTransfer().ListAssetsByImsiRange(ctx, "46012", "46011", 0, "");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INCOMPLETE_INPUT".getBytes());
+        }
+    }
+
+    @Nested
+    class ExportTransaction {
+        private final String orgCollection = testOrgOneMSP + "PrivateCollection";
+
+        private ChaincodeStub stub(final Context ctx) {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            when(stub.splitCompositeKey(any(String.class)))
+                    .thenAnswer(invocation -> CompositeKey.parseCompositeKey(invocation.getArgument(0)));
+            return stub;
+        }
+
+        private String assetJson(final String imsi) {
+            return new String(new Asset(imsi, "China Telecom", testAsset1.getHomeNetwork(), testAsset1.getBackupNetwork())
+                    .serializeJson(), UTF_8);
+        }
+
+        private String[] lines(final String page) {
+            return page.split("\n");
+        }
+
+        @Test
+        public void exportAssetsCutsPageByRecordCount() throws Exception {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx);
+            QueryResultsIterator<KeyValue> results = queryResults(testAsset1IMSI, assetJson(testAsset1IMSI),
+                    "460110100010002", assetJson("460110100010002"), "460110100010003", assetJson("460110100010003"));
+            when(stub.getPrivateDataByRange(ASSET_COLLECTION_NAME, "", "")).thenReturn(results);
+
+            String[] page = lines(new AssetTransfer().ExportAssets(ctx, "", "", "", 2, 0));
+
+            assertThat(page).hasSize(3);
+            assertThat(page[0]).isEqualTo(assetJson(testAsset1IMSI));
+            assertThat(page[1]).isEqualTo(assetJson("460110100010002"));
+            assertThat(page[2]).isEqualTo("{\"fetchedRecordsCount\":2,\"bookmark\":\"460110100010002\"}");
+            verify(results).close();
+        }
+
+        @Test
+        public void exportAssetsResumesAfterBookmark() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx);
+            QueryResultsIterator<KeyValue> results = queryResults("460110100010002", assetJson("460110100010002"),
+                    "460110100010003", assetJson("460110100010003"));
+            when(stub.getPrivateDataByRange(ASSET_COLLECTION_NAME, "460110100010002", "5")).thenReturn(results);
+
+            String[] page = lines(new AssetTransfer().ExportAssets(ctx, "4", "5", "460110100010002", 0, 0));
+
+            assertThat(page).hasSize(2);
+            assertThat(page[0]).isEqualTo(assetJson("460110100010003"));
+            assertThat(page[1]).isEqualTo("{\"fetchedRecordsCount\":1,\"bookmark\":\"\"}");
+        }
+
+        @Test
+        public void exportAssetsCutsPageBySize() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx);
+            QueryResultsIterator<KeyValue> results = queryResults(testAsset1IMSI, assetJson(testAsset1IMSI),
+                    "460110100010002", assetJson("460110100010002"));
+            when(stub.getPrivateDataByRange(ASSET_COLLECTION_NAME, "", "")).thenReturn(results);
+
+            String[] page = lines(new AssetTransfer().ExportAssets(ctx, "", "", "", 0, 10));
+
+            assertThat(page).hasSize(2);
+            assertThat(page[1]).isEqualTo("{\"fetchedRecordsCount\":1,\"bookmark\":\"" + testAsset1IMSI + "\"}");
+        }
+
+        @Test
+        public void exportDetailsAppliesPendingDeltas() throws Exception {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = stub(ctx);
+            AssetPrivateDetails details = AssetPrivateDetails.deserialize(dataAsset1String);
+            QueryResultsIterator<KeyValue> results = queryResults(testAsset1IMSI, dataAsset1String,
+                    "460110100010002", dataAsset1String.replace(testAsset1IMSI, "460110100010002"));
+            when(stub.getPrivateDataByRange(orgCollection, "", "")).thenReturn(results);
+            QueryResultsIterator<KeyValue> deltas = queryResults(
+                    new CompositeKey("sqn~imsi~txid", "460110100010000", "tx0").toString(), "7",
+                    new CompositeKey("sqn~imsi~txid", "460110100010002", "tx1").toString(), "1",
+                    new CompositeKey("sqn~imsi~txid", "460110100010002", "tx2").toString(), "3");
+            when(stub.getPrivateDataByPartialCompositeKey(eq(orgCollection), any(CompositeKey.class)))
+                    .thenReturn(deltas);
+
+            String[] page = lines(new AssetTransfer().ExportAssetPrivateDetails(ctx, "", "", "", 0, 0));
+
+            assertThat(page).hasSize(3);
+            assertThat(AssetPrivateDetails.deserialize(page[0]).getSecurity().sqnValue())
+                    .isEqualTo(details.getSecurity().sqnValue());
+            assertThat(AssetPrivateDetails.deserialize(page[1]).getSecurity().sqnValue())
+                    .isEqualTo(details.getSecurity().sqnValue() + 4);
+            verify(deltas).close();
+        }
+
+        @Test
+        public void whenBookmarkIsOutsideRange() {
+            Context ctx = mock(Context.class);
+            stub(ctx);
+
+            Throwable thrown = catchThrowable(() -> {
+                new AssetTransfer().ExportAssets(ctx, "4", "5", "6", 0, 0);
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INCOMPLETE_INPUT".getBytes());
+        }
+    }
+
+    @Nested
+    class VerifyAssetPrivateDetailsTransaction {
+        private final String otherCollection = "TestOrg2PrivateCollection";
+        private final byte[] stored = AssetPrivateDetails.deserialize(dataAsset1String).serialize();
+
+        private Context contextWithPayload(final byte[] payload) {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put("asset_private_details", payload);
+            when(stub.getTransient()).thenReturn(m);
+            when(stub.getPrivateDataHash(otherCollection, testAsset1IMSI)).thenReturn(Sha256.digest(stored));
+            return ctx;
+        }
+
+        @Test
+        public void whenPayloadMatches() {
+            Context ctx = contextWithPayload(stored);
+
+            assertThat(new AssetTransfer().VerifyAssetPrivateDetails(ctx, otherCollection, testAsset1IMSI)).isTrue();
+            verify(ctx.getStub(), never()).getPrivateData(any(), any());
+        }
+
+        @Test
+        public void whenPayloadDiffers() {
+            Context ctx = contextWithPayload(dataAsset1Bytes);
+
+            assertThat(new AssetTransfer().VerifyAssetPrivateDetails(ctx, otherCollection, testAsset1IMSI)).isFalse();
+        }
+
+        @Test
+        public void whenDetailsDoNotExist() {
+            Context ctx = contextWithPayload(stored);
+
+            Throwable thrown = catchThrowable(() -> {
+                new AssetTransfer().VerifyAssetPrivateDetails(ctx, otherCollection, "460110100019999");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("ASSET_NOT_FOUND".getBytes());
+        }
+
+        @Test
+        public void ownerReadsStoredValueToVerify() {
+            Context owner = mock(Context.class);
+            ChaincodeStub ownerStub = mock(ChaincodeStub.class);
+            when(owner.getStub()).thenReturn(ownerStub);
+            when(ownerStub.getMspId()).thenReturn("TestOrg2");
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn("TestOrg2");
+            when(owner.getClientIdentity()).thenReturn(ci);
+            when(ownerStub.getPrivateData(otherCollection, testAsset1IMSI)).thenReturn(stored);
+
+            String value = new AssetTransfer().ReadStoredAssetPrivateDetails(owner, testAsset1IMSI);
+            Context ctx = contextWithPayload(Hex.decode(value));
+
+            assertThat(new AssetTransfer().VerifyAssetPrivateDetails(ctx, otherCollection, testAsset1IMSI)).isTrue();
+            assertThat(new AssetTransfer().ReadStoredAssetPrivateDetails(owner, "460110100019999")).isNull();
+        }
+
+        @Test
+        public void readStoredValueFromOtherOrgPeer() {
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ci.getMSPID()).thenReturn("TestOrg2");
+            when(ctx.getClientIdentity()).thenReturn(ci);
+
+            Throwable thrown = catchThrowable(() -> new AssetTransfer().ReadStoredAssetPrivateDetails(ctx, testAsset1IMSI));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_ACCESS".getBytes());
+            verify(stub, never()).getPrivateData(any(), any());
         }
     }
 
@@ -0,0 +1,86 @@
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ChaincodeServerProperties;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public final class ChaincodeLauncherTest {
+
+    private static Map<String, String> env(final String... namesAndValues) {
+        Map<String, String> env = new HashMap<>();
+        env.put(ChaincodeLauncher.SERVER_ADDRESS, "0.0.0.0:9999");
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            env.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return env;
+    }
+
+    @Test
+    public void keepsShimDefaultsWhenUnset() {
+        ChaincodeServerProperties server = ChaincodeLauncher.serverProperties(env());
+
+        ChaincodeServerProperties defaults = new ChaincodeServerProperties();
+        assertThat(((InetSocketAddress) server.getServerAddress()).getPort()).isEqualTo(9999);
+        assertThat(server.isTlsEnabled()).isFalse();
+        assertThat(server.getMaxInboundMessageSize()).isEqualTo(defaults.getMaxInboundMessageSize());
+        assertThat(server.getMaxConnectionAgeSeconds()).isEqualTo(defaults.getMaxConnectionAgeSeconds());
+    }
+
+    @Test
+    public void appliesGrpcSettings() {
+        ChaincodeServerProperties server = ChaincodeLauncher.serverProperties(env(
+                "CHAINCODE_MAX_INBOUND_MESSAGE_SIZE", "4194304",
+                "CHAINCODE_MAX_CONNECTION_AGE_SECONDS", "3600",
+                "CHAINCODE_KEEPALIVE_TIMEOUT_SECONDS", "30",
+                "CHAINCODE_PERMIT_KEEPALIVE_WITHOUT_CALLS", "false"));
+
+        assertThat(server.getMaxInboundMessageSize()).isEqualTo(4194304);
+        assertThat(server.getMaxConnectionAgeSeconds()).isEqualTo(3600);
+        assertThat(server.getKeepAliveTimeoutSeconds()).isEqualTo(30);
+        assertThat(server.isPermitKeepAliveWithoutCalls()).isFalse();
+    }
+
+    @Test
+    public void requiresKeyAndCertificateTogether() {
+        Throwable thrown = catchThrowable(() -> ChaincodeLauncher.serverProperties(
+                env("CHAINCODE_TLS_KEY_FILE", "/tls/server.key")));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("CHAINCODE_TLS_KEY_FILE and CHAINCODE_TLS_CERT_FILE must be set together");
+    }
+
+    @Test
+    public void rejectsInvalidSettings() {
+        assertThat(catchThrowable(() -> ChaincodeLauncher.parseAddress("9999")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("CHAINCODE_SERVER_ADDRESS must be host:port, not 9999");
+        assertThat(catchThrowable(() -> ChaincodeLauncher.serverProperties(
+                env("CHAINCODE_MAX_CONNECTION_AGE_SECONDS", "forever"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("CHAINCODE_MAX_CONNECTION_AGE_SECONDS must be a number, not forever");
+        assertThat(catchThrowable(() -> ChaincodeLauncher.applyExecutor(
+                env("CHAINCODE_EXECUTOR_THREADS", "0"), new Properties())))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("CHAINCODE_EXECUTOR_THREADS must be at least 1, not 0");
+    }
+
+    @Test
+    public void sizesTransactionPool() {
+        Properties config = new Properties();
+        config.setProperty("TP_QUEUE_SIZE", "100");
+
+        ChaincodeLauncher.applyExecutor(env("CHAINCODE_EXECUTOR_THREADS", "64"), config);
+
+        assertThat(config.getProperty("TP_CORE_POOL_SIZE")).isEqualTo("64");
+        assertThat(config.getProperty("TP_MAX_POOL_SIZE")).isEqualTo("64");
+        assertThat(config.getProperty("TP_QUEUE_SIZE")).isEqualTo("100");
+        assertThat(config.getProperty("TP_KEEP_ALIVE_MS")).isEqualTo("5000");
+    }
+}
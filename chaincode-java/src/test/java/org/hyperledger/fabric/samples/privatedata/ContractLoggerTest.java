@@ -0,0 +1,43 @@
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.samples.privatedata.ContractLogger.Level;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ContractLoggerTest {
+
+    @Test
+    public void parsesLevel() {
+        assertThat(ContractLogger.parse(null)).isEqualTo(Level.INFO);
+        assertThat(ContractLogger.parse(" debug ")).isEqualTo(Level.DEBUG);
+        assertThat(ContractLogger.parse("verbose")).isEqualTo(Level.INFO);
+    }
+
+    @Test
+    public void filtersByLevel() {
+        ContractLogger logger = new ContractLogger("test", Level.WARN);
+
+        assertThat(logger.isDebugEnabled()).isFalse();
+        assertThat(logger.isEnabled(Level.INFO)).isFalse();
+        assertThat(logger.isEnabled(Level.WARN)).isTrue();
+        assertThat(logger.isEnabled(Level.ERROR)).isTrue();
+        assertThat(new ContractLogger("test", Level.OFF).isEnabled(Level.ERROR)).isFalse();
+    }
+
+    @Test
+    public void neverRendersPayloads() {
+        String message = ContractLogger.render("Put %s value %s", new Object[] {"460110100010001", new byte[] {1, 2, 3}});
+
+        assertThat(message).isEqualTo("Put 460110100010001 value <3 bytes>");
+    }
+
+    @Test
+    public void lazySupplierIsNotCalledWhenDisabled() {
+        ContractLogger logger = new ContractLogger("test", Level.INFO);
+
+        logger.debug(() -> {
+            throw new AssertionError("should not be evaluated");
+        });
+    }
+}
@@ -0,0 +1,146 @@
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class ContractMetricsTest {
+    private static final String COLLECTION = "assetCollection";
+
+    private ChaincodeStub stub;
+    private ContractMetrics metrics;
+    private MeteredStub metered;
+
+    @BeforeEach
+    public void setUp() {
+        stub = mock(ChaincodeStub.class);
+        metrics = new ContractMetrics(0);
+        metered = new MeteredStub(stub, metrics);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static QueryResultsIterator<KeyValue> queryResults(final KeyValue... entries) {
+        QueryResultsIterator<KeyValue> results = mock(QueryResultsIterator.class);
+        when(results.iterator()).thenReturn(Arrays.asList(entries).iterator());
+        return results;
+    }
+
+    private static KeyValue keyValue(final String key, final byte[] value) {
+        KeyValue kv = mock(KeyValue.class);
+        when(kv.getKey()).thenReturn(key);
+        when(kv.getValue()).thenReturn(value);
+        return kv;
+    }
+
+    @Test
+    public void recordsTransactionUnderFunctionName() {
+        when(stub.getFunction()).thenReturn("private:ReadAsset");
+        when(stub.getPrivateData(COLLECTION, "a")).thenReturn(new byte[10]);
+
+        metered.begin();
+        metered.getPrivateData(COLLECTION, "a");
+        metered.putPrivateData(COLLECTION, "b", new byte[4]);
+        metered.finish();
+
+        JSONObject transaction = new JSONObject(metrics.toJson()).getJSONObject("transactions")
+                .getJSONObject("ReadAsset");
+        assertThat(transaction.getLong("count")).isEqualTo(1);
+        assertThat(transaction.getLong("ledgerCalls")).isEqualTo(2);
+        assertThat(transaction.getLong("bytesRead")).isEqualTo(10);
+        assertThat(transaction.getLong("bytesWritten")).isEqualTo(4);
+        assertThat(metrics.summary()).startsWith("metrics ReadAsset{n=1 ");
+    }
+
+    @Test
+    public void countsCallsByOperationAndCollection() {
+        when(stub.getPrivateData(COLLECTION, "a")).thenReturn(new byte[10]);
+
+        metered.getPrivateData(COLLECTION, "a");
+        metered.getPrivateData(COLLECTION, "missing");
+        metered.getPrivateData("Org1MSPPrivateCollection", "a");
+        metered.setEvent("AssetChanged", new byte[3]);
+
+        JSONObject ledger = new JSONObject(metrics.toJson()).getJSONObject("ledger");
+        JSONObject reads = ledger.getJSONObject("getPrivateData");
+        assertThat(reads.getJSONObject(COLLECTION).getLong("calls")).isEqualTo(2);
+        assertThat(reads.getJSONObject(COLLECTION).getLong("bytes")).isEqualTo(10);
+        assertThat(reads.getJSONObject("Org1MSPPrivateCollection").getLong("calls")).isEqualTo(1);
+        assertThat(ledger.getJSONObject("setEvent").getJSONObject("AssetChanged").getLong("bytes")).isEqualTo(3);
+        assertThat(ledger.has("putPrivateData")).isFalse();
+        assertThat(new JSONObject(metrics.toJson()).getJSONObject("transactions").length()).isZero();
+    }
+
+    @Test
+    public void recordsQueryOnceWhenClosed() throws Exception {
+        KeyValue first = keyValue("a", new byte[5]);
+        QueryResultsIterator<KeyValue> results = queryResults(first, keyValue("b", new byte[7]));
+        when(stub.getPrivateDataByRange(COLLECTION, "a", "c")).thenReturn(results);
+
+        try (QueryResultsIterator<KeyValue> query = metered.getPrivateDataByRange(COLLECTION, "a", "c")) {
+            for (KeyValue result : query) {
+                assertThat(result.getValue()).isSameAs(result.getValue());
+            }
+            assertThat(new JSONObject(metrics.toJson()).getJSONObject("ledger").length()).isZero();
+        }
+
+        JSONObject range = new JSONObject(metrics.toJson()).getJSONObject("ledger")
+                .getJSONObject("getPrivateDataByRange").getJSONObject(COLLECTION);
+        assertThat(range.getLong("calls")).isEqualTo(1);
+        assertThat(range.getLong("bytes")).isEqualTo(12);
+        verify(results).close();
+        verify(first, times(1)).getValue();
+    }
+
+    @Test
+    public void recordsUnfinishedTransactionAsFailedWhenNextBegins() {
+        when(stub.getFunction()).thenReturn("private:CreateAsset");
+        when(stub.getPrivateData(COLLECTION, "a")).thenReturn(new byte[10]);
+        ChaincodeStub nextStub = mock(ChaincodeStub.class);
+        when(nextStub.getFunction()).thenReturn("private:CreateAsset");
+        MeteredStub next = new MeteredStub(nextStub, metrics);
+
+        metered.begin();
+        metered.getPrivateData(COLLECTION, "a");
+        next.begin();
+        long start = ContractMetrics.startSerialization();
+        ContractMetrics.recordSerialization(start);
+        next.finish();
+        metered.finish();
+
+        JSONObject transaction = new JSONObject(metrics.toJson()).getJSONObject("transactions")
+                .getJSONObject("CreateAsset");
+        assertThat(transaction.getLong("count")).isEqualTo(1);
+        assertThat(transaction.getLong("failed")).isEqualTo(1);
+        assertThat(transaction.getLong("ledgerCalls")).isEqualTo(1);
+        assertThat(transaction.getLong("bytesRead")).isEqualTo(10);
+        assertThat(metrics.summary()).startsWith("metrics CreateAsset{n=1 failed=1 ");
+    }
+
+    @Test
+    public void skipsTransactionsThatWereNotStarted() {
+        when(stub.getFunction()).thenReturn("ReadAsset");
+
+        metered.finish();
+
+        assertThat(new JSONObject(metrics.toJson()).getJSONObject("transactions").length()).isZero();
+    }
+
+    @Test
+    public void parsesLogInterval() {
+        assertThat(ContractMetrics.parseInterval(null)).isEqualTo(60);
+        assertThat(ContractMetrics.parseInterval(" 15 ")).isEqualTo(15);
+        assertThat(ContractMetrics.parseInterval("0")).isZero();
+        assertThat(ContractMetrics.parseInterval("soon")).isEqualTo(60);
+    }
+}
@@ -0,0 +1,102 @@
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.ClientIdentity;
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class TransactionCacheTest {
+    private static final String COLLECTION = "assetCollection";
+
+    private Context ctx;
+    private ChaincodeStub stub;
+    private ClientIdentity ci;
+
+    @BeforeEach
+    public void setUp() {
+        ctx = mock(Context.class);
+        stub = mock(ChaincodeStub.class);
+        ci = mock(ClientIdentity.class);
+        when(ctx.getStub()).thenReturn(stub);
+        when(ctx.getClientIdentity()).thenReturn(ci);
+        when(ci.getMSPID()).thenReturn("TestOrg1");
+        when(stub.getMspId()).thenReturn("TestOrg1");
+        when(stub.getTransient()).thenReturn(new HashMap<>());
+    }
+
+    @Test
+    public void memoizesIdentityAndTransient() {
+        TransactionCache cache = new TransactionCache(ctx);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.getClientMspId()).isEqualTo("TestOrg1");
+            assertThat(cache.getPeerMspId()).isEqualTo("TestOrg1");
+            cache.getTransient();
+        }
+
+        verify(ci, times(1)).getMSPID();
+        verify(stub, times(1)).getMspId();
+        verify(stub, times(1)).getTransient();
+    }
+
+    @Test
+    public void cachesHitsAndMisses() {
+        when(stub.getPrivateData(COLLECTION, "a")).thenReturn(new byte[] {1});
+        when(stub.getPrivateData(COLLECTION, "b")).thenReturn(new byte[0]);
+        TransactionCache cache = new TransactionCache(ctx);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.getPrivateData(COLLECTION, "a")).isEqualTo(new byte[] {1});
+            assertThat(cache.getPrivateData(COLLECTION, "b")).isNull();
+            assertThat(cache.getPrivateData(COLLECTION, "c")).isNull();
+        }
+
+        verify(stub, times(1)).getPrivateData(COLLECTION, "a");
+        verify(stub, times(1)).getPrivateData(COLLECTION, "b");
+        verify(stub, times(1)).getPrivateData(COLLECTION, "c");
+    }
+
+    @Test
+    public void servesOwnWrites() {
+        when(stub.getPrivateData(COLLECTION, "b")).thenReturn(new byte[] {2});
+        TransactionCache cache = new TransactionCache(ctx);
+
+        cache.putPrivateData(COLLECTION, "a", new byte[] {1});
+        cache.delPrivateData(COLLECTION, "b");
+
+        assertThat(cache.getPrivateData(COLLECTION, "a")).isEqualTo(new byte[] {1});
+        assertThat(cache.getPrivateData(COLLECTION, "b")).isNull();
+        assertThat(cache.getPrivateData("otherCollection", "a")).isNull();
+        verify(stub).putPrivateData(COLLECTION, "a", new byte[] {1});
+        verify(stub).delPrivateData(COLLECTION, "b");
+        verify(stub, never()).getPrivateData(COLLECTION, "a");
+        verify(stub, never()).getPrivateData(COLLECTION, "b");
+    }
+
+    @Test
+    public void existenceUsesHashesAndOwnWrites() {
+        when(stub.getPrivateDataHash(COLLECTION, "a")).thenReturn(Sha256.digest(new byte[] {1}));
+        TransactionCache cache = new TransactionCache(ctx);
+
+        assertThat(cache.exists(COLLECTION, "a")).isTrue();
+        assertThat(cache.exists(COLLECTION, "a")).isTrue();
+        assertThat(cache.exists(COLLECTION, "b")).isFalse();
+        cache.putPrivateData(COLLECTION, "b", new byte[] {2});
+        cache.delPrivateData(COLLECTION, "a");
+
+        assertThat(cache.exists(COLLECTION, "a")).isFalse();
+        assertThat(cache.getPrivateDataHash(COLLECTION, "b")).isEqualTo(Sha256.digest(new byte[] {2}));
+        verify(stub, times(1)).getPrivateDataHash(COLLECTION, "a");
+        verify(stub, never()).getPrivateData(COLLECTION, "a");
+    }
+}